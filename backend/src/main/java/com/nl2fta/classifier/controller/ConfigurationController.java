@@ -21,7 +21,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 @Tag(name = "Configuration", description = "Runtime configuration for frontend application")
 public class ConfigurationController {
 
-  @Value("${app.upload.max-file-size:10485760}")
+  @Value("${app.upload.max-file-size:4294967296}")
   private Long maxFileSize;
 
   @Value("${app.upload.max-rows:1000}")
@@ -1,7 +1,12 @@
 package com.nl2fta.classifier.controller;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Value;
@@ -15,10 +20,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
 import com.nl2fta.classifier.service.TableClassificationService;
 import com.nl2fta.classifier.service.data_processing.CsvParsingService;
+import com.nl2fta.classifier.service.data_processing.CsvRowIndex;
 import com.nl2fta.classifier.service.data_processing.SqlFileProcessorService;
 import com.nl2fta.classifier.service.storage.AnalysisStorageService;
 
@@ -39,12 +46,18 @@ import lombok.extern.slf4j.Slf4j;
 @Tag(name = "File Upload", description = "File upload and analysis endpoints")
 public class FileUploadController {
 
-  @Value("${app.upload.max-file-size:10485760}")
+  @Value("${app.upload.max-file-size:4294967296}")
   private long maxFileSize;
 
   @Value("${app.upload.allowed-extensions:csv,sql}")
   private Set<String> allowedExtensions;
 
+  @Value("${app.csv.parallel.min-file-bytes:67108864}")
+  private long parallelCsvMinFileBytes;
+
+  @Value("${app.csv.retain-sources:false}")
+  private boolean retainCsvSources;
+
   private final TableClassificationService classificationService;
   private final SqlFileProcessorService sqlFileProcessorService;
   private final CsvParsingService csvParsingService;
@@ -86,6 +99,22 @@ public class FileUploadController {
       @Parameter(description = "Locale for analysis", required = false)
           @RequestParam(value = "locale", required = false)
           String locale,
+      @Parameter(description = "Names of the columns to analyze", required = false)
+          @RequestParam(value = "columns", required = false)
+          List<String> columns,
+      @Parameter(description = "Zero-based indices of the columns to analyze", required = false)
+          @RequestParam(value = "columnIndices", required = false)
+          List<Integer> columnIndices,
+      @Parameter(description = "Regular expression selecting columns to analyze", required = false)
+          @RequestParam(value = "columnPattern", required = false)
+          String columnPattern,
+      @Parameter(
+              description =
+                  "How CSV rows are sampled when maxSamples is set: 'head' (default) takes the"
+                      + " first rows, 'random' a uniform random sample of the whole file",
+              required = false)
+          @RequestParam(value = "sampling", required = false)
+          String sampling,
       @org.springframework.web.bind.annotation.RequestHeader(
               value = "X-Return-Full-Data",
               required = false)
@@ -94,41 +123,93 @@ public class FileUploadController {
     try {
       validateFile(file);
 
+      ColumnSelector selector =
+          ColumnSelector.builder()
+              .names(columns)
+              .indices(columnIndices)
+              .pattern(columnPattern)
+              .build();
+      if (selector.isEmpty()) {
+        selector = null;
+      }
+
       String fileName = file.getOriginalFilename();
       String extension = extractFileExtension(fileName);
+      boolean randomSample = isRandomSampling(sampling) && maxSamples != null && maxSamples > 0;
 
       TableClassificationRequest request;
-
-      if ("sql".equalsIgnoreCase(extension)) {
-        Map<String, byte[]> tableDataMap = sqlFileProcessorService.processAllTablesToCSV(file);
-        Map.Entry<String, byte[]> entry = tableDataMap.entrySet().iterator().next();
-        String processedFileName = fileName + " (" + entry.getKey() + ")";
-        request =
-            csvParsingService.parseCsvToRequest(
-                new java.io.ByteArrayInputStream(entry.getValue()),
-                processedFileName,
-                maxSamples,
-                locale);
-      } else {
-        // Stream the file to avoid loading whole payload; compute half rows if maxSamples not
-        // provided
-        request =
-            csvParsingService.parseCsvToRequest(
-                file.getInputStream(), fileName, maxSamples, locale);
+      Path spooledFile = null;
+      CsvRowIndex rowIndex = null;
+
+      try {
+        if ("sql".equalsIgnoreCase(extension)) {
+          Map<String, byte[]> tableDataMap = sqlFileProcessorService.processAllTablesToCSV(file);
+          Map.Entry<String, byte[]> entry = tableDataMap.entrySet().iterator().next();
+          String processedFileName = fileName + " (" + entry.getKey() + ")";
+          java.io.InputStream tableStream = new java.io.ByteArrayInputStream(entry.getValue());
+          request =
+              selector == null
+                  ? csvParsingService.parseCsvToRequest(
+                      tableStream, processedFileName, maxSamples, locale)
+                  : csvParsingService.parseCsvToRequest(
+                      tableStream, processedFileName, maxSamples, locale, selector);
+        } else if (randomSample) {
+          // The index lets the sampler seek straight to the sampled rows. The source is not
+          // retained: re-analysis extends a sample with the rows after it, not another draw
+          spooledFile = Files.createTempFile("upload-", ".csv");
+          file.transferTo(spooledFile);
+          request =
+              csvParsingService.sampleCsvToRequest(
+                  spooledFile,
+                  csvParsingService.indexCsv(spooledFile),
+                  fileName,
+                  maxSamples,
+                  locale,
+                  selector,
+                  new Random());
+        } else if (file.getSize() >= parallelCsvMinFileBytes || retainCsvSources) {
+          // Large uploads are spooled to disk so they can be parsed in parallel byte ranges; a
+          // retained source is spooled once and indexed from the same copy
+          spooledFile = Files.createTempFile("upload-", ".csv");
+          file.transferTo(spooledFile);
+          rowIndex = indexRetainedSource(spooledFile);
+          request =
+              csvParsingService.parseCsvToRequest(
+                  spooledFile, fileName, maxSamples, locale, selector);
+        } else if (selector != null) {
+          // Only the selected columns are materialized
+          request =
+              csvParsingService.parseCsvToRequest(
+                  file.getInputStream(), fileName, maxSamples, locale, selector);
+        } else {
+          // Stream the file to avoid loading whole payload; compute half rows if maxSamples not
+          // provided
+          request =
+              csvParsingService.parseCsvToRequest(
+                  file.getInputStream(), fileName, maxSamples, locale);
+        }
+
+        TableClassificationResponse response = classificationService.classifyTable(request);
+        response.setData(request.getData());
+
+        // Store the analysis for preview functionality
+        String analysisId = analysisStorageService.storeAnalysis(fileName, response);
+        log.info("Stored analysis with ID: {} for file: {}", analysisId, fileName);
+
+        if (rowIndex != null
+            && analysisId != null
+            && analysisStorageService.attachSource(analysisId, spooledFile, rowIndex)) {
+          // The stored analysis owns the file from here on
+          spooledFile = null;
+        }
+
+        // Include the analysis ID in the response
+        response.setAnalysisId(analysisId);
+
+        return ResponseEntity.ok(response);
+      } finally {
+        deleteQuietly(spooledFile);
       }
-
-      TableClassificationResponse response = classificationService.classifyTable(request);
-      response.setData(request.getData());
-
-      // Store the analysis for preview functionality
-      String analysisId = analysisStorageService.storeAnalysis(fileName, response);
-      log.info("Stored analysis with ID: {} for file: {}", analysisId, fileName);
-
-      // Include the analysis ID in the response
-      response.setAnalysisId(analysisId);
-
-      return ResponseEntity.ok(response);
-
     } catch (IllegalArgumentException e) {
       log.error("Invalid request: {}", e.getMessage());
       return ResponseEntity.badRequest().build();
@@ -162,6 +243,9 @@ public class FileUploadController {
       })
   public ResponseEntity<TableClassificationResponse> reanalyzeWithUpdatedTypes(
       @Parameter(description = "Analysis ID", required = true) @PathVariable String analysisId,
+      @Parameter(description = "Sample size for re-analysis; defaults to the stored sample size")
+          @RequestParam(value = "maxSamples", required = false)
+          Integer maxSamples,
       @org.springframework.web.bind.annotation.RequestHeader(
               value = "X-Return-Full-Data",
               required = false)
@@ -181,7 +265,7 @@ public class FileUploadController {
       TableClassificationRequest request = new TableClassificationRequest();
       request.setTableName(storedAnalysis.getFileName());
       request.setColumns(storedAnalysis.getColumns());
-      request.setData(storedAnalysis.getData());
+      request.setData(resampleStoredData(storedAnalysis, maxSamples));
       request.setIncludeStatistics(true);
       // Always ensure locale is set, use en-US as default
       String locale = storedAnalysis.getLocale();
@@ -218,6 +302,77 @@ public class FileUploadController {
     }
   }
 
+  /**
+   * Indexes a spooled upload that will be kept with its analysis, so re-analysis with a larger
+   * sample only parses the rows it has not seen yet. Failures are logged and never fail the upload.
+   *
+   * @return the row index, or {@code null} when sources are not retained or indexing failed
+   */
+  private CsvRowIndex indexRetainedSource(Path spooledFile) {
+    if (!retainCsvSources) {
+      return null;
+    }
+    try {
+      return csvParsingService.indexCsv(spooledFile);
+    } catch (Exception e) {
+      log.warn("Could not index uploaded CSV for retention: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Returns the rows to re-analyze. A smaller sample is a prefix of the stored rows, which are kept
+   * whole; a larger one is extended from the retained source file by seeking past the rows already
+   * stored, and replaces them.
+   */
+  private List<Map<String, Object>> resampleStoredData(
+      AnalysisStorageService.StoredAnalysis storedAnalysis, Integer maxSamples) throws Exception {
+    List<Map<String, Object>> data = storedAnalysis.getData();
+    if (maxSamples == null || maxSamples <= 0 || data == null) {
+      return data;
+    }
+    if (maxSamples <= data.size()) {
+      return new ArrayList<>(data.subList(0, maxSamples));
+    }
+
+    CsvRowIndex rowIndex = storedAnalysis.getRowIndex();
+    Path sourceFile = storedAnalysis.getSourceFile();
+    if (rowIndex == null || sourceFile == null || !Files.exists(sourceFile)) {
+      return data;
+    }
+    // Read only the columns the stored rows hold, so projected and new rows line up
+    ColumnSelector storedColumns =
+        data.isEmpty()
+            ? null
+            : ColumnSelector.builder().names(new ArrayList<>(data.get(0).keySet())).build();
+    List<Map<String, Object>> extended = new ArrayList<>(data);
+    extended.addAll(
+        csvParsingService.readCsvRows(
+            sourceFile, rowIndex, data.size(), maxSamples - data.size(), storedColumns));
+    return extended;
+  }
+
+  private boolean isRandomSampling(String sampling) {
+    if (sampling == null || sampling.isBlank() || "head".equalsIgnoreCase(sampling)) {
+      return false;
+    }
+    if ("random".equalsIgnoreCase(sampling)) {
+      return true;
+    }
+    throw new IllegalArgumentException("Unknown sampling: " + sampling);
+  }
+
+  private void deleteQuietly(Path path) {
+    if (path == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(path);
+    } catch (Exception e) {
+      log.debug("Failed to delete temporary file {}: {}", path, e.getMessage());
+    }
+  }
+
   private void validateFile(MultipartFile file) {
     if (file == null || file.isEmpty()) {
       throw new IllegalArgumentException("File is empty");
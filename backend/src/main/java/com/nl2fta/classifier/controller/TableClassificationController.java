@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -13,11 +14,16 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.nl2fta.classifier.config.ApplicationProperties;
+import com.nl2fta.classifier.dto.analysis.AnalysisSummaryPage;
+import com.nl2fta.classifier.dto.analysis.BulkReanalysisRequest;
+import com.nl2fta.classifier.dto.analysis.BulkReanalysisStatus;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+import com.nl2fta.classifier.service.BulkReanalysisService;
 import com.nl2fta.classifier.service.TableClassificationService;
 import com.nl2fta.classifier.service.storage.AnalysisStorageService;
 
@@ -41,6 +47,9 @@ public class TableClassificationController {
   private final TableClassificationService classificationService;
   private final AnalysisStorageService analysisStorageService;
   private final ApplicationProperties applicationProperties;
+  private final BulkReanalysisService bulkReanalysisService;
+
+  private static final int MAX_SUMMARY_PAGE_SIZE = 500;
 
   @Value("${app.defaults.max-samples:1000}")
   private Integer defaultMaxSamples;
@@ -122,17 +131,67 @@ public class TableClassificationController {
 
   @GetMapping("/analyses")
   @Operation(
-      summary = "Get all stored analyses",
-      description = "Retrieve all analyses stored in the system")
+      summary = "Get stored analyses",
+      description =
+          "Retrieve stored analyses. With view=summary, returns a page of lightweight summaries"
+              + " (no row data) ordered by the given sort; pass next_cursor back as cursor to get"
+              + " the following page. The default full view returns every analysis in full.")
   @ApiResponses(
-      value = {@ApiResponse(responseCode = "200", description = "Successfully retrieved analyses")})
-  public ResponseEntity<List<AnalysisStorageService.StoredAnalysis>> getAllAnalyses() {
+      value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved analyses"),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Invalid view, sort, limit or cursor",
+            content = @Content)
+      })
+  public ResponseEntity<?> getAllAnalyses(
+      @RequestParam(value = "view", defaultValue = "full") String view,
+      @RequestParam(value = "sort", defaultValue = "created_at") String sort,
+      @RequestParam(value = "order", defaultValue = "desc") String order,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "limit", defaultValue = "50") int limit) {
+    if ("summary".equalsIgnoreCase(view)) {
+      if (!"asc".equalsIgnoreCase(order) && !"desc".equalsIgnoreCase(order)) {
+        throw new IllegalArgumentException("Unsupported order: " + order);
+      }
+      AnalysisSummaryPage page =
+          analysisStorageService.listSummaries(
+              AnalysisStorageService.SummarySort.from(sort),
+              "desc".equalsIgnoreCase(order),
+              cursor,
+              Math.min(limit, MAX_SUMMARY_PAGE_SIZE));
+      log.debug(
+          "Retrieved {} of {} analysis summaries", page.getItems().size(), page.getTotalCount());
+      return ResponseEntity.ok(page);
+    }
+    if (!"full".equalsIgnoreCase(view)) {
+      throw new IllegalArgumentException("Unsupported view: " + view);
+    }
     List<AnalysisStorageService.StoredAnalysis> storedAnalyses =
         analysisStorageService.getAllAnalyses();
     log.debug("Retrieved {} stored analyses", storedAnalyses.size());
     return ResponseEntity.ok(storedAnalyses);
   }
 
+  @GetMapping("/analyses/{analysisId}")
+  @Operation(
+      summary = "Get a stored analysis",
+      description = "Retrieve one analysis in full, for example after listing summaries")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "Successfully retrieved the analysis"),
+        @ApiResponse(responseCode = "404", description = "Analysis not found", content = @Content)
+      })
+  public ResponseEntity<AnalysisStorageService.StoredAnalysis> getAnalysis(
+      @PathVariable String analysisId) {
+    AnalysisStorageService.StoredAnalysis storedAnalysis =
+        analysisStorageService.getAnalysis(analysisId);
+    if (storedAnalysis == null) {
+      return ResponseEntity.notFound().build();
+    }
+    return ResponseEntity.ok(storedAnalysis);
+  }
+
   @DeleteMapping("/analyses")
   @Operation(
       summary = "Delete all stored analyses",
@@ -219,9 +278,8 @@ public class TableClassificationController {
         response.setData(request.getData());
         response.setAnalysisId(analysisId);
 
-        // Update the stored analysis
-        storedAnalysis.setResponse(response);
-        storedAnalysis.setTimestamp(java.time.LocalDateTime.now());
+        // Update through the storage service so the new weight and timestamp are tracked
+        analysisStorageService.updateAnalysis(analysisId, response);
 
         log.info("Successfully reanalyzed analysis: {}", analysisId);
         return ResponseEntity.ok(response);
@@ -235,6 +293,38 @@ public class TableClassificationController {
     }
   }
 
+  @PostMapping("/analyses/reanalyze")
+  @Operation(
+      summary = "Re-analyze stored analyses after semantic types change",
+      description =
+          "Re-trains, across all stored analyses, only the columns that the added, edited or"
+              + " removed semantic types could affect, and patches the stored results in place."
+              + " Runs in the background; poll the returned job for progress.")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "202", description = "Re-analysis started"),
+        @ApiResponse(responseCode = "400", description = "No semantic types given")
+      })
+  public ResponseEntity<BulkReanalysisStatus> reanalyzeAffectedAnalyses(
+      @RequestBody BulkReanalysisRequest request) {
+    BulkReanalysisStatus status = bulkReanalysisService.start(request.getSemanticTypes());
+    return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+  }
+
+  @GetMapping("/analyses/reanalyze/{jobId}")
+  @Operation(
+      summary = "Get bulk re-analysis progress",
+      description = "Returns the progress of a bulk re-analysis job")
+  @ApiResponses(
+      value = {
+        @ApiResponse(responseCode = "200", description = "Job status"),
+        @ApiResponse(responseCode = "404", description = "Job not found")
+      })
+  public ResponseEntity<BulkReanalysisStatus> getReanalysisStatus(@PathVariable String jobId) {
+    BulkReanalysisStatus status = bulkReanalysisService.getStatus(jobId);
+    return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+  }
+
   private List<Map<String, Object>> truncateByHalf(List<Map<String, Object>> data) {
     if (data == null || data.isEmpty()) {
       return data;
@@ -7,6 +7,7 @@ import java.util.Map;
 
 import org.slf4j.MDC;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,10 +17,14 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.dto.semantic_type.SemanticTypePreviewRequest;
 import com.nl2fta.classifier.service.CloudWatchLoggingService;
 import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypePreviewService;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.PreviewResult;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -37,8 +42,11 @@ import lombok.extern.slf4j.Slf4j;
 @Tag(name = "Custom Semantic Types", description = "Manage custom semantic type definitions")
 public class CustomSemanticTypeController {
 
+  private static final long PREVIEW_STREAM_TIMEOUT_MS = 300_000;
+
   private final CustomSemanticTypeService customSemanticTypeService;
   private final CloudWatchLoggingService cloudWatchLoggingService;
+  private final SemanticTypePreviewService semanticTypePreviewService;
 
   @GetMapping
   @Operation(
@@ -210,6 +218,62 @@ public class CustomSemanticTypeController {
     }
   }
 
+  @PostMapping(value = "/preview", produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(
+      summary = "Preview the impact of a candidate semantic type",
+      description =
+          "Tests the candidate's header and value patterns against every stored analysis and"
+              + " reports the fields it would match. Request text/event-stream to receive each"
+              + " impacted analysis as soon as it has been evaluated.",
+      responses = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Preview result",
+            content = @Content(schema = @Schema(implementation = PreviewResult.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid candidate semantic type")
+      })
+  public ResponseEntity<PreviewResult> previewSemanticType(
+      @Parameter(description = "Candidate semantic type and optional examples", required = true)
+          @RequestBody
+          SemanticTypePreviewRequest request) {
+    return ResponseEntity.ok(semanticTypePreviewService.preview(request));
+  }
+
+  @PostMapping(value = "/preview", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  @Operation(
+      summary = "Stream the impact of a candidate semantic type",
+      description =
+          "Sends an 'analysis' event per impacted analysis as it completes, then a 'summary' event"
+              + " with the full preview result")
+  public SseEmitter streamSemanticTypePreview(
+      @Parameter(description = "Candidate semantic type and optional examples", required = true)
+          @RequestBody
+          SemanticTypePreviewRequest request) {
+    SseEmitter emitter = new SseEmitter(PREVIEW_STREAM_TIMEOUT_MS);
+    semanticTypePreviewService
+        .previewAsync(request, impacted -> sendEvent(emitter, "analysis", impacted))
+        .whenComplete(
+            (result, error) -> {
+              if (error != null) {
+                log.error("Semantic type preview failed", error);
+                emitter.completeWithError(error);
+              } else {
+                sendEvent(emitter, "summary", result);
+                emitter.complete();
+              }
+            });
+    return emitter;
+  }
+
+  private static void sendEvent(SseEmitter emitter, String name, Object data) {
+    try {
+      emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+    } catch (IOException | IllegalStateException e) {
+      // Client went away; the remaining analyses still finish but are not sent
+      log.debug("Dropping preview event '{}': {}", name, e.getMessage());
+    }
+  }
+
   @PutMapping("/{semanticType}")
   @Operation(
       summary = "Update an existing custom semantic type",
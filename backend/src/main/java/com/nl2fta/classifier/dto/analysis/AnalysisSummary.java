@@ -0,0 +1,41 @@
+package com.nl2fta.classifier.dto.analysis;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Lightweight projection of a stored analysis for listings; it never carries row data. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisSummary {
+
+  @JsonProperty("analysis_id")
+  private String analysisId;
+
+  @JsonProperty("file_name")
+  private String fileName;
+
+  @JsonProperty("created_at")
+  private LocalDateTime createdAt;
+
+  @JsonProperty("updated_at")
+  private LocalDateTime updatedAt;
+
+  @JsonProperty("column_count")
+  private int columnCount;
+
+  @JsonProperty("row_count")
+  private int rowCount;
+
+  /** Number of columns per detected semantic type; columns without one are not counted. */
+  @JsonProperty("type_counts")
+  private Map<String, Integer> typeCounts;
+}
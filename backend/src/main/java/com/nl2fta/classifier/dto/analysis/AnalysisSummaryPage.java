@@ -0,0 +1,28 @@
+package com.nl2fta.classifier.dto.analysis;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** One page of analysis summaries. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisSummaryPage {
+
+  @JsonProperty("items")
+  private List<AnalysisSummary> items;
+
+  /** Opaque cursor for the next page, or {@code null} on the last page. */
+  @JsonProperty("next_cursor")
+  private String nextCursor;
+
+  @JsonProperty("total_count")
+  private int totalCount;
+}
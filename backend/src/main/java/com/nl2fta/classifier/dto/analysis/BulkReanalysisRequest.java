@@ -0,0 +1,22 @@
+package com.nl2fta.classifier.dto.analysis;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Semantic types whose definitions changed; stored analyses are re-trained where they apply. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReanalysisRequest {
+
+  /** Added, edited or removed semantic types, by name. */
+  @JsonProperty("semantic_types")
+  private List<String> semanticTypes;
+}
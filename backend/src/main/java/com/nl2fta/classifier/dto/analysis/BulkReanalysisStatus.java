@@ -0,0 +1,61 @@
+package com.nl2fta.classifier.dto.analysis;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Progress of a bulk re-analysis job. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkReanalysisStatus {
+
+  public enum State {
+    RUNNING,
+    COMPLETED,
+    FAILED
+  }
+
+  @JsonProperty("job_id")
+  private String jobId;
+
+  @JsonProperty("state")
+  private State state;
+
+  @JsonProperty("semantic_types")
+  private List<String> semanticTypes;
+
+  /** Stored analyses with at least one column to re-train. */
+  @JsonProperty("total_analyses")
+  private int totalAnalyses;
+
+  @JsonProperty("completed_analyses")
+  private int completedAnalyses;
+
+  @JsonProperty("failed_analyses")
+  private int failedAnalyses;
+
+  /** Columns across all stored analyses that the change could affect. */
+  @JsonProperty("columns_to_retrain")
+  private int columnsToRetrain;
+
+  @JsonProperty("columns_retrained")
+  private int columnsRetrained;
+
+  /** Columns left untouched because the change cannot affect them. */
+  @JsonProperty("columns_skipped")
+  private int columnsSkipped;
+
+  @JsonProperty("started_at")
+  private LocalDateTime startedAt;
+
+  @JsonProperty("finished_at")
+  private LocalDateTime finishedAt;
+}
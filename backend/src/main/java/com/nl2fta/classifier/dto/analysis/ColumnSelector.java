@@ -0,0 +1,84 @@
+package com.nl2fta.classifier.dto.analysis;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Selects a subset of table columns by name, zero-based index or a regular expression matched
+ * against the full column name. A column is selected if any of the criteria selects it.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ColumnSelector {
+
+  @JsonProperty("names")
+  private List<String> names;
+
+  @JsonProperty("indices")
+  private List<Integer> indices;
+
+  @JsonProperty("pattern")
+  private String pattern;
+
+  @JsonIgnore
+  public boolean isEmpty() {
+    return (names == null || names.isEmpty())
+        && (indices == null || indices.isEmpty())
+        && (pattern == null || pattern.isBlank());
+  }
+
+  /**
+   * Resolves the selector against a header row.
+   *
+   * @param headers column names in file order
+   * @return ascending indices of the selected columns
+   * @throws IllegalArgumentException if a name or index does not exist, or nothing is selected
+   */
+  public int[] resolve(List<String> headers) {
+    TreeSet<Integer> selected = new TreeSet<>();
+
+    if (names != null) {
+      for (String name : names) {
+        int index = headers.indexOf(name);
+        if (index < 0) {
+          throw new IllegalArgumentException("Unknown column: " + name);
+        }
+        selected.add(index);
+      }
+    }
+
+    if (indices != null) {
+      for (Integer index : indices) {
+        if (index == null || index < 0 || index >= headers.size()) {
+          throw new IllegalArgumentException("Column index out of range: " + index);
+        }
+        selected.add(index);
+      }
+    }
+
+    if (pattern != null && !pattern.isBlank()) {
+      Pattern compiled = Pattern.compile(pattern);
+      for (int i = 0; i < headers.size(); i++) {
+        if (headers.get(i) != null && compiled.matcher(headers.get(i)).matches()) {
+          selected.add(i);
+        }
+      }
+    }
+
+    if (selected.isEmpty()) {
+      throw new IllegalArgumentException("Column selector matched no columns");
+    }
+    return selected.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
@@ -3,6 +3,7 @@ package com.nl2fta.classifier.dto.analysis;
 import java.util.List;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.validation.constraints.NotEmpty;
@@ -44,4 +45,11 @@ public class TableClassificationRequest {
 
   @JsonProperty("use_all_semantic_types")
   private Boolean useAllSemanticTypes;
+
+  /** Restricts classification to a subset of {@link #columns}; all columns when absent. */
+  @JsonProperty("column_selector")
+  private ColumnSelector columnSelector;
+
+  /** Rows the parser dropped before classification, for example for a wrong field count. */
+  @JsonIgnore private Integer skippedRows;
 }
@@ -154,5 +154,11 @@ public class TableClassificationResponse {
 
     @JsonProperty("locale_used")
     private String localeUsed;
+
+    @JsonProperty("skipped_columns")
+    private Integer skippedColumns;
+
+    @JsonProperty("skipped_rows")
+    private Integer skippedRows;
   }
 }
@@ -0,0 +1,28 @@
+package com.nl2fta.classifier.dto.semantic_type;
+
+import java.util.List;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Candidate semantic type to test against the stored analyses")
+public class SemanticTypePreviewRequest {
+
+  @NotNull
+  @Schema(description = "Candidate semantic type definition (regex or list)")
+  private CustomSemanticType semanticType;
+
+  @Schema(description = "Values the type should match; validated before the preview runs")
+  private List<String> positiveExamples;
+
+  @Schema(description = "Values the type should reject; validated before the preview runs")
+  private List<String> negativeExamples;
+}
@@ -0,0 +1,361 @@
+package com.nl2fta.classifier.service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.nl2fta.classifier.dto.analysis.BulkReanalysisStatus;
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
+import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
+import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+import com.nl2fta.classifier.dto.analysis.TableClassificationResponse.ColumnClassification;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeMatcher;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService.AnalysisFields;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService.FieldData;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService.StoredAnalysis;
+import com.nl2fta.classifier.service.storage.ColumnarTable;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Re-trains the stored analyses after semantic types were added, edited or removed.
+ *
+ * <p>Only columns the change could affect are re-trained: columns currently classified as one of
+ * the changed types, columns whose name matches one of their header patterns, and columns holding
+ * at least one value the type would accept. The value check compares the column's fingerprint with
+ * the type's shape first, so most columns are ruled out without running a regular expression. Types
+ * that cannot be matched outside FTA (java plugins) conservatively affect every column.
+ *
+ * <p>Planning works from the stored field metadata and reads rows only of analyses with a column
+ * the fingerprints cannot rule out. Each analysis with affected columns is re-trained on a bounded
+ * pool, restricted to those columns through a {@link ColumnSelector}; the new classifications are
+ * patched into the response stored at the time of the update, so concurrent updates are kept.
+ * Progress is tracked per job.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkReanalysisService {
+
+  private static final int MAX_RETAINED_JOBS = 20;
+
+  private final AnalysisStorageService analysisStorageService;
+  private final TableClassificationService classificationService;
+  private final CustomSemanticTypeService customSemanticTypeService;
+
+  @Value("${app.reanalysis.threads:2}")
+  private int threads;
+
+  private final Map<String, Job> jobs = new LinkedHashMap<>();
+  private ExecutorService executor;
+
+  /**
+   * Plans the re-analysis and starts it in the background.
+   *
+   * @param semanticTypes names of the added, edited or removed types
+   * @return the job's initial status, including how many columns will be re-trained and skipped
+   * @throws IllegalArgumentException if no semantic types are given
+   */
+  public BulkReanalysisStatus start(List<String> semanticTypes) {
+    Job job = plan(semanticTypes);
+    synchronized (jobs) {
+      jobs.put(job.id, job);
+      while (jobs.size() > MAX_RETAINED_JOBS) {
+        String oldest = jobs.keySet().iterator().next();
+        if (jobs.get(oldest).state == BulkReanalysisStatus.State.RUNNING) {
+          break;
+        }
+        jobs.remove(oldest);
+      }
+    }
+
+    List<CompletableFuture<Void>> tasks = new ArrayList<>(job.columnsByAnalysis.size());
+    job.columnsByAnalysis.forEach(
+        (analysisId, columns) ->
+            tasks.add(
+                CompletableFuture.runAsync(() -> retrain(job, analysisId, columns), executor())));
+    CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+        .whenComplete(
+            (done, error) -> {
+              job.finishedAt = LocalDateTime.now();
+              // Per-analysis failures are counted in the status; FAILED means the job itself broke
+              job.state =
+                  error != null
+                      ? BulkReanalysisStatus.State.FAILED
+                      : BulkReanalysisStatus.State.COMPLETED;
+              log.info(
+                  "Bulk re-analysis {} finished: {} columns re-trained in {} analyses, {} skipped,"
+                      + " {} analyses failed",
+                  job.id,
+                  job.columnsRetrained.get(),
+                  job.completedAnalyses.get(),
+                  job.columnsSkipped.get(),
+                  job.failedAnalyses.get());
+            });
+    return job.toStatus();
+  }
+
+  /** Returns the status of a job, or {@code null} if it is unknown or no longer retained. */
+  public BulkReanalysisStatus getStatus(String jobId) {
+    synchronized (jobs) {
+      Job job = jobs.get(jobId);
+      return job != null ? job.toStatus() : null;
+    }
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private Job plan(List<String> semanticTypes) {
+    if (semanticTypes == null || semanticTypes.stream().allMatch(t -> t == null || t.isBlank())) {
+      throw new IllegalArgumentException("At least one semantic type is required");
+    }
+    Set<String> names = new LinkedHashSet<>();
+    semanticTypes.stream().filter(t -> t != null && !t.isBlank()).forEach(names::add);
+
+    // null marks a type that cannot be matched outside FTA; absent types were removed
+    Map<String, SemanticTypeMatcher> matchers = new HashMap<>();
+    for (String name : names) {
+      CustomSemanticType type = findType(name);
+      if (type == null) {
+        continue;
+      }
+      try {
+        matchers.put(name, SemanticTypeMatcher.compile(type));
+      } catch (IllegalArgumentException e) {
+        log.debug("Type {} cannot be matched outside FTA: {}", name, e.getMessage());
+        matchers.put(name, null);
+      }
+    }
+
+    Job job = new Job(new ArrayList<>(names));
+    for (AnalysisFields analysis : analysisStorageService.listFields()) {
+      if (analysis.fields() == null || analysis.storedRows() == 0) {
+        continue;
+      }
+      Set<String> affected = new HashSet<>();
+      List<FieldData> candidates = new ArrayList<>();
+      for (FieldData field : analysis.fields()) {
+        if (isAffected(field, names, matchers)) {
+          affected.add(field.getFieldName());
+        } else if (mayContain(field, matchers)) {
+          candidates.add(field);
+        } else {
+          job.columnsSkipped.incrementAndGet();
+        }
+      }
+      // Rows are read only when a fingerprint leaves the values to be checked
+      if (!candidates.isEmpty()) {
+        StoredAnalysis stored = analysisStorageService.readAnalysis(analysis.analysisId());
+        ColumnarTable table = stored != null ? stored.getTable() : null;
+        for (FieldData field : candidates) {
+          if (mayMatch(SemanticTypeMatcher.FieldValues.of(field, table), matchers)) {
+            affected.add(field.getFieldName());
+          } else {
+            job.columnsSkipped.incrementAndGet();
+          }
+        }
+      }
+      if (!affected.isEmpty()) {
+        List<String> columns = new ArrayList<>(affected.size());
+        for (FieldData field : analysis.fields()) {
+          if (affected.contains(field.getFieldName())) {
+            columns.add(field.getFieldName());
+          }
+        }
+        job.columnsByAnalysis.put(analysis.analysisId(), columns);
+        job.columnsToRetrain.addAndGet(columns.size());
+      }
+    }
+    log.info(
+        "Bulk re-analysis {} for {}: {} columns in {} analyses to re-train, {} skipped",
+        job.id,
+        names,
+        job.columnsToRetrain.get(),
+        job.columnsByAnalysis.size(),
+        job.columnsSkipped.get());
+    return job;
+  }
+
+  /** Whether the field is affected whatever its values: by its current type or its name. */
+  private static boolean isAffected(
+      FieldData field, Set<String> names, Map<String, SemanticTypeMatcher> matchers) {
+    if (field.getCurrentSemanticType() != null && names.contains(field.getCurrentSemanticType())) {
+      return true;
+    }
+    for (SemanticTypeMatcher matcher : matchers.values()) {
+      if (matcher == null || matcher.headerMatches(field.getFieldName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean mayContain(FieldData field, Map<String, SemanticTypeMatcher> matchers) {
+    for (SemanticTypeMatcher matcher : matchers.values()) {
+      if (matcher != null && matcher.mayContain(field)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean mayMatch(
+      SemanticTypeMatcher.FieldValues values, Map<String, SemanticTypeMatcher> matchers) {
+    for (SemanticTypeMatcher matcher : matchers.values()) {
+      if (matcher != null && matcher.mayMatch(values)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private CustomSemanticType findType(String name) {
+    try {
+      return customSemanticTypeService.getCustomType(name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    } catch (IOException e) {
+      log.warn("Unable to load semantic type {}: {}", name, e.getMessage());
+      return null;
+    }
+  }
+
+  private void retrain(Job job, String analysisId, List<String> columns) {
+    try {
+      StoredAnalysis analysis = analysisStorageService.getAnalysis(analysisId);
+      if (analysis == null || analysis.getData().isEmpty()) {
+        log.warn("Analysis {} disappeared before bulk re-analysis", analysisId);
+        job.failedAnalyses.incrementAndGet();
+        return;
+      }
+
+      TableClassificationRequest request = new TableClassificationRequest();
+      request.setTableName(analysis.getFileName());
+      request.setData(analysis.getData());
+      request.setColumns(
+          analysis.getColumns() != null && !analysis.getColumns().isEmpty()
+              ? analysis.getColumns()
+              : new ArrayList<>(analysis.getData().get(0).keySet()));
+      request.setLocale(analysis.getLocale());
+      request.setMaxSamples(analysis.getData().size());
+      request.setUseAllSemanticTypes(true);
+      request.setColumnSelector(ColumnSelector.builder().names(columns).build());
+
+      TableClassificationResponse retrained = classificationService.classifyTable(request);
+      Map<String, ColumnClassification> classifications = new LinkedHashMap<>();
+      if (retrained.getColumnClassifications() != null) {
+        for (String column : columns) {
+          ColumnClassification classification = retrained.getColumnClassifications().get(column);
+          if (classification != null) {
+            classifications.put(column, classification);
+          }
+        }
+      }
+
+      // Patch the re-trained columns into whatever response is stored by the time of the swap
+      if (!analysisStorageService.updateResponse(
+          analysisId, current -> patch(current, classifications))) {
+        job.failedAnalyses.incrementAndGet();
+        return;
+      }
+      job.columnsRetrained.addAndGet(classifications.size());
+      job.completedAnalyses.incrementAndGet();
+    } catch (RuntimeException e) {
+      log.error("Bulk re-analysis {} failed for analysis {}", job.id, analysisId, e);
+      job.failedAnalyses.incrementAndGet();
+    }
+  }
+
+  /** Copy of {@code current} with the given columns replaced, keeping column order. */
+  private static TableClassificationResponse patch(
+      TableClassificationResponse current, Map<String, ColumnClassification> classifications) {
+    Map<String, ColumnClassification> patched =
+        current.getColumnClassifications() != null
+            ? new LinkedHashMap<>(current.getColumnClassifications())
+            : new LinkedHashMap<>();
+    patched.putAll(classifications);
+    return TableClassificationResponse.builder()
+        .tableName(current.getTableName())
+        .columnClassifications(patched)
+        .processingMetadata(current.getProcessingMetadata())
+        .data(current.getData())
+        .analysisId(current.getAnalysisId())
+        .build();
+  }
+
+  private synchronized ExecutorService executor() {
+    if (executor == null) {
+      AtomicInteger counter = new AtomicInteger();
+      executor =
+          Executors.newFixedThreadPool(
+              Math.max(1, threads),
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "bulk-reanalysis-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return executor;
+  }
+
+  private static final class Job {
+    private final String id = UUID.randomUUID().toString();
+    private final List<String> semanticTypes;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final Map<String, List<String>> columnsByAnalysis = new LinkedHashMap<>();
+    private final AtomicInteger completedAnalyses = new AtomicInteger();
+    private final AtomicInteger failedAnalyses = new AtomicInteger();
+    private final AtomicInteger columnsRetrained = new AtomicInteger();
+    private final AtomicInteger columnsToRetrain = new AtomicInteger();
+    private final AtomicInteger columnsSkipped = new AtomicInteger();
+    private volatile BulkReanalysisStatus.State state = BulkReanalysisStatus.State.RUNNING;
+    private volatile LocalDateTime finishedAt;
+
+    Job(List<String> semanticTypes) {
+      this.semanticTypes = semanticTypes;
+    }
+
+    BulkReanalysisStatus toStatus() {
+      return BulkReanalysisStatus.builder()
+          .jobId(id)
+          .state(state)
+          .semanticTypes(semanticTypes)
+          .totalAnalyses(columnsByAnalysis.size())
+          .completedAnalyses(completedAnalyses.get())
+          .failedAnalyses(failedAnalyses.get())
+          .columnsToRetrain(columnsToRetrain.get())
+          .columnsRetrained(columnsRetrained.get())
+          .columnsSkipped(columnsSkipped.get())
+          .startedAt(startedAt)
+          .finishedAt(finishedAt)
+          .build();
+    }
+  }
+}
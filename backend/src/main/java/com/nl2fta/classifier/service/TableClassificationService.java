@@ -20,6 +20,7 @@ import com.cobber.fta.TextAnalysisResult;
 import com.cobber.fta.TextAnalyzer;
 import com.cobber.fta.dates.DateTimeParser.DateResolutionMode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse.ColumnClassification;
@@ -58,8 +59,10 @@ public class TableClassificationService {
   @Value("${fta.enable-default-semantic-types:false}")
   private boolean enableDefaultSemanticTypes;
 
-  // Add a map to track sample values for each column
-  private final Map<String, Set<String>> columnSampleValues = new HashMap<>();
+  // Sample values per column for the classification running on this thread; kept per thread so
+  // that concurrent classifications (bulk re-analysis) do not see each other's samples
+  private final ThreadLocal<Map<String, Set<String>>> columnSampleValues =
+      ThreadLocal.withInitial(HashMap::new);
 
   public TableClassificationResponse classifyTable(TableClassificationRequest request) {
     long startTime = System.currentTimeMillis();
@@ -72,11 +75,14 @@ public class TableClassificationService {
     Map<String, ColumnClassification> columnClassifications = new LinkedHashMap<>();
 
     // Clear previous sample values
-    columnSampleValues.clear();
+    columnSampleValues.get().clear();
+
+    // Resolve the column projection up front so an invalid selector is reported to the caller
+    String[] headers = selectHeaders(request);
+    int skippedColumns = request.getColumns().size() - headers.length;
 
     try {
       // Create context for record-based analysis
-      String[] headers = request.getColumns().toArray(new String[0]);
       AnalyzerContext context =
           new AnalyzerContext(
               null,
@@ -195,7 +201,7 @@ public class TableClassificationService {
             if (value != null && !value.toString().trim().isEmpty()) {
               String columnName = headers[i];
               Set<String> samples =
-                  columnSampleValues.computeIfAbsent(columnName, k -> new LinkedHashSet<>());
+                  columnSampleValues.get().computeIfAbsent(columnName, k -> new LinkedHashSet<>());
 
               // Store up to 10 unique sample values per column
               if (samples.size() < 10) {
@@ -412,6 +418,8 @@ public class TableClassificationService {
                   .processingTimeMs(processingTime)
                   .ftaVersion(ftaVersion)
                   .localeUsed(request.getLocale())
+                  .skippedColumns(skippedColumns)
+                  .skippedRows(request.getSkippedRows() != null ? request.getSkippedRows() : 0)
                   .build())
           .build();
 
@@ -436,6 +444,21 @@ public class TableClassificationService {
     }
   }
 
+  /** Returns the headers to train, applying the request's column selector if present. */
+  private String[] selectHeaders(TableClassificationRequest request) {
+    ColumnSelector selector = request.getColumnSelector();
+    if (selector == null || selector.isEmpty()) {
+      return request.getColumns().toArray(new String[0]);
+    }
+    int[] selected = selector.resolve(request.getColumns());
+    String[] headers = new String[selected.length];
+    for (int i = 0; i < selected.length; i++) {
+      headers[i] = request.getColumns().get(selected[i]);
+    }
+    log.debug("Column selector kept {} of {} columns", headers.length, request.getColumns().size());
+    return headers;
+  }
+
   private ColumnClassification buildColumnClassification(
       String columnName, TextAnalysisResult result, boolean includeStatistics) {
 
@@ -528,7 +551,7 @@ public class TableClassificationService {
 
     if (result.getShapeDetails() != null) {
       // Get sample values for this column
-      Set<String> sampleValues = columnSampleValues.get(columnName);
+      Set<String> sampleValues = columnSampleValues.get().get(columnName);
 
       // Get top 5 shapes by frequency
       result.getShapeDetails().entrySet().stream()
@@ -677,7 +700,7 @@ public class TableClassificationService {
   private boolean valuesConformToCustomType(String columnName, CustomSemanticType customType) {
     try {
       // Fetch up to 10 collected sample values for this column
-      java.util.Set<String> samples = columnSampleValues.get(columnName);
+      java.util.Set<String> samples = columnSampleValues.get().get(columnName);
       if (samples == null || samples.isEmpty()) {
         return false;
       }
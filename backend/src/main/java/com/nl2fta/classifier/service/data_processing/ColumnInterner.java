@@ -0,0 +1,81 @@
+package com.nl2fta.classifier.service.data_processing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Per-column dictionary that replaces repeated cell values with a single shared {@code String}
+ * instance. Each column's dictionary is bounded: once a column has more distinct values than the
+ * threshold it is treated as high-cardinality, its dictionary is dropped and its values are passed
+ * through unchanged.
+ *
+ * <p>Instances are not thread-safe; parallel parsers use one interner per chunk.
+ */
+@Slf4j
+final class ColumnInterner {
+
+  private final int maxCardinality;
+  private final List<Map<String, String>> dictionaries;
+  private final long[] lookups;
+  private final long[] hits;
+
+  ColumnInterner(int columnCount, int maxCardinality) {
+    this.maxCardinality = maxCardinality;
+    this.dictionaries = new ArrayList<>(columnCount);
+    for (int i = 0; i < columnCount; i++) {
+      dictionaries.add(new HashMap<>());
+    }
+    this.lookups = new long[columnCount];
+    this.hits = new long[columnCount];
+  }
+
+  /** Returns the canonical instance for {@code value} in the given column. */
+  String intern(int column, String value) {
+    Map<String, String> dictionary = dictionaries.get(column);
+    if (value == null || dictionary == null) {
+      return value;
+    }
+    lookups[column]++;
+    String existing = dictionary.get(value);
+    if (existing != null) {
+      hits[column]++;
+      return existing;
+    }
+    if (dictionary.size() >= maxCardinality) {
+      // High-cardinality column: interning would only cost memory from here on
+      dictionaries.set(column, null);
+      return value;
+    }
+    dictionary.put(value, value);
+    return value;
+  }
+
+  boolean isDisabled(int column) {
+    return dictionaries.get(column) == null;
+  }
+
+  /** Share of lookups in the column that returned an existing instance. */
+  double hitRate(int column) {
+    return lookups[column] == 0 ? 0.0 : (double) hits[column] / lookups[column];
+  }
+
+  void logStats(String[] headers) {
+    if (!log.isDebugEnabled()) {
+      return;
+    }
+    for (int i = 0; i < headers.length && i < lookups.length; i++) {
+      if (lookups[i] > 0) {
+        log.debug(
+            "Interning column '{}': hit rate {}% over {} values{}",
+            headers[i],
+            String.format("%.1f", hitRate(i) * 100),
+            lookups[i],
+            isDisabled(i) ? " (disabled, cardinality above " + maxCardinality + ")" : "");
+      }
+    }
+  }
+}
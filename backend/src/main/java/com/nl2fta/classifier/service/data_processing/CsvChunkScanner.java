@@ -0,0 +1,483 @@
+package com.nl2fta.classifier.service.data_processing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.opencsv.CSVReader;
+
+import lombok.Getter;
+
+/**
+ * Splits a CSV file on local disk into byte ranges that start and end on record boundaries, so the
+ * ranges can be parsed independently and in parallel.
+ *
+ * <p>Quoted fields may contain newlines, which means a newline at an arbitrary offset is not
+ * necessarily a record boundary. Each range is therefore scanned speculatively under both possible
+ * starting states (outside or inside a quoted field). A second, sequential pass walks the ranges in
+ * order, carries the real quote state forward and picks the matching hypothesis for each range.
+ * Quote handling follows OpenCSV's default parser: a doubled quote inside a quoted field cancels
+ * out, and a backslash followed by a quote or another backslash escapes it. Escapes do not depend
+ * on the quote state, so a range whose first byte follows an odd run of backslashes starts with
+ * that byte escaped under both hypotheses.
+ */
+public final class CsvChunkScanner {
+
+  private static final byte QUOTE = '"';
+  private static final byte COMMA = ',';
+  private static final byte NEWLINE = '\n';
+  private static final byte ESCAPE = '\\';
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private CsvChunkScanner() {}
+
+  /** Callback that consumes the records of one data range. */
+  @FunctionalInterface
+  public interface ChunkHandler<R> {
+    R handle(ByteRange range, CSVReader reader) throws Exception;
+  }
+
+  /** A half-open byte range {@code [start, end)} of the file. */
+  @Getter
+  public static final class ByteRange {
+    private final int index;
+    private final long start;
+    private final long end;
+    private final long recordCount;
+
+    ByteRange(int index, long start, long end, long recordCount) {
+      this.index = index;
+      this.start = start;
+      this.end = end;
+      this.recordCount = recordCount;
+    }
+
+    public long length() {
+      return end - start;
+    }
+  }
+
+  /** Result of scanning a file: header location, record-aligned data ranges and record count. */
+  @Getter
+  public static final class ScanResult {
+    private final long fileSize;
+    private final long headerEnd;
+    private final long recordCount;
+    private final List<ByteRange> dataRanges;
+
+    ScanResult(long fileSize, long headerEnd, long recordCount, List<ByteRange> dataRanges) {
+      this.fileSize = fileSize;
+      this.headerEnd = headerEnd;
+      this.recordCount = recordCount;
+      this.dataRanges = dataRanges;
+    }
+
+    /** Number of records after the header line. */
+    public long getDataRowCount() {
+      return Math.max(0, recordCount - 1);
+    }
+  }
+
+  /**
+   * Pass-one result for one raw range. Index 0 of each array holds the value under the hypothesis
+   * that the range starts outside quotes, index 1 the value when it starts inside a quoted field.
+   */
+  private static final class SpeculativeScan {
+    private final long[] firstBreak = {-1, -1};
+    private final long[] breaks = new long[2];
+    private boolean oddQuotes;
+    private boolean escapePending;
+    private byte lastByte;
+
+    SpeculativeScan(boolean escapePending) {
+      this.escapePending = escapePending;
+    }
+
+    void accept(byte b, long position) {
+      boolean escaped = escapePending && isEscapable(b);
+      escapePending = !escaped && b == ESCAPE;
+      if (b == QUOTE && !escaped) {
+        oddQuotes = !oddQuotes;
+      } else if (b == NEWLINE) {
+        // A newline is a record break when the quote state at this point is "outside".
+        // Starting outside, that is when parity is even; starting inside, when it is odd.
+        int hypothesis = oddQuotes ? 1 : 0;
+        breaks[hypothesis]++;
+        if (firstBreak[hypothesis] < 0) {
+          firstBreak[hypothesis] = position + 1;
+        }
+      }
+      lastByte = b;
+    }
+  }
+
+  /**
+   * Scans a file in parallel and returns record-aligned data ranges.
+   *
+   * @param file CSV file on local disk
+   * @param rangeCount number of raw ranges to scan speculatively (at least 1)
+   * @param executor executor that runs the per-range scans
+   * @return scan result with header end offset, data ranges and total record count
+   */
+  public static ScanResult scan(Path file, int rangeCount, ExecutorService executor)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int ranges = (int) Math.max(1, Math.min(rangeCount, size));
+      long step = size / ranges;
+
+      List<Future<SpeculativeScan>> futures = new ArrayList<>(ranges);
+      for (int i = 0; i < ranges; i++) {
+        long start = i * step;
+        long end = i == ranges - 1 ? size : (i + 1) * step;
+        futures.add(executor.submit(() -> scanRange(channel, start, end)));
+      }
+
+      List<SpeculativeScan> scans = new ArrayList<>(ranges);
+      for (Future<SpeculativeScan> future : futures) {
+        scans.add(await(future));
+      }
+      return resolve(scans, size);
+    }
+  }
+
+  /**
+   * Counts CSV records in a stream with the same quote-aware scan used by {@link CsvRowIndex},
+   * without materializing any fields.
+   *
+   * @param in CSV stream, read to the end but not closed
+   * @return number of records including the header
+   */
+  public static long countRecords(InputStream in) throws IOException {
+    long[] records = new long[1];
+    RecordScanner scanner =
+        new RecordScanner() {
+          @Override
+          void onRecordEnd(int fieldCount) {
+            records[0]++;
+          }
+        };
+    scanner.scan(in);
+    return records[0];
+  }
+
+  /**
+   * Parses the header record of a scanned file.
+   *
+   * @return header fields, or {@code null} when the file is empty
+   */
+  public static String[] readHeader(Path file, ScanResult scan) throws Exception {
+    if (scan.getFileSize() == 0) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        CSVReader reader = openRange(channel, 0, scan.getHeaderEnd())) {
+      return reader.readNext();
+    }
+  }
+
+  /**
+   * Parses every data range in parallel and returns the handler results in file order.
+   *
+   * @param file CSV file on local disk
+   * @param scan result of {@link #scan(Path, int, ExecutorService)} for the same file
+   * @param executor executor that runs the handlers
+   * @param handler callback invoked once per range with a reader positioned at its first record
+   */
+  public static <R> List<R> parseRanges(
+      Path file, ScanResult scan, ExecutorService executor, ChunkHandler<R> handler)
+      throws IOException {
+    return parseRanges(file, scan.getDataRanges(), executor, handler);
+  }
+
+  /**
+   * Parses the given data ranges in parallel and returns the handler results in the same order.
+   *
+   * @param ranges ranges taken from one {@link ScanResult} of the same file
+   */
+  public static <R> List<R> parseRanges(
+      Path file, List<ByteRange> ranges, ExecutorService executor, ChunkHandler<R> handler)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      List<Future<R>> futures = new ArrayList<>(ranges.size());
+      for (ByteRange range : ranges) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  try (CSVReader reader = openRange(channel, range.getStart(), range.getEnd())) {
+                    return handler.handle(range, reader);
+                  }
+                }));
+      }
+
+      List<R> results = new ArrayList<>(futures.size());
+      for (Future<R> future : futures) {
+        results.add(await(future));
+      }
+      return results;
+    }
+  }
+
+  private static SpeculativeScan scanRange(FileChannel channel, long start, long end)
+      throws IOException {
+    SpeculativeScan scan = new SpeculativeScan(precededByOddEscapes(channel, start));
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long position = start;
+    while (position < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      byte[] bytes = buffer.array();
+      for (int i = 0; i < read; i++) {
+        scan.accept(bytes[i], position + i);
+      }
+      position += read;
+    }
+    return scan;
+  }
+
+  /**
+   * Whether the run of backslashes ending just before {@code offset} has odd length. Backslashes
+   * pair off from the start of the run, so an odd run leaves the byte at {@code offset} escaped.
+   */
+  private static boolean precededByOddEscapes(FileChannel channel, long offset) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    long run = 0;
+    long end = offset;
+    while (end > 0) {
+      long start = Math.max(0, end - BUFFER_SIZE);
+      buffer.clear();
+      buffer.limit((int) (end - start));
+      int read = 0;
+      while (buffer.hasRemaining()) {
+        int n = channel.read(buffer, start + read);
+        if (n <= 0) {
+          throw new IOException("Unexpected end of file at offset " + (start + read));
+        }
+        read += n;
+      }
+      byte[] bytes = buffer.array();
+      for (int i = read - 1; i >= 0; i--) {
+        if (bytes[i] != ESCAPE) {
+          return (run & 1) == 1;
+        }
+        run++;
+      }
+      end = start;
+    }
+    return (run & 1) == 1;
+  }
+
+  /** Pass two: carry the real quote state across ranges and cut on resolved record breaks. */
+  private static ScanResult resolve(List<SpeculativeScan> scans, long fileSize) {
+    List<Long> cuts = new ArrayList<>();
+    List<Long> recordsPerCut = new ArrayList<>();
+    long headerEnd = -1;
+    long recordCount = 0;
+    long pendingRecords = 0;
+    int state = 0;
+
+    for (SpeculativeScan scan : scans) {
+      long firstBreak = scan.firstBreak[state];
+      long breaks = scan.breaks[state];
+      if (firstBreak >= 0) {
+        if (headerEnd < 0) {
+          headerEnd = firstBreak;
+          breaks--;
+        } else {
+          // The first break closes the record that straddles the previous cut
+          recordsPerCut.add(pendingRecords + 1);
+          pendingRecords = 0;
+          breaks--;
+        }
+        cuts.add(firstBreak);
+        pendingRecords += breaks;
+      }
+      recordCount += scan.breaks[state];
+      state = scan.oddQuotes ? 1 - state : state;
+    }
+
+    // A final record without a trailing newline still counts
+    if (fileSize > 0 && scans.get(scans.size() - 1).lastByte != NEWLINE) {
+      recordCount++;
+      pendingRecords++;
+    }
+    if (headerEnd < 0) {
+      headerEnd = fileSize;
+    }
+    recordsPerCut.add(pendingRecords);
+
+    List<ByteRange> ranges = new ArrayList<>();
+    for (int i = 0; i < cuts.size(); i++) {
+      long start = cuts.get(i);
+      long end = i + 1 < cuts.size() ? cuts.get(i + 1) : fileSize;
+      if (end > start) {
+        ranges.add(new ByteRange(ranges.size(), start, end, recordsPerCut.get(i)));
+      }
+    }
+    return new ScanResult(fileSize, headerEnd, recordCount, ranges);
+  }
+
+  /** Whether OpenCSV's default escape character takes {@code b} literally when it precedes it. */
+  private static boolean isEscapable(byte b) {
+    return b == QUOTE || b == ESCAPE;
+  }
+
+  private static CSVReader openRange(FileChannel channel, long start, long end) {
+    return new CSVReader(
+        new InputStreamReader(new RangeInputStream(channel, start, end), StandardCharsets.UTF_8));
+  }
+
+  private static <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while processing CSV ranges", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException("Failed to process CSV range", cause);
+    }
+  }
+
+  /**
+   * Sequential, quote-aware scan over raw CSV bytes that reports where each record starts and how
+   * many fields it has. A quote toggles the quoted state, so doubled quotes cancel out; commas and
+   * newlines inside quotes are part of the field. As in OpenCSV's default parser, a backslash
+   * followed by a quote or another backslash escapes it, inside quotes or not, so {@code \"} does
+   * not toggle the quoted state.
+   */
+  abstract static class RecordScanner {
+    private long position;
+    private boolean inQuotes;
+    private boolean escapePending;
+    private boolean recordOpen;
+    private int fieldCount = 1;
+
+    /** Called with the byte offset of the first byte of each record. */
+    void onRecordStart(long offset) {}
+
+    /** Called at the end of each record, including a final record without a trailing newline. */
+    void onRecordEnd(int fieldCount) {}
+
+    /** Feeds the whole stream through the scanner and finishes it. The stream is not closed. */
+    void scan(InputStream in) throws IOException {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        accept(buffer, read);
+      }
+      finish();
+    }
+
+    void accept(byte[] buffer, int length) {
+      for (int i = 0; i < length; i++) {
+        byte b = buffer[i];
+        if (!recordOpen) {
+          recordOpen = true;
+          fieldCount = 1;
+          onRecordStart(position);
+        }
+        boolean escaped = escapePending && isEscapable(b);
+        escapePending = !escaped && b == ESCAPE;
+        if (b == QUOTE && !escaped) {
+          inQuotes = !inQuotes;
+        } else if (!inQuotes) {
+          if (b == COMMA) {
+            fieldCount++;
+          } else if (b == NEWLINE) {
+            recordOpen = false;
+            onRecordEnd(fieldCount);
+          }
+        }
+        position++;
+      }
+    }
+
+    void finish() {
+      if (recordOpen) {
+        recordOpen = false;
+        onRecordEnd(fieldCount);
+      }
+    }
+
+    /** Number of bytes scanned so far. */
+    long position() {
+      return position;
+    }
+  }
+
+  /** Input stream over a byte range using positional reads, so ranges can share one channel. */
+  private static final class RangeInputStream extends InputStream {
+    private final FileChannel channel;
+    private final long end;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long position;
+
+    RangeInputStream(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.position = start;
+      this.end = end;
+      buffer.limit(0);
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!fill()) {
+        return -1;
+      }
+      return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!fill()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    private boolean fill() throws IOException {
+      if (buffer.hasRemaining()) {
+        return true;
+      }
+      if (position >= end) {
+        return false;
+      }
+      buffer.clear();
+      buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        buffer.limit(0);
+        return false;
+      }
+      position += read;
+      buffer.flip();
+      return true;
+    }
+  }
+}
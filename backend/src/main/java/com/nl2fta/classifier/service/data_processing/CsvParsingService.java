@@ -1,18 +1,30 @@
 package com.nl2fta.classifier.service.data_processing;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 import com.opencsv.CSVReader;
 
@@ -22,126 +34,426 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 public class CsvParsingService {
 
+  private static final long DEFAULT_TARGET_CHUNK_BYTES = 16L * 1024 * 1024;
+
   @Value("${app.defaults.locale:en-US}")
   private String defaultLocale;
 
+  @Value("${app.csv.parallel.min-file-bytes:67108864}")
+  private long parallelMinFileBytes;
+
+  @Value("${app.csv.parallel.target-chunk-bytes:16777216}")
+  private long parallelTargetChunkBytes;
+
+  @Value("${app.csv.parallel.threads:0}")
+  private int parallelThreads;
+
+  /** Rows materialized from a file parsed in parallel when the caller gives no maxSamples. */
+  @Value("${app.csv.parallel.max-rows:100000}")
+  private int parallelMaxRows;
+
+  /** Distinct values per column kept for interning; 0 disables interning. */
+  @Value("${app.csv.intern.max-cardinality:1024}")
+  private int internMaxCardinality;
+
   public TableClassificationRequest parseCsvToRequest(
       byte[] csvData, String fileName, Integer maxSamples, String locale) throws Exception {
-    List<Map<String, Object>> data = new ArrayList<>();
-    List<String> columns = new ArrayList<>();
+    return parseCsvToRequest(new ByteArrayInputStream(csvData), fileName, maxSamples, locale, null);
+  }
 
-    try (CSVReader reader =
-        new CSVReader(
-            new InputStreamReader(new ByteArrayInputStream(csvData), StandardCharsets.UTF_8))) {
+  public TableClassificationRequest parseCsvToRequest(
+      InputStream csvStream, String fileName, Integer maxSamples, String locale) throws Exception {
+    return parseCsvToRequest(csvStream, fileName, maxSamples, locale, null);
+  }
 
+  /**
+   * Parses a CSV stream, materializing only the columns chosen by {@code selector}. The returned
+   * request keeps the full header list in {@code columns} and carries the selector, so
+   * classification trains only the selected columns.
+   *
+   * @param selector columns to keep, or {@code null} for all columns
+   */
+  public TableClassificationRequest parseCsvToRequest(
+      InputStream csvStream,
+      String fileName,
+      Integer maxSamples,
+      String locale,
+      ColumnSelector selector)
+      throws Exception {
+    try (CSVReader reader =
+        new CSVReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8))) {
       String[] headers = reader.readNext();
       if (headers == null || headers.length == 0) {
         throw new IllegalArgumentException("CSV file has no headers");
       }
 
-      columns.addAll(Arrays.asList(headers));
+      int[] selected = resolveSelection(headers, selector);
+      ParsedRows parsed = readRows(reader, headers, selected, maxSamples);
 
-      String[] row;
-      while ((row = reader.readNext()) != null) {
-        if (row.length != headers.length) {
-          log.debug(
-              "Skipping row with incorrect column count: {} vs {}", row.length, headers.length);
-          continue;
-        }
+      if (parsed.rows.isEmpty()) {
+        throw new IllegalArgumentException("CSV file contains no data");
+      }
+      return buildRequest(fileName, headers, parsed, maxSamples, locale, selector);
+    }
+  }
 
-        Map<String, Object> rowData = new LinkedHashMap<>();
-        for (int i = 0; i < headers.length; i++) {
-          rowData.put(headers[i], row[i]);
-        }
-        data.add(rowData);
+  /**
+   * Parses a CSV file on local disk. Files of at least {@code app.csv.parallel.min-file-bytes} are
+   * split into record-aligned byte ranges that are parsed concurrently; rows are merged back in
+   * file order, so the result is the same as the streaming parser. Without {@code maxSamples} such
+   * files are read up to {@code app.csv.parallel.max-rows} rows rather than loaded whole.
+   */
+  public TableClassificationRequest parseCsvToRequest(
+      Path csvFile, String fileName, Integer maxSamples, String locale) throws Exception {
+    return parseCsvToRequest(csvFile, fileName, maxSamples, locale, null);
+  }
+
+  /** Parses a CSV file on local disk, materializing only the columns chosen by the selector. */
+  public TableClassificationRequest parseCsvToRequest(
+      Path csvFile, String fileName, Integer maxSamples, String locale, ColumnSelector selector)
+      throws Exception {
+    long size = Files.size(csvFile);
+    if (size < parallelMinFileBytes) {
+      try (InputStream in = Files.newInputStream(csvFile)) {
+        return parseCsvToRequest(in, fileName, maxSamples, locale, selector);
+      }
+    }
+
+    ExecutorService executor = newParserPool();
+    try {
+      CsvChunkScanner.ScanResult scan = CsvChunkScanner.scan(csvFile, chunkCount(size), executor);
+      String[] headers = CsvChunkScanner.readHeader(csvFile, scan);
+      if (headers == null || headers.length == 0) {
+        throw new IllegalArgumentException("CSV file has no headers");
+      }
+
+      int[] selected = resolveSelection(headers, selector);
+      int limit = maxSamples != null ? maxSamples : parallelMaxRows;
 
-        if (maxSamples != null && data.size() >= maxSamples) {
-          break;
+      // Only the leading ranges whose records can fill the limit are parsed, each stopping at the
+      // rows still needed; malformed rows leave a shortfall that the next ranges make up
+      List<CsvChunkScanner.ByteRange> ranges = scan.getDataRanges();
+      ParsedRows merged = new ParsedRows();
+      int next = 0;
+      while (next < ranges.size() && merged.rows.size() < limit) {
+        int needed = limit - merged.rows.size();
+        int end = next;
+        long records = 0;
+        while (end < ranges.size() && records < needed) {
+          records += ranges.get(end++).getRecordCount();
         }
+        List<ParsedRows> chunks =
+            CsvChunkScanner.parseRanges(
+                csvFile,
+                ranges.subList(next, end),
+                executor,
+                (range, reader) -> readRows(reader, headers, selected, needed));
+        for (ParsedRows chunk : chunks) {
+          for (Map<String, Object> row : chunk.rows) {
+            if (merged.rows.size() >= limit) {
+              break;
+            }
+            merged.rows.add(row);
+          }
+          merged.skippedRows += chunk.skippedRows;
+        }
+        next = end;
+      }
+
+      if (maxSamples == null && merged.rows.size() < scan.getDataRowCount() - merged.skippedRows) {
+        log.info(
+            "Materialized the first {} of {} data rows of {}; set maxSamples to read more",
+            merged.rows.size(),
+            scan.getDataRowCount(),
+            fileName);
+      }
+      log.debug(
+          "Parsed {} of {} ranges of {} bytes, {} data rows in file",
+          next,
+          ranges.size(),
+          size,
+          scan.getDataRowCount());
+
+      if (merged.rows.isEmpty()) {
+        throw new IllegalArgumentException("CSV file contains no data");
       }
+      return buildRequest(fileName, headers, merged, maxSamples, locale, selector);
+    } finally {
+      executor.shutdownNow();
     }
+  }
 
-    if (data.isEmpty()) {
-      throw new IllegalArgumentException("CSV file contains no data");
+  /**
+   * Counts data rows (excluding the header) without parsing individual fields. Records are found by
+   * the same scan that builds a {@link CsvRowIndex}, so the count equals its {@code getRowCount()}.
+   * The stream is closed.
+   */
+  public int countCsvDataRows(InputStream csvStream) throws Exception {
+    long records;
+    try (InputStream in = csvStream) {
+      records = CsvChunkScanner.countRecords(in);
+    }
+    if (records == 0) {
+      throw new IllegalArgumentException("CSV file has no headers");
     }
+    return (int) (records - 1);
+  }
 
-    return TableClassificationRequest.builder()
-        .tableName(extractTableName(fileName))
-        .columns(columns)
-        .data(data)
-        .maxSamples(maxSamples)
-        .locale(locale != null ? locale : defaultLocale)
-        .includeStatistics(true)
-        // Frontend file-upload path should use combined semantic types (converted built-ins +
-        // customs)
-        .useAllSemanticTypes(true)
-        .build();
+  /**
+   * Builds a row offset index for a CSV file in a single pass. The index answers row counts
+   * directly and lets {@link #readCsvRows} and {@link #sampleCsvRows} seek instead of parsing.
+   */
+  public CsvRowIndex indexCsv(Path csvFile) throws IOException {
+    try (InputStream in = Files.newInputStream(csvFile)) {
+      return CsvRowIndex.build(in);
+    }
   }
 
-  public TableClassificationRequest parseCsvToRequest(
-      InputStream csvStream, String fileName, Integer maxSamples, String locale) throws Exception {
-    List<Map<String, Object>> data = new ArrayList<>();
-    List<String> columns = new ArrayList<>();
+  /**
+   * Reads well-formed rows from an indexed CSV file, seeking past the first {@code skip}
+   * well-formed rows instead of parsing them.
+   *
+   * @param csvFile CSV file the index was built from
+   * @param index row index of the file
+   * @param skip number of well-formed rows to skip
+   * @param limit maximum number of rows to return
+   */
+  public List<Map<String, Object>> readCsvRows(Path csvFile, CsvRowIndex index, int skip, int limit)
+      throws Exception {
+    return readCsvRows(csvFile, index, skip, limit, null);
+  }
 
-    try (CSVReader reader =
-        new CSVReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8))) {
-      String[] headers = reader.readNext();
-      if (headers == null || headers.length == 0) {
-        throw new IllegalArgumentException("CSV file has no headers");
+  /**
+   * Reads well-formed rows from an indexed CSV file, materializing only the columns chosen by the
+   * selector, so the rows line up with rows parsed earlier with the same selector.
+   *
+   * @param selector columns to keep, or {@code null} for all columns
+   */
+  public List<Map<String, Object>> readCsvRows(
+      Path csvFile, CsvRowIndex index, int skip, int limit, ColumnSelector selector)
+      throws Exception {
+    if (limit <= 0 || skip >= index.getWellFormedRowCount()) {
+      return new ArrayList<>();
+    }
+    try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+      String[] headers = readIndexedHeader(channel, index);
+      int[] selected = resolveSelection(headers, selector);
+      channel.position(index.offsetOf(index.wellFormedRow(skip)));
+      try (CSVReader reader =
+          new CSVReader(
+              new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8))) {
+        return readRows(reader, headers, selected, limit).rows;
       }
+    }
+  }
 
-      columns.addAll(Arrays.asList(headers));
+  /**
+   * Parses a uniform random sample of well-formed rows from an indexed CSV file into a request.
+   * Malformed rows anywhere in the file are reported as skipped.
+   *
+   * @param sampleSize number of rows to sample; every well-formed row when the file has fewer
+   * @param selector columns to keep, or {@code null} for all columns
+   */
+  public TableClassificationRequest sampleCsvToRequest(
+      Path csvFile,
+      CsvRowIndex index,
+      String fileName,
+      int sampleSize,
+      String locale,
+      ColumnSelector selector,
+      Random random)
+      throws Exception {
+    try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+      String[] headers = readIndexedHeader(channel, index);
+      ParsedRows parsed = new ParsedRows();
+      parsed.rows.addAll(sampleRecords(channel, index, headers, sampleSize, random, selector));
+      parsed.skippedRows = index.getMalformedRows().length;
+      if (parsed.rows.isEmpty()) {
+        throw new IllegalArgumentException("CSV file contains no data");
+      }
+      return buildRequest(fileName, headers, parsed, sampleSize, locale, selector);
+    }
+  }
 
-      String[] row;
-      while ((row = reader.readNext()) != null) {
-        if (row.length != headers.length) {
-          log.debug(
-              "Skipping row with incorrect column count: {} vs {}", row.length, headers.length);
-          continue;
-        }
+  /**
+   * Reads a uniform random sample of well-formed rows from an indexed CSV file, seeking directly to
+   * each sampled row. Rows are returned in file order.
+   *
+   * @param selector columns to keep, or {@code null} for all columns
+   */
+  public List<Map<String, Object>> sampleCsvRows(
+      Path csvFile, CsvRowIndex index, int count, Random random, ColumnSelector selector)
+      throws Exception {
+    try (FileChannel channel = FileChannel.open(csvFile, StandardOpenOption.READ)) {
+      return sampleRecords(
+          channel, index, readIndexedHeader(channel, index), count, random, selector);
+    }
+  }
 
-        Map<String, Object> rowData = new LinkedHashMap<>();
-        for (int i = 0; i < headers.length; i++) {
-          rowData.put(headers[i], row[i]);
-        }
-        data.add(rowData);
+  private List<Map<String, Object>> sampleRecords(
+      FileChannel channel,
+      CsvRowIndex index,
+      String[] headers,
+      int count,
+      Random random,
+      ColumnSelector selector)
+      throws Exception {
+    int[] selected = resolveSelection(headers, selector);
+    ColumnInterner interner =
+        internMaxCardinality > 0 ? new ColumnInterner(headers.length, internMaxCardinality) : null;
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (int row : index.sampleRows(count, random)) {
+      String[] values = readRecord(channel, index.offsetOf(row), index.endOf(row));
+      if (values == null || values.length != headers.length) {
+        continue;
+      }
+      if (interner != null) {
+        internRow(interner, values, selected);
+      }
+      rows.add(selected == null ? toRow(headers, values) : toRow(headers, values, selected));
+    }
+    return rows;
+  }
 
-        if (maxSamples != null && data.size() >= maxSamples) {
-          break;
-        }
+  private String[] readIndexedHeader(FileChannel channel, CsvRowIndex index) throws Exception {
+    String[] headers = readRecord(channel, 0, index.offsetOf(0));
+    if (headers == null || headers.length == 0) {
+      throw new IllegalArgumentException("CSV file has no headers");
+    }
+    return headers;
+  }
+
+  private String[] readRecord(FileChannel channel, long start, long end) throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+    long position = start;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read <= 0) {
+        break;
+      }
+      position += read;
+    }
+    try (CSVReader reader =
+        new CSVReader(
+            new InputStreamReader(
+                new ByteArrayInputStream(buffer.array(), 0, buffer.position()),
+                StandardCharsets.UTF_8))) {
+      return reader.readNext();
+    }
+  }
+
+  private Map<String, Object> toRow(String[] headers, String[] values) {
+    Map<String, Object> rowData = new LinkedHashMap<>();
+    for (int i = 0; i < headers.length; i++) {
+      rowData.put(headers[i], values[i]);
+    }
+    return rowData;
+  }
+
+  private ParsedRows readRows(
+      CSVReader reader, String[] headers, int[] selected, Integer maxSamples) throws Exception {
+    ParsedRows parsed = new ParsedRows();
+    ColumnInterner interner =
+        internMaxCardinality > 0 ? new ColumnInterner(headers.length, internMaxCardinality) : null;
+    String[] row;
+    while ((row = reader.readNext()) != null) {
+      if (row.length != headers.length) {
+        log.debug("Skipping row with incorrect column count: {} vs {}", row.length, headers.length);
+        parsed.skippedRows++;
+        continue;
+      }
+
+      if (interner != null) {
+        internRow(interner, row, selected);
+      }
+      parsed.rows.add(selected == null ? toRow(headers, row) : toRow(headers, row, selected));
+
+      if (maxSamples != null && parsed.rows.size() >= maxSamples) {
+        break;
       }
     }
+    if (interner != null) {
+      interner.logStats(headers);
+    }
+    return parsed;
+  }
 
-    if (data.isEmpty()) {
-      throw new IllegalArgumentException("CSV file contains no data");
+  private void internRow(ColumnInterner interner, String[] row, int[] selected) {
+    if (selected == null) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] = interner.intern(i, row[i]);
+      }
+    } else {
+      for (int i : selected) {
+        row[i] = interner.intern(i, row[i]);
+      }
     }
+  }
 
+  private Map<String, Object> toRow(String[] headers, String[] values, int[] selected) {
+    Map<String, Object> rowData = new LinkedHashMap<>();
+    for (int i : selected) {
+      rowData.put(headers[i], values[i]);
+    }
+    return rowData;
+  }
+
+  private int[] resolveSelection(String[] headers, ColumnSelector selector) {
+    if (selector == null || selector.isEmpty()) {
+      return null;
+    }
+    return selector.resolve(Arrays.asList(headers));
+  }
+
+  private TableClassificationRequest buildRequest(
+      String fileName,
+      String[] headers,
+      ParsedRows parsed,
+      Integer maxSamples,
+      String locale,
+      ColumnSelector selector) {
     return TableClassificationRequest.builder()
         .tableName(extractTableName(fileName))
-        .columns(columns)
-        .data(data)
+        .columns(new ArrayList<>(Arrays.asList(headers)))
+        .data(parsed.rows)
         .maxSamples(maxSamples)
         .locale(locale != null ? locale : defaultLocale)
         .includeStatistics(true)
         // Frontend file-upload path should use combined semantic types (converted built-ins +
         // customs)
         .useAllSemanticTypes(true)
+        .columnSelector(selector != null && !selector.isEmpty() ? selector : null)
+        .skippedRows(parsed.skippedRows)
         .build();
   }
 
-  public int countCsvDataRows(InputStream csvStream) throws Exception {
-    int count = 0;
-    try (CSVReader reader =
-        new CSVReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8))) {
-      String[] headers = reader.readNext();
-      if (headers == null || headers.length == 0) {
-        throw new IllegalArgumentException("CSV file has no headers");
-      }
-      while (reader.readNext() != null) {
-        count++;
-      }
-    }
-    return count;
+  private int chunkCount(long fileSize) {
+    long target =
+        parallelTargetChunkBytes > 0 ? parallelTargetChunkBytes : DEFAULT_TARGET_CHUNK_BYTES;
+    long byTarget = Math.max(1, (fileSize + target - 1) / target);
+    // At least one range per thread so small-but-parallel files still spread out
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(byTarget, threadCount()));
+  }
+
+  private int threadCount() {
+    return parallelThreads > 0 ? parallelThreads : Runtime.getRuntime().availableProcessors();
+  }
+
+  private ExecutorService newParserPool() {
+    AtomicInteger counter = new AtomicInteger();
+    return Executors.newFixedThreadPool(
+        threadCount(),
+        runnable -> {
+          Thread thread = new Thread(runnable, "csv-parse-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /** Rows read from one reader, plus the rows dropped for having the wrong field count. */
+  private static final class ParsedRows {
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+    private int skippedRows;
   }
 
   private String extractTableName(String fileName) {
@@ -0,0 +1,321 @@
+package com.nl2fta.classifier.service.data_processing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Byte-offset index over the records of a CSV file, built in a single pass over the raw bytes.
+ *
+ * <p>Record start offsets are stored as variable-length deltas, with an absolute checkpoint every
+ * {@value #CHECKPOINT_INTERVAL} records so that any record can be located by decoding at most that
+ * many deltas. Alongside the offsets the index records the number of fields of the widest record
+ * and the data rows whose field count differs from the header, which the parser skips. Records are
+ * split with the same quote and backslash-escape rules as OpenCSV's default parser, so offsets line
+ * up with the rows it returns, and {@link #sampleRows} lets samplers seek straight to random rows.
+ *
+ * <p>Row numbers are zero-based and exclude the header: data row {@code 0} is the first record
+ * after the header.
+ *
+ * <p>{@link #toBytes} and {@link #fromBytes} save and restore an index as is, so it can be kept
+ * with a stored analysis instead of being rebuilt by rescanning the file.
+ */
+public final class CsvRowIndex {
+
+  static final int CHECKPOINT_INTERVAL = 64;
+
+  // 2: records are split with the parser's backslash escapes
+  private static final int FORMAT_VERSION = 2;
+
+  /** Record start offsets: record {@code 0} is the header. */
+  private final byte[] deltas;
+
+  private final long[] checkpoints;
+  private final int[] checkpointPositions;
+  private final int recordCount;
+  private final long fileSize;
+  private final int headerFieldCount;
+  private final int maxFieldCount;
+  private final int[] malformedRows;
+
+  private CsvRowIndex(Builder builder) {
+    this.deltas = Arrays.copyOf(builder.deltas, builder.deltaLength);
+    this.checkpoints = Arrays.copyOf(builder.checkpoints, builder.checkpointCount);
+    this.checkpointPositions = Arrays.copyOf(builder.checkpointPositions, builder.checkpointCount);
+    this.recordCount = builder.recordCount;
+    this.fileSize = builder.position();
+    this.headerFieldCount = builder.headerFieldCount;
+    this.maxFieldCount = builder.maxFieldCount;
+    this.malformedRows = Arrays.copyOf(builder.malformedRows, builder.malformedCount);
+  }
+
+  private CsvRowIndex(
+      byte[] deltas,
+      long[] checkpoints,
+      int[] checkpointPositions,
+      int recordCount,
+      long fileSize,
+      int headerFieldCount,
+      int maxFieldCount,
+      int[] malformedRows) {
+    this.deltas = deltas;
+    this.checkpoints = checkpoints;
+    this.checkpointPositions = checkpointPositions;
+    this.recordCount = recordCount;
+    this.fileSize = fileSize;
+    this.headerFieldCount = headerFieldCount;
+    this.maxFieldCount = maxFieldCount;
+    this.malformedRows = malformedRows;
+  }
+
+  /**
+   * Builds an index by reading the stream to the end. The stream is not closed.
+   *
+   * @param in raw CSV bytes
+   * @return index over every record of the stream
+   */
+  public static CsvRowIndex build(InputStream in) throws IOException {
+    Builder builder = new Builder();
+    builder.scan(in);
+    return new CsvRowIndex(builder);
+  }
+
+  /**
+   * Restores an index saved with {@link #toBytes}.
+   *
+   * @throws IOException if the bytes are truncated or were written by a newer format
+   */
+  public static CsvRowIndex fromBytes(byte[] bytes) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+    int version = in.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported row index format " + version);
+    }
+    int recordCount = in.readInt();
+    long fileSize = in.readLong();
+    int headerFieldCount = in.readInt();
+    int maxFieldCount = in.readInt();
+    byte[] deltas = new byte[in.readInt()];
+    in.readFully(deltas);
+    int checkpointCount = in.readInt();
+    long[] checkpoints = new long[checkpointCount];
+    int[] checkpointPositions = new int[checkpointCount];
+    for (int i = 0; i < checkpointCount; i++) {
+      checkpoints[i] = in.readLong();
+      checkpointPositions[i] = in.readInt();
+    }
+    int[] malformedRows = new int[in.readInt()];
+    for (int i = 0; i < malformedRows.length; i++) {
+      malformedRows[i] = in.readInt();
+    }
+    return new CsvRowIndex(
+        deltas,
+        checkpoints,
+        checkpointPositions,
+        recordCount,
+        fileSize,
+        headerFieldCount,
+        maxFieldCount,
+        malformedRows);
+  }
+
+  /** Saves the index in the form {@link #fromBytes} reads. */
+  public byte[] toBytes() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) getIndexBytes() + 32);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(recordCount);
+      out.writeLong(fileSize);
+      out.writeInt(headerFieldCount);
+      out.writeInt(maxFieldCount);
+      out.writeInt(deltas.length);
+      out.write(deltas);
+      out.writeInt(checkpoints.length);
+      for (int i = 0; i < checkpoints.length; i++) {
+        out.writeLong(checkpoints[i]);
+        out.writeInt(checkpointPositions[i]);
+      }
+      out.writeInt(malformedRows.length);
+      for (int row : malformedRows) {
+        out.writeInt(row);
+      }
+    } catch (IOException e) {
+      // Not thrown by an in-memory stream
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Number of data rows, excluding the header. */
+  public int getRowCount() {
+    return Math.max(0, recordCount - 1);
+  }
+
+  /** Number of data rows whose field count matches the header. */
+  public int getWellFormedRowCount() {
+    return getRowCount() - malformedRows.length;
+  }
+
+  public long getFileSize() {
+    return fileSize;
+  }
+
+  public int getHeaderFieldCount() {
+    return headerFieldCount;
+  }
+
+  public int getMaxFieldCount() {
+    return maxFieldCount;
+  }
+
+  /** Data rows, in ascending order, whose field count differs from the header. */
+  public int[] getMalformedRows() {
+    return malformedRows.clone();
+  }
+
+  /** Approximate heap footprint of the index in bytes. */
+  public long getIndexBytes() {
+    return deltas.length + checkpoints.length * 12L + malformedRows.length * 4L;
+  }
+
+  public boolean isMalformed(int row) {
+    return Arrays.binarySearch(malformedRows, row) >= 0;
+  }
+
+  /** Byte offset at which a data row starts; {@code getRowCount()} maps to the end of file. */
+  public long offsetOf(int row) {
+    if (row < 0 || row > getRowCount()) {
+      throw new IndexOutOfBoundsException("Row " + row + " outside 0.." + getRowCount());
+    }
+    int record = row + 1;
+    if (record >= recordCount) {
+      return fileSize;
+    }
+    int checkpoint = record / CHECKPOINT_INTERVAL;
+    long offset = checkpoints[checkpoint];
+    int position = checkpointPositions[checkpoint];
+    for (int i = checkpoint * CHECKPOINT_INTERVAL; i < record; i++) {
+      long delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = deltas[position++];
+        delta |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      offset += delta;
+    }
+    return offset;
+  }
+
+  /** Byte offset just past the end of a data row. */
+  public long endOf(int row) {
+    return offsetOf(row + 1);
+  }
+
+  /**
+   * Returns the data row holding the {@code n}-th well-formed row, skipping malformed rows in the
+   * same way the parser does.
+   */
+  public int wellFormedRow(int n) {
+    int row = n;
+    for (int malformed : malformedRows) {
+      if (malformed <= row) {
+        row++;
+      } else {
+        break;
+      }
+    }
+    return row;
+  }
+
+  /**
+   * Picks distinct well-formed rows uniformly at random.
+   *
+   * @param count number of rows to pick; capped at the number of well-formed rows
+   * @param random source of randomness
+   * @return ascending data row numbers, ready for sequential seeks
+   */
+  public int[] sampleRows(int count, Random random) {
+    int available = getWellFormedRowCount();
+    int k = Math.min(Math.max(count, 0), available);
+    int[] rows = new int[k];
+    // Selection sampling (Knuth, Algorithm S) yields a sorted sample in one pass
+    int chosen = 0;
+    int malformedIndex = 0;
+    for (int n = 0; n < available && chosen < k; n++) {
+      if (random.nextInt(available - n) < k - chosen) {
+        // Map the n-th well-formed row to its data row, skipping malformed rows as it goes
+        while (malformedIndex < malformedRows.length
+            && malformedRows[malformedIndex] <= n + malformedIndex) {
+          malformedIndex++;
+        }
+        rows[chosen++] = n + malformedIndex;
+      }
+    }
+    return rows;
+  }
+
+  /** Records offsets and field counts as the shared record scanner reports them. */
+  private static final class Builder extends CsvChunkScanner.RecordScanner {
+    private byte[] deltas = new byte[1024];
+    private int deltaLength;
+    private long[] checkpoints = new long[16];
+    private int[] checkpointPositions = new int[16];
+    private int checkpointCount;
+    private int[] malformedRows = new int[16];
+    private int malformedCount;
+
+    private int recordCount;
+    private long lastRecordStart;
+    private int headerFieldCount;
+    private int maxFieldCount;
+
+    @Override
+    void onRecordStart(long start) {
+      if (recordCount % CHECKPOINT_INTERVAL == 0) {
+        if (checkpointCount == checkpoints.length) {
+          checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+          checkpointPositions = Arrays.copyOf(checkpointPositions, checkpointCount * 2);
+        }
+        checkpoints[checkpointCount] = start;
+        checkpointPositions[checkpointCount] = deltaLength;
+        checkpointCount++;
+      } else {
+        writeDelta(start - lastRecordStart);
+      }
+      lastRecordStart = start;
+    }
+
+    @Override
+    void onRecordEnd(int fieldCount) {
+      if (recordCount == 0) {
+        headerFieldCount = fieldCount;
+      } else if (fieldCount != headerFieldCount) {
+        if (malformedCount == malformedRows.length) {
+          malformedRows = Arrays.copyOf(malformedRows, malformedCount * 2);
+        }
+        malformedRows[malformedCount++] = recordCount - 1;
+      }
+      maxFieldCount = Math.max(maxFieldCount, fieldCount);
+      recordCount++;
+    }
+
+    private void writeDelta(long delta) {
+      if (deltaLength + 10 > deltas.length) {
+        deltas = Arrays.copyOf(deltas, deltas.length * 2);
+      }
+      long value = delta;
+      while ((value & ~0x7FL) != 0) {
+        deltas[deltaLength++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      deltas[deltaLength++] = (byte) value;
+    }
+  }
+}
@@ -5,6 +5,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -94,7 +95,9 @@ public class SemanticTypeComparisonService {
           otherCandidates
               .append("- ")
               .append(candidate.getSemanticType())
-              .append(" (Similarity: ")
+              .append(" (")
+              .append(candidate.scoreLabel())
+              .append(": ")
               .append(String.format("%.1f%%", candidate.getSimilarityScore() * 100))
               .append("): ")
               .append(candidateDescription)
@@ -267,9 +270,16 @@ public class SemanticTypeComparisonService {
 
     // Basic similarities
     List<String> similarities = new ArrayList<>();
-    similarities.add("Both types have similar semantic meaning based on vector analysis");
-    similarities.add(
-        String.format("Vector similarity score: %.1f%%", existingType.getSimilarityScore() * 100));
+    if (existingType.isKeywordMatch()) {
+      similarities.add("Both types are described with the same keywords");
+      similarities.add(
+          String.format("Keyword coverage: %.1f%%", existingType.getSimilarityScore() * 100));
+    } else {
+      similarities.add("Both types have similar semantic meaning based on vector analysis");
+      similarities.add(
+          String.format(
+              "Vector similarity score: %.1f%%", existingType.getSimilarityScore() * 100));
+    }
     comparison.setSimilarities(similarities);
 
     // Basic differences
@@ -293,8 +303,10 @@ public class SemanticTypeComparisonService {
     // Summary
     comparison.setSummary(
         String.format(
-            "Found existing type '%s' with %.1f%% similarity",
-            existingType.getSemanticType(), existingType.getSimilarityScore() * 100));
+            "Found existing type '%s' with %.1f%% %s",
+            existingType.getSemanticType(),
+            existingType.getSimilarityScore() * 100,
+            existingType.scoreLabel().toLowerCase(Locale.ROOT)));
 
     return comparison;
   }
@@ -154,7 +154,9 @@ public class SemanticTypePromptService {
           .append(i + 1)
           .append(". ")
           .append(type.getSemanticType())
-          .append(" (Similarity: ")
+          .append(" (")
+          .append(score.scoreLabel())
+          .append(": ")
           .append(String.format("%.1f%%", score.getSimilarityScore() * 100))
           .append(")\n");
       prompt.append("   Description: ").append(type.getDescription()).append("\n");
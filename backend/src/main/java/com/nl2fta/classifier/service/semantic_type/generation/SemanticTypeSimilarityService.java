@@ -2,8 +2,12 @@ package com.nl2fta.classifier.service.semantic_type.generation;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
@@ -14,26 +18,37 @@ import com.nl2fta.classifier.dto.semantic_type.SemanticTypeGenerationRequest;
 import com.nl2fta.classifier.service.aws.AwsBedrockService;
 import com.nl2fta.classifier.service.semantic_type.SemanticTypeComparisonService;
 import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.vector.Bm25Index;
+import com.nl2fta.classifier.service.vector.LexicalSearchService;
 import com.nl2fta.classifier.service.vector.VectorSimilaritySearchService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Service responsible for checking similarity between requested semantic types and existing ones.
- * Uses vector-based similarity search exclusively for efficient and accurate matching.
+ * Service responsible for checking similarity between requested semantic types and existing ones. A
+ * keyword (BM25) search runs first; when it is decisive the vector search is skipped, and otherwise
+ * its scores are fused with the vector search results.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SemanticTypeSimilarityService {
 
+  private static final int LEXICAL_CANDIDATES = 10;
+  // Weight of keyword coverage when re-ranking vector matches
+  private static final double LEXICAL_FUSION_WEIGHT = 0.25;
+  // Coverage a keyword match needs to join the candidates without a vector match
+  private static final double LEXICAL_ONLY_COVERAGE = 0.7;
+  private static final int MAX_CANDIDATES = 3;
+
   private final AwsBedrockService awsBedrockService;
   private final CustomSemanticTypeService customSemanticTypeService;
   private final SemanticTypePromptService promptService;
   private final SemanticTypeResponseParserService responseParserService;
   private final VectorSimilaritySearchService vectorSearchService;
   private final SemanticTypeComparisonService comparisonService;
+  private final LexicalSearchService lexicalSearchService;
 
   /**
    * Checks if there's an existing semantic type that matches the user's requirements. Uses
@@ -45,15 +60,43 @@ public class SemanticTypeSimilarityService {
    */
   public GeneratedSemanticType checkForSimilarExistingType(SemanticTypeGenerationRequest request)
       throws IOException {
+    long catalogVersion = customSemanticTypeService.getCatalogVersion();
     List<CustomSemanticType> existingTypes = customSemanticTypeService.getAllCustomTypes();
     List<CustomSemanticType> customTypesOnly = customSemanticTypeService.getCustomTypesOnly();
 
-    log.debug("Using vector search to find matches among {} existing types", existingTypes.size());
+    log.debug("Searching for matches among {} existing types", existingTypes.size());
 
     try {
-      // Use vector-based similarity search to get top 3 matches above threshold 0.35
+      lexicalSearchService.ensureIndexed(catalogVersion, existingTypes);
+      List<Bm25Index.Hit> lexicalHits = lexicalSearchService.search(request, LEXICAL_CANDIDATES);
+
+      // Keyword fast-path: a decisive keyword match needs no embedding call
+      if (lexicalSearchService.isDecisive(lexicalHits)) {
+        VectorSimilaritySearchService.SimilaritySearchResult best =
+            toSearchResult(lexicalHits.get(0), existingTypes);
+        if (best != null) {
+          log.info(
+              "LEXICAL SEARCH: Decisive match {} (coverage: {})",
+              best.getSemanticType(),
+              best.getSimilarityScore());
+          return buildVectorSearchMatchInfo(
+              best, existingTypes, customTypesOnly, request, "keyword analysis");
+        }
+      }
+
+      List<VectorSimilaritySearchService.SimilaritySearchResult> vectorMatches;
+      try {
+        // Use vector-based similarity search to get top 3 matches above threshold 0.35
+        vectorMatches = vectorSearchService.findTopSimilarTypesForLLM(request, 0.35);
+      } catch (RuntimeException e) {
+        if (lexicalHits.isEmpty()) {
+          throw e;
+        }
+        log.warn("Vector search failed, using keyword matches only: {}", e.getMessage());
+        vectorMatches = List.of();
+      }
       List<VectorSimilaritySearchService.SimilaritySearchResult> topMatches =
-          vectorSearchService.findTopSimilarTypesForLLM(request, 0.35);
+          fuse(vectorMatches, lexicalHits, existingTypes);
 
       if (topMatches.isEmpty()) {
         log.info("VECTOR SEARCH: No matches found above similarity threshold (0.35)");
@@ -64,8 +107,13 @@ public class SemanticTypeSimilarityService {
 
       // Fast-path: if there is a single high-confidence match, return it directly without LLM
       if (topMatches.size() == 1) {
+        VectorSimilaritySearchService.SimilaritySearchResult match = topMatches.get(0);
         return buildVectorSearchMatchInfo(
-            topMatches.get(0), existingTypes, customTypesOnly, request);
+            match,
+            existingTypes,
+            customTypesOnly,
+            request,
+            match.isKeywordMatch() ? "keyword analysis" : "vector analysis");
       }
 
       // Otherwise, use LLM to evaluate the top candidates
@@ -83,12 +131,74 @@ public class SemanticTypeSimilarityService {
     }
   }
 
-  /** Builds match information from vector search result. */
+  /**
+   * Re-ranks the vector matches by their similarity plus a share of their keyword coverage, and
+   * adds strong keyword matches the vector search missed, scored by their coverage.
+   */
+  private List<VectorSimilaritySearchService.SimilaritySearchResult> fuse(
+      List<VectorSimilaritySearchService.SimilaritySearchResult> vectorMatches,
+      List<Bm25Index.Hit> lexicalHits,
+      List<CustomSemanticType> allTypes) {
+    if (lexicalHits.isEmpty()) {
+      return vectorMatches;
+    }
+    Map<String, Double> coverage = new HashMap<>();
+    lexicalHits.forEach(hit -> coverage.put(hit.id(), hit.coverage()));
+
+    List<VectorSimilaritySearchService.SimilaritySearchResult> fused =
+        new ArrayList<>(vectorMatches);
+    for (Bm25Index.Hit hit : lexicalHits) {
+      boolean found =
+          vectorMatches.stream().anyMatch(match -> match.getSemanticType().equals(hit.id()));
+      if (!found && hit.coverage() >= LEXICAL_ONLY_COVERAGE) {
+        VectorSimilaritySearchService.SimilaritySearchResult result = toSearchResult(hit, allTypes);
+        if (result != null) {
+          fused.add(result);
+        }
+      }
+    }
+    return fused.stream()
+        .sorted(
+            Comparator.comparingDouble(
+                    (VectorSimilaritySearchService.SimilaritySearchResult match) ->
+                        match.getSimilarityScore()
+                            + LEXICAL_FUSION_WEIGHT
+                                * coverage.getOrDefault(match.getSemanticType(), 0.0))
+                .reversed())
+        .limit(MAX_CANDIDATES)
+        .collect(Collectors.toList());
+  }
+
+  /** Describes a keyword match as a search result, scored by its coverage. */
+  private VectorSimilaritySearchService.SimilaritySearchResult toSearchResult(
+      Bm25Index.Hit hit, List<CustomSemanticType> allTypes) {
+    return allTypes.stream()
+        .filter(t -> t.getSemanticType().equals(hit.id()))
+        .findFirst()
+        .map(
+            t ->
+                VectorSimilaritySearchService.SimilaritySearchResult.builder()
+                    .semanticType(t.getSemanticType())
+                    .description(t.getDescription())
+                    .similarityScore(hit.coverage())
+                    .keywordMatch(true)
+                    .type(Boolean.TRUE.equals(t.getIsBuiltIn()) ? "built-in" : "custom")
+                    .pluginType(t.getPluginType())
+                    .examples(
+                        t.getContent() != null && t.getContent().getValues() != null
+                            ? t.getContent().getValues().stream().limit(5).toList()
+                            : List.of())
+                    .build())
+        .orElse(null);
+  }
+
+  /** Builds match information from a vector or keyword search result. */
   private GeneratedSemanticType buildVectorSearchMatchInfo(
       VectorSimilaritySearchService.SimilaritySearchResult match,
       List<CustomSemanticType> allTypes,
       List<CustomSemanticType> customTypesOnly,
-      SemanticTypeGenerationRequest request) {
+      SemanticTypeGenerationRequest request,
+      String basis) {
 
     CustomSemanticType matched =
         allTypes.stream()
@@ -106,8 +216,12 @@ public class SemanticTypeSimilarityService {
 
     String explanation =
         String.format(
-            "Found existing semantic type '%s' with %.2f%% similarity based on vector analysis. %s",
-            match.getSemanticType(), match.getSimilarityScore() * 100, matched.getDescription());
+            "Found existing semantic type '%s' with %.2f%% %s based on %s. %s",
+            match.getSemanticType(),
+            match.getSimilarityScore() * 100,
+            match.scoreLabel().toLowerCase(Locale.ROOT),
+            basis,
+            matched.getDescription());
 
     // Generate detailed comparison
     SemanticTypeComparison comparison = comparisonService.compareSemanticTypes(request, match);
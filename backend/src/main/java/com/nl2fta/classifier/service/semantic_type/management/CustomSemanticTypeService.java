@@ -17,6 +17,7 @@ import com.cobber.fta.PluginDefinition;
 import com.cobber.fta.TextAnalyzer;
 import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
 import com.nl2fta.classifier.service.storage.ICustomSemanticTypeRepository;
+import com.nl2fta.classifier.service.vector.LexicalSearchService;
 import com.nl2fta.classifier.service.vector.VectorIndexInitializationService;
 
 import lombok.RequiredArgsConstructor;
@@ -38,6 +39,8 @@ public class CustomSemanticTypeService {
   @Autowired @Lazy // Use lazy loading to avoid circular dependency
   private VectorIndexInitializationService vectorIndexService;
 
+  @Autowired @Lazy private LexicalSearchService lexicalSearchService;
+
   /**
    * Adds a new custom semantic type.
    *
@@ -127,6 +130,9 @@ public class CustomSemanticTypeService {
     if (vectorIndexService != null) {
       vectorIndexService.reindexSemanticType(savedType);
     }
+    if (lexicalSearchService != null) {
+      lexicalSearchService.put(savedType);
+    }
 
     return savedType;
   }
@@ -233,6 +239,10 @@ public class CustomSemanticTypeService {
     if (vectorIndexService != null) {
       vectorIndexService.reindexSemanticType(updated);
     }
+    if (lexicalSearchService != null) {
+      lexicalSearchService.remove(semanticType);
+      lexicalSearchService.put(updated);
+    }
 
     return updated;
   }
@@ -253,11 +263,17 @@ public class CustomSemanticTypeService {
     if (vectorIndexService != null) {
       vectorIndexService.removeFromIndex(semanticType);
     }
+    if (lexicalSearchService != null) {
+      lexicalSearchService.remove(semanticType);
+    }
   }
 
   /** Reloads custom types from persistent storage. */
   public void reloadCustomTypes() {
     repository.reload();
+    if (lexicalSearchService != null) {
+      lexicalSearchService.invalidate();
+    }
   }
 
   /**
@@ -315,6 +331,16 @@ public class CustomSemanticTypeService {
     return getAllSemanticTypes();
   }
 
+  /**
+   * Gets the version of the custom types, which changes whenever one is saved, updated, deleted or
+   * reloaded. The built-in types never change, so it versions {@link #getAllCustomTypes()} too.
+   *
+   * @return the repository's catalog version
+   */
+  public long getCatalogVersion() {
+    return repository.getCatalogVersion();
+  }
+
   /**
    * Gets only custom semantic types (excludes built-in types).
    *
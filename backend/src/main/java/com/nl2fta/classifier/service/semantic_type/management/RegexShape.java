@@ -0,0 +1,382 @@
+package com.nl2fta.classifier.service.semantic_type.management;
+
+import java.util.regex.Pattern;
+
+import com.nl2fta.classifier.service.storage.ValueFingerprint;
+
+/**
+ * Derives a conservative {@link ValueFingerprint} from a regular expression: the length range of
+ * the strings it can match and the character classes they may contain.
+ *
+ * <p>The analysis understands literals, escapes, character classes, groups, alternation, anchors
+ * and quantifiers, which covers the patterns used by semantic types. Case-insensitive matching,
+ * whether from {@link Pattern#CASE_INSENSITIVE} or an inline {@code (?i)} flag, widens the classes
+ * of the letters it applies to. Anything it does not understand (back-references, nested class
+ * operations, comments mode, unknown group constructs) yields {@link
+ * ValueFingerprint#unconstrained()}, so the result never rules out a string the regex would match.
+ */
+final class RegexShape {
+
+  private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+  private final String regex;
+  private int pos;
+  // Whether the flags in effect at pos match letters regardless of case
+  private boolean caseInsensitive;
+
+  private RegexShape(String regex, boolean caseInsensitive) {
+    this.regex = regex;
+    this.caseInsensitive = caseInsensitive;
+  }
+
+  static ValueFingerprint of(String regex) {
+    return of(regex, 0);
+  }
+
+  /**
+   * The fingerprint of {@code regex} compiled with the {@link Pattern} {@code flags}. Of these only
+   * {@link Pattern#CASE_INSENSITIVE} changes the result; {@link Pattern#COMMENTS} and {@link
+   * Pattern#LITERAL} are not analyzed.
+   */
+  static ValueFingerprint of(String regex, int flags) {
+    if (regex == null || (flags & (Pattern.COMMENTS | Pattern.LITERAL)) != 0) {
+      return ValueFingerprint.unconstrained();
+    }
+    try {
+      RegexShape parser = new RegexShape(regex, (flags & Pattern.CASE_INSENSITIVE) != 0);
+      Shape shape = parser.alternation();
+      if (parser.pos != regex.length()) {
+        return ValueFingerprint.unconstrained();
+      }
+      return new ValueFingerprint(0, shape.min, shape.max, shape.classes, 0);
+    } catch (Unsupported | IndexOutOfBoundsException | NumberFormatException e) {
+      return ValueFingerprint.unconstrained();
+    }
+  }
+
+  /** A construct the analysis does not understand, which leaves the regex unconstrained. */
+  private static final class Unsupported extends Exception {
+
+    Unsupported(String message) {
+      super(message, null, false, false);
+    }
+  }
+
+  /** Length range and character classes of a sub-expression. */
+  private record Shape(int min, int max, int classes) {
+
+    static final Shape EMPTY = new Shape(0, 0, 0);
+
+    static Shape single(int classes) {
+      return new Shape(1, 1, classes);
+    }
+
+    Shape then(Shape next) {
+      return new Shape(add(min, next.min), add(max, next.max), classes | next.classes);
+    }
+
+    Shape or(Shape other) {
+      return new Shape(Math.min(min, other.min), Math.max(max, other.max), classes | other.classes);
+    }
+
+    Shape repeat(int low, int high) {
+      return new Shape(multiply(min, low), high == 0 ? 0 : multiply(max, high), classes);
+    }
+
+    Shape foldCase() {
+      return new Shape(min, max, ValueFingerprint.foldCase(classes));
+    }
+  }
+
+  private Shape alternation() throws Unsupported {
+    Shape shape = sequence();
+    while (pos < regex.length() && regex.charAt(pos) == '|') {
+      pos++;
+      shape = shape.or(sequence());
+    }
+    return shape;
+  }
+
+  private Shape sequence() throws Unsupported {
+    Shape shape = Shape.EMPTY;
+    while (pos < regex.length()) {
+      char c = regex.charAt(pos);
+      if (c == '|' || c == ')') {
+        break;
+      }
+      shape = shape.then(quantified(atom()));
+    }
+    return shape;
+  }
+
+  private Shape quantified(Shape atom) throws Unsupported {
+    if (pos >= regex.length()) {
+      return atom;
+    }
+    char c = regex.charAt(pos);
+    Shape shape;
+    if (c == '?') {
+      pos++;
+      shape = atom.repeat(0, 1);
+    } else if (c == '*') {
+      pos++;
+      shape = atom.repeat(0, UNBOUNDED);
+    } else if (c == '+') {
+      pos++;
+      shape = atom.repeat(1, UNBOUNDED);
+    } else if (c == '{' && pos + 1 < regex.length() && Character.isDigit(regex.charAt(pos + 1))) {
+      int close = regex.indexOf('}', pos);
+      if (close < 0) {
+        throw new Unsupported("Unterminated quantifier");
+      }
+      String[] bounds = regex.substring(pos + 1, close).split(",", -1);
+      int low = Integer.parseInt(bounds[0].trim());
+      int high =
+          bounds.length == 1
+              ? low
+              : bounds[1].isBlank() ? UNBOUNDED : Integer.parseInt(bounds[1].trim());
+      pos = close + 1;
+      shape = atom.repeat(low, high);
+    } else {
+      return atom;
+    }
+    // Lazy and possessive modifiers do not change what can match
+    if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+      pos++;
+    }
+    return shape;
+  }
+
+  private Shape atom() throws Unsupported {
+    char c = regex.charAt(pos++);
+    Shape shape;
+    switch (c) {
+      case '(':
+        // Folded as it is parsed, under the flags in effect inside it
+        return group();
+      case '[':
+        shape = Shape.single(characterClass());
+        break;
+      case '.':
+        shape = Shape.single(ValueFingerprint.ALL);
+        break;
+      case '^':
+      case '$':
+        shape = Shape.EMPTY;
+        break;
+      case '\\':
+        shape = escape();
+        break;
+      default:
+        shape = Shape.single(ValueFingerprint.classOf(c));
+    }
+    return caseInsensitive ? shape.foldCase() : shape;
+  }
+
+  private Shape group() throws Unsupported {
+    boolean outerCaseInsensitive = caseInsensitive;
+    boolean consumes = true;
+    if (regex.startsWith("?", pos)) {
+      if (regex.startsWith("?:", pos)) {
+        pos += 2;
+      } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+        pos += 2;
+        consumes = false;
+      } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+        pos += 3;
+        consumes = false;
+      } else if (regex.startsWith("?<", pos)) {
+        int close = regex.indexOf('>', pos);
+        if (close < 0) {
+          throw new Unsupported("Unterminated group name");
+        }
+        pos = close + 1;
+      } else {
+        // Inline flags such as (?i), (?-i) or (?i:...); flags after '-' are turned off
+        int end = pos + 1;
+        boolean on = true;
+        while (end < regex.length()
+            && (Character.isLetter(regex.charAt(end)) || regex.charAt(end) == '-')) {
+          char flag = regex.charAt(end++);
+          if (flag == '-') {
+            on = false;
+          } else if (flag == 'i') {
+            caseInsensitive = on;
+          } else if (flag == 'x') {
+            throw new Unsupported("Comments mode is not analyzed");
+          }
+        }
+        if (end >= regex.length() || end == pos + 1) {
+          throw new Unsupported("Unsupported group construct");
+        }
+        pos = end + 1;
+        if (regex.charAt(end) == ')') {
+          // The flags hold until the end of the enclosing group
+          return Shape.EMPTY;
+        } else if (regex.charAt(end) != ':') {
+          throw new Unsupported("Unsupported group construct");
+        }
+      }
+    }
+    Shape inner = alternation();
+    if (pos >= regex.length() || regex.charAt(pos) != ')') {
+      throw new Unsupported("Unbalanced group");
+    }
+    pos++;
+    caseInsensitive = outerCaseInsensitive;
+    return consumes ? inner : Shape.EMPTY;
+  }
+
+  private Shape escape() throws Unsupported {
+    char c = regex.charAt(pos++);
+    switch (c) {
+      case 'b':
+      case 'B':
+      case 'A':
+      case 'z':
+      case 'Z':
+      case 'G':
+        return Shape.EMPTY;
+      case 'Q':
+        {
+          int end = regex.indexOf("\\E", pos);
+          String literal = regex.substring(pos, end < 0 ? regex.length() : end);
+          pos = end < 0 ? regex.length() : end + 2;
+          return new Shape(
+              literal.codePointCount(0, literal.length()),
+              literal.codePointCount(0, literal.length()),
+              ValueFingerprint.classesOf(literal));
+        }
+      default:
+        if (c >= '1' && c <= '9' || c == 'k') {
+          throw new Unsupported("Back-references are not analyzed");
+        } else if (c == 'R' || c == 'X') {
+          throw new Unsupported("Multi-character escapes are not analyzed");
+        }
+        return Shape.single(escapeClasses(c));
+    }
+  }
+
+  /** Classes matched by the escape {@code \c}; consumes any operand that follows it. */
+  private int escapeClasses(char c) throws Unsupported {
+    switch (c) {
+      case '0':
+        return ValueFingerprint.classOf(octalOperand());
+      case 'c':
+        // Control character: the operand with bit 6 flipped
+        return ValueFingerprint.classOf(regex.charAt(pos++) ^ 64);
+      case 'd':
+        return ValueFingerprint.DIGIT;
+      case 'w':
+        return ValueFingerprint.DIGIT
+            | ValueFingerprint.UPPER
+            | ValueFingerprint.LOWER
+            | ValueFingerprint.PUNCT;
+      case 's':
+      case 't':
+      case 'n':
+      case 'r':
+      case 'f':
+        return ValueFingerprint.SPACE;
+      case 'p':
+      case 'P':
+      case 'x':
+      case 'u':
+      case 'N':
+        if (pos < regex.length() && regex.charAt(pos) == '{') {
+          int close = regex.indexOf('}', pos);
+          pos = close < 0 ? regex.length() : close + 1;
+        } else if (c == 'p' || c == 'P') {
+          pos++;
+        } else if (c == 'x') {
+          pos += 2;
+        } else if (c == 'u') {
+          pos += 4;
+        }
+        return ValueFingerprint.ALL;
+      case 'D':
+      case 'W':
+      case 'S':
+      case 'e':
+      case 'a':
+      case 'h':
+      case 'H':
+      case 'v':
+      case 'V':
+        return ValueFingerprint.ALL;
+      default:
+        return ValueFingerprint.classOf(c);
+    }
+  }
+
+  /** Reads the one to three octal digits of {@code \0n}, {@code \0nn} or {@code \0mnn}. */
+  private int octalOperand() throws Unsupported {
+    int value = 0;
+    int digits = 0;
+    while (digits < 3 && pos < regex.length()) {
+      int digit = regex.charAt(pos) - '0';
+      if (digit < 0 || digit > 7 || value * 8 + digit > 0377) {
+        break;
+      }
+      value = value * 8 + digit;
+      digits++;
+      pos++;
+    }
+    if (digits == 0) {
+      throw new Unsupported("Octal escape without digits");
+    }
+    return value;
+  }
+
+  /** Classes matched by a bracket expression; the opening bracket has been consumed. */
+  private int characterClass() throws Unsupported {
+    boolean negated = regex.charAt(pos) == '^';
+    if (negated) {
+      pos++;
+    }
+    int classes = 0;
+    boolean first = true;
+    while (true) {
+      char c = regex.charAt(pos++);
+      if (c == ']' && !first) {
+        break;
+      }
+      first = false;
+      if (c == '[' || (c == '&' && regex.charAt(pos) == '&')) {
+        throw new Unsupported("Nested class operations are not analyzed");
+      }
+      int low;
+      if (c == '\\') {
+        char escaped = regex.charAt(pos++);
+        if (Character.isLetterOrDigit(escaped)) {
+          classes |= escapeClasses(escaped);
+          continue;
+        }
+        low = escaped;
+      } else {
+        low = c;
+      }
+      if (regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+        pos++;
+        char highChar = regex.charAt(pos++);
+        int high = highChar == '\\' ? regex.charAt(pos++) : highChar;
+        for (int ch = low; ch <= high && classes != ValueFingerprint.ALL; ch++) {
+          classes |= ValueFingerprint.classOf(ch);
+        }
+      } else {
+        classes |= ValueFingerprint.classOf(low);
+      }
+    }
+    return negated ? ValueFingerprint.ALL : classes;
+  }
+
+  private static int add(int a, int b) {
+    long sum = (long) a + b;
+    return sum >= UNBOUNDED ? UNBOUNDED : (int) sum;
+  }
+
+  private static int multiply(int a, int b) {
+    long product = (long) a * b;
+    return product >= UNBOUNDED ? UNBOUNDED : (int) product;
+  }
+}
@@ -0,0 +1,200 @@
+package com.nl2fta.classifier.service.semantic_type.management;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService.FieldData;
+import com.nl2fta.classifier.service.storage.ColumnarTable;
+import com.nl2fta.classifier.service.storage.ValueFingerprint;
+
+/**
+ * Compiled header and value tests of a regex or list semantic type, plus the {@link
+ * ValueFingerprint shape} of the values it can match.
+ *
+ * <p>Used to decide, without running FTA, which stored fields a type could claim: the shape rules
+ * out most fields from their fingerprint alone and the compiled patterns settle the rest.
+ */
+public final class SemanticTypeMatcher {
+
+  private static final int DEFAULT_THRESHOLD = 95;
+
+  private final List<Pattern> headers = new ArrayList<>();
+  private final List<Pattern> valuePatterns = new ArrayList<>();
+  private boolean headerMandatory;
+  private Set<String> listValues;
+  private ValueFingerprint shape;
+  private int threshold;
+
+  private SemanticTypeMatcher() {}
+
+  /**
+   * @throws IllegalArgumentException if the type is not a regex or list type, lacks patterns or
+   *     values, or one of its patterns does not compile
+   */
+  public static SemanticTypeMatcher compile(CustomSemanticType type) {
+    SemanticTypeMatcher matcher = new SemanticTypeMatcher();
+    matcher.threshold = type.getThreshold() != null ? type.getThreshold() : DEFAULT_THRESHOLD;
+
+    if (type.getValidLocales() != null) {
+      for (CustomSemanticType.LocaleConfig locale : type.getValidLocales()) {
+        if (locale.getHeaderRegExps() == null) {
+          continue;
+        }
+        for (CustomSemanticType.HeaderRegExp header : locale.getHeaderRegExps()) {
+          if (header.getRegExp() != null && !header.getRegExp().isBlank()) {
+            matcher.headers.add(Pattern.compile(header.getRegExp()));
+            matcher.headerMandatory |= Boolean.TRUE.equals(header.getMandatory());
+          }
+        }
+      }
+    }
+
+    if ("regex".equals(type.getPluginType())) {
+      ValueFingerprint shape = null;
+      if (type.getValidLocales() != null) {
+        for (CustomSemanticType.LocaleConfig locale : type.getValidLocales()) {
+          if (locale.getMatchEntries() == null) {
+            continue;
+          }
+          for (CustomSemanticType.MatchEntry entry : locale.getMatchEntries()) {
+            String regex = entry.getRegExpReturned();
+            if (regex == null || regex.isBlank()) {
+              continue;
+            }
+            Pattern pattern = Pattern.compile(regex);
+            matcher.valuePatterns.add(pattern);
+            shape = union(shape, RegexShape.of(regex, pattern.flags()));
+          }
+        }
+      }
+      if (matcher.valuePatterns.isEmpty()) {
+        throw new IllegalArgumentException("Regex semantic type must have a regex pattern");
+      }
+      matcher.shape = shape;
+    } else if ("list".equals(type.getPluginType())) {
+      if (type.getContent() == null
+          || type.getContent().getValues() == null
+          || type.getContent().getValues().isEmpty()) {
+        throw new IllegalArgumentException("List semantic type must have content values");
+      }
+      // FTA upper-cases list values and compares case-insensitively
+      matcher.listValues = new HashSet<>();
+      for (String value : type.getContent().getValues()) {
+        if (value != null) {
+          matcher.listValues.add(value.trim().toUpperCase(Locale.ROOT));
+        }
+      }
+      ValueFingerprint shape = ValueFingerprint.of(matcher.listValues);
+      shape.setAnyClasses(ValueFingerprint.foldCase(shape.getAnyClasses()));
+      matcher.shape = shape;
+    } else {
+      throw new IllegalArgumentException(
+          "Only regex and list semantic types can be matched without FTA, not: "
+              + type.getPluginType());
+    }
+    return matcher;
+  }
+
+  /** Share of values (0-100) that must match for FTA to assign the type. */
+  public int getThreshold() {
+    return threshold;
+  }
+
+  public ValueFingerprint getShape() {
+    return shape;
+  }
+
+  public boolean headerMatches(String fieldName) {
+    if (fieldName == null) {
+      return false;
+    }
+    for (Pattern header : headers) {
+      if (header.matcher(fieldName).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** A mandatory header pattern keeps the type off columns whose name it does not match. */
+  public boolean headerAllows(boolean headerMatched) {
+    return !headerMandatory || headerMatched;
+  }
+
+  /** Tests a trimmed value against the type's patterns or list. */
+  public boolean valueMatches(String value) {
+    if (listValues != null) {
+      return listValues.contains(value.toUpperCase(Locale.ROOT));
+    }
+    for (Pattern pattern : valuePatterns) {
+      if (pattern.matcher(value).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Whether the field's fingerprint admits a value of the type's shape. Needs only the stored field
+   * metadata, so analyses can be ruled out before their rows are loaded.
+   */
+  public boolean mayContain(FieldData field) {
+    // Without a stored fingerprint the samples alone cannot rule the field out
+    return field.getFingerprint() == null || field.getFingerprint().mayContain(shape);
+  }
+
+  /**
+   * Whether any of the field's values could be claimed by the type. The fingerprint is checked
+   * first, so fields with an incompatible shape never reach the patterns.
+   */
+  public boolean mayMatch(FieldValues values) {
+    if (!values.fingerprint().mayContain(shape)) {
+      return false;
+    }
+    for (Object value : values.values()) {
+      if (value != null && valueMatches(value.toString().trim())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ValueFingerprint union(ValueFingerprint a, ValueFingerprint b) {
+    if (a == null) {
+      return b;
+    }
+    return new ValueFingerprint(
+        0,
+        Math.min(a.getMinLength(), b.getMinLength()),
+        Math.max(a.getMaxLength(), b.getMaxLength()),
+        a.getAnyClasses() | b.getAnyClasses(),
+        0);
+  }
+
+  /**
+   * Distinct values of a stored field with the number of rows holding each. Falls back to the
+   * field's sample values, counted once each, when the analysis has no stored rows for it.
+   */
+  public record FieldValues(List<?> values, int[] counts, ValueFingerprint fingerprint) {
+
+    public static FieldValues of(FieldData field, ColumnarTable table) {
+      List<?> values = table != null ? table.getDictionary(field.getFieldName()) : List.of();
+      int[] counts = values.isEmpty() ? null : table.countValues(field.getFieldName());
+      if (values.isEmpty()) {
+        values = field.getSampleValues() != null ? field.getSampleValues() : List.of();
+      }
+      ValueFingerprint fingerprint =
+          field.getFingerprint() != null ? field.getFingerprint() : ValueFingerprint.of(values);
+      return new FieldValues(values, counts, fingerprint);
+    }
+
+    public int count(int index) {
+      return counts != null ? counts[index] : 1;
+    }
+  }
+}
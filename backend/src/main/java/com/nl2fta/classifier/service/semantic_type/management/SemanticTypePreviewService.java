@@ -0,0 +1,261 @@
+package com.nl2fta.classifier.service.semantic_type.management;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.nl2fta.classifier.dto.semantic_type.SemanticTypePreviewRequest;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.ImpactedAnalysis;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.ImpactedField;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.PreviewResult;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService.AnalysisFields;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService.FieldData;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService.StoredAnalysis;
+import com.nl2fta.classifier.service.storage.ColumnarTable;
+import com.nl2fta.classifier.service.storage.ValueFingerprint;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Previews the effect of a candidate semantic type on the stored analyses before it is saved.
+ *
+ * <p>Every field of every stored analysis is tested against the candidate's header and value
+ * patterns. Analyses are evaluated in parallel on a bounded pool. Before any regular expression
+ * runs, the field's {@link ValueFingerprint} is compared with the shape of the values the candidate
+ * can match; fields that cannot hold a single match (wrong length range, or a character class the
+ * candidate never produces) are skipped, which is the common case for narrow types. The check uses
+ * the field list kept with each analysis, so only analyses with a field left to test are loaded.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SemanticTypePreviewService {
+
+  private static final int MAX_EXAMPLE_VALUES = 10;
+  private static final Comparator<AnalysisFields> UPLOAD_ORDER =
+      Comparator.comparing(
+              AnalysisFields::createdAt, Comparator.nullsLast(Comparator.naturalOrder()))
+          .thenComparing(AnalysisFields::analysisId);
+
+  private final AnalysisStorageService analysisStorageService;
+  private final SemanticTypeValidationService validationService;
+
+  @Value("${app.semantic-type-preview.threads:0}")
+  private int threads;
+
+  private ExecutorService executor;
+
+  /** Runs the preview and waits for every analysis to be evaluated. */
+  public PreviewResult preview(SemanticTypePreviewRequest request) {
+    try {
+      return previewAsync(request, null).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Starts the preview. The candidate is compiled before this method returns, so an invalid
+   * definition fails here; each analysis with impacted fields is then handed to {@code listener} as
+   * soon as it has been evaluated, on a worker thread.
+   *
+   * @param listener receives impacted analyses in completion order; may be {@code null}
+   * @return the aggregate result, listing impacted analyses in upload order
+   * @throws IllegalArgumentException if the candidate is missing, not a regex or list type, or its
+   *     patterns do not compile
+   */
+  public CompletableFuture<PreviewResult> previewAsync(
+      SemanticTypePreviewRequest request, Consumer<ImpactedAnalysis> listener) {
+    if (request == null || request.getSemanticType() == null) {
+      throw new IllegalArgumentException("Semantic type is required for a preview");
+    }
+    SemanticTypeMatcher matcher = SemanticTypeMatcher.compile(request.getSemanticType());
+
+    PreviewResult result = new PreviewResult();
+    List<String> positives = nonNull(request.getPositiveExamples());
+    List<String> negatives = nonNull(request.getNegativeExamples());
+    if (!positives.isEmpty() || !negatives.isEmpty()) {
+      result.setValidation(
+          validationService.validateSemanticType(request.getSemanticType(), positives, negatives));
+    }
+
+    List<AnalysisFields> analyses = new ArrayList<>(analysisStorageService.listFields());
+    analyses.sort(UPLOAD_ORDER);
+    result.setTotalUploadedFiles(analyses.size());
+    AtomicInteger skipped = new AtomicInteger();
+
+    List<CompletableFuture<Evaluation>> evaluations = new ArrayList<>(analyses.size());
+    for (AnalysisFields analysis : analyses) {
+      evaluations.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                Evaluation evaluation = evaluate(analysis, matcher);
+                skipped.addAndGet(evaluation.skippedFields);
+                if (listener != null && !evaluation.impacted.getImpactedFields().isEmpty()) {
+                  listener.accept(evaluation.impacted);
+                }
+                return evaluation;
+              },
+              executor()));
+    }
+
+    return CompletableFuture.allOf(evaluations.toArray(new CompletableFuture<?>[0]))
+        .thenApply(
+            done -> {
+              for (CompletableFuture<Evaluation> future : evaluations) {
+                Evaluation evaluation = future.join();
+                result.setTotalFieldsAnalyzed(
+                    result.getTotalFieldsAnalyzed() + evaluation.analyzedFields);
+                result.setFieldsToBeImpacted(
+                    result.getFieldsToBeImpacted() + evaluation.matchingFields);
+                if (!evaluation.impacted.getImpactedFields().isEmpty()) {
+                  result.getImpactedAnalyses().add(evaluation.impacted);
+                }
+              }
+              result.setFieldsSkippedByFingerprint(skipped.get());
+              log.info(
+                  "Previewed {} against {} analyses: {} of {} fields would match, {} skipped by"
+                      + " fingerprint",
+                  request.getSemanticType().getSemanticType(),
+                  analyses.size(),
+                  result.getFieldsToBeImpacted(),
+                  result.getTotalFieldsAnalyzed(),
+                  result.getFieldsSkippedByFingerprint());
+              return result;
+            });
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private Evaluation evaluate(AnalysisFields analysis, SemanticTypeMatcher matcher) {
+    ImpactedAnalysis impacted = new ImpactedAnalysis();
+    impacted.setAnalysisId(analysis.analysisId());
+    impacted.setFileName(analysis.fileName());
+    Evaluation evaluation = new Evaluation(impacted);
+
+    List<FieldData> fields = analysis.fields();
+    ImpactedField[] results = new ImpactedField[fields.size()];
+    long[] matchedRows = new long[fields.size()];
+    List<Integer> candidates = new ArrayList<>();
+    for (int f = 0; f < fields.size(); f++) {
+      FieldData field = fields.get(f);
+      evaluation.analyzedFields++;
+      results[f] = new ImpactedField();
+      results[f].setFieldName(field.getFieldName());
+      results[f].setCurrentSemanticType(field.getCurrentSemanticType());
+      results[f].setCurrentConfidence(field.getCurrentConfidence());
+      results[f].setHeaderMatched(matcher.headerMatches(field.getFieldName()));
+      if (matcher.mayContain(field)) {
+        candidates.add(f);
+      } else {
+        evaluation.skippedFields++;
+      }
+    }
+
+    // Rows are read only for analyses with a field the fingerprints could not rule out
+    ColumnarTable table = null;
+    if (!candidates.isEmpty()) {
+      StoredAnalysis stored = analysisStorageService.readAnalysis(analysis.analysisId());
+      table = stored != null ? stored.getTable() : null;
+    }
+    for (int f : candidates) {
+      ImpactedField result = results[f];
+      SemanticTypeMatcher.FieldValues values =
+          SemanticTypeMatcher.FieldValues.of(fields.get(f), table);
+      if (!values.fingerprint().mayContain(matcher.getShape())) {
+        evaluation.skippedFields++;
+        continue;
+      }
+      long totalRows = 0;
+      for (int i = 0; i < values.values().size(); i++) {
+        Object value = values.values().get(i);
+        if (value == null) {
+          continue;
+        }
+        String text = value.toString();
+        int rows = values.count(i);
+        totalRows += rows;
+        if (matcher.valueMatches(text.trim())) {
+          matchedRows[f] += rows;
+          addExample(result.getMatchedValues(), text);
+        } else {
+          addExample(result.getUnmatchedValues(), text);
+        }
+      }
+      result.setWouldMatch(
+          matcher.headerAllows(result.isHeaderMatched())
+              && matchedRows[f] > 0
+              && matchedRows[f] * 100 >= (long) matcher.getThreshold() * totalRows);
+    }
+
+    for (int f = 0; f < fields.size(); f++) {
+      ImpactedField result = results[f];
+      if (result.isWouldMatch()) {
+        evaluation.matchingFields++;
+      }
+      if (result.isWouldMatch() || result.isHeaderMatched() || matchedRows[f] > 0) {
+        impacted.getImpactedFields().add(result);
+      }
+    }
+    return evaluation;
+  }
+
+  private static void addExample(List<String> examples, String value) {
+    if (examples.size() < MAX_EXAMPLE_VALUES) {
+      examples.add(value);
+    }
+  }
+
+  private static <T> List<T> nonNull(List<T> values) {
+    return values != null ? values : List.of();
+  }
+
+  private synchronized ExecutorService executor() {
+    if (executor == null) {
+      int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+      AtomicInteger counter = new AtomicInteger();
+      executor =
+          Executors.newFixedThreadPool(
+              size,
+              runnable -> {
+                Thread thread = new Thread(runnable, "type-preview-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return executor;
+  }
+
+  /** Per-analysis outcome, merged into the {@link PreviewResult} once all analyses are done. */
+  private static final class Evaluation {
+    private final ImpactedAnalysis impacted;
+    private int analyzedFields;
+    private int matchingFields;
+    private int skippedFields;
+
+    Evaluation(ImpactedAnalysis impacted) {
+      this.impacted = impacted;
+    }
+  }
+}
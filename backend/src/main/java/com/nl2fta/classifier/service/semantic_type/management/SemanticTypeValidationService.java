@@ -58,6 +58,7 @@ public class SemanticTypeValidationService {
     private int totalFieldsAnalyzed;
     private int fieldsToBeImpacted;
     private int totalUploadedFiles;
+    private int fieldsSkippedByFingerprint;
   }
 
   @Data
@@ -73,6 +74,7 @@ public class SemanticTypeValidationService {
     private String currentSemanticType;
     private double currentConfidence;
     private boolean wouldMatch;
+    private boolean headerMatched;
     private List<String> matchedValues = new ArrayList<>();
     private List<String> unmatchedValues = new ArrayList<>();
   }
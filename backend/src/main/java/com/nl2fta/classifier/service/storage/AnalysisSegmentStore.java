@@ -0,0 +1,489 @@
+package com.nl2fta.classifier.service.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only store of serialized analyses on local disk.
+ *
+ * <p>Records are appended to numbered segment files that roll over at a size limit. Each record
+ * carries its analysis ID, the time it was written and a CRC32 of the payload:
+ *
+ * <pre>
+ *   int magic | long writtenAt | int idLength | id (UTF-8) | int payloadLength | payload | long crc32
+ * </pre>
+ *
+ * Every put and remove is also appended to a compact header index ({@value #INDEX_FILE}) holding
+ * only IDs, record locations and a small caller-supplied metadata blob per record, so reopening the
+ * store reads that one small file and none of the payloads. Payloads are read lazily through
+ * read-only memory maps of the segments.
+ *
+ * <p>Overwriting or removing an ID leaves dead space in its segment. Segments without live records
+ * are deleted; {@link #compact()} copies the live records out of mostly-dead segments and rewrites
+ * the index.
+ */
+@Slf4j
+class AnalysisSegmentStore {
+
+  static final int RECORD_MAGIC = 0x4E4C3246; // "NL2F"
+  static final String INDEX_FILE = "index.log";
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final byte OP_PUT = 1;
+  private static final byte OP_REMOVE = 2;
+  private static final int RECORD_HEADER = 4 + 8 + 4;
+  private static final int INDEX_ENTRY_HEADER = 1 + 8 + 4 + 8 + 4 + 2;
+  private static final double COMPACT_LIVE_RATIO = 0.5;
+
+  private final Path directory;
+  private final long maxSegmentBytes;
+  private final Map<String, Location> locations = new HashMap<>();
+  private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+  private FileChannel index;
+  private int indexEntries;
+  private Segment active;
+  private long liveBytes;
+
+  /** Position of one payload inside a segment, with the metadata kept in the index for it. */
+  record Location(int segment, long offset, int payloadLength, long writtenAt, byte[] meta) {}
+
+  private static final class Segment {
+    private final int number;
+    private final Path path;
+    private final FileChannel channel;
+    private long size;
+    private long liveBytes;
+    private int liveRecords;
+    private MappedByteBuffer mapped;
+
+    Segment(int number, Path path, FileChannel channel, long size) {
+      this.number = number;
+      this.path = path;
+      this.channel = channel;
+      this.size = size;
+    }
+  }
+
+  AnalysisSegmentStore(Path directory, long maxSegmentBytes) throws IOException {
+    this.directory = directory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    Files.createDirectories(directory);
+    open();
+  }
+
+  /**
+   * Appends a payload for {@code id}, replacing any previous record.
+   *
+   * @param meta small metadata kept in the index and returned by {@link #locate}; may be {@code
+   *     null}. It is not stored in the segment, so it is lost if the index has to be rebuilt.
+   */
+  synchronized void put(String id, byte[] payload, long writtenAt, byte[] meta) throws IOException {
+    byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+    int recordLength = RECORD_HEADER + idBytes.length + 4 + payload.length + 8;
+    Segment segment = segmentFor(recordLength);
+
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+    buffer.putInt(RECORD_MAGIC).putLong(writtenAt).putInt(idBytes.length).put(idBytes);
+    buffer.putInt(payload.length).put(payload).putLong(crc.getValue());
+    buffer.flip();
+
+    long offset = segment.size;
+    writeFully(segment.channel, buffer, offset);
+    segment.size += recordLength;
+
+    Location location =
+        new Location(
+            segment.number,
+            offset + RECORD_HEADER + idBytes.length + 4,
+            payload.length,
+            writtenAt,
+            meta);
+    appendIndex(OP_PUT, idBytes, location);
+    release(id);
+    track(id, location);
+  }
+
+  /** Reads the payload stored for {@code id}, or {@code null} if there is none. */
+  synchronized byte[] get(String id) throws IOException {
+    Location location = locations.get(id);
+    if (location == null) {
+      return null;
+    }
+    Segment segment = segments.get(location.segment());
+    long end = location.offset() + location.payloadLength() + 8;
+    if (end > segment.size) {
+      throw new IOException("Truncated record for " + id + " in " + segment.path);
+    }
+    if (segment.mapped == null || segment.mapped.capacity() < end) {
+      segment.mapped = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+    }
+    ByteBuffer record = segment.mapped.slice((int) location.offset(), location.payloadLength() + 8);
+    byte[] payload = new byte[location.payloadLength()];
+    record.get(payload);
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    if (crc.getValue() != record.getLong()) {
+      throw new IOException("Checksum mismatch for " + id + " in " + segment.path);
+    }
+    return payload;
+  }
+
+  /** Drops the record for {@code id}; returns whether one existed. */
+  synchronized boolean remove(String id) throws IOException {
+    Location location = locations.get(id);
+    if (location == null) {
+      return false;
+    }
+    appendIndex(OP_REMOVE, id.getBytes(StandardCharsets.UTF_8), location);
+    release(id);
+    return true;
+  }
+
+  synchronized boolean contains(String id) {
+    return locations.containsKey(id);
+  }
+
+  synchronized Set<String> ids() {
+    return Set.copyOf(locations.keySet());
+  }
+
+  /** Where and when the record for {@code id} was written, or {@code null}. */
+  synchronized Location locate(String id) {
+    return locations.get(id);
+  }
+
+  synchronized int count() {
+    return locations.size();
+  }
+
+  /** Payload bytes of live records. */
+  synchronized long liveBytes() {
+    return liveBytes;
+  }
+
+  /** Bytes on disk across all segments, including dead records. */
+  synchronized long diskBytes() {
+    return segments.values().stream().mapToLong(segment -> segment.size).sum();
+  }
+
+  /** Whether dead records take up more than half of a closed segment, or most of the index. */
+  synchronized boolean needsCompaction() {
+    if (indexEntries > 2 * locations.size() + 64) {
+      return true;
+    }
+    for (Segment segment : segments.values()) {
+      if (segment != active && segment.liveBytes < segment.size * COMPACT_LIVE_RATIO) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Moves live records out of closed segments that are mostly dead space, deletes those segments
+   * and rewrites the index with one entry per live record.
+   *
+   * @return bytes reclaimed on disk
+   */
+  synchronized long compact() throws IOException {
+    long before = diskBytes();
+    List<Segment> sparse = new ArrayList<>();
+    for (Segment segment : segments.values()) {
+      if (segment != active && segment.liveBytes < segment.size * COMPACT_LIVE_RATIO) {
+        sparse.add(segment);
+      }
+    }
+    for (Segment segment : sparse) {
+      for (Map.Entry<String, Location> entry : new ArrayList<>(locations.entrySet())) {
+        if (entry.getValue().segment() == segment.number) {
+          Location location = entry.getValue();
+          put(entry.getKey(), get(entry.getKey()), location.writtenAt(), location.meta());
+        }
+      }
+    }
+    rewriteIndex();
+    long reclaimed = before - diskBytes();
+    log.debug(
+        "Compacted analysis store: {} segments rewritten, {} bytes reclaimed",
+        sparse.size(),
+        reclaimed);
+    return reclaimed;
+  }
+
+  /** Removes every record, segment file and the index. */
+  synchronized void clear() throws IOException {
+    for (Segment segment : segments.values().toArray(new Segment[0])) {
+      deleteSegment(segment);
+    }
+    locations.clear();
+    liveBytes = 0;
+    active = null;
+    index.truncate(0);
+    indexEntries = 0;
+  }
+
+  synchronized void close() throws IOException {
+    for (Segment segment : segments.values()) {
+      segment.channel.close();
+    }
+    index.close();
+  }
+
+  private void open() throws IOException {
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : files) {
+        String name = path.getFileName().toString();
+        int number =
+            Integer.parseInt(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        FileChannel channel =
+            FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segments.put(number, new Segment(number, path, channel, channel.size()));
+      }
+    }
+
+    Path indexPath = directory.resolve(INDEX_FILE);
+    boolean hadIndex = Files.exists(indexPath);
+    index =
+        FileChannel.open(
+            indexPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    if (hadIndex) {
+      replayIndex();
+    } else if (!segments.isEmpty()) {
+      log.warn("Analysis index missing in {}, rebuilding from segments", directory);
+      for (Segment segment : segments.values()) {
+        scanSegment(segment);
+      }
+      rewriteIndex();
+    }
+
+    for (Segment segment : segments.values().toArray(new Segment[0])) {
+      if (segment.liveRecords == 0) {
+        deleteSegment(segment);
+      }
+    }
+    if (!segments.isEmpty()) {
+      active = segments.lastEntry().getValue();
+    }
+  }
+
+  /** Loads record locations from the index, stopping at the first torn or corrupt entry. */
+  private void replayIndex() throws IOException {
+    long size = index.size();
+    ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    readFully(index, buffer, 0);
+    buffer.flip();
+
+    long valid = 0;
+    while (buffer.remaining() >= INDEX_ENTRY_HEADER + 4) {
+      int start = buffer.position();
+      byte op = buffer.get();
+      long writtenAt = buffer.getLong();
+      int segmentNumber = buffer.getInt();
+      long offset = buffer.getLong();
+      int length = buffer.getInt();
+      int idLength = buffer.getShort() & 0xFFFF;
+      if (buffer.remaining() < idLength + 4 + 4) {
+        break;
+      }
+      byte[] idBytes = new byte[idLength];
+      buffer.get(idBytes);
+      int metaLength = buffer.getInt();
+      if (metaLength < 0 || buffer.remaining() < metaLength + 4) {
+        break;
+      }
+      byte[] meta = metaLength > 0 ? new byte[metaLength] : null;
+      if (meta != null) {
+        buffer.get(meta);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(buffer.array(), start, buffer.position() - start);
+      if ((int) crc.getValue() != buffer.getInt()) {
+        break;
+      }
+      valid = buffer.position();
+      indexEntries++;
+
+      String id = new String(idBytes, StandardCharsets.UTF_8);
+      Segment segment = segments.get(segmentNumber);
+      if (op == OP_REMOVE) {
+        release(id);
+      } else if (segment != null && offset + length + 8 <= segment.size) {
+        release(id);
+        track(id, new Location(segmentNumber, offset, length, writtenAt, meta));
+      }
+    }
+    if (valid < size) {
+      log.warn("Truncating analysis index at {} of {} bytes", valid, size);
+      index.truncate(valid);
+    }
+  }
+
+  /** Recovers the latest record per ID from a segment when the index has been lost. */
+  private void scanSegment(Segment segment) throws IOException {
+    long position = 0;
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+    while (position + RECORD_HEADER <= segment.size) {
+      header.clear();
+      readFully(segment.channel, header, position);
+      header.flip();
+      if (header.getInt() != RECORD_MAGIC) {
+        break;
+      }
+      long writtenAt = header.getLong();
+      int idLength = header.getInt();
+      if (idLength < 0 || position + RECORD_HEADER + idLength + 4 > segment.size) {
+        break;
+      }
+      ByteBuffer idAndLength = ByteBuffer.allocate(idLength + 4);
+      readFully(segment.channel, idAndLength, position + RECORD_HEADER);
+      idAndLength.flip();
+      byte[] idBytes = new byte[idLength];
+      idAndLength.get(idBytes);
+      int payloadLength = idAndLength.getInt();
+      long payloadOffset = position + RECORD_HEADER + idLength + 4;
+      if (payloadLength < 0 || payloadOffset + payloadLength + 8 > segment.size) {
+        break;
+      }
+      String id = new String(idBytes, StandardCharsets.UTF_8);
+      release(id);
+      track(id, new Location(segment.number, payloadOffset, payloadLength, writtenAt, null));
+      position = payloadOffset + payloadLength + 8;
+    }
+  }
+
+  private void appendIndex(byte op, byte[] idBytes, Location location) throws IOException {
+    byte[] meta = op == OP_PUT && location.meta() != null ? location.meta() : new byte[0];
+    ByteBuffer entry =
+        ByteBuffer.allocate(INDEX_ENTRY_HEADER + idBytes.length + 4 + meta.length + 4);
+    entry.put(op).putLong(location.writtenAt()).putInt(location.segment());
+    entry.putLong(location.offset()).putInt(location.payloadLength());
+    entry.putShort((short) idBytes.length).put(idBytes);
+    entry.putInt(meta.length).put(meta);
+    CRC32 crc = new CRC32();
+    crc.update(entry.array(), 0, entry.position());
+    entry.putInt((int) crc.getValue());
+    entry.flip();
+    writeFully(index, entry, index.size());
+    indexEntries++;
+  }
+
+  /** Replaces the index with one entry per live record, atomically. */
+  private void rewriteIndex() throws IOException {
+    Path indexPath = directory.resolve(INDEX_FILE);
+    Path temp = directory.resolve(INDEX_FILE + ".tmp");
+    index.close();
+    index =
+        FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    indexEntries = 0;
+    for (Map.Entry<String, Location> entry : locations.entrySet()) {
+      appendIndex(OP_PUT, entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue());
+    }
+    index.force(true);
+    index.close();
+    Files.move(
+        temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    index = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  private void track(String id, Location location) {
+    locations.put(id, location);
+    Segment segment = segments.get(location.segment());
+    segment.liveRecords++;
+    segment.liveBytes += location.payloadLength();
+    liveBytes += location.payloadLength();
+  }
+
+  /** Forgets the live record for {@code id}, deleting its segment once nothing in it is live. */
+  private void release(String id) throws IOException {
+    Location location = locations.remove(id);
+    if (location == null) {
+      return;
+    }
+    liveBytes -= location.payloadLength();
+    Segment segment = segments.get(location.segment());
+    segment.liveRecords--;
+    segment.liveBytes -= location.payloadLength();
+    if (segment.liveRecords == 0 && segment != active && active != null) {
+      deleteSegment(segment);
+    }
+  }
+
+  private Segment segmentFor(int recordLength) throws IOException {
+    if (active == null || (active.size > 0 && active.size + recordLength > maxSegmentBytes)) {
+      Segment previous = active;
+      int number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+      Path path =
+          directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+      FileChannel channel =
+          FileChannel.open(
+              path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      active = new Segment(number, path, channel, channel.size());
+      segments.put(number, active);
+      if (previous != null && previous.liveRecords == 0) {
+        deleteSegment(previous);
+      }
+    }
+    return active;
+  }
+
+  private void deleteSegment(Segment segment) throws IOException {
+    segments.remove(segment.number);
+    segment.channel.close();
+    segment.mapped = null;
+    Files.deleteIfExists(segment.path);
+    if (segment == active) {
+      active = null;
+    }
+    log.debug("Deleted analysis segment {}", segment.path.getFileName());
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long offset = position;
+    while (buffer.hasRemaining()) {
+      offset += channel.write(buffer, offset);
+    }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long offset = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, offset);
+      if (read < 0) {
+        throw new IOException("Unexpected end of " + channel);
+      }
+      offset += read;
+    }
+  }
+}
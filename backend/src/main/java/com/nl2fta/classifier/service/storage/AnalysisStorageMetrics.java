@@ -0,0 +1,65 @@
+package com.nl2fta.classifier.service.storage;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+
+/** Publishes {@link AnalysisStorageService} tier sizes and eviction counters to Micrometer. */
+@Component
+@RequiredArgsConstructor
+public class AnalysisStorageMetrics implements MeterBinder {
+
+  private final AnalysisStorageService analysisStorageService;
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder(
+            "analysis.storage.resident.count",
+            analysisStorageService,
+            service -> service.getStats().getResidentCount())
+        .description("Analyses held in memory")
+        .register(registry);
+    Gauge.builder(
+            "analysis.storage.resident.bytes",
+            analysisStorageService,
+            service -> service.getStats().getResidentBytes())
+        .description("Estimated heap bytes of analyses held in memory")
+        .baseUnit("bytes")
+        .register(registry);
+    Gauge.builder(
+            "analysis.storage.spilled.count",
+            analysisStorageService,
+            service -> service.getStats().getSpilledCount())
+        .description("Analyses spilled to disk")
+        .register(registry);
+    Gauge.builder(
+            "analysis.storage.spilled.bytes",
+            analysisStorageService,
+            service -> service.getStats().getSpilledBytes())
+        .description("Serialized bytes of analyses spilled to disk")
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder(
+            "analysis.storage.evictions",
+            analysisStorageService,
+            service -> service.getStats().getEvictions())
+        .description("Analyses evicted from memory to disk")
+        .register(registry);
+    FunctionCounter.builder(
+            "analysis.storage.expirations",
+            analysisStorageService,
+            service -> service.getStats().getExpirations())
+        .description("Analyses removed after their TTL")
+        .register(registry);
+    FunctionCounter.builder(
+            "analysis.storage.reloads",
+            analysisStorageService,
+            service -> service.getStats().getReloads())
+        .description("Spilled analyses reloaded into memory")
+        .register(registry);
+  }
+}
@@ -1,25 +1,127 @@
 package com.nl2fta.classifier.service.storage;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nl2fta.classifier.dto.analysis.AnalysisSummary;
+import com.nl2fta.classifier.dto.analysis.AnalysisSummaryPage;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+import com.nl2fta.classifier.service.data_processing.CsvRowIndex;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Keeps stored analyses for preview and re-analysis within a bounded memory budget.
+ *
+ * <p>Each resident analysis is weighed by an estimate of its heap footprint. When the resident
+ * total exceeds {@code app.analysis-storage.max-resident-bytes}, analyses are evicted by the
+ * configured policy (LRU or LFU) and spilled to an append-only segment store on local disk, from
+ * which they are reloaded transparently on access. Analyses not written for {@code
+ * app.analysis-storage.ttl-minutes} expire from memory and disk. The TTL counts from the last
+ * write, not the last read, and applies to persistent analyses too. A budget or TTL of 0 disables
+ * the corresponding limit.
+ *
+ * <p>With {@code app.analysis-storage.persistent} enabled, every store and update is also written
+ * through to the segment store, whose header index is loaded at startup. Analyses from before a
+ * restart are then known immediately and read from disk on first access.
+ *
+ * <p>Stored analyses are never modified in place: an update builds a new {@link StoredAnalysis} and
+ * swaps it in, so a reader holding the previous one keeps a consistent view. The service monitor
+ * guards only the bookkeeping; payloads are serialized, written, spilled, read back and deleted
+ * outside it. Writes and removals in the segment store are ordered by a separate lock, taken before
+ * the monitor when both are needed, so a superseded version never overwrites a newer one.
+ */
 @Slf4j
 @Service
 public class AnalysisStorageService {
 
-  private final Map<String, StoredAnalysis> analysisStorage = new ConcurrentHashMap<>();
+  private static final long SWEEP_INTERVAL_MILLIS = 60_000;
+  private static final String DEFAULT_PERSISTENT_DIR = "analyses";
+  private static final String CURSOR_SEPARATOR = "|";
+  private static final TypeReference<List<FieldData>> FIELD_LIST = new TypeReference<>() {};
+
+  @Value("${app.analysis-storage.max-resident-bytes:268435456}")
+  private long maxResidentBytes;
+
+  @Value("${app.analysis-storage.eviction-policy:LRU}")
+  private String evictionPolicy;
+
+  /** Minutes after its last write that an analysis expires, resident, spilled or persisted. */
+  @Value("${app.analysis-storage.ttl-minutes:1440}")
+  private long ttlMinutes;
+
+  @Value("${app.analysis-storage.spill-dir:}")
+  private String spillDir;
+
+  // Base for local data; persistent analyses default to its analyses subdirectory
+  @Value("${app.data-dir:${user.home}/.nl2fta}")
+  private String dataDir;
+
+  @Value("${app.analysis-storage.segment-max-bytes:67108864}")
+  private long segmentMaxBytes;
+
+  @Value("${app.analysis-storage.persistent:true}")
+  private boolean persistent;
+
+  private final Map<String, ResidentEntry> resident = new HashMap<>();
+  private final Map<String, SpilledEntry> spilled = new HashMap<>();
+  private final ObjectMapper spillMapper =
+      new ObjectMapper()
+          .registerModule(new JavaTimeModule())
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+  // Orders writes and removals in the segment store; never taken while holding the monitor
+  private final Object storeWriteLock = new Object();
+
+  private Clock clock = Clock.systemUTC();
+  // Created under the monitor, read without it by payload reads and deferred removals
+  private volatile AnalysisSegmentStore spillStore;
+  private long residentBytes;
+  private long accessClock;
+  private long lastSweepMillis;
+  private long evictions;
+  private long expirations;
+  private long reloads;
 
   @Data
   public static class StoredAnalysis {
@@ -29,8 +131,29 @@ public class AnalysisStorageService {
     private TableClassificationResponse response;
     private List<FieldData> fields = new ArrayList<>();
     private List<String> columns = new ArrayList<>();
-    private List<Map<String, Object>> data = new ArrayList<>();
     private String locale;
+
+    /** Stored rows, dictionary-encoded by column. */
+    @JsonIgnore private ColumnarTable table;
+
+    /** Retained copy of the uploaded CSV, used to extend the sample on re-analysis. */
+    @JsonIgnore private Path sourceFile;
+
+    /** Row offset index over {@link #sourceFile}. */
+    @JsonIgnore private CsvRowIndex rowIndex;
+
+    /** Listing projection, recomputed whenever the analysis is stored or updated. */
+    @JsonIgnore private AnalysisSummary summary;
+
+    /** Stored rows as read-only views over {@link #table}. */
+    public List<Map<String, Object>> getData() {
+      return table != null ? table.rows() : List.of();
+    }
+
+    /** Replaces the stored rows with a columnar copy of {@code data}. */
+    public void setData(List<Map<String, Object>> data) {
+      this.table = ColumnarTable.encode(data);
+    }
   }
 
   @Data
@@ -39,6 +162,214 @@ public class AnalysisStorageService {
     private String currentSemanticType;
     private double currentConfidence;
     private List<String> sampleValues = new ArrayList<>();
+
+    /** Shape of the column's stored values, or of the samples when no rows are stored. */
+    private ValueFingerprint fingerprint;
+  }
+
+  /** Point-in-time view of the storage tiers. */
+  @Data
+  @Builder
+  public static class StorageStats {
+    private int residentCount;
+    private long residentBytes;
+    private int spilledCount;
+    private long spilledBytes;
+    private long evictions;
+    private long expirations;
+    private long reloads;
+  }
+
+  private static final class ResidentEntry {
+    private StoredAnalysis analysis;
+    private long bytes;
+    private long lastAccess;
+    private long accessCount;
+    private long writtenAtMillis;
+    private boolean persisted;
+  }
+
+  /**
+   * Fields of a stored analysis as of its last write, so callers can rule analyses out before
+   * loading any rows. The fields of a spilled analysis are read from its payload on first use,
+   * skipping the rows.
+   */
+  public static final class AnalysisFields {
+    private final String analysisId;
+    private final String fileName;
+    private final LocalDateTime createdAt;
+    private final int storedRows;
+    private Supplier<List<FieldData>> loader;
+    private List<FieldData> fields;
+
+    AnalysisFields(
+        String analysisId,
+        String fileName,
+        LocalDateTime createdAt,
+        int storedRows,
+        Supplier<List<FieldData>> loader) {
+      this.analysisId = analysisId;
+      this.fileName = fileName;
+      this.createdAt = createdAt;
+      this.storedRows = storedRows;
+      this.loader = loader;
+    }
+
+    public String analysisId() {
+      return analysisId;
+    }
+
+    public String fileName() {
+      return fileName;
+    }
+
+    public LocalDateTime createdAt() {
+      return createdAt;
+    }
+
+    public int storedRows() {
+      return storedRows;
+    }
+
+    /** The extracted fields, read from a spilled payload the first time they are asked for. */
+    public synchronized List<FieldData> fields() {
+      if (fields == null) {
+        List<FieldData> loaded = loader.get();
+        fields = loaded != null ? Collections.unmodifiableList(loaded) : List.of();
+        loader = null;
+      }
+      return fields;
+    }
+  }
+
+  private record SpilledEntry(long bytes, long accessCount, long writtenAtMillis, SpillMeta meta) {
+    AnalysisSummary summary() {
+      return meta.getSummary();
+    }
+
+    Path sourceFile() {
+      return meta.getSourceFile() != null ? Paths.get(meta.getSourceFile()) : null;
+    }
+  }
+
+  /**
+   * Index metadata of a stored analysis: its summary, flattened for compatibility with indexes that
+   * hold only the summary, the retained source file so it can be deleted without reading the
+   * payload, and the stored row count. Fields stay in the payload, so the index and the spilled
+   * bookkeeping do not grow with sample values and fingerprints; fields kept here by older indexes
+   * are ignored.
+   */
+  @Data
+  @NoArgsConstructor
+  static class SpillMeta {
+    @JsonUnwrapped private AnalysisSummary summary;
+
+    @JsonProperty("source_file")
+    private String sourceFile;
+
+    /** {@code null} in indexes written before row counts were kept here. */
+    @JsonProperty("stored_rows")
+    private Integer storedRows;
+
+    static SpillMeta of(StoredAnalysis analysis) {
+      SpillMeta meta = new SpillMeta();
+      meta.setSummary(analysis.getSummary());
+      meta.setSourceFile(
+          analysis.getSourceFile() != null ? analysis.getSourceFile().toString() : null);
+      meta.setStoredRows(analysis.getTable() != null ? analysis.getTable().getRowCount() : 0);
+      return meta;
+    }
+
+    boolean isComplete() {
+      return summary != null && storedRows != null;
+    }
+  }
+
+  /** Disk work collected under the monitor and carried out once it is released. */
+  private final class Cleanup {
+    private final List<String> removedIds = new ArrayList<>();
+    private final List<Path> sourceFiles = new ArrayList<>();
+
+    void remove(String analysisId, Path sourceFile) {
+      removedIds.add(analysisId);
+      if (sourceFile != null) {
+        sourceFiles.add(sourceFile);
+      }
+    }
+
+    void run() {
+      removedIds.forEach(AnalysisStorageService.this::removeStored);
+      sourceFiles.forEach(AnalysisStorageService.this::deleteSourceFile);
+      if (!removedIds.isEmpty()) {
+        compactIfNeeded();
+      }
+    }
+  }
+
+  /** Orderings available for summary listings. */
+  public enum SummarySort {
+    CREATED_AT(
+        Comparator.comparing(AnalysisSummary::getCreatedAt),
+        summary -> summary.getCreatedAt().toString(),
+        (probe, value) -> probe.createdAt(LocalDateTime.parse(value))),
+    UPDATED_AT(
+        Comparator.comparing(AnalysisSummary::getUpdatedAt),
+        summary -> summary.getUpdatedAt().toString(),
+        (probe, value) -> probe.updatedAt(LocalDateTime.parse(value))),
+    FILE_NAME(
+        Comparator.comparing(summary -> Objects.toString(summary.getFileName(), "")),
+        summary -> Objects.toString(summary.getFileName(), ""),
+        (probe, value) -> probe.fileName(value)),
+    ROW_COUNT(
+        Comparator.comparingInt(AnalysisSummary::getRowCount),
+        summary -> String.valueOf(summary.getRowCount()),
+        (probe, value) -> probe.rowCount(Integer.parseInt(value))),
+    COLUMN_COUNT(
+        Comparator.comparingInt(AnalysisSummary::getColumnCount),
+        summary -> String.valueOf(summary.getColumnCount()),
+        (probe, value) -> probe.columnCount(Integer.parseInt(value)));
+
+    private final Comparator<AnalysisSummary> comparator;
+    private final Function<AnalysisSummary, String> cursorValue;
+    private final BiConsumer<AnalysisSummary.AnalysisSummaryBuilder, String> probe;
+
+    SummarySort(
+        Comparator<AnalysisSummary> comparator,
+        Function<AnalysisSummary, String> cursorValue,
+        BiConsumer<AnalysisSummary.AnalysisSummaryBuilder, String> probe) {
+      this.comparator = comparator.thenComparing(AnalysisSummary::getAnalysisId);
+      this.cursorValue = cursorValue;
+      this.probe = probe;
+    }
+
+    /** Parses a sort name such as {@code created_at}. */
+    public static SummarySort from(String name) {
+      for (SummarySort sort : values()) {
+        if (sort.name().equalsIgnoreCase(name)) {
+          return sort;
+        }
+      }
+      throw new IllegalArgumentException("Unsupported sort: " + name);
+    }
+  }
+
+  /** Serialized form of an analysis in the spill store. */
+  @Data
+  @NoArgsConstructor
+  static class SpillRecord {
+    private String analysisId;
+    private String fileName;
+    private LocalDateTime timestamp;
+    private TableClassificationResponse response;
+    private boolean responseSharesData;
+    private List<FieldData> fields;
+    private List<String> columns;
+    private List<Map<String, Object>> data;
+    private String locale;
+    private String sourceFile;
+    // Saved with the analysis so reloading it does not rescan the source file
+    private byte[] rowIndex;
+    private AnalysisSummary summary;
   }
 
   public String storeAnalysis(String fileName, TableClassificationResponse response) {
@@ -61,6 +392,8 @@ public class AnalysisStorageService {
         analysis.setColumns(new ArrayList<>(firstRow.keySet()));
       }
       analysis.setData(response.getData());
+      // Let the response read the columnar copy so the original row maps can be collected
+      response.setData(analysis.getData());
     } else if (response.getColumnClassifications() != null) {
       // If data is not in response, at least store the column names
       analysis.setColumns(new ArrayList<>(response.getColumnClassifications().keySet()));
@@ -76,6 +409,595 @@ public class AnalysisStorageService {
     }
 
     // Extract field data for quick access
+    analysis.getFields().addAll(extractFields(response, analysis.getTable()));
+    analysis.setSummary(summarize(analysis, analysis.getTimestamp()));
+
+    byte[] payload = persistent ? serializeQuietly(analysis) : null;
+    Cleanup cleanup;
+    ResidentEntry entry;
+    synchronized (this) {
+      cleanup = sweepExpired(false);
+      entry = putResident(analysis, 0);
+    }
+    cleanup.run();
+    persist(analysisId, entry, payload);
+    enforceBudget(analysisId);
+    log.info("Stored analysis {} for file {}", analysisId, fileName);
+
+    return analysisId;
+  }
+
+  public StoredAnalysis getAnalysis(String analysisId) {
+    SpilledEntry spilledEntry;
+    StoredAnalysis analysis = null;
+    Cleanup cleanup;
+    synchronized (this) {
+      cleanup = sweepExpired(false);
+      ResidentEntry entry = resident.get(analysisId);
+      spilledEntry = entry == null ? spilled.get(analysisId) : null;
+      if (entry != null) {
+        touch(entry);
+        analysis = entry.analysis;
+      }
+    }
+    cleanup.run();
+    if (analysis != null) {
+      return analysis;
+    }
+    return spilledEntry != null ? reload(analysisId, spilledEntry) : null;
+  }
+
+  /**
+   * Returns every stored analysis. Spilled analyses are read from disk for the result but stay
+   * spilled, so listing does not pull the whole store back into memory.
+   */
+  public List<StoredAnalysis> getAllAnalyses() {
+    List<StoredAnalysis> all;
+    List<String> spilledIds;
+    Cleanup cleanup;
+    synchronized (this) {
+      cleanup = sweepExpired(false);
+      all = new ArrayList<>(resident.size() + spilled.size());
+      resident.values().forEach(entry -> all.add(entry.analysis));
+      spilledIds = new ArrayList<>(spilled.keySet());
+    }
+    cleanup.run();
+    for (String analysisId : spilledIds) {
+      StoredAnalysis analysis = readSpilled(analysisId);
+      if (analysis != null) {
+        all.add(analysis);
+      }
+    }
+    return all;
+  }
+
+  /**
+   * Lists analysis summaries, one page at a time. Summaries are kept alongside each analysis, so
+   * listing reads neither row data nor spilled payloads.
+   *
+   * @param sort ordering of the listing
+   * @param descending whether to reverse the ordering
+   * @param cursor {@code nextCursor} of the previous page, or {@code null} for the first page
+   * @param limit maximum number of summaries to return
+   * @throws IllegalArgumentException if the cursor is malformed or was issued for another ordering
+   */
+  public AnalysisSummaryPage listSummaries(
+      SummarySort sort, boolean descending, String cursor, int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Limit must be positive");
+    }
+    List<AnalysisSummary> summaries;
+    Map<String, SpilledEntry> missing = new HashMap<>();
+    Cleanup cleanup;
+    synchronized (this) {
+      cleanup = sweepExpired(false);
+      summaries = new ArrayList<>(resident.size() + spilled.size());
+      for (ResidentEntry entry : resident.values()) {
+        StoredAnalysis analysis = entry.analysis;
+        summaries.add(
+            analysis.getSummary() != null
+                ? analysis.getSummary()
+                : summarize(analysis, analysis.getTimestamp()));
+      }
+      for (Map.Entry<String, SpilledEntry> entry : spilled.entrySet()) {
+        if (entry.getValue().summary() != null) {
+          summaries.add(entry.getValue().summary());
+        } else {
+          missing.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    cleanup.run();
+    missing.forEach(
+        (analysisId, entry) -> {
+          SpillMeta meta = recoverMeta(analysisId, entry);
+          if (meta != null) {
+            summaries.add(meta.getSummary());
+          }
+        });
+
+    Comparator<AnalysisSummary> order = descending ? sort.comparator.reversed() : sort.comparator;
+    summaries.sort(order);
+    int start = 0;
+    if (cursor != null && !cursor.isBlank()) {
+      int position =
+          Collections.binarySearch(summaries, decodeCursor(cursor, sort, descending), order);
+      start = position >= 0 ? position + 1 : -position - 1;
+    }
+    int end = Math.min(summaries.size(), start + limit);
+    List<AnalysisSummary> items = new ArrayList<>(summaries.subList(start, end));
+    String nextCursor =
+        end < summaries.size() && !items.isEmpty()
+            ? encodeCursor(items.get(items.size() - 1), sort, descending)
+            : null;
+    return AnalysisSummaryPage.builder()
+        .items(items)
+        .nextCursor(nextCursor)
+        .totalCount(summaries.size())
+        .build();
+  }
+
+  /**
+   * Lists the fields of every stored analysis without reading rows. Spilled payloads are read only
+   * when their fields are asked for.
+   */
+  public List<AnalysisFields> listFields() {
+    List<AnalysisFields> all;
+    Map<String, SpilledEntry> missing = new HashMap<>();
+    Cleanup cleanup;
+    synchronized (this) {
+      cleanup = sweepExpired(false);
+      all = new ArrayList<>(resident.size() + spilled.size());
+      for (ResidentEntry entry : resident.values()) {
+        List<FieldData> fields = entry.analysis.getFields();
+        all.add(
+            fieldsOf(entry.analysis.getAnalysisId(), SpillMeta.of(entry.analysis), () -> fields));
+      }
+      for (Map.Entry<String, SpilledEntry> entry : spilled.entrySet()) {
+        if (entry.getValue().meta().isComplete()) {
+          all.add(spilledFieldsOf(entry.getKey(), entry.getValue().meta()));
+        } else {
+          missing.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+    cleanup.run();
+    missing.forEach(
+        (analysisId, entry) -> {
+          SpillMeta meta = recoverMeta(analysisId, entry);
+          if (meta != null) {
+            all.add(spilledFieldsOf(analysisId, meta));
+          }
+        });
+    return all;
+  }
+
+  /**
+   * Returns an analysis without making it resident or counting the access, for background work that
+   * looks at many analyses once and should not displace the ones users are working with.
+   */
+  public StoredAnalysis readAnalysis(String analysisId) {
+    synchronized (this) {
+      ResidentEntry entry = resident.get(analysisId);
+      if (entry != null) {
+        return entry.analysis;
+      }
+      if (!spilled.containsKey(analysisId)) {
+        return null;
+      }
+    }
+    return readSpilled(analysisId);
+  }
+
+  /**
+   * Applies {@code change} to the stored response of an analysis. If the analysis is updated
+   * concurrently, the change is applied again to the newer response, so no update is lost.
+   *
+   * @param change builds the new response from the current one without modifying it
+   * @return {@code false} if the analysis does not exist
+   */
+  public boolean updateResponse(
+      String analysisId, UnaryOperator<TableClassificationResponse> change) {
+    StoredAnalysis updated =
+        replace(analysisId, current -> withResponse(current, change.apply(current.getResponse())));
+    if (updated == null) {
+      log.warn("Cannot update analysis - not found: {}", analysisId);
+      return false;
+    }
+    log.info("Updated analysis {} for file {}", analysisId, updated.getFileName());
+    return true;
+  }
+
+  public void updateAnalysis(String analysisId, TableClassificationResponse response) {
+    StoredAnalysis updated = replace(analysisId, current -> withResponse(current, response));
+    if (updated != null) {
+      log.info("Updated analysis {} for file {}", analysisId, updated.getFileName());
+    } else {
+      log.warn("Cannot update analysis - not found: {}", analysisId);
+    }
+  }
+
+  /**
+   * Attaches the retained source file and its row index to a stored analysis, so that re-analysis
+   * with a different sample size can seek into the file instead of re-uploading it.
+   *
+   * @return {@code true} if the analysis exists and now owns the file
+   */
+  public boolean attachSource(String analysisId, Path sourceFile, CsvRowIndex rowIndex) {
+    Path[] previous = new Path[1];
+    StoredAnalysis updated =
+        replace(
+            analysisId,
+            current -> {
+              previous[0] = current.getSourceFile();
+              StoredAnalysis copy = copyOf(current);
+              copy.setSourceFile(sourceFile);
+              copy.setRowIndex(rowIndex);
+              return copy;
+            });
+    if (updated == null) {
+      return false;
+    }
+    if (previous[0] != null && !previous[0].equals(sourceFile)) {
+      deleteSourceFile(previous[0]);
+    }
+    log.debug(
+        "Attached {} row index ({} bytes) to analysis {}",
+        rowIndex.getRowCount(),
+        rowIndex.getIndexBytes(),
+        analysisId);
+    return true;
+  }
+
+  public void clearAnalyses() {
+    List<Path> sourceFiles = new ArrayList<>();
+    synchronized (storeWriteLock) {
+      synchronized (this) {
+        resident.values().forEach(entry -> sourceFiles.add(entry.analysis.getSourceFile()));
+        spilled.values().forEach(entry -> sourceFiles.add(entry.sourceFile()));
+        resident.clear();
+        spilled.clear();
+        residentBytes = 0;
+      }
+      if (spillStore != null) {
+        try {
+          spillStore.clear();
+        } catch (IOException e) {
+          log.warn("Failed to clear analysis spill store: {}", e.getMessage());
+        }
+      }
+    }
+    sourceFiles.forEach(this::deleteSourceFile);
+    log.info("Cleared all stored analyses");
+  }
+
+  public boolean deleteAnalysis(String analysisId) {
+    String fileName;
+    Cleanup cleanup = new Cleanup();
+    synchronized (this) {
+      ResidentEntry entry = resident.remove(analysisId);
+      SpilledEntry spilledEntry = spilled.remove(analysisId);
+      if (entry != null) {
+        residentBytes -= entry.bytes;
+        fileName = entry.analysis.getFileName();
+        cleanup.remove(analysisId, entry.analysis.getSourceFile());
+      } else if (spilledEntry != null) {
+        fileName = spilledEntry.summary() != null ? spilledEntry.summary().getFileName() : null;
+        cleanup.remove(analysisId, spilledEntry.sourceFile());
+      } else {
+        log.warn("Analysis not found for deletion: {}", analysisId);
+        return false;
+      }
+    }
+    cleanup.run();
+    log.info("Deleted analysis {} for file {}", analysisId, fileName);
+    return true;
+  }
+
+  /** Current resident and spilled sizes and lifetime eviction counters. */
+  public synchronized StorageStats getStats() {
+    return StorageStats.builder()
+        .residentCount(resident.size())
+        .residentBytes(residentBytes)
+        .spilledCount(spilled.size())
+        .spilledBytes(spilled.values().stream().mapToLong(SpilledEntry::bytes).sum())
+        .evictions(evictions)
+        .expirations(expirations)
+        .reloads(reloads)
+        .build();
+  }
+
+  /** Removes analyses older than the TTL now, rather than on the next periodic sweep. */
+  public void expireNow() {
+    Cleanup cleanup;
+    synchronized (this) {
+      cleanup = sweepExpired(true);
+    }
+    cleanup.run();
+  }
+
+  /**
+   * Loads the header index of a persistent store, so analyses from before a restart can be listed
+   * and reloaded. Payloads stay on disk until they are accessed.
+   */
+  @PostConstruct
+  public void open() {
+    if (!persistent) {
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      Map<String, SpilledEntry> loaded = new HashMap<>();
+      AnalysisSegmentStore store = spillStore();
+      for (String analysisId : store.ids()) {
+        AnalysisSegmentStore.Location location = store.locate(analysisId);
+        loaded.put(
+            analysisId,
+            new SpilledEntry(
+                location.payloadLength(), 0, location.writtenAt(), readMeta(location.meta())));
+      }
+      synchronized (this) {
+        loaded.forEach(spilled::putIfAbsent);
+      }
+      log.info(
+          "Loaded {} stored analyses in {} ms",
+          loaded.size(),
+          (System.nanoTime() - start) / 1_000_000);
+    } catch (IOException e) {
+      log.error("Failed to open analysis store, starting empty: {}", e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    if (spillStore != null) {
+      try {
+        spillStore.close();
+      } catch (IOException e) {
+        log.debug("Failed to close analysis spill store: {}", e.getMessage());
+      }
+    }
+  }
+
+  private static AnalysisSummary summarize(StoredAnalysis analysis, LocalDateTime createdAt) {
+    Map<String, Integer> typeCounts = new TreeMap<>();
+    TableClassificationResponse response = analysis.getResponse();
+    if (response != null && response.getColumnClassifications() != null) {
+      response
+          .getColumnClassifications()
+          .values()
+          .forEach(
+              classification -> {
+                if (classification != null && classification.getSemanticType() != null) {
+                  typeCounts.merge(classification.getSemanticType(), 1, Integer::sum);
+                }
+              });
+    }
+    int rowCount = analysis.getTable() != null ? analysis.getTable().getRowCount() : 0;
+    if (rowCount == 0
+        && response != null
+        && response.getProcessingMetadata() != null
+        && response.getProcessingMetadata().getTotalRowsProcessed() != null) {
+      rowCount = response.getProcessingMetadata().getTotalRowsProcessed();
+    }
+    return AnalysisSummary.builder()
+        .analysisId(analysis.getAnalysisId())
+        .fileName(analysis.getFileName())
+        .createdAt(createdAt)
+        .updatedAt(analysis.getTimestamp())
+        .columnCount(analysis.getColumns() != null ? analysis.getColumns().size() : 0)
+        .rowCount(rowCount)
+        .typeCounts(typeCounts)
+        .build();
+  }
+
+  /**
+   * Rebuilds metadata missing from the index (after an index rebuild, or from an older version)
+   * from the payload, once.
+   */
+  private SpillMeta recoverMeta(String analysisId, SpilledEntry entry) {
+    StoredAnalysis analysis = readSpilled(analysisId);
+    if (analysis == null) {
+      return null;
+    }
+    SpillMeta meta = SpillMeta.of(analysis);
+    synchronized (this) {
+      if (spilled.get(analysisId) == entry) {
+        spilled.put(
+            analysisId,
+            new SpilledEntry(entry.bytes(), entry.accessCount(), entry.writtenAtMillis(), meta));
+      }
+    }
+    return meta;
+  }
+
+  private static AnalysisFields fieldsOf(
+      String analysisId, SpillMeta meta, Supplier<List<FieldData>> fields) {
+    AnalysisSummary summary = meta.getSummary();
+    return new AnalysisFields(
+        analysisId,
+        summary != null ? summary.getFileName() : null,
+        summary != null ? summary.getCreatedAt() : null,
+        meta.getStoredRows() != null ? meta.getStoredRows() : 0,
+        fields);
+  }
+
+  private AnalysisFields spilledFieldsOf(String analysisId, SpillMeta meta) {
+    return fieldsOf(analysisId, meta, () -> readSpilledFields(analysisId));
+  }
+
+  /**
+   * Reads only the fields of a spilled analysis, skipping over its rows and response. Returns an
+   * empty list if the analysis is gone or its payload cannot be read.
+   */
+  private List<FieldData> readSpilledFields(String analysisId) {
+    AnalysisSegmentStore store = spillStore;
+    if (store == null) {
+      return List.of();
+    }
+    try {
+      byte[] payload = store.get(analysisId);
+      if (payload == null) {
+        return List.of();
+      }
+      try (JsonParser parser = spillMapper.getFactory().createParser(payload)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          return List.of();
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.currentName();
+          parser.nextToken();
+          if ("fields".equals(name)) {
+            List<FieldData> fields = spillMapper.readValue(parser, FIELD_LIST);
+            return fields != null ? fields : List.of();
+          }
+          parser.skipChildren();
+        }
+      }
+    } catch (IOException e) {
+      log.error("Failed to read fields of spilled analysis {}: {}", analysisId, e.getMessage());
+    }
+    return List.of();
+  }
+
+  private SpillMeta readMeta(byte[] meta) {
+    if (meta != null) {
+      try {
+        SpillMeta parsed = spillMapper.readValue(meta, SpillMeta.class);
+        if (parsed.getSummary() != null && parsed.getSummary().getAnalysisId() == null) {
+          parsed.setSummary(null);
+        }
+        return parsed;
+      } catch (IOException e) {
+        log.debug("Ignoring unreadable analysis metadata: {}", e.getMessage());
+      }
+    }
+    return new SpillMeta();
+  }
+
+  private byte[] meta(StoredAnalysis analysis) throws IOException {
+    return spillMapper.writeValueAsBytes(SpillMeta.of(analysis));
+  }
+
+  private static String encodeCursor(AnalysisSummary last, SummarySort sort, boolean descending) {
+    String raw =
+        sort.name()
+            + CURSOR_SEPARATOR
+            + (descending ? "desc" : "asc")
+            + CURSOR_SEPARATOR
+            + last.getAnalysisId()
+            + CURSOR_SEPARATOR
+            + sort.cursorValue.apply(last);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** Turns a cursor back into a probe summary positioned at the last item of the previous page. */
+  private static AnalysisSummary decodeCursor(String cursor, SummarySort sort, boolean descending) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = raw.split(Pattern.quote(CURSOR_SEPARATOR), 4);
+      if (parts.length != 4
+          || !parts[0].equals(sort.name())
+          || !parts[1].equals(descending ? "desc" : "asc")) {
+        throw new IllegalArgumentException("Cursor does not match the requested sort order");
+      }
+      AnalysisSummary.AnalysisSummaryBuilder probe = AnalysisSummary.builder().analysisId(parts[2]);
+      sort.probe.accept(probe, parts[3]);
+      return probe.build();
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid cursor: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Applies {@code change} to the current version of an analysis and swaps the result in. If
+   * another writer replaced the analysis in the meantime, the change is applied again to the newer
+   * version; the stored object itself is never modified.
+   *
+   * @param change builds the new version from the current one
+   * @return the version now stored, or {@code null} if the analysis does not exist
+   */
+  private StoredAnalysis replace(String analysisId, UnaryOperator<StoredAnalysis> change) {
+    while (true) {
+      StoredAnalysis current = getAnalysis(analysisId);
+      if (current == null) {
+        return null;
+      }
+      StoredAnalysis updated = change.apply(current);
+      byte[] payload = persistent ? serializeQuietly(updated) : null;
+      ResidentEntry stored;
+      synchronized (this) {
+        ResidentEntry entry = resident.get(analysisId);
+        if (entry == null || entry.analysis != current) {
+          // Replaced, evicted or deleted since it was read
+          continue;
+        }
+        stored = putResident(updated, entry.accessCount);
+      }
+      persist(analysisId, stored, payload);
+      enforceBudget(analysisId);
+      compactIfNeeded();
+      return updated;
+    }
+  }
+
+  private StoredAnalysis withResponse(
+      StoredAnalysis current, TableClassificationResponse response) {
+    StoredAnalysis updated = copyOf(current);
+    updated.setResponse(response);
+    updated.setTimestamp(LocalDateTime.now());
+
+    // Grow the stored rows when the response was computed from an extended sample; a smaller
+    // sample leaves them whole, since the rows it dropped may not be recoverable
+    if (extendsRows(response.getData(), current.getData())) {
+      updated.setData(response.getData());
+      response.setData(updated.getData());
+    }
+
+    // Update locale if available
+    if (response.getProcessingMetadata() != null
+        && response.getProcessingMetadata().getLocaleUsed() != null) {
+      updated.setLocale(response.getProcessingMetadata().getLocaleUsed());
+    }
+
+    // Re-extract field data with updated semantic types
+    updated.setFields(extractFields(response, updated.getTable()));
+    AnalysisSummary previous = current.getSummary();
+    updated.setSummary(
+        summarize(updated, previous != null ? previous.getCreatedAt() : current.getTimestamp()));
+    return updated;
+  }
+
+  /** Whether {@code data} holds every stored row, in order, followed by more. */
+  private static boolean extendsRows(
+      List<Map<String, Object>> data, List<Map<String, Object>> stored) {
+    return data != null
+        && data != stored
+        && data.size() > stored.size()
+        && data.subList(0, stored.size()).equals(stored);
+  }
+
+  /** Shallow copy; the rows, response and row index are immutable once stored and are shared. */
+  private static StoredAnalysis copyOf(StoredAnalysis analysis) {
+    StoredAnalysis copy = new StoredAnalysis();
+    copy.setAnalysisId(analysis.getAnalysisId());
+    copy.setFileName(analysis.getFileName());
+    copy.setTimestamp(analysis.getTimestamp());
+    copy.setResponse(analysis.getResponse());
+    copy.setFields(new ArrayList<>(analysis.getFields()));
+    copy.setColumns(new ArrayList<>(analysis.getColumns()));
+    copy.setLocale(analysis.getLocale());
+    copy.setTable(analysis.getTable());
+    copy.setSourceFile(analysis.getSourceFile());
+    copy.setRowIndex(analysis.getRowIndex());
+    copy.setSummary(analysis.getSummary());
+    return copy;
+  }
+
+  private List<FieldData> extractFields(TableClassificationResponse response, ColumnarTable table) {
+    List<FieldData> fields = new ArrayList<>();
     if (response.getColumnClassifications() != null) {
       response
           .getColumnClassifications()
@@ -101,88 +1023,431 @@ public class AnalysisStorageService {
                   fieldData.setSampleValues(sampleValues);
                 }
 
-                analysis.getFields().add(fieldData);
+                List<Object> values = table != null ? table.getDictionary(columnName) : List.of();
+                fieldData.setFingerprint(
+                    ValueFingerprint.of(values.isEmpty() ? fieldData.getSampleValues() : values));
+
+                fields.add(fieldData);
               });
     }
+    return fields;
+  }
 
-    analysisStorage.put(analysisId, analysis);
-    log.info("Stored analysis {} for file {}", analysisId, fileName);
+  private ResidentEntry putResident(StoredAnalysis analysis, long accessCount) {
+    ResidentEntry entry = new ResidentEntry();
+    entry.analysis = analysis;
+    entry.accessCount = accessCount;
+    entry.writtenAtMillis = clock.millis();
+    touch(entry);
+    entry.bytes = AnalysisWeigher.estimate(analysis);
+    ResidentEntry previous = resident.put(analysis.getAnalysisId(), entry);
+    if (previous != null) {
+      residentBytes -= previous.bytes;
+    }
+    residentBytes += entry.bytes;
+    return entry;
+  }
 
-    return analysisId;
+  private void touch(ResidentEntry entry) {
+    entry.lastAccess = ++accessClock;
+    entry.accessCount++;
   }
 
-  public StoredAnalysis getAnalysis(String analysisId) {
-    return analysisStorage.get(analysisId);
+  private void reweigh(ResidentEntry entry) {
+    residentBytes -= entry.bytes;
+    entry.bytes = AnalysisWeigher.estimate(entry.analysis);
+    residentBytes += entry.bytes;
   }
 
-  public List<StoredAnalysis> getAllAnalyses() {
-    return new ArrayList<>(analysisStorage.values());
+  /**
+   * Spills analyses until the resident total fits the budget, never evicting {@code keepId}.
+   * Victims are picked under the monitor and written outside it.
+   */
+  private void enforceBudget(String keepId) {
+    if (maxResidentBytes <= 0) {
+      return;
+    }
+    while (true) {
+      String victim;
+      ResidentEntry entry;
+      synchronized (this) {
+        if (residentBytes <= maxResidentBytes || resident.size() <= 1) {
+          return;
+        }
+        victim = selectVictim(keepId);
+        if (victim == null) {
+          return;
+        }
+        entry = resident.get(victim);
+      }
+      if (!spill(victim, entry)) {
+        return;
+      }
+    }
   }
 
-  public void updateAnalysis(String analysisId, TableClassificationResponse response) {
-    StoredAnalysis existingAnalysis = analysisStorage.get(analysisId);
-    if (existingAnalysis != null) {
-      // Update the response and re-extract field data
-      existingAnalysis.setResponse(response);
-      existingAnalysis.setTimestamp(LocalDateTime.now());
-      existingAnalysis.getFields().clear();
-
-      // Update locale if available
-      if (response.getProcessingMetadata() != null
-          && response.getProcessingMetadata().getLocaleUsed() != null) {
-        existingAnalysis.setLocale(response.getProcessingMetadata().getLocaleUsed());
-      }
-
-      // Re-extract field data with updated semantic types
-      if (response.getColumnClassifications() != null) {
-        response
-            .getColumnClassifications()
-            .forEach(
-                (columnName, classification) -> {
-                  FieldData fieldData = new FieldData();
-                  fieldData.setFieldName(columnName);
-                  fieldData.setCurrentSemanticType(classification.getSemanticType());
-                  fieldData.setCurrentConfidence(
-                      classification.getConfidence() != null
-                          ? classification.getConfidence()
-                          : 0.0);
-
-                  // Store sample values from shape details
-                  if (classification.getShapeDetails() != null) {
-                    List<String> sampleValues = new ArrayList<>();
-                    classification
-                        .getShapeDetails()
-                        .forEach(
-                            shape -> {
-                              if (shape.getExamples() != null) {
-                                sampleValues.addAll(shape.getExamples());
-                              }
-                            });
-                    fieldData.setSampleValues(sampleValues);
-                  }
-
-                  existingAnalysis.getFields().add(fieldData);
-                });
-      }
-
-      log.info("Updated analysis {} for file {}", analysisId, existingAnalysis.getFileName());
-    } else {
-      log.warn("Cannot update analysis - not found: {}", analysisId);
+  private String selectVictim(String keepId) {
+    boolean lfu = "LFU".equalsIgnoreCase(evictionPolicy);
+    String victim = null;
+    ResidentEntry best = null;
+    for (Map.Entry<String, ResidentEntry> candidate : resident.entrySet()) {
+      if (candidate.getKey().equals(keepId)) {
+        continue;
+      }
+      ResidentEntry entry = candidate.getValue();
+      boolean better =
+          best == null
+              || (lfu && entry.accessCount < best.accessCount)
+              || ((!lfu || entry.accessCount == best.accessCount)
+                  && entry.lastAccess < best.lastAccess);
+      if (better) {
+        best = entry;
+        victim = candidate.getKey();
+      }
     }
+    return victim;
   }
 
-  public void clearAnalyses() {
-    analysisStorage.clear();
-    log.info("Cleared all stored analyses");
+  /**
+   * Writes a resident analysis to the store if it is not there yet, then moves it to the spilled
+   * set. The entry stays resident, and readable, while it is written; if it is replaced or removed
+   * meanwhile it is left alone.
+   *
+   * @return {@code false} only if the write failed
+   */
+  private boolean spill(String analysisId, ResidentEntry entry) {
+    long bytes;
+    try {
+      synchronized (storeWriteLock) {
+        boolean persisted;
+        synchronized (this) {
+          if (resident.get(analysisId) != entry) {
+            return true;
+          }
+          persisted = entry.persisted;
+        }
+        if (!persisted) {
+          spillStore()
+              .put(
+                  analysisId,
+                  serialize(entry.analysis),
+                  entry.writtenAtMillis,
+                  meta(entry.analysis));
+        }
+        bytes = spillStore().locate(analysisId).payloadLength();
+      }
+    } catch (IOException e) {
+      log.warn("Failed to spill analysis {}, keeping it in memory: {}", analysisId, e.getMessage());
+      return false;
+    }
+    synchronized (this) {
+      if (resident.get(analysisId) != entry) {
+        return true;
+      }
+      spilled.put(
+          analysisId,
+          new SpilledEntry(
+              bytes, entry.accessCount, entry.writtenAtMillis, SpillMeta.of(entry.analysis)));
+      resident.remove(analysisId);
+      residentBytes -= entry.bytes;
+      evictions++;
+    }
+    log.debug("Spilled analysis {} ({} bytes resident)", analysisId, entry.bytes);
+    return true;
   }
 
-  public boolean deleteAnalysis(String analysisId) {
-    StoredAnalysis removed = analysisStorage.remove(analysisId);
-    if (removed != null) {
-      log.info("Deleted analysis {} for file {}", analysisId, removed.getFileName());
-      return true;
+  /**
+   * Reads a spilled analysis outside the monitor and makes it resident, unless it was reloaded,
+   * replaced or removed while it was being read.
+   */
+  private StoredAnalysis reload(String analysisId, SpilledEntry spilledEntry) {
+    SpilledEntry expected = spilledEntry;
+    while (true) {
+      StoredAnalysis analysis = readSpilled(analysisId);
+      synchronized (this) {
+        ResidentEntry current = resident.get(analysisId);
+        if (current != null) {
+          touch(current);
+          return current.analysis;
+        }
+        SpilledEntry latest = spilled.get(analysisId);
+        if (latest == null) {
+          return null;
+        }
+        if (latest == expected && analysis != null) {
+          // The on-disk copy stays valid until the analysis is next written
+          spilled.remove(analysisId);
+          putResident(analysis, expected.accessCount());
+          ResidentEntry entry = resident.get(analysisId);
+          entry.writtenAtMillis = expected.writtenAtMillis();
+          entry.persisted = true;
+          reloads++;
+        } else if (latest == expected) {
+          return null;
+        } else {
+          expected = latest;
+          continue;
+        }
+      }
+      enforceBudget(analysisId);
+      log.debug("Reloaded spilled analysis {}", analysisId);
+      return analysis;
+    }
+  }
+
+  private StoredAnalysis readSpilled(String analysisId) {
+    AnalysisSegmentStore store = spillStore;
+    if (store == null) {
+      return null;
+    }
+    try {
+      byte[] payload = store.get(analysisId);
+      if (payload == null) {
+        return null;
+      }
+      return fromSpillRecord(spillMapper.readValue(payload, SpillRecord.class));
+    } catch (IOException e) {
+      log.error("Failed to read spilled analysis {}: {}", analysisId, e.getMessage());
+      return null;
+    }
+  }
+
+  /** Drops the on-disk copy of an analysis, spilled or persisted. */
+  private void removeStored(String analysisId) {
+    AnalysisSegmentStore store = spillStore;
+    if (store != null) {
+      synchronized (storeWriteLock) {
+        try {
+          store.remove(analysisId);
+        } catch (IOException e) {
+          log.warn("Failed to remove stored analysis {}: {}", analysisId, e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes a resident analysis through to disk when the store is persistent. A version that was
+   * replaced, spilled or removed before its turn is skipped, since whatever superseded it writes or
+   * removes the record itself.
+   *
+   * @param payload the analysis serialized outside the monitor, or {@code null} if that failed
+   */
+  private void persist(String analysisId, ResidentEntry entry, byte[] payload) {
+    if (!persistent) {
+      return;
+    }
+    synchronized (storeWriteLock) {
+      synchronized (this) {
+        if (resident.get(analysisId) != entry) {
+          return;
+        }
+      }
+      boolean written;
+      try {
+        if (payload == null) {
+          throw new IOException("analysis could not be serialized");
+        }
+        spillStore().put(analysisId, payload, entry.writtenAtMillis, meta(entry.analysis));
+        written = true;
+      } catch (IOException e) {
+        // Left to be written again on eviction
+        written = false;
+        log.warn("Failed to persist analysis {}: {}", analysisId, e.getMessage());
+      }
+      synchronized (this) {
+        entry.persisted = written;
+      }
+    }
+  }
+
+  private void compactIfNeeded() {
+    if (spillStore == null || !spillStore.needsCompaction()) {
+      return;
+    }
+    try {
+      long reclaimed = spillStore.compact();
+      log.info("Compacted analysis store, reclaimed {} bytes", reclaimed);
+    } catch (IOException e) {
+      log.warn("Failed to compact analysis store: {}", e.getMessage());
+    }
+  }
+
+  private byte[] serialize(StoredAnalysis analysis) throws IOException {
+    return spillMapper.writeValueAsBytes(toSpillRecord(analysis));
+  }
+
+  private byte[] serializeQuietly(StoredAnalysis analysis) {
+    try {
+      return serialize(analysis);
+    } catch (IOException e) {
+      log.warn("Failed to serialize analysis {}: {}", analysis.getAnalysisId(), e.getMessage());
+      return null;
+    }
+  }
+
+  /** Drops analyses older than the TTL from the bookkeeping; their files go in the cleanup. */
+  private Cleanup sweepExpired(boolean force) {
+    Cleanup cleanup = new Cleanup();
+    if (ttlMinutes <= 0) {
+      return cleanup;
+    }
+    long now = clock.millis();
+    if (!force && now - lastSweepMillis < SWEEP_INTERVAL_MILLIS) {
+      return cleanup;
+    }
+    lastSweepMillis = now;
+    long cutoff = now - ttlMinutes * 60_000;
+
+    Iterator<Map.Entry<String, ResidentEntry>> residentIterator = resident.entrySet().iterator();
+    while (residentIterator.hasNext()) {
+      ResidentEntry entry = residentIterator.next().getValue();
+      if (entry.writtenAtMillis < cutoff) {
+        residentIterator.remove();
+        residentBytes -= entry.bytes;
+        cleanup.remove(entry.analysis.getAnalysisId(), entry.analysis.getSourceFile());
+        expirations++;
+      }
+    }
+    Iterator<Map.Entry<String, SpilledEntry>> spilledIterator = spilled.entrySet().iterator();
+    while (spilledIterator.hasNext()) {
+      Map.Entry<String, SpilledEntry> entry = spilledIterator.next();
+      if (entry.getValue().writtenAtMillis() < cutoff) {
+        spilledIterator.remove();
+        cleanup.remove(entry.getKey(), entry.getValue().sourceFile());
+        expirations++;
+      }
+    }
+    return cleanup;
+  }
+
+  private AnalysisSegmentStore spillStore() throws IOException {
+    AnalysisSegmentStore store = spillStore;
+    if (store != null) {
+      return store;
+    }
+    synchronized (storeWriteLock) {
+      if (spillStore != null) {
+        return spillStore;
+      }
+      Path directory;
+      if (spillDir != null && !spillDir.isBlank()) {
+        directory = Paths.get(spillDir);
+      } else if (persistent) {
+        directory = dataDirectory().resolve(DEFAULT_PERSISTENT_DIR);
+      } else {
+        directory = Files.createTempDirectory("nl2fta-analysis-spill-");
+      }
+      long segmentBytes = segmentMaxBytes > 0 ? segmentMaxBytes : 64L * 1024 * 1024;
+      store = new AnalysisSegmentStore(directory, segmentBytes);
+      if (!persistent) {
+        // Spill files from a previous run are unreachable without persistence
+        store.clear();
+      }
+      spillStore = store;
+      log.info("Analysis {} store at {}", persistent ? "persistent" : "spill", directory);
+      return store;
+    }
+  }
+
+  private Path dataDirectory() {
+    if (dataDir != null && !dataDir.isBlank()) {
+      return Paths.get(dataDir).toAbsolutePath();
+    }
+    return Paths.get(System.getProperty("user.home"), ".nl2fta");
+  }
+
+  private SpillRecord toSpillRecord(StoredAnalysis analysis) {
+    SpillRecord record = new SpillRecord();
+    record.setAnalysisId(analysis.getAnalysisId());
+    record.setFileName(analysis.getFileName());
+    record.setTimestamp(analysis.getTimestamp());
+    record.setFields(analysis.getFields());
+    record.setColumns(analysis.getColumns());
+    record.setData(analysis.getData());
+    record.setLocale(analysis.getLocale());
+    record.setSummary(analysis.getSummary());
+    record.setSourceFile(
+        analysis.getSourceFile() != null ? analysis.getSourceFile().toString() : null);
+    if (analysis.getRowIndex() != null) {
+      record.setRowIndex(analysis.getRowIndex().toBytes());
+    }
+
+    TableClassificationResponse response = analysis.getResponse();
+    if (response != null
+        && response.getData() != null
+        && response.getData() == analysis.getData()) {
+      // Rows are written once and shared again on reload
+      record.setResponseSharesData(true);
+      response =
+          TableClassificationResponse.builder()
+              .tableName(response.getTableName())
+              .columnClassifications(response.getColumnClassifications())
+              .processingMetadata(response.getProcessingMetadata())
+              .analysisId(response.getAnalysisId())
+              .build();
+    }
+    record.setResponse(response);
+    return record;
+  }
+
+  private StoredAnalysis fromSpillRecord(SpillRecord record) {
+    StoredAnalysis analysis = new StoredAnalysis();
+    analysis.setAnalysisId(record.getAnalysisId());
+    analysis.setFileName(record.getFileName());
+    analysis.setTimestamp(record.getTimestamp());
+    analysis.setResponse(record.getResponse());
+    if (record.getFields() != null) {
+      analysis.setFields(record.getFields());
+    }
+    if (record.getColumns() != null) {
+      analysis.setColumns(record.getColumns());
+    }
+    if (record.getData() != null) {
+      analysis.setData(record.getData());
+    }
+    analysis.setLocale(record.getLocale());
+    analysis.setSummary(
+        record.getSummary() != null
+            ? record.getSummary()
+            : summarize(analysis, analysis.getTimestamp()));
+    if (record.isResponseSharesData() && analysis.getResponse() != null) {
+      analysis.getResponse().setData(analysis.getData());
+    }
+    if (record.getSourceFile() != null) {
+      analysis.setSourceFile(Paths.get(record.getSourceFile()));
+      analysis.setRowIndex(readRowIndex(record));
+    }
+    return analysis;
+  }
+
+  /**
+   * Restores the saved row index. Records written before indexes were saved have none, and
+   * re-analysis then works from the stored rows alone.
+   */
+  private CsvRowIndex readRowIndex(SpillRecord record) {
+    if (record.getRowIndex() == null) {
+      return null;
+    }
+    try {
+      return CsvRowIndex.fromBytes(record.getRowIndex());
+    } catch (IOException e) {
+      log.debug(
+          "Ignoring unreadable row index of analysis {}: {}",
+          record.getAnalysisId(),
+          e.getMessage());
+      return null;
+    }
+  }
+
+  private void deleteSourceFile(Path sourceFile) {
+    if (sourceFile == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(sourceFile);
+    } catch (IOException e) {
+      log.warn("Failed to delete retained source file {}: {}", sourceFile, e.getMessage());
     }
-    log.warn("Analysis not found for deletion: {}", analysisId);
-    return false;
   }
 }
@@ -0,0 +1,90 @@
+package com.nl2fta.classifier.service.storage;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+
+/**
+ * Rough heap-size estimate of a stored analysis, used to weigh entries against the storage budget.
+ *
+ * <p>Stored rows are weighed by their columnar encoding. Row maps that are not backed by it, and
+ * cell strings, are counted with typical 64-bit JVM overheads (compressed references); a flat
+ * amount is charged per classified column. Strings shared between rows are counted once.
+ */
+final class AnalysisWeigher {
+
+  private static final long OBJECT_OVERHEAD = 16;
+  private static final long STRING_OVERHEAD = 40;
+  private static final long MAP_ENTRY_OVERHEAD = 32;
+  private static final long LIST_SLOT = 4;
+  private static final long CLASSIFICATION_OVERHEAD = 512;
+  private static final long FIELD_OVERHEAD = 96;
+
+  private AnalysisWeigher() {}
+
+  static long estimate(AnalysisStorageService.StoredAnalysis analysis) {
+    Map<Object, Boolean> seen = new IdentityHashMap<>();
+    long bytes = OBJECT_OVERHEAD * 4;
+    bytes += strings(analysis.getColumns(), seen);
+    if (analysis.getTable() != null) {
+      bytes += analysis.getTable().estimateBytes();
+    }
+
+    TableClassificationResponse response = analysis.getResponse();
+    if (response != null) {
+      if (response.getData() != analysis.getData()) {
+        bytes += rows(response.getData(), seen);
+      }
+      if (response.getColumnClassifications() != null) {
+        bytes += response.getColumnClassifications().size() * CLASSIFICATION_OVERHEAD;
+      }
+    }
+
+    if (analysis.getFields() != null) {
+      for (AnalysisStorageService.FieldData field : analysis.getFields()) {
+        bytes += FIELD_OVERHEAD + string(field.getFieldName(), seen);
+        bytes += strings(field.getSampleValues(), seen);
+      }
+    }
+    if (analysis.getRowIndex() != null) {
+      bytes += analysis.getRowIndex().getIndexBytes();
+    }
+    return bytes;
+  }
+
+  private static long rows(List<Map<String, Object>> rows, Map<Object, Boolean> seen) {
+    if (rows == null) {
+      return 0;
+    }
+    long bytes = OBJECT_OVERHEAD + rows.size() * LIST_SLOT;
+    for (Map<String, Object> row : rows) {
+      bytes += OBJECT_OVERHEAD * 3 + row.size() * MAP_ENTRY_OVERHEAD;
+      for (Map.Entry<String, Object> cell : row.entrySet()) {
+        bytes += string(cell.getKey(), seen);
+        Object value = cell.getValue();
+        bytes += value instanceof String text ? string(text, seen) : value == null ? 0 : 16;
+      }
+    }
+    return bytes;
+  }
+
+  private static long strings(List<String> values, Map<Object, Boolean> seen) {
+    if (values == null) {
+      return 0;
+    }
+    long bytes = OBJECT_OVERHEAD + values.size() * LIST_SLOT;
+    for (String value : values) {
+      bytes += string(value, seen);
+    }
+    return bytes;
+  }
+
+  private static long string(String value, Map<Object, Boolean> seen) {
+    if (value == null || seen.put(value, Boolean.TRUE) != null) {
+      return 0;
+    }
+    return STRING_OVERHEAD + value.length();
+  }
+}
@@ -0,0 +1,18 @@
+package com.nl2fta.classifier.service.storage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the versions repositories stamp their catalog with. They are drawn from one counter, so
+ * a version names one state of one repository and switching repositories changes it too.
+ */
+final class CatalogVersions {
+
+  private static final AtomicLong LAST = new AtomicLong();
+
+  private CatalogVersions() {}
+
+  static long next() {
+    return LAST.incrementAndGet();
+  }
+}
@@ -0,0 +1,271 @@
+package com.nl2fta.classifier.service.storage;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable, dictionary-encoded columnar copy of a table's rows.
+ *
+ * <p>Each column keeps a dictionary of its distinct values and one {@code int} code per row that
+ * points into it. Rows holding an explicit {@code null} are marked in a per-column null bitmap;
+ * rows that lack the column altogether get the code {@value #ABSENT}. Because repeated values are
+ * stored once per column and rows cost four bytes per cell, the table is much smaller than the
+ * {@code List<Map<String, Object>>} it was built from.
+ *
+ * <p>{@link #rows()} exposes the table through the familiar row-map interface without materializing
+ * it: each row is a read-only view that decodes cells on access.
+ */
+public final class ColumnarTable {
+
+  static final int ABSENT = -1;
+
+  private static final int NULL_CODE = -2;
+
+  private final String[] columnNames;
+  private final Map<String, Integer> columnIndex;
+  private final Object[][] dictionaries;
+  private final int[][] codes;
+  private final long[][] nullBitmaps;
+  private final int rowCount;
+  private final List<Map<String, Object>> rowView;
+
+  private ColumnarTable(
+      String[] columnNames,
+      Object[][] dictionaries,
+      int[][] codes,
+      long[][] nullBitmaps,
+      int rows) {
+    this.columnNames = columnNames;
+    this.dictionaries = dictionaries;
+    this.codes = codes;
+    this.nullBitmaps = nullBitmaps;
+    this.rowCount = rows;
+    this.columnIndex = new HashMap<>(columnNames.length * 2);
+    for (int i = 0; i < columnNames.length; i++) {
+      columnIndex.put(columnNames[i], i);
+    }
+    this.rowView = new RowList();
+  }
+
+  /**
+   * Encodes rows column by column. Columns are ordered by first appearance across the rows, which
+   * preserves the header order of {@code LinkedHashMap} rows produced by the CSV parser.
+   *
+   * @param rows rows to encode; {@code null} yields an empty table
+   * @return columnar copy of the rows, or the existing table if {@code rows} is already a view
+   */
+  public static ColumnarTable encode(List<? extends Map<String, ?>> rows) {
+    if (rows instanceof ColumnarTable.RowList view) {
+      return view.table();
+    }
+    if (rows == null || rows.isEmpty()) {
+      return new ColumnarTable(new String[0], new Object[0][], new int[0][], new long[0][], 0);
+    }
+
+    Set<String> names = new LinkedHashSet<>();
+    for (Map<String, ?> row : rows) {
+      names.addAll(row.keySet());
+    }
+    String[] columnNames = names.toArray(new String[0]);
+    int rowCount = rows.size();
+    Object[][] dictionaries = new Object[columnNames.length][];
+    int[][] codes = new int[columnNames.length][];
+    long[][] nullBitmaps = new long[columnNames.length][];
+
+    for (int column = 0; column < columnNames.length; column++) {
+      String name = columnNames[column];
+      Map<Object, Integer> dictionary = new HashMap<>();
+      int[] columnCodes = new int[rowCount];
+      long[] nulls = null;
+      for (int row = 0; row < rowCount; row++) {
+        Map<String, ?> values = rows.get(row);
+        Object value = values.get(name);
+        if (value == null) {
+          if (values.containsKey(name)) {
+            if (nulls == null) {
+              nulls = new long[(rowCount + 63) >>> 6];
+            }
+            nulls[row >>> 6] |= 1L << row;
+            columnCodes[row] = NULL_CODE;
+          } else {
+            columnCodes[row] = ABSENT;
+          }
+          continue;
+        }
+        Integer code = dictionary.get(value);
+        if (code == null) {
+          code = dictionary.size();
+          dictionary.put(value, code);
+        }
+        columnCodes[row] = code;
+      }
+      Object[] values = new Object[dictionary.size()];
+      dictionary.forEach((value, code) -> values[code] = value);
+      dictionaries[column] = values;
+      codes[column] = columnCodes;
+      nullBitmaps[column] = nulls;
+    }
+    return new ColumnarTable(columnNames, dictionaries, codes, nullBitmaps, rowCount);
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public List<String> getColumnNames() {
+    return List.of(columnNames);
+  }
+
+  /** Distinct non-null values of a column, in order of first appearance. */
+  public List<Object> getDictionary(String column) {
+    Integer index = columnIndex.get(column);
+    return index == null ? List.of() : List.of(dictionaries[index]);
+  }
+
+  /** Number of rows holding each dictionary value, indexed like {@link #getDictionary}. */
+  public int[] countValues(String column) {
+    Integer index = columnIndex.get(column);
+    if (index == null) {
+      return new int[0];
+    }
+    int[] counts = new int[dictionaries[index].length];
+    for (int code : codes[index]) {
+      if (code >= 0) {
+        counts[code]++;
+      }
+    }
+    return counts;
+  }
+
+  /** Value of a cell, or {@code null} if it is null or the row lacks the column. */
+  public Object getValue(int row, String column) {
+    Integer index = columnIndex.get(column);
+    return index == null ? null : getValue(row, index);
+  }
+
+  public Object getValue(int row, int column) {
+    int code = codes[column][row];
+    return code < 0 ? null : dictionaries[column][code];
+  }
+
+  public boolean isNull(int row, int column) {
+    long[] nulls = nullBitmaps[column];
+    return nulls != null && (nulls[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /** Read-only row views over the table; rows decode their cells on access. */
+  public List<Map<String, Object>> rows() {
+    return rowView;
+  }
+
+  /** Approximate heap footprint of the table in bytes. */
+  public long estimateBytes() {
+    long bytes = 64L + columnNames.length * 48L;
+    for (int column = 0; column < columnNames.length; column++) {
+      bytes += 16 + codes[column].length * 4L;
+      bytes += nullBitmaps[column] != null ? 16 + nullBitmaps[column].length * 8L : 0;
+      bytes += 16 + dictionaries[column].length * 4L;
+      for (Object value : dictionaries[column]) {
+        bytes += value instanceof String text ? 40 + text.length() : 16;
+      }
+      bytes += 40 + columnNames[column].length();
+    }
+    return bytes;
+  }
+
+  private final class RowList extends AbstractList<Map<String, Object>> {
+
+    @Override
+    public Map<String, Object> get(int row) {
+      if (row < 0 || row >= rowCount) {
+        throw new IndexOutOfBoundsException("Row " + row + " outside 0.." + (rowCount - 1));
+      }
+      return new RowView(row);
+    }
+
+    @Override
+    public int size() {
+      return rowCount;
+    }
+
+    ColumnarTable table() {
+      return ColumnarTable.this;
+    }
+  }
+
+  /** One row as an ordered, read-only map from column name to value. */
+  private final class RowView extends AbstractMap<String, Object> {
+
+    private final int row;
+
+    RowView(int row) {
+      this.row = row;
+    }
+
+    @Override
+    public Object get(Object key) {
+      Integer column = columnIndex.get(key);
+      return column == null ? null : getValue(row, column);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      Integer column = columnIndex.get(key);
+      return column != null && codes[column][row] != ABSENT;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new Iterator<>() {
+            private int next = advance(0);
+
+            @Override
+            public boolean hasNext() {
+              return next < columnNames.length;
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int column = next;
+              next = advance(column + 1);
+              return new SimpleImmutableEntry<>(columnNames[column], getValue(row, column));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          int size = 0;
+          for (int[] columnCodes : codes) {
+            if (columnCodes[row] != ABSENT) {
+              size++;
+            }
+          }
+          return size;
+        }
+      };
+    }
+
+    private int advance(int from) {
+      int column = from;
+      while (column < columnNames.length && codes[column][row] == ABSENT) {
+        column++;
+      }
+      return column;
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.nl2fta.classifier.service.storage;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publishes {@link S3CustomSemanticTypeRepository} incremental sync counters and write-behind queue
+ * depth, failed writes and flush latency to Micrometer.
+ */
+@Component
+@RequiredArgsConstructor
+public class CustomSemanticTypeStorageMetrics implements MeterBinder {
+
+  private final S3CustomSemanticTypeRepository s3Repository;
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder(
+            "semantic.types.sync.tracked.count",
+            s3Repository,
+            repository -> repository.getSyncStats().getTrackedObjects())
+        .description("Semantic type objects in S3 whose ETag is known")
+        .register(registry);
+    FunctionCounter.builder(
+            "semantic.types.sync.runs",
+            s3Repository,
+            repository -> repository.getSyncStats().getSyncs())
+        .description("Syncs of the semantic type cache from S3")
+        .register(registry);
+    FunctionCounter.builder(
+            "semantic.types.sync.downloads",
+            s3Repository,
+            repository -> repository.getSyncStats().getDownloads())
+        .description("Semantic type objects downloaded because they were new or changed")
+        .register(registry);
+    FunctionCounter.builder(
+            "semantic.types.sync.downloads.skipped",
+            s3Repository,
+            repository -> repository.getSyncStats().getDownloadsSkipped())
+        .description("GET requests avoided because the object's ETag was unchanged")
+        .register(registry);
+    Gauge.builder(
+            "semantic.types.write.queue.depth",
+            s3Repository,
+            repository -> repository.getWriteBehindStats().getPendingWrites())
+        .description("Semantic type writes waiting to be flushed to S3")
+        .register(registry);
+    FunctionCounter.builder(
+            "semantic.types.write.coalesced",
+            s3Repository,
+            repository -> repository.getWriteBehindStats().getCoalescedWrites())
+        .description("Queued semantic type writes replaced by a later write of the same type")
+        .register(registry);
+    Gauge.builder(
+            "semantic.types.write.retry.depth",
+            s3Repository,
+            repository -> repository.getWriteBehindStats().getRetryingWrites())
+        .description("Queued semantic type writes waiting to be retried after failing")
+        .register(registry);
+    FunctionCounter.builder(
+            "semantic.types.write.failures",
+            s3Repository,
+            repository -> repository.getWriteBehindStats().getFailedWrites())
+        .description("Semantic type PUTs and deletions that failed and were queued again")
+        .register(registry);
+    FunctionTimer.builder(
+            "semantic.types.write.flush",
+            s3Repository,
+            repository -> repository.getWriteBehindStats().getFlushes(),
+            repository -> repository.getWriteBehindStats().getFlushNanos(),
+            TimeUnit.NANOSECONDS)
+        .description("Flushes of the semantic type write-behind queue to S3")
+        .register(registry);
+  }
+}
@@ -34,6 +34,7 @@ public class FileBasedCustomSemanticTypeRepository implements ICustomSemanticTyp
   private final ApplicationProperties applicationProperties;
   private final Map<String, CustomSemanticType> customTypes = new ConcurrentHashMap<>();
   private Path customTypesFile;
+  private volatile long catalogVersion = CatalogVersions.next();
 
   @PostConstruct
   public void init() {
@@ -67,6 +68,7 @@ public class FileBasedCustomSemanticTypeRepository implements ICustomSemanticTyp
   @Override
   public CustomSemanticType save(CustomSemanticType customType) {
     customTypes.put(customType.getSemanticType(), customType);
+    catalogVersion = CatalogVersions.next();
     saveCustomTypes();
     return customType;
   }
@@ -112,6 +114,7 @@ public class FileBasedCustomSemanticTypeRepository implements ICustomSemanticTyp
     }
     CustomSemanticType removed = customTypes.remove(semanticType);
     if (removed != null) {
+      catalogVersion = CatalogVersions.next();
       saveCustomTypes();
       return true;
     }
@@ -129,6 +132,7 @@ public class FileBasedCustomSemanticTypeRepository implements ICustomSemanticTyp
   public CustomSemanticType update(String oldSemanticType, CustomSemanticType newCustomType) {
     customTypes.remove(oldSemanticType);
     customTypes.put(newCustomType.getSemanticType(), newCustomType);
+    catalogVersion = CatalogVersions.next();
     saveCustomTypes();
     return newCustomType;
   }
@@ -157,6 +161,12 @@ public class FileBasedCustomSemanticTypeRepository implements ICustomSemanticTyp
   public void reload() {
     customTypes.clear();
     loadCustomTypes();
+    catalogVersion = CatalogVersions.next();
+  }
+
+  @Override
+  public long getCatalogVersion() {
+    return catalogVersion;
   }
 
   /**
@@ -139,6 +139,14 @@ public class HybridCustomSemanticTypeRepository implements ICustomSemanticTypeRe
     return s3Initialized && awsCredentialsService.areCredentialsAvailable();
   }
 
+  /**
+   * Check if we're using S3 storage and its last sync loaded every type in the bucket, so a type
+   * missing from the repository was deleted rather than not yet read.
+   */
+  public boolean isCatalogSynced() {
+    return isUsingS3Storage() && s3Repository.isFullySynced();
+  }
+
   /** Check if we're currently using file-based storage. */
   public boolean isUsingFileStorage() {
     return !isUsingS3Storage();
@@ -226,6 +234,13 @@ public class HybridCustomSemanticTypeRepository implements ICustomSemanticTypeRe
         "Reloaded semantic types using {} repository", isUsingS3Storage() ? "S3" : "file-based");
   }
 
+  @Override
+  public long getCatalogVersion() {
+    ICustomSemanticTypeRepository activeRepo =
+        isUsingS3Storage() ? getActiveRepository() : fileBasedRepository;
+    return activeRepo.getCatalogVersion();
+  }
+
   @Override
   public Map<String, CustomSemanticType> getInternalMap() {
     ICustomSemanticTypeRepository activeRepo =
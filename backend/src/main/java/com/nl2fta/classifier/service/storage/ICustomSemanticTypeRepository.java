@@ -60,6 +60,14 @@ public interface ICustomSemanticTypeRepository {
   /** Reloads custom types from persistent storage. */
   void reload();
 
+  /**
+   * Version of the types held, which changes whenever one is saved, updated, deleted or loaded.
+   * Versions are unique across repositories, so equal versions mean the same types.
+   *
+   * @return the current catalog version
+   */
+  long getCatalogVersion();
+
   /**
    * Gets a defensive copy of the internal map for advanced operations.
    *
@@ -0,0 +1,260 @@
+package com.nl2fta.classifier.service.storage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.BytesWrapper;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Lists and downloads many objects under an S3 prefix. Listings follow continuation tokens, so
+ * prefixes with more than 1000 objects are read completely. Downloads go through the {@link
+ * S3AsyncClient} with at most {@code maxConcurrency} requests in flight, or one at a time through
+ * the {@link S3Client} when no asynchronous client is available.
+ *
+ * <p>Throttling, server errors and client-side (network) failures are retried up to {@code
+ * maxAttempts} times in total, with exponential backoff and jitter starting at {@code backoff}.
+ * Missing keys and other client errors are not retried.
+ */
+@Slf4j
+public final class S3BulkFetcher {
+
+  private static final Duration MAX_BACKOFF = Duration.ofSeconds(5);
+
+  private final S3Client client;
+  private final S3AsyncClient asyncClient;
+  private final int maxConcurrency;
+  private final int maxAttempts;
+  private final Duration backoff;
+
+  /**
+   * @param asyncClient client for concurrent downloads, or null to download sequentially
+   * @throws IllegalArgumentException if {@code maxConcurrency} or {@code maxAttempts} is below 1 or
+   *     {@code backoff} is negative
+   */
+  public S3BulkFetcher(
+      S3Client client,
+      S3AsyncClient asyncClient,
+      int maxConcurrency,
+      int maxAttempts,
+      Duration backoff) {
+    if (maxConcurrency < 1 || maxAttempts < 1 || backoff.isNegative()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Invalid S3 fetch settings: maxConcurrency=%d, maxAttempts=%d, backoff=%s",
+              maxConcurrency, maxAttempts, backoff));
+    }
+    this.client = client;
+    this.asyncClient = asyncClient;
+    this.maxConcurrency = maxConcurrency;
+    this.maxAttempts = maxAttempts;
+    this.backoff = backoff;
+  }
+
+  /** Lists every object under {@code prefix}, following continuation tokens. */
+  public List<S3Object> list(String bucket, String prefix) {
+    List<S3Object> objects = new ArrayList<>();
+    String continuationToken = null;
+    do {
+      ListObjectsV2Request.Builder request =
+          ListObjectsV2Request.builder().bucket(bucket).prefix(prefix);
+      if (continuationToken != null) {
+        request.continuationToken(continuationToken);
+      }
+      ListObjectsV2Response response = client.listObjectsV2(request.build());
+      objects.addAll(response.contents());
+      continuationToken = response.nextContinuationToken();
+    } while (continuationToken != null);
+    return objects;
+  }
+
+  /** Keys of every object under {@code prefix}. */
+  public List<String> listKeys(String bucket, String prefix) {
+    return list(bucket, prefix).stream().map(S3Object::key).toList();
+  }
+
+  /**
+   * Downloads one object, retrying transient failures.
+   *
+   * @throws NoSuchKeyException if the object does not exist
+   * @throws RuntimeException the last failure once retries are exhausted
+   */
+  public byte[] get(String bucket, String key) {
+    if (asyncClient == null) {
+      return getWithRetry(bucket, key);
+    }
+    try {
+      return getAsync(bucket, key, 1, new AtomicInteger()).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while downloading " + key, e);
+    } catch (ExecutionException e) {
+      throw asRuntime(e.getCause());
+    }
+  }
+
+  /**
+   * Downloads the given objects. Objects that are missing, or still failing once retries are
+   * exhausted, are logged and left out.
+   *
+   * @return content by key, in the order of {@code keys}
+   */
+  public Map<String, byte[]> fetch(String bucket, Collection<String> keys) {
+    long start = System.currentTimeMillis();
+    AtomicInteger retries = new AtomicInteger();
+    Map<String, byte[]> results = new LinkedHashMap<>();
+    if (asyncClient == null) {
+      for (String key : keys) {
+        try {
+          results.put(key, getWithRetry(bucket, key));
+        } catch (RuntimeException e) {
+          logFailure(key, e);
+        }
+      }
+    } else {
+      Map<String, CompletableFuture<byte[]>> pending = new LinkedHashMap<>();
+      Semaphore permits = new Semaphore(maxConcurrency);
+      for (String key : keys) {
+        try {
+          permits.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          pending.values().forEach(future -> future.cancel(true));
+          throw new IllegalStateException("Interrupted while downloading from S3", e);
+        }
+        pending.put(
+            key,
+            getAsync(bucket, key, 1, retries).whenComplete((data, error) -> permits.release()));
+      }
+      for (Map.Entry<String, CompletableFuture<byte[]>> entry : pending.entrySet()) {
+        try {
+          results.put(entry.getKey(), entry.getValue().join());
+        } catch (CompletionException e) {
+          logFailure(entry.getKey(), e.getCause());
+        }
+      }
+    }
+    log.debug(
+        "Fetched {} of {} objects from bucket {} in {} ms ({} retries)",
+        results.size(),
+        keys.size(),
+        bucket,
+        System.currentTimeMillis() - start,
+        retries.get());
+    return results;
+  }
+
+  private CompletableFuture<byte[]> getAsync(
+      String bucket, String key, int attempt, AtomicInteger retries) {
+    CompletableFuture<byte[]> download;
+    try {
+      download =
+          asyncClient
+              .getObject(
+                  GetObjectRequest.builder().bucket(bucket).key(key).build(),
+                  AsyncResponseTransformer.toBytes())
+              .thenApply(BytesWrapper::asByteArray);
+    } catch (RuntimeException e) {
+      download = CompletableFuture.failedFuture(e);
+    }
+    return download
+        .handle(
+            (data, error) -> {
+              if (error == null) {
+                return CompletableFuture.completedFuture(data);
+              }
+              Throwable cause = unwrap(error);
+              if (attempt >= maxAttempts || !isRetryable(cause)) {
+                return CompletableFuture.<byte[]>failedFuture(cause);
+              }
+              retries.incrementAndGet();
+              return CompletableFuture.runAsync(
+                      () -> {},
+                      CompletableFuture.delayedExecutor(
+                          backoffMillis(attempt), TimeUnit.MILLISECONDS))
+                  .thenCompose(ignored -> getAsync(bucket, key, attempt + 1, retries));
+            })
+        .thenCompose(future -> future);
+  }
+
+  private byte[] getWithRetry(String bucket, String key) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return client
+            .getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(key).build())
+            .asByteArray();
+      } catch (RuntimeException e) {
+        if (attempt >= maxAttempts || !isRetryable(e)) {
+          throw e;
+        }
+        try {
+          Thread.sleep(backoffMillis(attempt));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  // Exponential backoff with "equal jitter": half the delay is fixed, half random
+  private long backoffMillis(int attempt) {
+    long delay = Math.min(MAX_BACKOFF.toMillis(), backoff.toMillis() << Math.min(attempt - 1, 20));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  private static boolean isRetryable(Throwable error) {
+    if (error instanceof NoSuchKeyException) {
+      return false;
+    }
+    if (error instanceof S3Exception s3Error) {
+      int status = s3Error.statusCode();
+      return status >= 500 || status == 429 || status == 408 || s3Error.isThrottlingException();
+    }
+    return error instanceof SdkClientException;
+  }
+
+  private static Throwable unwrap(Throwable error) {
+    Throwable cause = error;
+    while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+        && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+
+  private static RuntimeException asRuntime(Throwable error) {
+    Throwable cause = unwrap(error);
+    return cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+  }
+
+  private static void logFailure(String key, Throwable error) {
+    Throwable cause = unwrap(error);
+    if (cause instanceof NoSuchKeyException) {
+      log.debug("Object {} disappeared before it could be downloaded", key);
+    } else {
+      log.error("Failed to download object '{}': {}", key, cause.getMessage());
+    }
+  }
+}
@@ -1,15 +1,22 @@
 package com.nl2fta.classifier.service.storage;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
@@ -21,25 +28,45 @@ import com.nl2fta.classifier.service.aws.AwsCredentialsService;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.CreateBucketConfiguration;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
 /**
  * S3-based implementation of the custom semantic type repository. Stores each semantic type as an
  * individual JSON file in S3, with local caching for performance.
+ *
+ * <p>The cache is kept in sync incrementally: the repository remembers the ETag of every object it
+ * has read or written, so a periodic sync lists the prefix and downloads only objects that are new
+ * or whose ETag changed. When nothing changed, a sync costs a single LIST request.
+ *
+ * <p>Every write is also recorded in a consolidated {@link S3SemanticTypeCatalog}, which a cold
+ * start reads in a constant number of GETs before the first listing confirms it.
+ *
+ * <p>In asynchronous mode, writes go through a write-behind queue keyed by object: repeated writes
+ * of the same type are coalesced into one PUT, deletions are sent together through DeleteObjects,
+ * and the queue is flushed once it holds {@code max-batch} writes, {@code flush-interval-ms} after
+ * the first queued write, before a reload, before reconnecting and on shutdown. A write that fails
+ * goes back on the queue, unless a newer write of the type took its place, and is retried after a
+ * backoff that doubles from {@code retry-backoff-ms} up to {@code max-retry-backoff-ms}.
  */
 @Slf4j
 @Repository
@@ -58,13 +85,105 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
   private final String semanticTypesPrefix = "semantic-types/";
 
   private S3Client s3Client;
+  private S3AsyncClient s3AsyncClient;
   private final Map<String, CustomSemanticType> cache = new ConcurrentHashMap<>();
-  private ScheduledExecutorService scheduler;
+  // Replaced after every change to the cache
+  private volatile long catalogVersion = CatalogVersions.next();
+  // Last-seen ETag and semantic type of every object key the cache reflects
+  private final Map<String, SyncedObject> syncedObjects = new ConcurrentHashMap<>();
+  private final AtomicLong syncs = new AtomicLong();
+  private final AtomicLong downloads = new AtomicLong();
+  private final AtomicLong downloadsSkipped = new AtomicLong();
+  private volatile ScheduledExecutorService scheduler;
   private volatile boolean initialized = false;
+  // Whether the last sync listed the bucket and loaded every type in it, so the cache holds the
+  // whole catalog; a failed or partial sync leaves it false until a sync completes
+  private volatile boolean fullySynced;
 
   @Value("${aws.s3.semantic-types.async-persist:true}")
   private boolean asyncPersist;
 
+  @Value("${aws.s3.fetch.max-concurrency:16}")
+  private int fetchMaxConcurrency;
+
+  @Value("${aws.s3.fetch.max-attempts:3}")
+  private int fetchMaxAttempts;
+
+  @Value("${aws.s3.fetch.backoff-ms:200}")
+  private long fetchBackoffMs;
+
+  @Value("${aws.s3.semantic-types.catalog.enabled:true}")
+  private boolean catalogEnabled;
+
+  @Value("${aws.s3.semantic-types.catalog.compact-interval-seconds:300}")
+  private long catalogCompactIntervalSeconds;
+
+  private S3SemanticTypeCatalog catalog;
+
+  @Value("${aws.s3.semantic-types.write-behind.max-batch:100}")
+  private int writeBehindMaxBatch;
+
+  @Value("${aws.s3.semantic-types.write-behind.flush-interval-ms:1000}")
+  private long writeBehindFlushIntervalMs;
+
+  @Value("${aws.s3.semantic-types.write-behind.retry-backoff-ms:1000}")
+  private long writeBehindRetryBackoffMs;
+
+  @Value("${aws.s3.semantic-types.write-behind.max-retry-backoff-ms:60000}")
+  private long writeBehindMaxRetryBackoffMs;
+
+  private static final int MAX_DELETE_BATCH = 1000;
+
+  // Writes waiting for the next flush, by object key, in the order they were first queued
+  private final Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+  // System.nanoTime() by which a scheduled flush runs, 0 when none is
+  private long flushDueNanos;
+  private boolean flushRequested;
+  private final AtomicLong coalescedWrites = new AtomicLong();
+  private final AtomicLong failedWrites = new AtomicLong();
+  private final AtomicLong flushes = new AtomicLong();
+  private final AtomicLong flushNanos = new AtomicLong();
+
+  /** Point-in-time view of the incremental sync. */
+  @Data
+  @Builder
+  public static class SyncStats {
+    private int trackedObjects;
+    private long syncs;
+    private long downloads;
+    private long downloadsSkipped;
+  }
+
+  /** Point-in-time view of the write-behind queue. */
+  @Data
+  @Builder
+  public static class WriteBehindStats {
+    private int pendingWrites;
+    private int retryingWrites;
+    private long coalescedWrites;
+    private long failedWrites;
+    private long flushes;
+    private long flushNanos;
+  }
+
+  private record SyncedObject(String eTag, String semanticType) {}
+
+  /**
+   * A queued write; a null {@code type} deletes the object. A write that failed {@code failures}
+   * times is not retried before {@code retryAtNanos}.
+   */
+  private record PendingWrite(
+      String semanticType, CustomSemanticType type, int failures, long retryAtNanos) {
+
+    PendingWrite(String semanticType, CustomSemanticType type) {
+      this(semanticType, type, 0, 0);
+    }
+
+    boolean isDue(long now) {
+      return failures == 0 || now - retryAtNanos >= 0;
+    }
+  }
+
   public S3CustomSemanticTypeRepository(
       AwsCredentialsService awsCredentialsService, ObjectMapper objectMapper) {
     this.awsCredentialsService = awsCredentialsService;
@@ -84,6 +203,9 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
   public void initializeWithCredentials() {
     log.debug("Initializing S3 custom semantic type repository with credentials");
 
+    // Writes queued under the current connection go out before it is replaced
+    retireScheduler();
+
     // Set bucket name from configuration if available
     if (configuredBucketName != null && !configuredBucketName.trim().isEmpty()) {
       bucketName = configuredBucketName;
@@ -123,22 +245,20 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
               .region(Region.of(awsCredentialsService.getRegion()))
               .credentialsProvider(awsCredentialsService.getCredentialsProvider())
               .build();
+      this.s3AsyncClient =
+          S3AsyncClient.builder()
+              .region(Region.of(awsCredentialsService.getRegion()))
+              .credentialsProvider(awsCredentialsService.getCredentialsProvider())
+              .build();
       log.info("S3 client built successfully");
 
-      // Clean up any existing scheduler first
-      if (scheduler != null && !scheduler.isShutdown()) {
-        log.info("Shutting down existing scheduler before creating new one");
-        scheduler.shutdownNow();
-        try {
-          scheduler.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException ie) {
-          Thread.currentThread().interrupt();
-        }
-      }
-
       // Create new scheduler
       log.info("Creating new scheduler for periodic sync");
-      scheduler = Executors.newSingleThreadScheduledExecutor();
+      ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+      // Shutting down drops the waiting syncs and flushes but lets a running one finish
+      executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      executor.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+      scheduler = executor;
 
       // Ensure bucket exists
       log.info("Ensuring bucket exists...");
@@ -146,18 +266,35 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
           "BUCKET NAME TO BE USED: {} (Region: {})", bucketName, awsCredentialsService.getRegion());
       ensureBucketExists();
 
-      // Load initial data immediately
-      log.info("Loading initial data from S3...");
-      reload();
+      catalog =
+          catalogEnabled
+              ? new S3SemanticTypeCatalog(s3Client, newFetcher(), objectMapper, bucketName)
+              : null;
 
       // Keep initial quick syncs so the cache reflects connection rapidly
-      scheduler.schedule(this::syncFromS3, 5, TimeUnit.SECONDS);
-      scheduler.schedule(this::syncFromS3, 15, TimeUnit.SECONDS);
-      scheduler.schedule(this::syncFromS3, 30, TimeUnit.SECONDS);
-      scheduler.scheduleAtFixedRate(this::syncFromS3, 60, 60, TimeUnit.SECONDS);
+      scheduler.schedule(() -> syncFromS3(false), 5, TimeUnit.SECONDS);
+      scheduler.schedule(() -> syncFromS3(false), 15, TimeUnit.SECONDS);
+      scheduler.schedule(() -> syncFromS3(false), 30, TimeUnit.SECONDS);
+      scheduler.scheduleAtFixedRate(() -> syncFromS3(false), 60, 60, TimeUnit.SECONDS);
       log.info("Scheduled periodic sync every 60 seconds with early warm-ups");
+      if (catalog != null && catalogCompactIntervalSeconds > 0) {
+        scheduler.scheduleWithFixedDelay(
+            this::compactCatalog,
+            catalogCompactIntervalSeconds,
+            catalogCompactIntervalSeconds,
+            TimeUnit.SECONDS);
+      }
 
       initialized = true;
+      // Load initial data immediately; the sync it ends with skips an uninitialized repository
+      log.info("Loading initial data from S3...");
+      loadInitialData();
+      // Writes queued while reconnecting
+      synchronized (pendingWrites) {
+        if (!pendingWrites.isEmpty()) {
+          scheduleFlush(0);
+        }
+      }
       log.info(
           "S3CustomSemanticTypeRepository initialized successfully with bucket: {}", bucketName);
       log.info("=== End S3CustomSemanticTypeRepository.initializeWithCredentials() ===");
@@ -175,18 +312,53 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
         s3Client.close();
         s3Client = null;
       }
+      if (s3AsyncClient != null) {
+        s3AsyncClient.close();
+        s3AsyncClient = null;
+      }
       throw new RuntimeException("Failed to initialize S3 repository", e);
     }
   }
 
+  /**
+   * Stops the scheduler, letting a running sync or flush finish, then writes out everything still
+   * queued. Writes queued meanwhile wait for the next scheduler.
+   */
+  private void retireScheduler() {
+    ScheduledExecutorService previous = scheduler;
+    if (previous == null || previous.isShutdown()) {
+      return;
+    }
+    log.info("Shutting down existing scheduler before creating new one");
+    previous.shutdown();
+    try {
+      if (!previous.awaitTermination(5, TimeUnit.SECONDS)) {
+        log.warn("Scheduler did not finish its running task in 5 seconds");
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    // The flushes it had waiting were dropped with it
+    synchronized (pendingWrites) {
+      flushDueNanos = 0;
+      flushRequested = false;
+    }
+    flushWrites(true);
+  }
+
   @PreDestroy
   public void cleanup() {
+    // Write out what is still queued while the client is open
+    flushWrites(true);
     if (scheduler != null && !scheduler.isShutdown()) {
       scheduler.shutdown();
     }
     if (s3Client != null) {
       s3Client.close();
     }
+    if (s3AsyncClient != null) {
+      s3AsyncClient.close();
+    }
     initialized = false;
   }
 
@@ -247,21 +419,11 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
   public CustomSemanticType save(CustomSemanticType customType) {
     // Add to cache
     cache.put(customType.getSemanticType(), customType);
+    catalogVersion = CatalogVersions.next();
 
     // Persist to S3
     if (asyncPersist && scheduler != null) {
-      scheduler.execute(
-          () -> {
-            try {
-              persistIndividualToS3(customType);
-              log.info("Persisted semantic type '{}' to S3 (async)", customType.getSemanticType());
-            } catch (Exception e) {
-              log.error(
-                  "Failed to persist semantic type '{}' to S3 (async)",
-                  customType.getSemanticType(),
-                  e);
-            }
-          });
+      enqueueWrite(customType.getSemanticType(), customType);
     } else {
       try {
         persistIndividualToS3(customType);
@@ -270,6 +432,7 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
         log.error("Failed to persist to S3", e);
         // Remove from cache on failure to maintain consistency in sync mode
         cache.remove(customType.getSemanticType());
+        catalogVersion = CatalogVersions.next();
         throw new RuntimeException("Failed to save semantic type", e);
       }
     }
@@ -301,16 +464,9 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
     }
     CustomSemanticType removed = cache.remove(semanticType);
     if (removed != null) {
+      catalogVersion = CatalogVersions.next();
       if (asyncPersist && scheduler != null) {
-        scheduler.execute(
-            () -> {
-              try {
-                deleteIndividualFromS3(semanticType);
-                log.info("Deleted semantic type '{}' from S3 (async)", semanticType);
-              } catch (Exception e) {
-                log.error("Failed to delete semantic type '{}' from S3 (async)", semanticType, e);
-              }
-            });
+        enqueueWrite(semanticType, null);
       } else {
         // Delete individual file from S3 synchronously for consistency
         try {
@@ -320,6 +476,7 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
           log.error("Failed to delete from S3", e);
           // Re-add to cache on failure
           cache.put(semanticType, removed);
+          catalogVersion = CatalogVersions.next();
           throw new RuntimeException("Failed to delete semantic type", e);
         }
       }
@@ -342,23 +499,13 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
       cache.remove(semanticType);
     }
     cache.put(updatedType.getSemanticType(), updatedType);
+    catalogVersion = CatalogVersions.next();
 
     if (asyncPersist && scheduler != null) {
-      scheduler.execute(
-          () -> {
-            try {
-              persistIndividualToS3(updatedType);
-              if (nameChanged) {
-                deleteIndividualFromS3(semanticType);
-              }
-              log.info("Updated semantic type '{}' in S3 (async)", semanticType);
-            } catch (Exception e) {
-              log.error(
-                  "Failed to persist update to S3 (async) for '{}'",
-                  updatedType.getSemanticType(),
-                  e);
-            }
-          });
+      enqueueWrite(updatedType.getSemanticType(), updatedType);
+      if (nameChanged) {
+        enqueueWrite(semanticType, null);
+      }
     } else {
       // Persist to S3 synchronously for consistency
       try {
@@ -378,6 +525,7 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
         if (oldType != null) {
           cache.put(semanticType, oldType);
         }
+        catalogVersion = CatalogVersions.next();
         throw new RuntimeException("Failed to update semantic type", e);
       }
     }
@@ -390,9 +538,57 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
     return new ArrayList<>(cache.values());
   }
 
+  /**
+   * Brings the cache in line with S3. Unchanged objects are not downloaded again, but unlike the
+   * periodic sync, cache entries that are not backed by any object in S3 are dropped.
+   */
   @Override
   public void reload() {
-    syncFromS3();
+    // Queued writes first, so they are not dropped as unbacked
+    flushWrites(true);
+    syncFromS3(true);
+  }
+
+  /** Current depth and lifetime counters of the write-behind queue. */
+  public WriteBehindStats getWriteBehindStats() {
+    int pending;
+    int retrying;
+    synchronized (pendingWrites) {
+      pending = pendingWrites.size();
+      retrying =
+          (int) pendingWrites.values().stream().filter(write -> write.failures() > 0).count();
+    }
+    return WriteBehindStats.builder()
+        .pendingWrites(pending)
+        .retryingWrites(retrying)
+        .coalescedWrites(coalescedWrites.get())
+        .failedWrites(failedWrites.get())
+        .flushes(flushes.get())
+        .flushNanos(flushNanos.get())
+        .build();
+  }
+
+  /**
+   * Whether the cache holds the whole catalog in S3: the last sync listed the bucket and loaded
+   * every type listed. Only then does a type missing from {@link #findAll()} mean it was deleted.
+   */
+  public boolean isFullySynced() {
+    return initialized && fullySynced;
+  }
+
+  @Override
+  public long getCatalogVersion() {
+    return catalogVersion;
+  }
+
+  /** Lifetime counters of the incremental sync. */
+  public SyncStats getSyncStats() {
+    return SyncStats.builder()
+        .trackedObjects(syncedObjects.size())
+        .syncs(syncs.get())
+        .downloads(downloads.get())
+        .downloadsSkipped(downloadsSkipped.get())
+        .build();
   }
 
   @Override
@@ -403,16 +599,9 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
   /** Persist individual semantic type to S3. */
   private void persistIndividualToS3(CustomSemanticType semanticType) {
     try {
-      String key = semanticTypesPrefix + sanitizeForS3Key(semanticType.getSemanticType()) + ".json";
-      String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(semanticType);
-
-      s3Client.putObject(
-          PutObjectRequest.builder()
-              .bucket(bucketName)
-              .key(key)
-              .contentType("application/json")
-              .build(),
-          RequestBody.fromString(json, StandardCharsets.UTF_8));
+      String key = objectKey(semanticType.getSemanticType());
+      String eTag = putToS3(key, semanticType);
+      recordInCatalog(() -> catalog.recordPut(key, eTag, semanticType));
 
       log.debug(
           "Persisted semantic type '{}' to S3 at key '{}'", semanticType.getSemanticType(), key);
@@ -426,9 +615,11 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
   /** Delete individual semantic type from S3. */
   private void deleteIndividualFromS3(String semanticType) {
     try {
-      String key = semanticTypesPrefix + sanitizeForS3Key(semanticType) + ".json";
+      String key = objectKey(semanticType);
 
       s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(key).build());
+      syncedObjects.remove(key);
+      recordInCatalog(() -> catalog.recordDelete(key));
 
       log.debug("Deleted semantic type '{}' from S3 at key '{}'", semanticType, key);
 
@@ -438,8 +629,315 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
     }
   }
 
-  /** Sync cache from S3. */
-  private void syncFromS3() {
+  /** Writes one semantic type object and returns its ETag, or null if S3 returned none. */
+  private String putToS3(String key, CustomSemanticType semanticType) throws Exception {
+    String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(semanticType);
+
+    PutObjectResponse response =
+        s3Client.putObject(
+            PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType("application/json")
+                .build(),
+            RequestBody.fromString(json, StandardCharsets.UTF_8));
+
+    // Our own write need not be downloaded again by the next sync
+    String eTag = response == null ? null : response.eTag();
+    if (eTag != null) {
+      syncedObjects.put(key, new SyncedObject(eTag, semanticType.getSemanticType()));
+    } else {
+      syncedObjects.remove(key);
+    }
+    return eTag;
+  }
+
+  /**
+   * Queues a write of {@code type}, or a deletion when it is null, replacing any write of the same
+   * type still waiting. Schedules a flush after the flush interval, or right away once the queue
+   * holds a full batch.
+   */
+  private void enqueueWrite(String semanticType, CustomSemanticType type) {
+    String key = objectKey(semanticType);
+    synchronized (pendingWrites) {
+      if (pendingWrites.put(key, new PendingWrite(semanticType, type)) != null) {
+        coalescedWrites.incrementAndGet();
+      }
+      if (pendingWrites.size() >= Math.max(1, writeBehindMaxBatch)) {
+        if (!flushRequested) {
+          try {
+            scheduler.execute(this::flushWrites);
+            flushRequested = true;
+          } catch (RejectedExecutionException e) {
+            log.debug("Scheduler is being replaced; write stays queued for the next one");
+          }
+        }
+      } else {
+        scheduleFlush(Math.max(0, writeBehindFlushIntervalMs));
+      }
+    }
+  }
+
+  // Makes sure a flush runs within delayMs; call holding pendingWrites
+  private void scheduleFlush(long delayMs) {
+    long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs);
+    if (flushDueNanos != 0 && flushDueNanos - due <= 0) {
+      return;
+    }
+    try {
+      scheduler.schedule(() -> flushWrites(false), delayMs, TimeUnit.MILLISECONDS);
+      flushDueNanos = due;
+    } catch (RejectedExecutionException e) {
+      log.debug("Scheduler is being replaced; writes stay queued for the next one");
+    }
+  }
+
+  private void flushWrites() {
+    flushWrites(false);
+  }
+
+  /**
+   * Writes out the queued changes: one PUT per changed type, and one DeleteObjects request per 1000
+   * deletions. The catalog records the whole flush as a single delta. Failed writes are queued
+   * again with a backoff and a flush is scheduled for when the first of them is due.
+   *
+   * @param all also write the ones still backing off, as before a reload or shutdown
+   */
+  private synchronized void flushWrites(boolean all) {
+    if (!initialized || s3Client == null) {
+      return;
+    }
+    Map<String, PendingWrite> batch = new LinkedHashMap<>();
+    long now = System.nanoTime();
+    synchronized (pendingWrites) {
+      flushDueNanos = 0;
+      flushRequested = false;
+      Iterator<Map.Entry<String, PendingWrite>> queued = pendingWrites.entrySet().iterator();
+      while (queued.hasNext()) {
+        Map.Entry<String, PendingWrite> write = queued.next();
+        if (all || write.getValue().isDue(now)) {
+          batch.put(write.getKey(), write.getValue());
+          queued.remove();
+        }
+      }
+      if (batch.isEmpty()) {
+        scheduleRetry();
+        return;
+      }
+    }
+
+    long start = System.nanoTime();
+    List<S3SemanticTypeCatalog.Entry> changes = new ArrayList<>();
+    List<String> deletions = new ArrayList<>();
+    int failed = 0;
+    for (Map.Entry<String, PendingWrite> write : batch.entrySet()) {
+      CustomSemanticType type = write.getValue().type();
+      if (type == null) {
+        deletions.add(write.getKey());
+        continue;
+      }
+      try {
+        String eTag = putToS3(write.getKey(), type);
+        changes.add(new S3SemanticTypeCatalog.Entry(write.getKey(), eTag, type));
+      } catch (Exception e) {
+        failed++;
+        log.error("Failed to persist semantic type '{}' to S3 (async)", type.getSemanticType(), e);
+        requeue(write.getKey(), write.getValue());
+      }
+    }
+    for (int from = 0; from < deletions.size(); from += MAX_DELETE_BATCH) {
+      List<String> chunk =
+          deletions.subList(from, Math.min(deletions.size(), from + MAX_DELETE_BATCH));
+      try {
+        DeleteObjectsResponse response =
+            s3Client.deleteObjects(
+                DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(
+                        Delete.builder()
+                            .objects(
+                                chunk.stream()
+                                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                                    .toList())
+                            .quiet(true)
+                            .build())
+                    .build());
+        // Quiet mode reports only the keys that could not be deleted
+        Set<String> errors = new HashSet<>();
+        if (response != null) {
+          for (S3Error error : response.errors()) {
+            errors.add(error.key());
+            log.error(
+                "Failed to delete semantic type object '{}' from S3 (async): {}",
+                error.key(),
+                error.message());
+          }
+        }
+        for (String key : chunk) {
+          if (errors.contains(key)) {
+            requeue(key, batch.get(key));
+          } else {
+            syncedObjects.remove(key);
+            changes.add(new S3SemanticTypeCatalog.Entry(key, null, null));
+          }
+        }
+        failed += errors.size();
+      } catch (Exception e) {
+        failed += chunk.size();
+        log.error("Failed to delete {} semantic types from S3 (async)", chunk.size(), e);
+        chunk.forEach(key -> requeue(key, batch.get(key)));
+      }
+    }
+    recordInCatalog(() -> catalog.record(changes));
+    if (failed > 0) {
+      synchronized (pendingWrites) {
+        scheduleRetry();
+      }
+    }
+
+    long elapsed = System.nanoTime() - start;
+    flushes.incrementAndGet();
+    flushNanos.addAndGet(elapsed);
+    log.info(
+        "Flushed {} semantic type writes to S3 ({} deletions, {} failed) in {} ms",
+        batch.size(),
+        deletions.size(),
+        failed,
+        elapsed / 1_000_000);
+  }
+
+  // Queues a failed write again with a doubled backoff, unless a newer write of the type is queued
+  private void requeue(String key, PendingWrite write) {
+    failedWrites.incrementAndGet();
+    int failures = write.failures() + 1;
+    long backoffMs =
+        Math.min(
+            Math.max(0, writeBehindMaxRetryBackoffMs),
+            Math.max(0, writeBehindRetryBackoffMs) << Math.min(failures - 1, 20));
+    synchronized (pendingWrites) {
+      pendingWrites.putIfAbsent(
+          key,
+          new PendingWrite(
+              write.semanticType(),
+              write.type(),
+              failures,
+              System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs)));
+    }
+  }
+
+  // Schedules a flush for when the first failed write is due again; call holding pendingWrites
+  private void scheduleRetry() {
+    long now = System.nanoTime();
+    pendingWrites.values().stream()
+        .filter(write -> write.failures() > 0)
+        .mapToLong(write -> Math.max(0, write.retryAtNanos() - now))
+        .min()
+        .ifPresent(wait -> scheduleFlush(TimeUnit.NANOSECONDS.toMillis(wait) + 1));
+  }
+
+  private boolean hasPendingWrite(String key) {
+    synchronized (pendingWrites) {
+      return pendingWrites.containsKey(key);
+    }
+  }
+
+  private String objectKey(String semanticType) {
+    return semanticTypesPrefix + sanitizeForS3Key(semanticType) + ".json";
+  }
+
+  /**
+   * Loads the cache from scratch: from the catalog first, when there is one, then from a listing of
+   * the per-type objects, which downloads only what the catalog did not already hold.
+   */
+  private void loadInitialData() {
+    // Forget objects seen under a previous connection
+    syncedObjects.clear();
+    fullySynced = false;
+    if (catalog != null) {
+      try {
+        Map<String, S3SemanticTypeCatalog.Entry> entries = catalog.load();
+        for (S3SemanticTypeCatalog.Entry entry : entries.values()) {
+          CustomSemanticType type = entry.type();
+          ensureValidPriority(type);
+          cache.put(type.getSemanticType(), type);
+          if (entry.eTag() != null) {
+            syncedObjects.put(entry.key(), new SyncedObject(entry.eTag(), type.getSemanticType()));
+          }
+        }
+        catalogVersion = CatalogVersions.next();
+        log.info("Loaded {} semantic types from the S3 catalog", entries.size());
+      } catch (Exception e) {
+        log.warn("Failed to load the semantic type catalog, reading each type: {}", e.getMessage());
+      }
+    }
+    reload();
+  }
+
+  /** Folds the catalog's deltas into its snapshot; runs in the background. */
+  private void compactCatalog() {
+    if (!initialized || catalog == null) {
+      return;
+    }
+    try {
+      catalog.compact(this::catalogSeed);
+    } catch (Exception e) {
+      log.warn("Failed to compact the semantic type catalog: {}", e.getMessage());
+    }
+  }
+
+  // The first snapshot starts from the types this replica has read from the per-type objects
+  private Map<String, S3SemanticTypeCatalog.Entry> catalogSeed() {
+    Map<String, S3SemanticTypeCatalog.Entry> entries = new HashMap<>();
+    syncedObjects.forEach(
+        (key, synced) -> {
+          CustomSemanticType type = cache.get(synced.semanticType());
+          if (type != null) {
+            entries.put(key, new S3SemanticTypeCatalog.Entry(key, synced.eTag(), type));
+          }
+        });
+    return entries;
+  }
+
+  // The per-type objects are the source of truth, so a lost catalog write only costs downloads
+  private void recordInCatalog(Runnable write) {
+    if (catalog == null) {
+      return;
+    }
+    try {
+      write.run();
+    } catch (Exception e) {
+      log.warn("Failed to record semantic type change in the catalog: {}", e.getMessage());
+    }
+  }
+
+  private S3BulkFetcher newFetcher() {
+    return new S3BulkFetcher(
+        s3Client,
+        s3AsyncClient,
+        Math.max(1, fetchMaxConcurrency),
+        Math.max(1, fetchMaxAttempts),
+        Duration.ofMillis(fetchBackoffMs));
+  }
+
+  private void ensureValidPriority(CustomSemanticType type) {
+    if (type.getPriority() == null || type.getPriority() < 2000) {
+      log.warn(
+          "Semantic type '{}' has invalid priority {}, setting to 2000",
+          type.getSemanticType(),
+          type.getPriority());
+      type.setPriority(2000);
+    }
+  }
+
+  /**
+   * Sync cache from S3. Lists the prefix and downloads only objects whose key is new or whose ETag
+   * differs from the last one seen; entries whose object is gone are removed from the cache.
+   * Objects that fail to download are retried on the next sync.
+   *
+   * @param reconcile also drop cache entries that no object in S3 backs, such as types whose
+   *     asynchronous write never landed
+   */
+  private synchronized void syncFromS3(boolean reconcile) {
     try {
       // Skip if not properly initialized
       if (!initialized || s3Client == null) {
@@ -447,63 +945,110 @@ public class S3CustomSemanticTypeRepository implements ICustomSemanticTypeReposi
         return;
       }
 
-      // List all semantic type files
-      ListObjectsV2Request listRequest =
-          ListObjectsV2Request.builder().bucket(bucketName).prefix(semanticTypesPrefix).build();
+      S3BulkFetcher fetcher = newFetcher();
 
-      ListObjectsV2Response listResponse = s3Client.listObjectsV2(listRequest);
+      // List all semantic type files, across as many pages as there are
+      List<S3Object> objects =
+          fetcher.list(bucketName, semanticTypesPrefix).stream()
+              .filter(object -> object.key().endsWith(".json"))
+              .toList();
+      syncs.incrementAndGet();
 
-      if (listResponse.contents().isEmpty()) {
-        log.info("No semantic types found in S3 - starting with empty repository");
-        cache.clear();
-        return;
+      if (objects.isEmpty()) {
+        log.debug("No semantic types found in S3");
       }
 
-      log.debug("Found {} semantic type files in S3", listResponse.contents().size());
-
-      // Clear cache and reload all types
-      Map<String, CustomSemanticType> newCache = new ConcurrentHashMap<>();
+      Set<String> listedKeys = new HashSet<>();
+      Map<String, String> changed = new HashMap<>();
+      for (S3Object object : objects) {
+        listedKeys.add(object.key());
+        // S3 is about to be overwritten with what the cache already holds
+        if (hasPendingWrite(object.key())) {
+          continue;
+        }
+        SyncedObject seen = syncedObjects.get(object.key());
+        if (seen == null || object.eTag() == null || !object.eTag().equals(seen.eTag())) {
+          changed.put(object.key(), object.eTag());
+        }
+      }
+      downloadsSkipped.addAndGet(objects.size() - changed.size());
+
+      // Drop types whose file is gone
+      boolean cacheChanged = false;
+      int removed = 0;
+      for (Iterator<Map.Entry<String, SyncedObject>> it = syncedObjects.entrySet().iterator();
+          it.hasNext(); ) {
+        Map.Entry<String, SyncedObject> entry = it.next();
+        if (!listedKeys.contains(entry.getKey()) && !hasPendingWrite(entry.getKey())) {
+          it.remove();
+          cache.remove(entry.getValue().semanticType());
+          cacheChanged = true;
+          removed++;
+        }
+      }
 
-      for (S3Object s3Object : listResponse.contents()) {
-        if (s3Object.key().endsWith(".json")) {
-          try {
-            // Download individual file
-            byte[] data =
-                s3Client
-                    .getObjectAsBytes(
-                        GetObjectRequest.builder().bucket(bucketName).key(s3Object.key()).build())
-                    .asByteArray();
-
-            // Parse JSON
-            CustomSemanticType type = objectMapper.readValue(data, CustomSemanticType.class);
-            // createdAt consistency is ensured in service/conversion layers
-
-            // Ensure valid priority
-            if (type.getPriority() == null || type.getPriority() < 2000) {
-              log.warn(
-                  "Semantic type '{}' has invalid priority {}, setting to 2000",
-                  type.getSemanticType(),
-                  type.getPriority());
-              type.setPriority(2000);
-            }
-
-            newCache.put(type.getSemanticType(), type);
-          } catch (Exception e) {
-            log.error(
-                "Failed to load semantic type from key '{}': {}", s3Object.key(), e.getMessage());
+      // Download new and changed files in parallel and apply them to the cache
+      Map<String, byte[]> downloaded =
+          changed.isEmpty() ? Map.of() : fetcher.fetch(bucketName, changed.keySet());
+      downloads.addAndGet(changed.size());
+      int unreadable = changed.size() - downloaded.size();
+      for (Map.Entry<String, byte[]> object : downloaded.entrySet()) {
+        try {
+          CustomSemanticType type =
+              objectMapper.readValue(object.getValue(), CustomSemanticType.class);
+          // createdAt consistency is ensured in service/conversion layers
+          ensureValidPriority(type);
+
+          SyncedObject previous =
+              syncedObjects.put(
+                  object.getKey(),
+                  new SyncedObject(changed.get(object.getKey()), type.getSemanticType()));
+          if (previous != null && !previous.semanticType().equals(type.getSemanticType())) {
+            cache.remove(previous.semanticType());
           }
+          cache.put(type.getSemanticType(), type);
+          cacheChanged = true;
+        } catch (Exception e) {
+          unreadable++;
+          log.error(
+              "Failed to load semantic type from key '{}': {}", object.getKey(), e.getMessage());
         }
       }
+      fullySynced = unreadable == 0;
+      if (unreadable > 0) {
+        log.warn(
+            "{} semantic types in S3 could not be loaded; retrying on the next sync", unreadable);
+      }
 
-      // Replace cache atomically
-      cache.clear();
-      cache.putAll(newCache);
+      if (reconcile) {
+        Set<String> backed = new HashSet<>();
+        syncedObjects.values().forEach(synced -> backed.add(synced.semanticType()));
+        synchronized (pendingWrites) {
+          pendingWrites.values().stream()
+              .filter(write -> write.type() != null)
+              .forEach(write -> backed.add(write.semanticType()));
+        }
+        cacheChanged |= cache.keySet().retainAll(backed);
+      }
+      if (cacheChanged) {
+        catalogVersion = CatalogVersions.next();
+      }
 
-      log.info("Successfully loaded {} semantic types from S3", cache.size());
+      if (!changed.isEmpty() || removed > 0) {
+        log.info(
+            "Synced semantic types from S3: {} downloaded, {} removed, {} unchanged ({} cached)",
+            downloaded.size(),
+            removed,
+            objects.size() - changed.size(),
+            cache.size());
+      } else {
+        log.debug("Semantic types in S3 unchanged ({} objects)", objects.size());
+      }
 
     } catch (Exception e) {
       log.error("Failed to sync semantic types from S3: {}", e.getMessage(), e);
       // Don't clear cache on error - keep working with what we have
+      fullySynced = false;
     }
   }
 
@@ -0,0 +1,306 @@
+package com.nl2fta.classifier.service.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Consolidated copy of the custom semantic types in S3, so a cold start reads the catalog in a
+ * constant number of requests instead of one GET per type.
+ *
+ * <p>The catalog is a gzip-compressed JSON snapshot plus one small delta object per change, or
+ * batch of changes, made since the snapshot was written. Delta keys start with the write time, so
+ * listing them returns them in the order they were made. {@link #compact} folds the deltas into a
+ * new snapshot with a conditional write, so when several replicas compact at once only one of them
+ * succeeds.
+ *
+ * <p>The per-type objects stay the source of truth: every entry carries the ETag of the per-type
+ * object it was read from, and the repository checks these against a listing after loading.
+ */
+@Slf4j
+public final class S3SemanticTypeCatalog {
+
+  /** Version of the snapshot layout; snapshots written by a newer version are ignored. */
+  public static final int FORMAT_VERSION = 1;
+
+  static final String SNAPSHOT_KEY = "semantic-types-catalog/snapshot.json.gz";
+  static final String DELTA_PREFIX = "semantic-types-catalog/deltas/";
+
+  private static final int MAX_DELETE_BATCH = 1000;
+
+  private final S3Client client;
+  private final S3BulkFetcher fetcher;
+  private final ObjectMapper objectMapper;
+  private final String bucket;
+  // Delta timestamps, kept strictly increasing so changes made within a millisecond keep order
+  private final AtomicLong lastDeltaMillis = new AtomicLong();
+
+  /**
+   * One per-type object, as last written or read; in a delta, a null {@code type} is a deletion.
+   */
+  public record Entry(String key, String eTag, CustomSemanticType type) {}
+
+  /** Snapshot layout; {@code lastDelta} is the newest delta folded into it. */
+  record Snapshot(int version, long generation, String lastDelta, List<Entry> entries) {}
+
+  /** Delta layout: changes in the order they were made. */
+  record Delta(List<Entry> changes) {}
+
+  private record State(
+      Snapshot snapshot, String snapshotETag, List<String> deltaKeys, List<String> staleKeys) {}
+
+  public S3SemanticTypeCatalog(
+      S3Client client, S3BulkFetcher fetcher, ObjectMapper objectMapper, String bucket) {
+    this.client = client;
+    this.fetcher = fetcher;
+    this.objectMapper = objectMapper;
+    this.bucket = bucket;
+  }
+
+  /**
+   * Reads the snapshot and applies the deltas written since.
+   *
+   * @return entries by per-type object key; empty when there is no catalog yet
+   */
+  public Map<String, Entry> load() {
+    State state = read();
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    if (isNewerFormat(state)) {
+      return entries;
+    }
+    if (state.snapshot() != null) {
+      state.snapshot().entries().forEach(entry -> entries.put(entry.key(), entry));
+    }
+    apply(entries, state.deltaKeys());
+    log.debug(
+        "Loaded {} semantic types from the catalog (generation {}, {} deltas)",
+        entries.size(),
+        state.snapshot() == null ? 0 : state.snapshot().generation(),
+        state.deltaKeys().size());
+    return entries;
+  }
+
+  /** Records that the per-type object {@code key} now holds {@code type}. */
+  public void recordPut(String key, String eTag, CustomSemanticType type) {
+    record(List.of(new Entry(key, eTag, type)));
+  }
+
+  /** Records that the per-type object {@code key} was deleted. */
+  public void recordDelete(String key) {
+    record(List.of(new Entry(key, null, null)));
+  }
+
+  /** Records several writes and deletions in one delta object. */
+  public void record(List<Entry> changes) {
+    if (!changes.isEmpty()) {
+      writeDelta(new Delta(changes));
+    }
+  }
+
+  /**
+   * Folds the pending deltas into a new snapshot and deletes them. The snapshot is written only if
+   * it has not changed since it was read; if another writer got there first, nothing is done.
+   *
+   * @param seed entries to start from when there is no snapshot yet, such as the types already
+   *     loaded from the per-type objects
+   * @return whether a new snapshot was written
+   */
+  public boolean compact(Supplier<Map<String, Entry>> seed) {
+    State state = read();
+    if (isNewerFormat(state)) {
+      return false;
+    }
+    if (state.snapshot() != null && state.deltaKeys().isEmpty()) {
+      deleteDeltas(state.staleKeys());
+      return false;
+    }
+
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    if (state.snapshot() != null) {
+      state.snapshot().entries().forEach(entry -> entries.put(entry.key(), entry));
+    } else {
+      entries.putAll(seed.get());
+    }
+    apply(entries, state.deltaKeys());
+
+    long generation = state.snapshot() == null ? 1 : state.snapshot().generation() + 1;
+    String lastDelta =
+        state.deltaKeys().isEmpty()
+            ? state.snapshot() == null ? null : state.snapshot().lastDelta()
+            : state.deltaKeys().get(state.deltaKeys().size() - 1);
+    Snapshot snapshot =
+        new Snapshot(FORMAT_VERSION, generation, lastDelta, new ArrayList<>(entries.values()));
+
+    PutObjectRequest.Builder request =
+        PutObjectRequest.builder().bucket(bucket).key(SNAPSHOT_KEY).contentType("application/gzip");
+    if (state.snapshotETag() == null) {
+      request.ifNoneMatch("*");
+    } else {
+      request.ifMatch(state.snapshotETag());
+    }
+    try {
+      client.putObject(request.build(), RequestBody.fromBytes(gzip(snapshot)));
+    } catch (S3Exception e) {
+      if (e.statusCode() == 412 || e.statusCode() == 409) {
+        log.debug("Semantic type catalog changed while compacting; leaving it to the other writer");
+        return false;
+      }
+      throw e;
+    }
+
+    List<String> folded = new ArrayList<>(state.staleKeys());
+    folded.addAll(state.deltaKeys());
+    deleteDeltas(folded);
+    log.info(
+        "Compacted semantic type catalog to generation {}: {} types, {} deltas folded",
+        generation,
+        entries.size(),
+        state.deltaKeys().size());
+    return true;
+  }
+
+  private State read() {
+    Snapshot snapshot = null;
+    String snapshotETag = null;
+    try {
+      ResponseBytes<GetObjectResponse> object =
+          client.getObjectAsBytes(
+              GetObjectRequest.builder().bucket(bucket).key(SNAPSHOT_KEY).build());
+      snapshotETag = object.response().eTag();
+      snapshot = gunzip(object.asByteArray());
+    } catch (NoSuchKeyException e) {
+      log.debug("No semantic type catalog snapshot yet");
+    } catch (UncheckedIOException e) {
+      // Keep the ETag, so compaction replaces the unreadable snapshot
+      log.warn("Ignoring unreadable semantic type catalog snapshot: {}", e.getMessage());
+    }
+
+    // Deltas at or before the snapshot's last one are folded already, or arrived too late to be
+    // folded; the per-type listing after a load covers the latter
+    String lastDelta = snapshot == null ? null : snapshot.lastDelta();
+    List<String> pending = new ArrayList<>();
+    List<String> stale = new ArrayList<>();
+    for (String key : fetcher.listKeys(bucket, DELTA_PREFIX)) {
+      if (lastDelta == null || key.compareTo(lastDelta) > 0) {
+        pending.add(key);
+      } else {
+        stale.add(key);
+      }
+    }
+    pending.sort(null);
+    return new State(snapshot, snapshotETag, pending, stale);
+  }
+
+  private static boolean isNewerFormat(State state) {
+    if (state.snapshot() == null || state.snapshot().version() <= FORMAT_VERSION) {
+      return false;
+    }
+    log.warn(
+        "Semantic type catalog has format version {}, newer than {}; not using it",
+        state.snapshot().version(),
+        FORMAT_VERSION);
+    return true;
+  }
+
+  private void apply(Map<String, Entry> entries, List<String> deltaKeys) {
+    if (deltaKeys.isEmpty()) {
+      return;
+    }
+    // A delta that is missing was folded and deleted by another replica after we listed it
+    Map<String, byte[]> deltas = fetcher.fetch(bucket, deltaKeys);
+    for (byte[] data : deltas.values()) {
+      try {
+        for (Entry change : objectMapper.readValue(data, Delta.class).changes()) {
+          if (change.type() == null) {
+            entries.remove(change.key());
+          } else {
+            entries.put(change.key(), change);
+          }
+        }
+      } catch (IOException e) {
+        log.warn("Skipping unreadable semantic type catalog delta: {}", e.getMessage());
+      }
+    }
+  }
+
+  private void writeDelta(Delta delta) {
+    String key =
+        String.format(
+            "%s%013d-%s.json",
+            DELTA_PREFIX,
+            lastDeltaMillis.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis())),
+            UUID.randomUUID());
+    try {
+      client.putObject(
+          PutObjectRequest.builder()
+              .bucket(bucket)
+              .key(key)
+              .contentType("application/json")
+              .build(),
+          RequestBody.fromString(objectMapper.writeValueAsString(delta), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to serialize semantic type catalog delta", e);
+    }
+  }
+
+  private void deleteDeltas(List<String> keys) {
+    for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH) {
+      List<ObjectIdentifier> batch =
+          keys.subList(from, Math.min(keys.size(), from + MAX_DELETE_BATCH)).stream()
+              .map(key -> ObjectIdentifier.builder().key(key).build())
+              .toList();
+      client.deleteObjects(
+          DeleteObjectsRequest.builder()
+              .bucket(bucket)
+              .delete(Delete.builder().objects(batch).quiet(true).build())
+              .build());
+    }
+  }
+
+  private byte[] gzip(Snapshot snapshot) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(objectMapper.writeValueAsBytes(snapshot));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write semantic type catalog snapshot", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private Snapshot gunzip(byte[] data) {
+    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      return objectMapper.readValue(in, Snapshot.class);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read semantic type catalog snapshot", e);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.nl2fta.classifier.service.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cheap summary of a column's values: how many there are, their length range (in code points, after
+ * trimming) and which character classes occur in them.
+ *
+ * <p>{@link #anyClasses} is the union of the classes found in the values and {@link #allClasses}
+ * the classes present in every value. A candidate type describes the values it can match with the
+ * same shape, which lets {@link #mayContain(ValueFingerprint)} rule out columns that cannot hold a
+ * single matching value without running any regular expressions.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ValueFingerprint {
+
+  public static final int DIGIT = 1;
+  public static final int UPPER = 1 << 1;
+  public static final int LOWER = 1 << 2;
+  public static final int SPACE = 1 << 3;
+  public static final int PUNCT = 1 << 4;
+  public static final int OTHER = 1 << 5;
+  public static final int ALL = DIGIT | UPPER | LOWER | SPACE | PUNCT | OTHER;
+
+  private int valueCount;
+  private int minLength;
+  private int maxLength;
+  private int anyClasses;
+  private int allClasses;
+
+  /** Fingerprint of the non-null values; an empty input yields a fingerprint with no values. */
+  public static ValueFingerprint of(Iterable<?> values) {
+    int count = 0;
+    int min = Integer.MAX_VALUE;
+    int max = 0;
+    int any = 0;
+    int all = ALL;
+    if (values != null) {
+      for (Object value : values) {
+        if (value == null) {
+          continue;
+        }
+        String text = value.toString().trim();
+        int length = text.codePointCount(0, text.length());
+        int classes = classesOf(text);
+        count++;
+        min = Math.min(min, length);
+        max = Math.max(max, length);
+        any |= classes;
+        all &= classes;
+      }
+    }
+    return count == 0
+        ? new ValueFingerprint(0, 0, 0, 0, 0)
+        : new ValueFingerprint(count, min, max, any, all);
+  }
+
+  /** Shape of a candidate whose matches can have any length and contain any character. */
+  public static ValueFingerprint unconstrained() {
+    return new ValueFingerprint(0, 0, Integer.MAX_VALUE, ALL, 0);
+  }
+
+  /** Character classes occurring in {@code text}. */
+  public static int classesOf(CharSequence text) {
+    int classes = 0;
+    for (int i = 0; i < text.length(); i++) {
+      classes |= classOf(text.charAt(i));
+    }
+    return classes;
+  }
+
+  public static int classOf(int c) {
+    if (c >= '0' && c <= '9') {
+      return DIGIT;
+    } else if (c >= 'A' && c <= 'Z') {
+      return UPPER;
+    } else if (c >= 'a' && c <= 'z') {
+      return LOWER;
+    } else if (c == ' ' || (c >= '\t' && c <= '\r')) {
+      return SPACE;
+    } else if (c > ' ' && c < 0x7F) {
+      return PUNCT;
+    }
+    return OTHER;
+  }
+
+  /** Treats upper- and lower-case letters alike, as case-insensitive matching does. */
+  public static int foldCase(int classes) {
+    return (classes & (UPPER | LOWER)) != 0 ? classes | UPPER | LOWER : classes;
+  }
+
+  /**
+   * Whether a column with this fingerprint can hold at least one value with the candidate's shape.
+   * A {@code false} answer is definite; {@code true} only means the values have to be checked.
+   *
+   * @param candidate length range and permitted classes of the values a type can match
+   */
+  public boolean mayContain(ValueFingerprint candidate) {
+    if (valueCount == 0) {
+      return false;
+    }
+    if (maxLength < candidate.minLength || minLength > candidate.maxLength) {
+      return false;
+    }
+    // Every value carries allClasses; if the candidate never produces one of them, none can match
+    return (allClasses & ~candidate.anyClasses) == 0;
+  }
+}
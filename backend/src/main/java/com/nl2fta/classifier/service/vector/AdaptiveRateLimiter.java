@@ -0,0 +1,93 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket whose refill rate adapts to throttling. Up to {@code burst} requests may start at
+ * once; after that, requests are spaced at the current rate. A throttled request halves the rate
+ * (down to a floor of 1/32 of the configured rate) and each successful request raises it again by
+ * 1/50 of the configured rate, so the limiter settles just under the quota it is actually given.
+ *
+ * <p>Requests already in flight when the rate is cut were started at the old rate, and their
+ * throttles say nothing new; the rate is therefore cut at most once per {@code burst} requests
+ * started.
+ */
+public final class AdaptiveRateLimiter {
+
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final double maxRate;
+  private final double minRate;
+  private final double burst;
+  private final LongSupplier nanoClock;
+  private double rate;
+  private double tokens;
+  private long lastRefill;
+  private long started;
+  private long startedAtLastCut = Long.MIN_VALUE;
+
+  /**
+   * @param ratePerSecond configured (and highest) request rate
+   * @param burst requests allowed back to back before spacing starts
+   * @throws IllegalArgumentException if the rate is not positive or the burst is below 1
+   */
+  public AdaptiveRateLimiter(double ratePerSecond, int burst) {
+    this(ratePerSecond, burst, System::nanoTime);
+  }
+
+  AdaptiveRateLimiter(double ratePerSecond, int burst, LongSupplier nanoClock) {
+    if (!(ratePerSecond > 0) || burst < 1) {
+      throw new IllegalArgumentException(
+          String.format("Invalid rate limit: %s per second, burst %d", ratePerSecond, burst));
+    }
+    this.maxRate = ratePerSecond;
+    this.minRate = ratePerSecond / 32;
+    this.burst = burst;
+    this.nanoClock = nanoClock;
+    this.rate = ratePerSecond;
+    this.tokens = burst;
+    this.lastRefill = nanoClock.getAsLong();
+  }
+
+  /** Blocks until the caller may start a request. */
+  public void acquire() throws InterruptedException {
+    long waitNanos = reserve();
+    if (waitNanos > 0) {
+      Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+    }
+  }
+
+  /** Takes a token, possibly on credit, and returns how long to wait before using it. */
+  synchronized long reserve() {
+    refill();
+    started++;
+    tokens -= 1;
+    return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / rate * NANOS_PER_SECOND);
+  }
+
+  /** Records a throttled request: halves the rate, unless it was just cut. */
+  public synchronized void onThrottled() {
+    if (startedAtLastCut != Long.MIN_VALUE && started - startedAtLastCut < burst) {
+      return;
+    }
+    refill();
+    rate = Math.max(minRate, rate / 2);
+    startedAtLastCut = started;
+  }
+
+  /** Records a successful request: raises the rate back towards the configured one. */
+  public synchronized void onSuccess() {
+    refill();
+    rate = Math.min(maxRate, rate + maxRate / 50);
+  }
+
+  public synchronized double getRate() {
+    return rate;
+  }
+
+  private void refill() {
+    long now = nanoClock.getAsLong();
+    tokens = Math.min(burst, tokens + (now - lastRefill) * rate / NANOS_PER_SECOND);
+    lastRefill = now;
+  }
+}
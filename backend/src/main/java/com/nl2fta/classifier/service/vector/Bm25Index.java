@@ -0,0 +1,128 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory inverted index scored with Okapi BM25. Documents are bags of weighted terms, so a
+ * caller can boost a field by adding its terms with a higher weight; the weighted counts stand in
+ * for term frequency and their sum for document length.
+ *
+ * <p>Besides the BM25 score, each hit carries its coverage: the share of the query's inverse
+ * document frequency that the document matched, counting only query terms the index has seen.
+ * Coverage is between 0 and 1 and says how completely a document answers the query, which a raw
+ * BM25 score does not.
+ */
+public final class Bm25Index {
+
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  /** A matching document. */
+  public record Hit(String id, double score, double coverage, int matchedTerms) {}
+
+  private final Map<String, Map<String, Float>> documents = new HashMap<>();
+  private final Map<String, Map<String, Float>> postings = new HashMap<>();
+  private final Map<String, Float> lengths = new HashMap<>();
+  private double totalLength;
+
+  /** Adds a document, replacing any document with the same id. */
+  public synchronized void put(String id, Map<String, Float> termWeights) {
+    remove(id);
+    Map<String, Float> terms = new HashMap<>();
+    float length = 0;
+    for (Map.Entry<String, Float> term : termWeights.entrySet()) {
+      if (term.getValue() > 0) {
+        terms.put(term.getKey(), term.getValue());
+        postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(id, term.getValue());
+        length += term.getValue();
+      }
+    }
+    documents.put(id, terms);
+    lengths.put(id, length);
+    totalLength += length;
+  }
+
+  public synchronized void remove(String id) {
+    Map<String, Float> terms = documents.remove(id);
+    if (terms == null) {
+      return;
+    }
+    for (String term : terms.keySet()) {
+      Map<String, Float> posting = postings.get(term);
+      posting.remove(id);
+      if (posting.isEmpty()) {
+        postings.remove(term);
+      }
+    }
+    totalLength -= lengths.remove(id);
+  }
+
+  public synchronized void clear() {
+    documents.clear();
+    postings.clear();
+    lengths.clear();
+    totalLength = 0;
+  }
+
+  public synchronized int size() {
+    return documents.size();
+  }
+
+  /**
+   * Returns the best {@code limit} documents for the query terms, best first. Repeated query terms
+   * count once.
+   */
+  public synchronized List<Hit> search(Collection<String> queryTerms, int limit) {
+    if (documents.isEmpty() || limit < 1) {
+      return List.of();
+    }
+    int count = documents.size();
+    double averageLength = Math.max(totalLength / count, Float.MIN_VALUE);
+
+    Map<String, double[]> accumulators = new HashMap<>();
+    double knownIdf = 0;
+    Set<String> distinct = new LinkedHashSet<>(queryTerms);
+    for (String term : distinct) {
+      Map<String, Float> posting = postings.get(term);
+      if (posting == null) {
+        continue;
+      }
+      double idf = Math.log(1 + (count - posting.size() + 0.5) / (posting.size() + 0.5));
+      knownIdf += idf;
+      for (Map.Entry<String, Float> entry : posting.entrySet()) {
+        double tf = entry.getValue();
+        double norm = K1 * (1 - B + B * lengths.get(entry.getKey()) / averageLength);
+        // score, matched idf, matched terms
+        double[] accumulator = accumulators.computeIfAbsent(entry.getKey(), id -> new double[3]);
+        accumulator[0] += idf * tf * (K1 + 1) / (tf + norm);
+        accumulator[1] += idf;
+        accumulator[2]++;
+      }
+    }
+
+    PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Hit::score));
+    for (Map.Entry<String, double[]> entry : accumulators.entrySet()) {
+      double[] accumulator = entry.getValue();
+      top.add(
+          new Hit(
+              entry.getKey(),
+              accumulator[0],
+              knownIdf > 0 ? accumulator[1] / knownIdf : 0,
+              (int) accumulator[2]));
+      if (top.size() > limit) {
+        top.poll();
+      }
+    }
+    List<Hit> hits = new ArrayList<>(top);
+    hits.sort(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::id));
+    return hits;
+  }
+}
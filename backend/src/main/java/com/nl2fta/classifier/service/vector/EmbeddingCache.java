@@ -0,0 +1,459 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two-tier cache of embeddings keyed by model, dimension and a hash of the normalized input text.
+ *
+ * <p>The first tier is an in-memory LRU of at most {@code maxEntries} embeddings (0 disables it).
+ * The optional second tier is an append-only file on local disk that outlives restarts: every
+ * embedding put is appended, the file's record positions are indexed when it is opened, and disk
+ * hits are promoted into memory. The disk tier holds at most {@code maxDiskEntries} embeddings and
+ * evicts the oldest written first; once evicted records take up more of the file than live ones,
+ * the live ones are copied to a new file that replaces it. A torn record at the end of the file,
+ * left by a crash mid-write, is truncated away on open. If the file cannot be written the disk tier
+ * is dropped and the cache carries on in memory.
+ *
+ * <p>The memory tier and counters are guarded by the cache's monitor and the disk tier by its own
+ * lock, so a lookup answered from memory never waits for disk I/O.
+ *
+ * <p>Texts are normalized before hashing (Unicode NFC, surrounding whitespace trimmed, inner runs
+ * of whitespace collapsed to one space), so formatting differences do not cause a miss.
+ */
+@Slf4j
+public final class EmbeddingCache implements Closeable {
+
+  static final String FILE_NAME = "embeddings.bin";
+
+  /** Disk tier bound when none is given: about 200 MB of 1024-dimensional embeddings. */
+  public static final int DEFAULT_MAX_DISK_ENTRIES = 50_000;
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final int maxEntries;
+  private final Map<Key, float[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+  // Read without the monitor so disk I/O happens outside it; dropped (set to null) under it
+  private volatile DiskStore disk;
+  private long hits;
+  private long diskHits;
+  private long misses;
+  private long evictions;
+
+  /** Identifies an embedding: the model and output dimension it was produced with, and its text. */
+  public record Key(String modelId, int dimensions, String textHash) {
+
+    /** Key for {@code text}, hashed after normalization. */
+    public static Key of(String modelId, int dimensions, String text) {
+      return new Key(modelId, dimensions, hash(normalize(text)));
+    }
+  }
+
+  /** Point-in-time view of the cache tiers and counters. */
+  @Data
+  @Builder
+  public static class Stats {
+    private int memoryEntries;
+    private int diskEntries;
+    private long hits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+
+    /** Fraction of lookups answered from either tier, or 0 before the first lookup. */
+    public double getHitRate() {
+      long lookups = hits + diskHits + misses;
+      return lookups == 0 ? 0 : (double) (hits + diskHits) / lookups;
+    }
+  }
+
+  /**
+   * @param maxEntries embeddings held in memory, 0 to keep none
+   * @param diskDir directory for the disk tier, or null to keep the cache in memory only
+   */
+  public EmbeddingCache(int maxEntries, Path diskDir) {
+    this(maxEntries, diskDir, DEFAULT_MAX_DISK_ENTRIES);
+  }
+
+  /**
+   * @param maxEntries embeddings held in memory, 0 to keep none
+   * @param diskDir directory for the disk tier, or null to keep the cache in memory only
+   * @param maxDiskEntries embeddings held on disk; {@link #DEFAULT_MAX_DISK_ENTRIES} if not
+   *     positive
+   */
+  public EmbeddingCache(int maxEntries, Path diskDir, int maxDiskEntries) {
+    this.maxEntries = Math.max(0, maxEntries);
+    if (diskDir != null) {
+      try {
+        this.disk =
+            DiskStore.open(
+                diskDir.resolve(FILE_NAME),
+                maxDiskEntries > 0 ? maxDiskEntries : DEFAULT_MAX_DISK_ENTRIES);
+        log.info("Embedding cache disk tier at {} holds {} embeddings", diskDir, disk.size());
+      } catch (IOException e) {
+        log.warn("Embedding cache disk tier unavailable at {}: {}", diskDir, e.getMessage());
+      }
+    }
+  }
+
+  /** Returns a copy of the cached embedding for {@code key}, or null on a miss. */
+  public float[] get(Key key) {
+    synchronized (this) {
+      float[] embedding = memory.get(key);
+      if (embedding != null) {
+        hits++;
+        return embedding.clone();
+      }
+    }
+    DiskStore store = disk;
+    float[] embedding = null;
+    if (store != null) {
+      try {
+        embedding = store.read(key);
+      } catch (IOException e) {
+        dropDisk(store, e);
+      }
+    }
+    synchronized (this) {
+      if (embedding == null) {
+        misses++;
+        return null;
+      }
+      diskHits++;
+      remember(key, embedding);
+    }
+    return embedding.clone();
+  }
+
+  /** Caches a copy of {@code embedding} under {@code key} in both tiers. */
+  public void put(Key key, float[] embedding) {
+    float[] copy = embedding.clone();
+    synchronized (this) {
+      remember(key, copy);
+    }
+    DiskStore store = disk;
+    if (store != null) {
+      try {
+        store.append(key, copy);
+      } catch (IOException e) {
+        dropDisk(store, e);
+      }
+    }
+  }
+
+  public synchronized Stats getStats() {
+    DiskStore store = disk;
+    return Stats.builder()
+        .memoryEntries(memory.size())
+        .diskEntries(store == null ? 0 : store.size())
+        .hits(hits)
+        .diskHits(diskHits)
+        .misses(misses)
+        .evictions(evictions)
+        .build();
+  }
+
+  @Override
+  public synchronized void close() {
+    DiskStore store = disk;
+    if (store != null) {
+      disk = null;
+      store.close();
+    }
+  }
+
+  static String normalize(String text) {
+    return WHITESPACE
+        .matcher(Normalizer.normalize(text, Normalizer.Form.NFC).strip())
+        .replaceAll(" ");
+  }
+
+  private static String hash(String text) {
+    try {
+      return HexFormat.of()
+          .formatHex(
+              MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void remember(Key key, float[] embedding) {
+    if (maxEntries == 0) {
+      return;
+    }
+    memory.put(key, embedding);
+    if (memory.size() > maxEntries) {
+      memory.remove(memory.keySet().iterator().next());
+      evictions++;
+    }
+  }
+
+  private synchronized void dropDisk(DiskStore store, IOException e) {
+    if (disk != store) {
+      return;
+    }
+    log.warn("Embedding cache disk tier failed, continuing in memory only: {}", e.getMessage());
+    disk = null;
+    store.close();
+  }
+
+  /**
+   * Append-only record file. Each record is {@code int length, body, int CRC32C of body}, where the
+   * body holds the key fields, the embedding length and the float32 values (big-endian). Reads
+   * share the lock; appends, evictions and compaction hold it exclusively.
+   */
+  private static final class DiskStore {
+
+    // Where a record starts, its total size, and where its values start and how many there are
+    private record Location(long start, int recordBytes, long position, int length) {}
+
+    private final Path file;
+    private final int maxEntries;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Insertion order, so the eldest entry is the oldest written
+    private final Map<Key, Location> index = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long liveBytes;
+    private long deadBytes;
+
+    private DiskStore(Path file, int maxEntries) {
+      this.file = file;
+      this.maxEntries = maxEntries;
+    }
+
+    static DiskStore open(Path file, int maxEntries) throws IOException {
+      Files.createDirectories(file.getParent());
+      DiskStore store = new DiskStore(file, maxEntries);
+      store.channel = openChannel(file);
+      try {
+        store.scan();
+        store.evictAndCompact();
+      } catch (IOException | RuntimeException e) {
+        store.close();
+        throw e;
+      }
+      return store;
+    }
+
+    private static FileChannel openChannel(Path file) throws IOException {
+      return FileChannel.open(
+          file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // Indexes every intact record and truncates anything after the last one
+    private void scan() throws IOException {
+      long position = 0;
+      long size = channel.size();
+      ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+      while (position + 4 <= size) {
+        lengthBuffer.clear();
+        channel.read(lengthBuffer, position);
+        int bodyLength = lengthBuffer.flip().getInt();
+        if (bodyLength <= 0 || position + 8 + bodyLength > size) {
+          break;
+        }
+        ByteBuffer record = ByteBuffer.allocate(bodyLength + 4);
+        channel.read(record, position + 4);
+        record.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, bodyLength);
+        if ((int) crc.getValue() != record.getInt(bodyLength)) {
+          break;
+        }
+        DataInputStream body =
+            new DataInputStream(new ByteArrayInputStream(record.array(), 0, bodyLength));
+        Key key = new Key(body.readUTF(), body.readInt(), body.readUTF());
+        int length = body.readInt();
+        long valuesPosition = position + 4 + bodyLength - (long) length * 4;
+        index(key, new Location(position, 8 + bodyLength, valuesPosition, length));
+        position += 8 + bodyLength;
+      }
+      if (position < size) {
+        log.warn("Truncating {} bytes of incomplete embedding cache records", size - position);
+        channel.truncate(position);
+      }
+      channel.position(position);
+    }
+
+    int size() {
+      lock.readLock().lock();
+      try {
+        return index.size();
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    float[] read(Key key) throws IOException {
+      lock.readLock().lock();
+      try {
+        Location location = index.get(key);
+        if (location == null) {
+          return null;
+        }
+        ByteBuffer values = ByteBuffer.allocate(location.length() * 4);
+        while (values.hasRemaining()) {
+          if (channel.read(values, location.position() + values.position()) < 0) {
+            throw new IOException("Embedding cache file is shorter than its index");
+          }
+        }
+        float[] embedding = new float[location.length()];
+        values.flip().asFloatBuffer().get(embedding);
+        return embedding;
+      } finally {
+        lock.readLock().unlock();
+      }
+    }
+
+    /** Appends {@code embedding} unless {@code key} is stored already. */
+    void append(Key key, float[] embedding) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream body = new DataOutputStream(bytes);
+      body.writeUTF(key.modelId());
+      body.writeInt(key.dimensions());
+      body.writeUTF(key.textHash());
+      body.writeInt(embedding.length);
+      for (float value : embedding) {
+        body.writeFloat(value);
+      }
+      body.flush();
+      byte[] bodyBytes = bytes.toByteArray();
+      CRC32C crc = new CRC32C();
+      crc.update(bodyBytes);
+
+      ByteBuffer record = ByteBuffer.allocate(bodyBytes.length + 8);
+      record.putInt(bodyBytes.length).put(bodyBytes).putInt((int) crc.getValue()).flip();
+      lock.writeLock().lock();
+      try {
+        if (index.containsKey(key)) {
+          return;
+        }
+        long position = channel.position();
+        while (record.hasRemaining()) {
+          channel.write(record);
+        }
+        index(
+            key,
+            new Location(
+                position,
+                bodyBytes.length + 8,
+                position + 4 + bodyBytes.length - embedding.length * 4L,
+                embedding.length));
+        evictAndCompact();
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+
+    private void index(Key key, Location location) {
+      Location replaced = index.put(key, location);
+      liveBytes += location.recordBytes();
+      if (replaced != null) {
+        liveBytes -= replaced.recordBytes();
+        deadBytes += replaced.recordBytes();
+      }
+    }
+
+    // Callers hold the write lock, or own the store while opening it
+    private void evictAndCompact() throws IOException {
+      Iterator<Location> eldest = index.values().iterator();
+      while (index.size() > maxEntries) {
+        Location evicted = eldest.next();
+        eldest.remove();
+        liveBytes -= evicted.recordBytes();
+        deadBytes += evicted.recordBytes();
+      }
+      if (deadBytes > liveBytes) {
+        compact();
+      }
+    }
+
+    /** Copies the live records to a new file and moves it over the old one. */
+    private void compact() throws IOException {
+      Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+      Map<Key, Location> moved = new LinkedHashMap<>();
+      try (FileChannel out =
+          FileChannel.open(
+              compacted,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        long position = 0;
+        for (Map.Entry<Key, Location> entry : index.entrySet()) {
+          Location location = entry.getValue();
+          ByteBuffer record = ByteBuffer.allocate(location.recordBytes());
+          while (record.hasRemaining()) {
+            if (channel.read(record, location.start() + record.position()) < 0) {
+              throw new IOException("Embedding cache file is shorter than its index");
+            }
+          }
+          record.flip();
+          while (record.hasRemaining()) {
+            out.write(record);
+          }
+          moved.put(
+              entry.getKey(),
+              new Location(
+                  position,
+                  location.recordBytes(),
+                  position + location.position() - location.start(),
+                  location.length()));
+          position += location.recordBytes();
+        }
+        out.force(true);
+      }
+      long before = liveBytes + deadBytes;
+      channel.close();
+      Files.move(
+          compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      channel = openChannel(file);
+      channel.position(channel.size());
+      index.clear();
+      index.putAll(moved);
+      deadBytes = 0;
+      log.info(
+          "Compacted embedding cache file from {} to {} bytes ({} embeddings)",
+          before,
+          liveBytes,
+          index.size());
+    }
+
+    void close() {
+      lock.writeLock().lock();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.debug("Failed to close embedding cache file: {}", e.getMessage());
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+}
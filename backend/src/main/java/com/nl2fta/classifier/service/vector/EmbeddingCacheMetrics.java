@@ -0,0 +1,67 @@
+package com.nl2fta.classifier.service.vector;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publishes {@link VectorEmbeddingService} embedding cache sizes and hit counters to Micrometer.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmbeddingCacheMetrics implements MeterBinder {
+
+  private final VectorEmbeddingService vectorEmbeddingService;
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder(
+            "vector.embedding.cache.memory.count",
+            vectorEmbeddingService,
+            service -> service.getCacheStats().getMemoryEntries())
+        .description("Embeddings cached in memory")
+        .register(registry);
+    Gauge.builder(
+            "vector.embedding.cache.disk.count",
+            vectorEmbeddingService,
+            service -> service.getCacheStats().getDiskEntries())
+        .description("Embeddings cached on local disk")
+        .register(registry);
+    Gauge.builder(
+            "vector.embedding.cache.hit.ratio",
+            vectorEmbeddingService,
+            service -> service.getCacheStats().getHitRate())
+        .description("Fraction of embedding lookups served from the cache")
+        .register(registry);
+    FunctionCounter.builder(
+            "vector.embedding.cache.hits",
+            vectorEmbeddingService,
+            service -> service.getCacheStats().getHits())
+        .tag("tier", "memory")
+        .description("Embedding lookups served from the cache")
+        .register(registry);
+    FunctionCounter.builder(
+            "vector.embedding.cache.hits",
+            vectorEmbeddingService,
+            service -> service.getCacheStats().getDiskHits())
+        .tag("tier", "disk")
+        .description("Embedding lookups served from the cache")
+        .register(registry);
+    FunctionCounter.builder(
+            "vector.embedding.cache.misses",
+            vectorEmbeddingService,
+            service -> service.getCacheStats().getMisses())
+        .description("Embedding lookups that called the model")
+        .register(registry);
+    FunctionCounter.builder(
+            "vector.embedding.cache.evictions",
+            vectorEmbeddingService,
+            service -> service.getCacheStats().getEvictions())
+        .description("Embeddings evicted from memory")
+        .register(registry);
+  }
+}
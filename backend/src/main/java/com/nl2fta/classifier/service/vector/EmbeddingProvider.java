@@ -0,0 +1,22 @@
+package com.nl2fta.classifier.service.vector;
+
+/**
+ * Source of text embeddings that runs in process, selected with {@code vector.embedding.provider}.
+ * Bedrock Titan, the default, is built into {@link VectorEmbeddingService}, which adds caching,
+ * rate limiting and retries around it; a provider plugged in here is called directly.
+ */
+public interface EmbeddingProvider {
+
+  /** Identifies the model, so embeddings from different models are never mixed. */
+  String getModelId();
+
+  /** Length of every embedding returned by {@link #embed}. */
+  int getDimensions();
+
+  /**
+   * Embeds one text.
+   *
+   * @return a unit-length vector of {@link #getDimensions()} elements
+   */
+  float[] embed(String text);
+}
@@ -0,0 +1,117 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Deterministic local embeddings with no model and no network call. Text is lower-cased and split
+ * into words; each word, each pair of adjacent words and each character 3- to 5-gram of a word
+ * (with word boundaries marked) is hashed to one of {@code dimensions} slots with a hashed sign,
+ * and the sum is normalized to unit length.
+ *
+ * <p>Texts that share words or word fragments score high against each other, so names, examples and
+ * descriptions written alike match, but unlike Titan it knows nothing of synonyms. An embedding
+ * takes microseconds, which makes it useful offline, in tests and in benchmarks.
+ */
+public final class HashedNgramEmbeddingProvider implements EmbeddingProvider {
+
+  public static final String MODEL_ID = "local-hashed-ngram-v1";
+
+  private static final int MIN_GRAM = 3;
+  private static final int MAX_GRAM = 5;
+  private static final float WORD_WEIGHT = 1f;
+  private static final float WORD_PAIR_WEIGHT = 0.5f;
+  private static final float GRAM_WEIGHT = 0.25f;
+  private static final char BOUNDARY = '\u0001';
+
+  // Distinct seeds keep a word, a word pair and a 3-gram with the same characters apart
+  private static final long WORD_SEED = 0x9E3779B97F4A7C15L;
+  private static final long PAIR_SEED = 0xC2B2AE3D27D4EB4FL;
+  private static final long GRAM_SEED = 0x165667B19E3779F9L;
+
+  private final int dimensions;
+
+  /**
+   * @param dimensions embedding length
+   * @throws IllegalArgumentException if {@code dimensions} is below 1
+   */
+  public HashedNgramEmbeddingProvider(int dimensions) {
+    if (dimensions < 1) {
+      throw new IllegalArgumentException("Invalid embedding dimensions: " + dimensions);
+    }
+    this.dimensions = dimensions;
+  }
+
+  @Override
+  public String getModelId() {
+    return MODEL_ID + "-" + dimensions;
+  }
+
+  @Override
+  public int getDimensions() {
+    return dimensions;
+  }
+
+  @Override
+  public float[] embed(String text) {
+    char[] chars =
+        Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT).toCharArray();
+    float[] vector = new float[dimensions];
+    // Current word, with a boundary marker on each side, built up in place
+    char[] word = new char[chars.length + 2];
+    long previousWord = 0;
+    int start = -1;
+    for (int i = 0; i <= chars.length; i++) {
+      boolean wordChar = i < chars.length && Character.isLetterOrDigit(chars[i]);
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        int length = i - start;
+        word[0] = BOUNDARY;
+        System.arraycopy(chars, start, word, 1, length);
+        word[length + 1] = BOUNDARY;
+
+        long wordHash = hash(WORD_SEED, word, 1, length);
+        add(vector, wordHash, WORD_WEIGHT);
+        if (previousWord != 0) {
+          add(vector, mix(previousWord * 31 + wordHash + PAIR_SEED), WORD_PAIR_WEIGHT);
+        }
+        previousWord = wordHash;
+
+        for (int n = MIN_GRAM; n <= MAX_GRAM; n++) {
+          for (int from = 0; from + n <= length + 2; from++) {
+            add(vector, hash(GRAM_SEED + n, word, from, n), GRAM_WEIGHT);
+          }
+        }
+        start = -1;
+      }
+    }
+    return VectorMath.normalize(vector);
+  }
+
+  // The low bits pick the slot and the top bit the sign, so colliding features tend to cancel
+  private void add(float[] vector, long hash, float weight) {
+    int slot = (int) Long.remainderUnsigned(hash & Long.MAX_VALUE, dimensions);
+    vector[slot] += hash < 0 ? -weight : weight;
+  }
+
+  // FNV-1a over the characters, finished with a mixer so similar strings spread over all bits
+  private static long hash(long seed, char[] chars, int from, int length) {
+    long hash = 0xCBF29CE484222325L ^ seed;
+    for (int i = from; i < from + length; i++) {
+      hash ^= chars[i];
+      hash *= 0x100000001B3L;
+    }
+    return mix(hash);
+  }
+
+  // The 64-bit finalizer from MurmurHash3
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB93FE51A3C53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,613 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Hierarchical navigable small world graph over unit-length vectors, for approximate
+ * nearest-neighbour search by cosine similarity (Malkov &amp; Yashunin).
+ *
+ * <p>Each entry is identified by a key and carries a payload returned with search hits. Inserting
+ * an existing key replaces it. Deleted entries stay in the graph as tombstones, so the links
+ * through them keep working, and are filtered out of results; once tombstones outnumber live
+ * entries the graph is rebuilt without them. The rebuild runs on the {@link #setCompactor
+ * compactor}, the calling thread by default, without holding the graph's lock: searches keep using
+ * the old graph, and inserts and deletes made meanwhile are applied to the new one before it is
+ * swapped in.
+ *
+ * <p>{@code m} bounds the links per node (twice that on the bottom layer), {@code efConstruction}
+ * the candidate list while inserting and {@code efSearch} the candidate list while searching;
+ * larger values trade speed for recall. Searches may run concurrently; inserts and deletes are
+ * exclusive.
+ *
+ * @param <T> payload type
+ */
+public final class HnswIndex<T> {
+
+  private static final int SNAPSHOT_MAGIC = 0x484E5357; // "HNSW"
+  private static final int SNAPSHOT_VERSION = 1;
+
+  private static final Comparator<Candidate> NEAREST_FIRST =
+      Comparator.comparingDouble(Candidate::score).reversed();
+  private static final Comparator<Candidate> FURTHEST_FIRST =
+      Comparator.comparingDouble(Candidate::score);
+
+  private final int dimensions;
+  private final int m;
+  private final int maxLinksBottom;
+  private final int efConstruction;
+  private final double levelMultiplier;
+  private final Random random;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private volatile int efSearch;
+  private List<Node<T>> nodes = new ArrayList<>();
+  private Map<String, Integer> idsByKey = new HashMap<>();
+  private int entryPoint = -1;
+  private int maxLevel = -1;
+  private int deleted;
+  private volatile Executor compactor = Runnable::run;
+  // Inserts (vector set) and deletes made while a rebuild runs; null unless one runs
+  private List<Change<T>> changesDuringCompaction;
+
+  /**
+   * @throws IllegalArgumentException if a parameter is out of range
+   */
+  public HnswIndex(int dimensions, int m, int efConstruction, int efSearch, long seed) {
+    if (dimensions <= 0 || m < 2 || efConstruction < 1 || efSearch < 1) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Invalid HNSW parameters: dimensions=%d, m=%d, efConstruction=%d, efSearch=%d",
+              dimensions, m, efConstruction, efSearch));
+    }
+    this.dimensions = dimensions;
+    this.m = m;
+    this.maxLinksBottom = 2 * m;
+    this.efConstruction = efConstruction;
+    this.efSearch = efSearch;
+    this.levelMultiplier = 1 / Math.log(m);
+    this.random = new Random(seed);
+  }
+
+  /** A search result: the entry's key, payload and cosine similarity to the query. */
+  public record Hit<T>(String key, T item, float score) {}
+
+  private record Candidate(int id, float score) {}
+
+  private record Change<T>(String key, float[] vector, T item) {}
+
+  private static final class Node<T> {
+    private final String key;
+    private final T item;
+    private final float[] vector;
+    private final int[][] links;
+    private final int[] linkCounts;
+    private boolean deleted;
+
+    Node(String key, T item, float[] vector, int level, int m, int maxLinksBottom) {
+      this.key = key;
+      this.item = item;
+      this.vector = vector;
+      this.links = new int[level + 1][];
+      this.linkCounts = new int[level + 1];
+      for (int layer = 0; layer <= level; layer++) {
+        links[layer] = new int[(layer == 0 ? maxLinksBottom : m) + 1];
+      }
+    }
+
+    int level() {
+      return links.length - 1;
+    }
+  }
+
+  public int getDimensions() {
+    return dimensions;
+  }
+
+  /** Number of live (not deleted) entries. */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return nodes.size() - deleted;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public boolean contains(String key) {
+    lock.readLock().lock();
+    try {
+      return idsByKey.containsKey(key);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public void setEfSearch(int efSearch) {
+    if (efSearch < 1) {
+      throw new IllegalArgumentException("efSearch must be positive");
+    }
+    this.efSearch = efSearch;
+  }
+
+  /**
+   * Sets where rebuilds without tombstones run; by default in the insert or delete that needs one.
+   */
+  public void setCompactor(Executor compactor) {
+    this.compactor = compactor;
+  }
+
+  /**
+   * Inserts an entry, replacing any entry with the same key.
+   *
+   * @param vector unit-length embedding; it is not copied
+   * @throws IllegalArgumentException if the vector has the wrong dimension
+   */
+  public void add(String key, float[] vector, T item) {
+    if (vector.length != dimensions) {
+      throw new IllegalArgumentException("Embeddings must have the same dimension");
+    }
+    boolean compact;
+    lock.writeLock().lock();
+    try {
+      markDeleted(key);
+      insert(key, vector, item);
+      compact = record(new Change<>(key, vector, item));
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (compact) {
+      compactor.execute(this::compact);
+    }
+  }
+
+  /** Deletes the entry with {@code key}; returns whether there was one. */
+  public boolean remove(String key) {
+    boolean removed;
+    boolean compact;
+    lock.writeLock().lock();
+    try {
+      removed = markDeleted(key);
+      compact = removed && record(new Change<>(key, null, null));
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (compact) {
+      compactor.execute(this::compact);
+    }
+    return removed;
+  }
+
+  /**
+   * Approximate top-{@code k} entries by cosine similarity, best first.
+   *
+   * @param query unit-length query embedding
+   * @throws IllegalArgumentException if the query has the wrong dimension
+   */
+  public List<Hit<T>> search(float[] query, int k) {
+    if (query.length != dimensions) {
+      throw new IllegalArgumentException("Embeddings must have the same dimension");
+    }
+    lock.readLock().lock();
+    try {
+      if (entryPoint < 0 || k <= 0) {
+        return List.of();
+      }
+      int current = entryPoint;
+      float currentScore = score(query, current);
+      for (int layer = maxLevel; layer > 0; layer--) {
+        Candidate nearest = greedyClosest(query, current, currentScore, layer);
+        current = nearest.id();
+        currentScore = nearest.score();
+      }
+      PriorityQueue<Candidate> found =
+          searchLayer(query, current, currentScore, Math.max(efSearch, k), 0, true);
+
+      List<Candidate> sorted = new ArrayList<>(found);
+      sorted.sort(NEAREST_FIRST);
+      List<Hit<T>> hits = new ArrayList<>(Math.min(k, sorted.size()));
+      for (Candidate candidate : sorted) {
+        if (hits.size() == k) {
+          break;
+        }
+        Node<T> node = nodes.get(candidate.id());
+        hits.add(new Hit<>(node.key, node.item, candidate.score()));
+      }
+      return hits;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Bytes taken by the graph's links and by the vectors it holds apart from its payloads: a node's
+   * vector that is its payload's own vector, given by {@code itemVectors}, is counted by whoever
+   * owns the payload. Object headers are not counted.
+   */
+  public long residentBytes(Function<T, float[]> itemVectors) {
+    lock.readLock().lock();
+    try {
+      long bytes = 0;
+      for (Node<T> node : nodes) {
+        if (node.item == null || itemVectors.apply(node.item) != node.vector) {
+          bytes += 4L * node.vector.length;
+        }
+        for (int[] layer : node.links) {
+          bytes += 4L * layer.length + 4;
+        }
+      }
+      return bytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Writes the graph (keys, vectors and links, not payloads) so it can be restored without
+   * re-inserting every entry.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    lock.readLock().lock();
+    try {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeInt(dimensions);
+      out.writeInt(m);
+      out.writeInt(efConstruction);
+      out.writeInt(efSearch);
+      out.writeInt(nodes.size());
+      out.writeInt(entryPoint);
+      out.writeInt(maxLevel);
+      for (Node<T> node : nodes) {
+        out.writeUTF(node.key);
+        out.writeBoolean(node.deleted);
+        out.writeInt(node.level());
+        for (float value : node.vector) {
+          out.writeFloat(value);
+        }
+        for (int layer = 0; layer <= node.level(); layer++) {
+          out.writeInt(node.linkCounts[layer]);
+          for (int i = 0; i < node.linkCounts[layer]; i++) {
+            out.writeInt(node.links[layer][i]);
+          }
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Restores a graph written by {@link #writeTo}. Payloads are looked up by key; live entries whose
+   * payload is missing are dropped as if deleted.
+   *
+   * @throws IOException if the input is not a supported snapshot
+   */
+  public static <T> HnswIndex<T> readFrom(DataInput in, Function<String, T> items, long seed)
+      throws IOException {
+    return readFrom(in, items, item -> null, seed);
+  }
+
+  /**
+   * Restores a graph written by {@link #writeTo}, like {@link #readFrom(DataInput, Function,
+   * long)}. An entry whose payload's own vector, given by {@code itemVectors}, equals the stored
+   * one keeps that array instead of a second copy.
+   *
+   * @throws IOException if the input is not a supported snapshot
+   */
+  public static <T> HnswIndex<T> readFrom(
+      DataInput in, Function<String, T> items, Function<T, float[]> itemVectors, long seed)
+      throws IOException {
+    if (in.readInt() != SNAPSHOT_MAGIC) {
+      throw new IOException("Not an HNSW snapshot");
+    }
+    int version = in.readInt();
+    if (version != SNAPSHOT_VERSION) {
+      throw new IOException("Unsupported HNSW snapshot version: " + version);
+    }
+    HnswIndex<T> index =
+        new HnswIndex<>(in.readInt(), in.readInt(), in.readInt(), in.readInt(), seed);
+    int count = in.readInt();
+    index.entryPoint = in.readInt();
+    index.maxLevel = in.readInt();
+    for (int id = 0; id < count; id++) {
+      String key = in.readUTF();
+      boolean deleted = in.readBoolean();
+      int level = in.readInt();
+      float[] vector = new float[index.dimensions];
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] = in.readFloat();
+      }
+      T item = deleted ? null : items.apply(key);
+      float[] own = item == null ? null : itemVectors.apply(item);
+      if (Arrays.equals(own, vector)) {
+        vector = own;
+      }
+      Node<T> node = new Node<>(key, item, vector, level, index.m, index.maxLinksBottom);
+      for (int layer = 0; layer <= level; layer++) {
+        int links = in.readInt();
+        if (links > node.links[layer].length) {
+          throw new IOException("Corrupt HNSW snapshot: too many links for " + key);
+        }
+        node.linkCounts[layer] = links;
+        for (int i = 0; i < links; i++) {
+          int link = in.readInt();
+          if (link < 0 || link >= count) {
+            throw new IOException("Corrupt HNSW snapshot: dangling link from " + key);
+          }
+          node.links[layer][i] = link;
+        }
+      }
+      node.deleted = deleted || item == null;
+      if (node.deleted) {
+        index.deleted++;
+      } else {
+        index.idsByKey.put(key, id);
+      }
+      index.nodes.add(node);
+    }
+    if (index.record(null)) {
+      index.compact();
+    }
+    return index;
+  }
+
+  private void insert(String key, float[] vector, T item) {
+    int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    int id = nodes.size();
+    Node<T> node = new Node<>(key, item, vector, level, m, maxLinksBottom);
+    nodes.add(node);
+    idsByKey.put(key, id);
+
+    if (entryPoint < 0) {
+      entryPoint = id;
+      maxLevel = level;
+      return;
+    }
+
+    int current = entryPoint;
+    float currentScore = score(vector, current);
+    for (int layer = maxLevel; layer > level; layer--) {
+      Candidate nearest = greedyClosest(vector, current, currentScore, layer);
+      current = nearest.id();
+      currentScore = nearest.score();
+    }
+    for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+      PriorityQueue<Candidate> found =
+          searchLayer(vector, current, currentScore, efConstruction, layer, false);
+      List<Candidate> neighbours = selectNeighbours(found, m);
+      for (Candidate neighbour : neighbours) {
+        link(id, neighbour.id(), layer);
+        link(neighbour.id(), id, layer);
+      }
+      Candidate best = neighbours.get(0);
+      current = best.id();
+      currentScore = best.score();
+    }
+    if (level > maxLevel) {
+      entryPoint = id;
+      maxLevel = level;
+    }
+  }
+
+  private boolean markDeleted(String key) {
+    Integer id = idsByKey.remove(key);
+    if (id == null) {
+      return false;
+    }
+    nodes.get(id).deleted = true;
+    deleted++;
+    return true;
+  }
+
+  /**
+   * Keeps {@code change} for the rebuild in progress, if any. Otherwise returns whether tombstones
+   * now outnumber live entries, in which case the caller starts a rebuild. Callers hold the write
+   * lock.
+   */
+  private boolean record(Change<T> change) {
+    if (changesDuringCompaction != null) {
+      if (change != null) {
+        changesDuringCompaction.add(change);
+      }
+      return false;
+    }
+    if (deleted == 0 || deleted <= nodes.size() - deleted) {
+      return false;
+    }
+    changesDuringCompaction = new ArrayList<>();
+    return true;
+  }
+
+  // Rebuilds the graph from the live entries, then applies the changes made meanwhile and swaps it
+  // in
+  private void compact() {
+    List<Node<T>> live;
+    long seed;
+    lock.writeLock().lock();
+    try {
+      live = new ArrayList<>(nodes.size() - deleted);
+      for (Node<T> node : nodes) {
+        if (!node.deleted) {
+          live.add(node);
+        }
+      }
+      // Changes recorded so far are already in the live entries
+      changesDuringCompaction.clear();
+      seed = random.nextLong();
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    HnswIndex<T> rebuilt = null;
+    try {
+      rebuilt = new HnswIndex<>(dimensions, m, efConstruction, efSearch, seed);
+      for (Node<T> node : live) {
+        rebuilt.insert(node.key, node.vector, node.item);
+      }
+    } finally {
+      lock.writeLock().lock();
+      try {
+        // A failed rebuild keeps the tombstones until the next one
+        if (rebuilt != null && rebuilt.nodes.size() == live.size()) {
+          nodes = rebuilt.nodes;
+          idsByKey = rebuilt.idsByKey;
+          entryPoint = rebuilt.entryPoint;
+          maxLevel = rebuilt.maxLevel;
+          deleted = 0;
+          for (Change<T> change : changesDuringCompaction) {
+            markDeleted(change.key());
+            if (change.vector() != null) {
+              insert(change.key(), change.vector(), change.item());
+            }
+          }
+        }
+        changesDuringCompaction = null;
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private Candidate greedyClosest(float[] query, int start, float startScore, int layer) {
+    int current = start;
+    float currentScore = startScore;
+    boolean improved = true;
+    while (improved) {
+      improved = false;
+      Node<T> node = nodes.get(current);
+      for (int i = 0; i < node.linkCounts[layer]; i++) {
+        int neighbour = node.links[layer][i];
+        float neighbourScore = score(query, neighbour);
+        if (neighbourScore > currentScore) {
+          current = neighbour;
+          currentScore = neighbourScore;
+          improved = true;
+        }
+      }
+    }
+    return new Candidate(current, currentScore);
+  }
+
+  /**
+   * Beam search of one layer. Returns up to {@code ef} nearest nodes found, furthest at the head.
+   * When {@code liveOnly} is set, deleted nodes are traversed but not returned.
+   */
+  private PriorityQueue<Candidate> searchLayer(
+      float[] query, int start, float startScore, int ef, int layer, boolean liveOnly) {
+    BitSet visited = new BitSet(nodes.size());
+    visited.set(start);
+    PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+    PriorityQueue<Candidate> found = new PriorityQueue<>(FURTHEST_FIRST);
+    Candidate first = new Candidate(start, startScore);
+    candidates.add(first);
+    if (!liveOnly || !nodes.get(start).deleted) {
+      found.add(first);
+    }
+
+    while (!candidates.isEmpty()) {
+      Candidate closest = candidates.poll();
+      if (found.size() >= ef && closest.score() < found.peek().score()) {
+        break;
+      }
+      Node<T> node = nodes.get(closest.id());
+      for (int i = 0; i < node.linkCounts[layer]; i++) {
+        int neighbour = node.links[layer][i];
+        if (visited.get(neighbour)) {
+          continue;
+        }
+        visited.set(neighbour);
+        float neighbourScore = score(query, neighbour);
+        if (found.size() < ef || neighbourScore > found.peek().score()) {
+          Candidate candidate = new Candidate(neighbour, neighbourScore);
+          candidates.add(candidate);
+          if (!liveOnly || !nodes.get(neighbour).deleted) {
+            found.add(candidate);
+            if (found.size() > ef) {
+              found.poll();
+            }
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Neighbour selection heuristic: takes candidates nearest first, skipping any that is closer to
+   * an already selected neighbour than to the new node, so links spread in different directions.
+   * Falls back to the nearest remaining candidates if that leaves fewer than {@code max}.
+   */
+  private List<Candidate> selectNeighbours(PriorityQueue<Candidate> found, int max) {
+    List<Candidate> sorted = new ArrayList<>(found);
+    sorted.sort(NEAREST_FIRST);
+    List<Candidate> selected = new ArrayList<>(max);
+    List<Candidate> skipped = new ArrayList<>();
+    for (Candidate candidate : sorted) {
+      if (selected.size() == max) {
+        break;
+      }
+      boolean diverse = true;
+      float[] vector = nodes.get(candidate.id()).vector;
+      for (Candidate chosen : selected) {
+        if (similarity(vector, nodes.get(chosen.id()).vector) > candidate.score()) {
+          diverse = false;
+          break;
+        }
+      }
+      if (diverse) {
+        selected.add(candidate);
+      } else {
+        skipped.add(candidate);
+      }
+    }
+    for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+      selected.add(skipped.get(i));
+    }
+    return selected;
+  }
+
+  private void link(int from, int to, int layer) {
+    Node<T> node = nodes.get(from);
+    int[] links = node.links[layer];
+    int count = node.linkCounts[layer];
+    links[count++] = to;
+    int max = layer == 0 ? maxLinksBottom : m;
+    if (count <= max) {
+      node.linkCounts[layer] = count;
+      return;
+    }
+    // Over capacity: keep the best-spread subset of the current links
+    PriorityQueue<Candidate> current = new PriorityQueue<>(FURTHEST_FIRST);
+    for (int i = 0; i < count; i++) {
+      current.add(new Candidate(links[i], similarity(node.vector, nodes.get(links[i]).vector)));
+    }
+    List<Candidate> kept = selectNeighbours(current, max);
+    for (int i = 0; i < kept.size(); i++) {
+      links[i] = kept.get(i).id();
+    }
+    node.linkCounts[layer] = kept.size();
+  }
+
+  private float score(float[] query, int id) {
+    return similarity(query, nodes.get(id).vector);
+  }
+
+  private float similarity(float[] a, float[] b) {
+    return VectorMath.dot(a, 0, b, 0, dimensions);
+  }
+}
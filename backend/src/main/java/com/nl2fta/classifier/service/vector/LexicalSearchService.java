@@ -0,0 +1,220 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.dto.semantic_type.SemanticTypeGenerationRequest;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keyword search over the semantic type catalog: a {@link Bm25Index} of each type's name,
+ * description, header patterns and examples. It needs no embedding call and answers in
+ * microseconds, so similarity checks consult it first and skip the vector search when it is
+ * decisive.
+ *
+ * <p>The index is built from the catalog on first use and kept current by {@link #put} and {@link
+ * #remove} as types are saved and deleted. It remembers the repository's catalog version it was
+ * built from, so a catalog that changed underneath it, as when the repository syncs from S3 or
+ * switches storage, is indexed again on the next use; {@link #invalidate()} forces that. A rebuild
+ * fills a new index and swaps it in, so searches meanwhile see the previous one rather than a
+ * partial one.
+ */
+@Slf4j
+@Service
+public class LexicalSearchService {
+
+  // Name and header words say the most about a type; example values the least
+  private static final float NAME_WEIGHT = 3f;
+  private static final float DESCRIPTION_WEIGHT = 2f;
+  private static final float HEADER_WEIGHT = 2f;
+  private static final float EXAMPLE_WEIGHT = 1f;
+  private static final int MAX_EXAMPLES = 20;
+  private static final int MAX_QUERY_EXAMPLES = 10;
+  private static final int MIN_DECISIVE_TERMS = 2;
+
+  private static final Set<String> STOP_WORDS =
+      Set.of(
+          "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "is", "it", "its", "of",
+          "on", "or", "that", "the", "this", "to", "with");
+
+  /** Share of the query a match must cover to be decisive. */
+  @Value("${vector.lexical.decisive-coverage:0.5}")
+  private double decisiveCoverage;
+
+  /** How many times the runner-up's score a decisive match must reach. */
+  @Value("${vector.lexical.decisive-margin:1.5}")
+  private double decisiveMargin;
+
+  private volatile Bm25Index index = new Bm25Index();
+  // Catalog version the index was built from; null until built or after invalidate()
+  private volatile Long indexedCatalog;
+
+  /**
+   * Builds the index from the catalog unless it is already built from this same version of it.
+   *
+   * @param catalogVersion the repository's catalog version, read before the catalog so a change
+   *     made in between makes the next call rebuild
+   * @param catalog the types to index
+   */
+  public void ensureIndexed(long catalogVersion, Collection<CustomSemanticType> catalog) {
+    if (Long.valueOf(catalogVersion).equals(indexedCatalog)) {
+      return;
+    }
+    Bm25Index rebuilt = new Bm25Index();
+    catalog.forEach(type -> put(rebuilt, type));
+    synchronized (this) {
+      index = rebuilt;
+      indexedCatalog = catalogVersion;
+    }
+    log.debug("Built lexical index of {} semantic types", rebuilt.size());
+  }
+
+  /** Adds or replaces a type in the index. */
+  public void put(CustomSemanticType type) {
+    put(index, type);
+  }
+
+  private static void put(Bm25Index index, CustomSemanticType type) {
+    if (type == null || type.getSemanticType() == null) {
+      return;
+    }
+    Map<String, Float> terms = new HashMap<>();
+    addTerms(terms, type.getSemanticType(), NAME_WEIGHT);
+    addTerms(terms, type.getDescription(), DESCRIPTION_WEIGHT);
+    int examples = 0;
+    if (type.getValidLocales() != null) {
+      for (CustomSemanticType.LocaleConfig locale : type.getValidLocales()) {
+        if (locale.getHeaderRegExps() != null) {
+          for (CustomSemanticType.HeaderRegExp header : locale.getHeaderRegExps()) {
+            addTerms(terms, header.getRegExp(), HEADER_WEIGHT);
+          }
+        }
+        if (locale.getMatchEntries() != null) {
+          for (CustomSemanticType.MatchEntry entry : locale.getMatchEntries()) {
+            addTerms(terms, entry.getDescription(), EXAMPLE_WEIGHT);
+          }
+        }
+      }
+    }
+    if (type.getContent() != null && type.getContent().getValues() != null) {
+      for (String value : type.getContent().getValues()) {
+        if (examples++ == MAX_EXAMPLES) {
+          break;
+        }
+        addTerms(terms, value, EXAMPLE_WEIGHT);
+      }
+    }
+    index.put(type.getSemanticType(), terms);
+  }
+
+  /** Removes a type from the index. */
+  public void remove(String semanticType) {
+    if (semanticType != null) {
+      index.remove(semanticType);
+    }
+  }
+
+  /** Makes the next {@link #ensureIndexed} rebuild the index, as after a catalog reload. */
+  public synchronized void invalidate() {
+    indexedCatalog = null;
+  }
+
+  /**
+   * Finds the types whose keywords best match the request's description, header examples and
+   * positive examples.
+   *
+   * @return up to {@code limit} hits, best first
+   */
+  public List<Bm25Index.Hit> search(SemanticTypeGenerationRequest request, int limit) {
+    List<String> terms = new ArrayList<>();
+    addTerms(terms, request.getDescription());
+    if (request.getPositiveHeaderExamples() != null) {
+      request.getPositiveHeaderExamples().forEach(header -> addTerms(terms, header));
+    }
+    if (request.getPositiveContentExamples() != null) {
+      request.getPositiveContentExamples().stream()
+          .limit(MAX_QUERY_EXAMPLES)
+          .forEach(example -> addTerms(terms, example));
+    }
+    return index.search(terms, limit);
+  }
+
+  /**
+   * Whether the best hit is certain enough to stand without a vector search: it covers most of the
+   * query, matches more than one term and clearly outscores the runner-up.
+   */
+  public boolean isDecisive(List<Bm25Index.Hit> hits) {
+    if (hits == null || hits.isEmpty()) {
+      return false;
+    }
+    Bm25Index.Hit best = hits.get(0);
+    return best.coverage() >= decisiveCoverage
+        && best.matchedTerms() >= MIN_DECISIVE_TERMS
+        && (hits.size() == 1 || best.score() >= decisiveMargin * hits.get(1).score());
+  }
+
+  private static void addTerms(Map<String, Float> terms, String text, float weight) {
+    List<String> tokens = new ArrayList<>();
+    addTerms(tokens, text);
+    for (String token : tokens) {
+      terms.merge(token, weight, Float::sum);
+    }
+  }
+
+  /**
+   * Splits text into lower-case words at anything that is not a letter or digit and at camel-case
+   * humps, drops one-letter words and stop words, and strips plural endings.
+   */
+  static void addTerms(List<String> terms, String text) {
+    if (text == null) {
+      return;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      boolean hump =
+          wordChar
+              && start >= 0
+              && Character.isUpperCase(text.charAt(i))
+              && Character.isLowerCase(text.charAt(i - 1));
+      if (start >= 0 && (!wordChar || hump)) {
+        String word = stem(text.substring(start, i).toLowerCase(Locale.ROOT));
+        if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+          terms.add(word);
+        }
+        start = -1;
+      }
+      if (wordChar && start < 0) {
+        start = i;
+      }
+    }
+  }
+
+  // Harman's S-stemmer: addresses -> address, categories -> category, names -> name
+  private static String stem(String word) {
+    if (word.length() > 4 && word.endsWith("ies") && !word.endsWith("eies")) {
+      return word.substring(0, word.length() - 3) + "y";
+    }
+    if (word.length() > 4 && word.endsWith("sses")) {
+      return word.substring(0, word.length() - 2);
+    }
+    if (word.length() > 3
+        && word.endsWith("s")
+        && !word.endsWith("ss")
+        && !word.endsWith("us")
+        && !word.endsWith("is")) {
+      return word.substring(0, word.length() - 1);
+    }
+    return word;
+  }
+}
@@ -1,45 +1,86 @@
 package com.nl2fta.classifier.service.vector;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nl2fta.classifier.service.aws.AwsCredentialsService;
+import com.nl2fta.classifier.service.storage.S3BulkFetcher;
 
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
 import software.amazon.awssdk.services.s3.model.CreateBucketConfiguration;
 import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
-import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 /**
- * Service for storing and retrieving vector embeddings in AWS S3. Stores vectors organized by
- * semantic type for efficient retrieval.
+ * Service for storing and retrieving vector embeddings in AWS S3.
+ *
+ * <p>In S3 the index is persisted as one binary {@link VectorSnapshot} object per index version
+ * ({@code vectors/index/snapshot-<version>.bin}) plus one small delta log per store or delete made
+ * since ({@code vectors/index/deltas/<millis>-<uuid>.bin}), so instances sharing the bucket never
+ * overwrite each other's changes. Once more than {@code vector.snapshot.max-delta-entries} delta
+ * logs have piled up, they are folded into the next version, which is created with a conditional
+ * write: when several instances compact at once, one wins and the others reload from its snapshot.
+ * A snapshot names the delta logs it folded, and logs written meanwhile stay pending for the next
+ * one. A cold load is one listing, one snapshot GET and one GET per pending delta log. Buckets
+ * still holding the earlier layout of one JSON object per semantic type ({@code
+ * vectors/<type>.json}) are migrated to a snapshot the first time they are loaded.
+ *
+ * <p>When S3 is connected, the vectors are kept in a resident index that is loaded from the bucket
+ * once and then maintained in place by {@link #storeVector}, {@link #deleteVector} and {@link
+ * #clearAllVectors}, which write through to S3 before updating it. {@link #getAllVectors()} serves
+ * the index, so similarity searches do not touch S3. The index is dropped whenever the S3
+ * connection changes and reloaded on next use.
+ *
+ * <p>Once the index reaches {@code vector.index.ann.min-size} vectors it also maintains an {@link
+ * HnswIndex} for approximate search, updated incrementally with the index; smaller catalogs are
+ * searched exactly, over a matrix that {@code vector.index.quantization} can pack as int8 or sign
+ * bits. Snapshots always hold the full-precision embeddings. The graph is written next to each
+ * snapshot ({@code vectors/index/graph-<version>.bin}) and read back with it, so a load only
+ * applies the logged changes to it instead of rebuilding it. When there is no graph to read, it is
+ * built in the background and published once it has caught up with the changes made meanwhile;
+ * until then searches stay exact.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class S3VectorStorageService {
 
+  private static final int MAX_LOAD_ATTEMPTS = 3;
+  private static final int MAX_DELETE_BATCH = 1000;
+
   private final ObjectMapper objectMapper;
   private final AwsCredentialsService awsCredentialsService;
 
@@ -51,10 +92,75 @@ public class S3VectorStorageService {
   // Changed to organize vectors by semantic type
   private final String vectorPrefix = "vectors/";
 
+  private final String snapshotPrefix = vectorPrefix + "index/";
+
+  private final String deltaPrefix = snapshotPrefix + "deltas/";
+
   @Value("${aws.region:us-east-1}")
   private String awsRegion;
 
+  // Approximate search kicks in once the index holds this many vectors; 0 disables it
+  @Value("${vector.index.ann.min-size:5000}")
+  private int annMinSize;
+
+  @Value("${vector.index.ann.m:16}")
+  private int annM;
+
+  @Value("${vector.index.ann.ef-construction:100}")
+  private int annEfConstruction;
+
+  @Value("${vector.index.ann.ef-search:64}")
+  private int annEfSearch;
+
+  // How the exact-search matrix packs its rows: none, int8 or binary
+  @Value("${vector.index.quantization:none}")
+  private String quantization;
+
+  // Changes kept in delta logs before the index is written as a new snapshot version
+  @Value("${vector.snapshot.max-delta-entries:64}")
+  private int maxDeltaEntries;
+
+  // Bulk downloads (legacy per-type objects) run this many requests in parallel
+  @Value("${aws.s3.fetch.max-concurrency:16}")
+  private int fetchMaxConcurrency;
+
+  @Value("${aws.s3.fetch.max-attempts:3}")
+  private int fetchMaxAttempts;
+
+  @Value("${aws.s3.fetch.backoff-ms:200}")
+  private long fetchBackoffMs;
+
   private S3Client s3Client;
+  private S3AsyncClient s3AsyncClient;
+
+  // Resident index of the vectors in S3, keyed by semantic type; null until loaded
+  private final Object indexLock = new Object();
+  private Map<String, VectorData> residentIndex;
+  // Copied from residentIndex on first use after a change
+  private volatile List<VectorData> residentVectors;
+  private volatile VectorMatrix residentMatrix;
+  private volatile HnswIndex<VectorData> residentGraph;
+  // Keeps residentMatrix up to date as vectors change, appending to its rows instead of repacking
+  private VectorMatrix.Writer matrixWriter;
+  // Builds and compacts the graph off indexLock, so stores and loads do not wait for it
+  private Executor graphBuilder = newGraphBuilder();
+  // Bumped whenever residentGraph is replaced, so a build started before is discarded
+  private long graphGeneration;
+  // Changes applied to the index while the graph is built; null unless a build runs
+  private List<VectorSnapshot.Delta> changesDuringGraphBuild;
+
+  // Persisted version the resident index was loaded from, the delta logs folded into that version
+  // and the delta logs applied on top of it since
+  private long indexVersion;
+  private Set<String> foldedDeltas = Set.of();
+  private final List<String> appliedDeltas = new ArrayList<>();
+  private int loggedChanges;
+  // Per-type objects of the legacy layout are still waiting to be migrated; a snapshot written
+  // before then would hide the ones that failed to download
+  private boolean legacyMigrationPending;
+
+  // Delta timestamps, kept strictly increasing so changes made within a millisecond keep order
+  private final AtomicLong lastDeltaMillis = new AtomicLong();
 
   @PostConstruct
   public void init() {
@@ -95,12 +201,19 @@ public class S3VectorStorageService {
     }
 
     try {
+      invalidateIndex();
       // Initialize S3 client with frontend-provided credentials
       this.s3Client =
           S3Client.builder()
               .region(Region.of(awsCredentialsService.getRegion()))
               .credentialsProvider(awsCredentialsService.getCredentialsProvider())
               .build();
+      // Async client for parallel bulk downloads
+      this.s3AsyncClient =
+          S3AsyncClient.builder()
+              .region(Region.of(awsCredentialsService.getRegion()))
+              .credentialsProvider(awsCredentialsService.getCredentialsProvider())
+              .build();
 
       // Ensure bucket exists
       log.info(
@@ -111,6 +224,7 @@ public class S3VectorStorageService {
     } catch (Exception e) {
       log.error("Failed to initialize S3 client", e);
       this.s3Client = null;
+      closeAsyncClient();
     }
   }
 
@@ -118,8 +232,10 @@ public class S3VectorStorageService {
   public void disconnectS3() {
     if (s3Client != null) {
       try {
+        closeAsyncClient();
         s3Client.close();
         s3Client = null;
+        invalidateIndex();
         log.info("S3 client disconnected - using in-memory storage");
       } catch (Exception e) {
         log.error("Error closing S3 client", e);
@@ -127,6 +243,22 @@ public class S3VectorStorageService {
     }
   }
 
+  private void closeAsyncClient() {
+    if (s3AsyncClient != null) {
+      s3AsyncClient.close();
+      s3AsyncClient = null;
+    }
+  }
+
+  private S3BulkFetcher bulkFetcher() {
+    return new S3BulkFetcher(
+        s3Client,
+        s3AsyncClient,
+        Math.max(1, fetchMaxConcurrency),
+        Math.max(1, fetchMaxAttempts),
+        Duration.ofMillis(fetchBackoffMs));
+  }
+
   private void ensureBucketExists() {
     if (s3Client == null) {
       return;
@@ -208,35 +340,19 @@ public class S3VectorStorageService {
   }
 
   /**
-   * Store a vector embedding with metadata in S3. Organizes vectors by semantic type for efficient
-   * deletion.
+   * Store a vector embedding with metadata, replacing any vector for the same semantic type. In S3
+   * the change is appended to the delta log of the current index version.
    *
    * @param vectorData The vector data to store
    */
   public void storeVector(VectorData vectorData) {
-    // Clean design: single object per semantic type
-    // Key format: vectors/{semantic_type}.json
     String sanitizedSemanticType = sanitizeForS3Key(vectorData.getSemanticType());
     String singleKey = vectorPrefix + sanitizedSemanticType + ".json";
-    String legacyTypePrefix =
-        vectorPrefix + sanitizedSemanticType + "/"; // legacy folder-based layout
 
     try {
-      String json = objectMapper.writeValueAsString(vectorData);
-
       if (s3Client != null) {
-        // Store/overwrite single object per type (no legacy cleanup)
-        s3Client.putObject(
-            PutObjectRequest.builder()
-                .bucket(bucketName)
-                .key(singleKey)
-                .contentType("application/json")
-                .build(),
-            RequestBody.fromString(json));
-        log.info(
-            "Stored vector for semantic type: {} at key: {}",
-            vectorData.getSemanticType(),
-            singleKey);
+        appendDeltas(List.of(new VectorSnapshot.Delta(vectorData.getSemanticType(), vectorData)));
+        log.info("Stored vector for semantic type: {}", vectorData.getSemanticType());
       } else {
         // Fallback to in-memory storage
         inMemoryStorage.put(singleKey, vectorData);
@@ -253,23 +369,52 @@ public class S3VectorStorageService {
   }
 
   /**
-   * Check if any vectors exist in storage without downloading them.
+   * Store several vector embeddings, replacing any vectors for the same semantic types. In S3 they
+   * are written as one delta log and the resident index is republished once, so an index build does
+   * not pay a write and a rebuild of the search structures per vector.
+   *
+   * @param vectors The vector data to store
+   */
+  public void storeVectors(List<VectorData> vectors) {
+    if (vectors.isEmpty()) {
+      return;
+    }
+    try {
+      if (s3Client != null) {
+        List<VectorSnapshot.Delta> changes = new ArrayList<>(vectors.size());
+        for (VectorData vector : vectors) {
+          changes.add(new VectorSnapshot.Delta(vector.getSemanticType(), vector));
+        }
+        appendDeltas(changes);
+        log.info("Stored {} vectors", vectors.size());
+      } else {
+        for (VectorData vector : vectors) {
+          inMemoryStorage.put(
+              vectorPrefix + sanitizeForS3Key(vector.getSemanticType()) + ".json", vector);
+        }
+        log.debug("Stored {} vectors in memory", vectors.size());
+      }
+    } catch (Exception e) {
+      log.error("Error storing {} vectors", vectors.size(), e);
+      throw new RuntimeException("Failed to store vectors", e);
+    }
+  }
+
+  /** Whether vectors are stored in S3, rather than in memory until AWS is connected. */
+  public boolean isConnected() {
+    return s3Client != null;
+  }
+
+  /**
+   * Check if any vectors exist in storage. With S3 connected this loads the resident index if
+   * needed, which takes a single snapshot GET.
    *
    * @return true if at least one vector exists
    */
   public boolean hasAnyVectors() {
     try {
       if (s3Client != null) {
-        // Just list one object to check if any exist
-        ListObjectsV2Request listRequest =
-            ListObjectsV2Request.builder()
-                .bucket(bucketName)
-                .prefix(vectorPrefix)
-                .maxKeys(1)
-                .build();
-
-        ListObjectsV2Response response = s3Client.listObjectsV2(listRequest);
-        return !response.contents().isEmpty();
+        return !getAllVectors().isEmpty();
       } else {
         // Check in-memory storage
         return !inMemoryStorage.isEmpty();
@@ -281,34 +426,15 @@ public class S3VectorStorageService {
   }
 
   /**
-   * Get count of vectors in storage without downloading them. This is much faster than
-   * getAllVectors() for large vector sets.
+   * Get count of vectors in storage. With S3 connected this loads the resident index if needed,
+   * which takes a single snapshot GET.
    *
    * @return count of vectors in storage
    */
   public int getVectorCount() {
     try {
       if (s3Client != null) {
-        int count = 0;
-        String continuationToken = null;
-
-        do {
-          ListObjectsV2Request.Builder requestBuilder =
-              ListObjectsV2Request.builder().bucket(bucketName).prefix(vectorPrefix);
-
-          if (continuationToken != null) {
-            requestBuilder.continuationToken(continuationToken);
-          }
-
-          ListObjectsV2Response response = s3Client.listObjectsV2(requestBuilder.build());
-
-          // Count only JSON files
-          count += response.contents().stream().filter(obj -> obj.key().endsWith(".json")).count();
-
-          continuationToken = response.nextContinuationToken();
-        } while (continuationToken != null);
-
-        return count;
+        return getAllVectors().size();
       } else {
         // Count in-memory storage
         return inMemoryStorage.size();
@@ -320,72 +446,649 @@ public class S3VectorStorageService {
   }
 
   /**
-   * Retrieve all vectors from S3.
+   * Retrieve all vectors. With S3 connected this serves the resident index, loading it from the
+   * bucket on first use.
    *
-   * @return List of all stored vector data
+   * @return Unmodifiable list of all stored vector data
    */
   public List<VectorData> getAllVectors() {
-    List<VectorData> vectors = new ArrayList<>();
+    List<VectorData> resident = residentVectors;
+    if (resident != null && s3Client != null) {
+      return resident;
+    }
+    if (s3Client == null) {
+      List<VectorData> vectors = List.copyOf(inMemoryStorage.values());
+      log.debug("Retrieved {} vectors from memory", vectors.size());
+      return vectors;
+    }
+    synchronized (indexLock) {
+      if (residentIndex == null) {
+        loadIndex();
+      }
+      if (residentVectors == null) {
+        residentVectors = List.copyOf(residentIndex.values());
+      }
+      return residentVectors;
+    }
+  }
+
+  /**
+   * Returns the stored vectors packed for similarity search. With S3 connected this is the resident
+   * index's matrix, updated in place when a vector is stored or deleted.
+   */
+  public VectorMatrix getVectorMatrix() {
+    if (s3Client == null) {
+      return VectorMatrix.of(
+          inMemoryStorage.values(), VectorMatrix.Quantization.parse(quantization));
+    }
+    VectorMatrix matrix = residentMatrix;
+    if (matrix != null) {
+      return matrix;
+    }
+    synchronized (indexLock) {
+      if (residentMatrix == null) {
+        loadIndex();
+      }
+      return residentMatrix;
+    }
+  }
+
+  /**
+   * Returns the approximate nearest-neighbour graph over the stored vectors, or {@code null} when
+   * the catalog is below the size at which approximate search pays off and should be searched
+   * exactly through {@link #getVectorMatrix()}.
+   */
+  public HnswIndex<VectorData> getAnnIndex() {
+    HnswIndex<VectorData> graph = residentGraph;
+    return graph != null && s3Client != null && graph.size() >= annMinSize ? graph : null;
+  }
+
+  /**
+   * (Re)loads the resident index from S3, e.g. to warm it up after connecting or to pick up changes
+   * written by another instance. Does nothing without an S3 connection.
+   */
+  public void reloadIndex() {
+    if (s3Client == null) {
+      return;
+    }
+    synchronized (indexLock) {
+      loadIndex();
+    }
+  }
 
+  // Callers hold indexLock, so writers wait for a load in progress and apply on top of it
+  private void loadIndex() {
     try {
-      if (s3Client != null) {
-        // List all objects with the vector prefix (flat: one file per type)
-        ListObjectsV2Request listRequest =
-            ListObjectsV2Request.builder().bucket(bucketName).prefix(vectorPrefix).build();
-
-        ListObjectsV2Response response = s3Client.listObjectsV2(listRequest);
-
-        // Retrieve each vector (ignore non-json)
-        for (S3Object s3Object : response.contents()) {
-          if (s3Object.key().endsWith(".json")) {
-            VectorData vectorData = getVector(s3Object.key());
-            if (vectorData != null) {
-              vectors.add(vectorData);
-            }
-          }
+      for (int attempt = 1; !tryLoadIndex(); attempt++) {
+        if (attempt == MAX_LOAD_ATTEMPTS) {
+          throw new IllegalStateException("Vector index kept changing while it was loaded");
+        }
+      }
+    } catch (Exception e) {
+      log.error("Error retrieving vectors", e);
+      throw new RuntimeException("Failed to retrieve vectors", e);
+    }
+  }
+
+  /**
+   * Loads the newest snapshot and the delta logs not folded into it. Returns {@code false} if a
+   * listed delta log was gone by the time it was read, meaning another instance folded it into a
+   * newer snapshot, so the load has to start over.
+   */
+  private boolean tryLoadIndex() throws IOException {
+    List<String> keys = listKeys(vectorPrefix);
+    long version = latestVersion(keys);
+    List<String> legacyKeys = new ArrayList<>();
+    for (String key : keys) {
+      if (!key.startsWith(snapshotPrefix) && key.endsWith(".json")) {
+        legacyKeys.add(key);
+      }
+    }
+
+    Map<String, VectorData> index = new LinkedHashMap<>();
+    // Legacy objects that made it into the index; only these may be deleted by the migration
+    List<String> migratedKeys = new ArrayList<>();
+    boolean legacyDownloaded = true;
+    HnswIndex<VectorData> graph = null;
+    Set<String> folded = Set.of();
+    if (version > 0) {
+      VectorSnapshot snapshot = VectorSnapshot.decode(getBytes(snapshotKey(version)));
+      for (VectorData vector : snapshot.vectors()) {
+        index.put(vector.getSemanticType(), vector);
+      }
+      folded = new HashSet<>(snapshot.foldedDeltas());
+      if (annMinSize > 0 && keys.contains(graphKey(version))) {
+        graph = readGraph(version, index);
+      }
+    } else {
+      Map<String, byte[]> objects = bulkFetcher().fetch(bucketName, legacyKeys);
+      legacyDownloaded = objects.size() == legacyKeys.size();
+      for (Map.Entry<String, byte[]> object : objects.entrySet()) {
+        try {
+          VectorData vector = objectMapper.readValue(object.getValue(), VectorData.class);
+          index.put(vector.getSemanticType(), vector);
+          migratedKeys.add(object.getKey());
+        } catch (Exception e) {
+          log.error("Error reading vector at key: {}", object.getKey(), e);
         }
+      }
+    }
 
-        log.info("Retrieved {} vectors from S3", vectors.size());
+    List<String> pending = pendingDeltas(keys, version, folded);
+    Map<String, byte[]> logs = bulkFetcher().fetch(bucketName, pending);
+    if (logs.size() < pending.size()) {
+      log.debug("Vector delta logs were folded while loading index version {}; retrying", version);
+      return false;
+    }
+    int changes = 0;
+    for (String key : pending) {
+      for (VectorSnapshot.Delta delta : decodeDeltas(key, logs.get(key), version)) {
+        if (delta.isDelete()) {
+          index.remove(delta.semanticType());
+        } else {
+          index.put(delta.semanticType(), delta.vector());
+        }
+        if (graph != null) {
+          updateGraph(graph, delta.semanticType(), delta.vector());
+        }
+        changes++;
+      }
+    }
+
+    residentIndex = index;
+    indexVersion = version;
+    foldedDeltas = folded;
+    appliedDeltas.clear();
+    appliedDeltas.addAll(pending);
+    loggedChanges = changes;
+    replaceGraph(graph);
+    legacyMigrationPending = version == 0 && !legacyDownloaded;
+    matrixWriter = null;
+    publishIndex(List.of());
+    log.info(
+        "Loaded resident vector index version {} with {} vectors ({} logged changes, {} KB"
+            + " resident)",
+        version,
+        index.size(),
+        changes,
+        residentBytes() / 1024);
+
+    if (version == 0 && !legacyKeys.isEmpty()) {
+      if (legacyDownloaded) {
+        migrateLegacyLayout(migratedKeys, legacyKeys.size() - migratedKeys.size());
       } else {
-        // Fallback to in-memory storage (flat)
-        vectors.addAll(inMemoryStorage.values());
-        log.debug("Retrieved {} vectors from memory", vectors.size());
+        // The next load reads the per-type objects again, so none of them is lost
+        log.warn(
+            "Downloaded {} of {} per-type vector objects; migration postponed to the next load",
+            migratedKeys.size(),
+            legacyKeys.size());
       }
+    }
+    return true;
+  }
 
-      return vectors;
+  /**
+   * Writes the per-type JSON objects read by loadIndex() as the first snapshot, then removes the
+   * ones that were decoded into it. Objects that could not be decoded stay in place.
+   */
+  private void migrateLegacyLayout(List<String> migratedKeys, int unreadable) throws IOException {
+    if (!writeSnapshot()) {
+      return;
+    }
+    for (String key : migratedKeys) {
+      deleteQuietly(key);
+    }
+    log.info(
+        "Migrated {} per-type vector objects to snapshot version {}",
+        migratedKeys.size(),
+        indexVersion);
+    if (unreadable > 0) {
+      log.warn("Kept {} per-type vector objects that could not be decoded", unreadable);
+    }
+  }
 
-    } catch (Exception e) {
-      log.error("Error retrieving vectors", e);
-      throw new RuntimeException("Failed to retrieve vectors", e);
+  /**
+   * Writes stores and deletes to S3 as a delta log of their own, then applies them to the resident
+   * index, which is loaded first if needed. Writes the next snapshot version once enough changes
+   * have piled up.
+   */
+  private void appendDeltas(List<VectorSnapshot.Delta> changes) {
+    synchronized (indexLock) {
+      if (residentIndex == null) {
+        loadIndex();
+      }
+      String key = nextDeltaKey();
+      putBytes(key, VectorSnapshot.encodeDeltaLog(indexVersion, changes), true);
+      appliedDeltas.add(key);
+      loggedChanges += changes.size();
+      updateIndex(changes);
+
+      if (loggedChanges > maxDeltaEntries && !legacyMigrationPending) {
+        try {
+          writeSnapshot();
+        } catch (Exception e) {
+          // The change is durable in its delta log; the next write retries the snapshot
+          log.warn("Failed to write vector snapshot version {}", indexVersion + 1, e);
+        }
+      }
     }
   }
 
   /**
-   * Retrieve a specific vector by key.
+   * Folds the delta logs into the next snapshot version. The snapshot is written only if no other
+   * instance has written that version; if one has, or a newer version exists, the resident index is
+   * reloaded from it instead. Delta logs written by other instances since the resident index was
+   * loaded are read and folded in as well, so no change is dropped.
+   *
+   * <p>Callers hold indexLock.
    *
-   * @param key The S3 key
-   * @return The vector data or null if not found
+   * @return whether this instance wrote the snapshot
    */
-  private VectorData getVector(String key) {
+  private boolean writeSnapshot() throws IOException {
+    List<String> keys = listKeys(snapshotPrefix);
+    long latest = latestVersion(keys);
+    if (latest != indexVersion) {
+      log.info("Vector index version {} was written by another instance; reloading", latest);
+      loadIndex();
+      return false;
+    }
+
+    List<String> unseen = pendingDeltas(keys, indexVersion, foldedDeltas);
+    unseen.removeAll(appliedDeltas);
+    Map<String, byte[]> logs = bulkFetcher().fetch(bucketName, unseen);
+    for (String key : unseen) {
+      byte[] data = logs.get(key);
+      if (data == null) {
+        continue;
+      }
+      List<VectorSnapshot.Delta> changes = decodeDeltas(key, data, indexVersion);
+      updateIndex(changes);
+      appliedDeltas.add(key);
+      loggedChanges += changes.size();
+    }
+
+    long previous = indexVersion;
+    long next = previous + 1;
+    List<String> folded = List.copyOf(appliedDeltas);
+    byte[] snapshot =
+        new VectorSnapshot(next, List.copyOf(residentIndex.values()), folded).encode();
     try {
-      if (s3Client != null) {
-        // Get from S3
-        GetObjectRequest getRequest =
-            GetObjectRequest.builder().bucket(bucketName).key(key).build();
+      putBytes(snapshotKey(next), snapshot, true);
+    } catch (S3Exception e) {
+      if (e.statusCode() == 412 || e.statusCode() == 409) {
+        log.info("Vector snapshot version {} was written by another instance; reloading", next);
+        loadIndex();
+        return false;
+      }
+      throw e;
+    }
+    indexVersion = next;
+    foldedDeltas = new HashSet<>(folded);
+    appliedDeltas.clear();
+    loggedChanges = 0;
+    writeGraph(next);
 
-        byte[] data = s3Client.getObjectAsBytes(getRequest).asByteArray();
-        return objectMapper.readValue(data, VectorData.class);
-      } else {
-        // Get from in-memory storage
-        return inMemoryStorage.get(key);
+    // Folded logs are no longer needed. The previous snapshot is kept for loads that listed it
+    // before this one was written; the one before it goes.
+    List<String> obsolete = new ArrayList<>(folded);
+    if (previous > 1) {
+      obsolete.add(snapshotKey(previous - 1));
+      obsolete.add(graphKey(previous - 1));
+    }
+    deleteQuietly(obsolete);
+    log.info(
+        "Wrote vector snapshot version {} ({} vectors, {} delta logs folded, {} bytes)",
+        next,
+        residentIndex.size(),
+        folded.size(),
+        snapshot.length);
+    return true;
+  }
+
+  private long latestVersion(List<String> keys) {
+    long version = 0;
+    for (String key : keys) {
+      if (key.startsWith(snapshotPrefix)) {
+        version = Math.max(version, parseVersion(key, "snapshot-"));
+      }
+    }
+    return version;
+  }
+
+  /**
+   * Delta logs to apply on top of snapshot {@code version}, oldest first: the single log of the
+   * earlier layout, then every per-change log not folded into the snapshot.
+   */
+  private List<String> pendingDeltas(List<String> keys, long version, Set<String> folded) {
+    List<String> pending = new ArrayList<>();
+    if (keys.contains(deltaKey(version))) {
+      pending.add(deltaKey(version));
+    }
+    List<String> logs = new ArrayList<>();
+    for (String key : keys) {
+      if (key.startsWith(deltaPrefix) && !folded.contains(key)) {
+        logs.add(key);
+      }
+    }
+    logs.sort(null);
+    pending.addAll(logs);
+    return pending;
+  }
+
+  // The earlier layout's single log must be intact; a damaged per-change log loses only its change
+  private List<VectorSnapshot.Delta> decodeDeltas(String key, byte[] data, long version)
+      throws IOException {
+    if (key.equals(deltaKey(version))) {
+      return VectorSnapshot.decodeDeltaLog(data, version);
+    }
+    try {
+      return VectorSnapshot.decodeDeltaLog(data);
+    } catch (IOException e) {
+      log.warn("Skipping unreadable vector delta log {}: {}", key, e.getMessage());
+      return List.of();
+    }
+  }
+
+  private String nextDeltaKey() {
+    return String.format(
+        "%s%013d-%s.bin",
+        deltaPrefix,
+        lastDeltaMillis.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis())),
+        UUID.randomUUID());
+  }
+
+  /** Applies stores and deletes to the loaded index, then republishes it once. */
+  private void updateIndex(List<VectorSnapshot.Delta> changes) {
+    synchronized (indexLock) {
+      // Not loaded yet: the next load reads the changes back from S3
+      if (residentIndex == null) {
+        return;
+      }
+      HnswIndex<VectorData> graph = residentGraph;
+      for (VectorSnapshot.Delta change : changes) {
+        if (change.isDelete()) {
+          residentIndex.remove(change.semanticType());
+        } else {
+          residentIndex.put(change.semanticType(), change.vector());
+        }
+        if (graph != null) {
+          updateGraph(graph, change.semanticType(), change.vector());
+        }
+      }
+      if (changesDuringGraphBuild != null) {
+        changesDuringGraphBuild.addAll(changes);
       }
+      publishIndex(changes);
+    }
+  }
+
+  private static void updateGraph(
+      HnswIndex<VectorData> graph, String semanticType, VectorData vector) {
+    if (vector != null && fitsGraph(graph, vector)) {
+      graph.add(semanticType, VectorMath.unit(vector.getEmbedding()), vector);
+    } else {
+      graph.remove(semanticType);
+    }
+  }
+
+  private void clearIndex() {
+    synchronized (indexLock) {
+      indexVersion = 0;
+      foldedDeltas = Set.of();
+      appliedDeltas.clear();
+      loggedChanges = 0;
+      if (residentIndex != null) {
+        residentIndex.clear();
+        replaceGraph(null);
+        matrixWriter = null;
+        publishIndex(List.of());
+      }
+    }
+  }
+
+  /**
+   * Publishes the matrix with {@code changes}, already applied to residentIndex, applied to it too.
+   * Changes are appended to the last matrix, or marked deleted in it; the matrix is packed from
+   * scratch only the first time and once deleted rows pile up.
+   */
+  private void publishIndex(List<VectorSnapshot.Delta> changes) {
+    VectorMatrix.Writer writer = matrixWriter;
+    if (writer != null) {
+      for (VectorSnapshot.Delta change : changes) {
+        if (change.isDelete()) {
+          writer.remove(change.semanticType());
+        } else {
+          writer.put(change.vector());
+        }
+      }
+    }
+    if (writer == null || writer.needsRepack()) {
+      writer =
+          new VectorMatrix.Writer(
+              residentIndex.values(), VectorMatrix.Quantization.parse(quantization));
+      matrixWriter = writer;
+    }
+    VectorMatrix matrix = writer.publish();
+    residentMatrix = matrix;
+    residentVectors = null;
+    if (residentGraph == null
+        && changesDuringGraphBuild == null
+        && annMinSize > 0
+        && matrix.size() - matrix.deletedRows() >= annMinSize) {
+      startGraphBuild(matrix);
+    }
+  }
+
+  /**
+   * Builds the graph over {@code matrix} on the graph builder, outside indexLock. The changes
+   * published meanwhile are then applied to it under the lock before it becomes residentGraph,
+   * unless the index was reloaded or cleared in between. Callers hold indexLock.
+   */
+  private void startGraphBuild(VectorMatrix matrix) {
+    long generation = graphGeneration;
+    changesDuringGraphBuild = new ArrayList<>();
+    graphBuilder.execute(
+        () -> {
+          HnswIndex<VectorData> graph = null;
+          try {
+            graph = buildGraph(matrix);
+          } catch (RuntimeException e) {
+            log.warn("Failed to build approximate vector index; searching exactly", e);
+          }
+          synchronized (indexLock) {
+            if (generation != graphGeneration) {
+              return;
+            }
+            if (graph != null) {
+              for (VectorSnapshot.Delta change : changesDuringGraphBuild) {
+                updateGraph(graph, change.semanticType(), change.vector());
+              }
+            }
+            replaceGraph(graph);
+          }
+        });
+  }
+
+  // Callers hold indexLock. Drops any build in progress, whose result would now be stale
+  private void replaceGraph(HnswIndex<VectorData> graph) {
+    if (graph != null) {
+      graph.setCompactor(graphBuilder);
+    }
+    residentGraph = graph;
+    graphGeneration++;
+    changesDuringGraphBuild = null;
+  }
 
-    } catch (NoSuchKeyException e) {
-      log.debug("Vector not found at key: {}", key);
+  private static Executor newGraphBuilder() {
+    return Executors.newSingleThreadExecutor(
+        runnable -> {
+          Thread thread = new Thread(runnable, "vector-graph-build");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Bytes the resident index holds for searching: the embeddings, any quantized rows and the
+   * approximate graph's links and vector copies. Callers hold indexLock.
+   */
+  private long residentBytes() {
+    long bytes = residentMatrix.residentBytes();
+    HnswIndex<VectorData> graph = residentGraph;
+    return graph == null ? bytes : bytes + graph.residentBytes(VectorData::getEmbedding);
+  }
+
+  private HnswIndex<VectorData> buildGraph(VectorMatrix matrix) {
+    long start = System.currentTimeMillis();
+    HnswIndex<VectorData> graph =
+        new HnswIndex<>(matrix.getDimensions(), annM, annEfConstruction, annEfSearch, 42L);
+    for (int row = 0; row < matrix.size(); row++) {
+      if (matrix.isDeleted(row)) {
+        continue;
+      }
+      VectorData vector = matrix.getVector(row);
+      graph.add(vector.getSemanticType(), VectorMath.unit(vector.getEmbedding()), vector);
+    }
+    log.info(
+        "Built approximate vector index over {} vectors in {} ms",
+        graph.size(),
+        System.currentTimeMillis() - start);
+    return graph;
+  }
+
+  // Callers hold indexLock. The snapshot is durable already, so a failure here only costs a rebuild
+  private void writeGraph(long version) {
+    HnswIndex<VectorData> graph = residentGraph;
+    if (graph == null) {
+      return;
+    }
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        graph.writeTo(out);
+      }
+      putBytes(graphKey(version), bytes.toByteArray());
+    } catch (IOException | RuntimeException e) {
+      log.warn("Failed to write approximate vector index version {}", version, e);
+    }
+  }
+
+  /** Restores the graph written with snapshot {@code version}, or returns null to rebuild it. */
+  private HnswIndex<VectorData> readGraph(long version, Map<String, VectorData> vectors) {
+    try {
+      HnswIndex<VectorData> graph =
+          HnswIndex.readFrom(
+              new DataInputStream(new ByteArrayInputStream(getBytes(graphKey(version)))),
+              vectors::get,
+              VectorData::getEmbedding,
+              42L);
+      graph.setEfSearch(annEfSearch);
+      graph.setCompactor(graphBuilder);
+      return graph;
+    } catch (IOException | RuntimeException e) {
+      log.warn(
+          "Rebuilding approximate vector index; stored version {} is unreadable: {}",
+          version,
+          e.getMessage());
       return null;
+    }
+  }
+
+  private static boolean fitsGraph(HnswIndex<VectorData> graph, VectorData vector) {
+    return vector.getEmbedding() != null && vector.getEmbedding().length == graph.getDimensions();
+  }
+
+  private void invalidateIndex() {
+    synchronized (indexLock) {
+      residentIndex = null;
+      residentVectors = null;
+      residentMatrix = null;
+      replaceGraph(null);
+      matrixWriter = null;
+      indexVersion = 0;
+      foldedDeltas = Set.of();
+      appliedDeltas.clear();
+      loggedChanges = 0;
+    }
+  }
+
+  private String snapshotKey(long version) {
+    return String.format("%ssnapshot-%012d.bin", snapshotPrefix, version);
+  }
+
+  private String graphKey(long version) {
+    return String.format("%sgraph-%012d.bin", snapshotPrefix, version);
+  }
+
+  private String deltaKey(long version) {
+    return String.format("%sdelta-%012d.bin", snapshotPrefix, version);
+  }
+
+  // Version of a snapshot key, or 0 for any other object under the snapshot prefix
+  private long parseVersion(String key, String kind) {
+    String name = key.substring(snapshotPrefix.length());
+    if (!name.startsWith(kind) || !name.endsWith(".bin")) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(name.substring(kind.length(), name.length() - ".bin".length()));
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring unrecognized vector index object: {}", key);
+      return 0;
+    }
+  }
+
+  private List<String> listKeys(String prefix) {
+    return bulkFetcher().listKeys(bucketName, prefix);
+  }
+
+  private byte[] getBytes(String key) {
+    return bulkFetcher().get(bucketName, key);
+  }
+
+  private void putBytes(String key, byte[] data) {
+    putBytes(key, data, false);
+  }
+
+  /**
+   * @param createOnly write only if no object exists at {@code key}; otherwise the write fails with
+   *     a 412 {@link S3Exception}
+   */
+  private void putBytes(String key, byte[] data, boolean createOnly) {
+    PutObjectRequest.Builder request =
+        PutObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .contentType("application/octet-stream");
+    if (createOnly) {
+      request.ifNoneMatch("*");
+    }
+    s3Client.putObject(request.build(), RequestBody.fromBytes(data));
+  }
+
+  private void deleteQuietly(List<String> keys) {
+    for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH) {
+      List<ObjectIdentifier> batch =
+          keys.subList(from, Math.min(keys.size(), from + MAX_DELETE_BATCH)).stream()
+              .map(key -> ObjectIdentifier.builder().key(key).build())
+              .toList();
+      try {
+        s3Client.deleteObjects(
+            DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(batch).quiet(true).build())
+                .build());
+      } catch (Exception e) {
+        log.warn("Failed to delete {} obsolete vector objects: {}", batch.size(), e.getMessage());
+      }
+    }
+  }
+
+  private void deleteQuietly(String key) {
+    try {
+      s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(key).build());
     } catch (Exception e) {
-      log.error("Error retrieving vector at key: {}", key, e);
-      return null;
+      log.warn("Failed to delete obsolete vector object {}: {}", key, e.getMessage());
     }
   }
 
@@ -398,12 +1101,17 @@ public class S3VectorStorageService {
   public void deleteVector(String semanticType) {
     try {
       if (s3Client != null) {
-        // Delete single-object layout only
-        String sanitized = sanitizeForS3Key(semanticType);
-        String singleKey = vectorPrefix + sanitized + ".json";
-        s3Client.deleteObject(
-            DeleteObjectRequest.builder().bucket(bucketName).key(singleKey).build());
-        log.info("Deleted vector for semantic type: {} (key: {})", semanticType, singleKey);
+        synchronized (indexLock) {
+          if (residentIndex == null) {
+            loadIndex();
+          }
+          if (!residentIndex.containsKey(semanticType)) {
+            log.debug("No vector to delete for semantic type: {}", semanticType);
+            return;
+          }
+          appendDeltas(List.of(new VectorSnapshot.Delta(semanticType, null)));
+        }
+        log.info("Deleted vector for semantic type: {}", semanticType);
       } else {
         // Delete from in-memory storage - find vectors with matching semantic type
         final int[] deletedCount = {0};
@@ -437,20 +1145,14 @@ public class S3VectorStorageService {
   public void clearAllVectors() {
     try {
       if (s3Client != null) {
-        // List and delete all vectors from S3
-        ListObjectsV2Request listRequest =
-            ListObjectsV2Request.builder().bucket(bucketName).prefix(vectorPrefix).build();
-
-        ListObjectsV2Response response = s3Client.listObjectsV2(listRequest);
-        int count = response.contents().size();
-
-        // Delete each object
-        for (S3Object s3Object : response.contents()) {
-          s3Client.deleteObject(
-              DeleteObjectRequest.builder().bucket(bucketName).key(s3Object.key()).build());
+        // Delete every snapshot, delta log and legacy per-type object
+        List<String> keys = listKeys(vectorPrefix);
+        for (String key : keys) {
+          s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucketName).key(key).build());
         }
 
-        log.info("Cleared {} vectors from S3 storage", count);
+        clearIndex();
+        log.info("Cleared {} vector objects from S3 storage", keys.size());
       } else {
         // Clear in-memory storage
         int count = inMemoryStorage.size();
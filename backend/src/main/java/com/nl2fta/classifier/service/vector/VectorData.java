@@ -27,12 +27,21 @@ public class VectorData {
   /** Description of the semantic type. */
   private String description;
 
-  /** The embedding vector as a list of floats. */
-  private List<Float> embedding;
+  /** The embedding vector, normalized to unit length when written. */
+  private float[] embedding;
+
+  /**
+   * Model the embedding came from, as {@link VectorEmbeddingService#getModelId()}; null for vectors
+   * stored before it was recorded.
+   */
+  private String embeddingModel;
 
   /** Original text used to generate the embedding. */
   private String originalText;
 
+  /** SHA-256 of the original text, compared with the catalog to find types whose text changed. */
+  private String contentHash;
+
   /** Plugin type (e.g., "regex", "list", "java"). */
   private String pluginType;
 
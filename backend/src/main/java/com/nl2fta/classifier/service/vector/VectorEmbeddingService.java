@@ -1,8 +1,20 @@
 package com.nl2fta.classifier.service.vector;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Value;
@@ -11,23 +23,44 @@ import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
 
 /**
  * Service for generating vector embeddings for semantic types using AWS Bedrock. Uses Amazon Titan
  * Text Embeddings model for high-quality embeddings.
+ *
+ * <p>Embeddings are cached by model, dimension and normalized text in an {@link EmbeddingCache} (an
+ * in-memory LRU plus, when {@code vector.embedding-cache.dir} is set, a file on local disk), so
+ * text that was embedded before, such as unchanged type descriptions during a reindex, does not
+ * call Bedrock again.
+ *
+ * <p>Bulk requests, such as an index build, run concurrently under an {@link AdaptiveRateLimiter}
+ * tuned with {@code vector.bulk-embedding.*} to stay within the Bedrock request quota.
+ *
+ * <p>With {@code vector.embedding.provider=local}, embeddings come from a {@link
+ * HashedNgramEmbeddingProvider} instead: no AWS connection is needed and nothing is cached or rate
+ * limited, since each embedding takes microseconds.
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class VectorEmbeddingService {
 
+  private static final String TITAN_V2_MODEL = "titan-embed-text-v2";
+  private static final Set<Integer> TITAN_V2_DIMENSIONS = new TreeSet<>(Set.of(256, 512, 1024));
+  private static final String TITAN_V1_MODEL = "titan-embed-text-v1";
+  private static final int TITAN_V1_DIMENSIONS = 1536;
+
   private final ObjectMapper objectMapper;
   private final com.nl2fta.classifier.service.aws.AwsCredentialsService awsCredentialsService;
   private BedrockRuntimeClient bedrockClient;
@@ -38,13 +71,79 @@ public class VectorEmbeddingService {
   @Value("${aws.bedrock.embedding.model-id:amazon.titan-embed-text-v2:0}")
   private String embeddingModelId;
 
+  // Length Titan v2 is asked for, which must be one it supports. Other models return a length of
+  // their own; see bedrockDimensions()
+  @Value("${aws.bedrock.embedding.dimensions:1024}")
+  private int embeddingDimensions;
+
+  // Length returned by a model that is not asked for one and whose length is not known in advance,
+  // taken from its first response; 0 until then
+  private volatile int observedDimensions;
+
+  // "bedrock" (Titan) or "local" (HashedNgramEmbeddingProvider)
+  @Value("${vector.embedding.provider:bedrock}")
+  private String embeddingProvider;
+
+  @Value("${vector.embedding.local.dimensions:512}")
+  private int localDimensions;
+
+  @Value("${vector.embedding-cache.max-entries:4096}")
+  private int cacheMaxEntries;
+
+  @Value("${vector.embedding-cache.dir:}")
+  private String cacheDir;
+
+  @Value("${vector.embedding-cache.max-disk-entries:50000}")
+  private int cacheMaxDiskEntries;
+
+  @Value("${vector.bulk-embedding.concurrency:8}")
+  private int bulkConcurrency;
+
+  @Value("${vector.bulk-embedding.requests-per-second:20}")
+  private double bulkRequestsPerSecond;
+
+  @Value("${vector.bulk-embedding.max-attempts:5}")
+  private int bulkMaxAttempts;
+
+  @Value("${vector.bulk-embedding.initial-backoff-ms:500}")
+  private long bulkInitialBackoffMs;
+
+  @Value("${vector.bulk-embedding.max-backoff-ms:20000}")
+  private long bulkMaxBackoffMs;
+
+  private EmbeddingCache embeddingCache;
+  private AdaptiveRateLimiter rateLimiter;
+  private EmbeddingProvider localProvider;
+
   @PostConstruct
   public void init() {
+    EmbeddingProvider provider = localProvider();
+    if (provider == null
+        && requestsDimensions()
+        && !TITAN_V2_DIMENSIONS.contains(embeddingDimensions)) {
+      throw new IllegalStateException(
+          String.format(
+              "Unsupported embedding dimensions %d for %s; supported: %s",
+              embeddingDimensions, embeddingModelId, TITAN_V2_DIMENSIONS));
+    }
+    if (provider != null) {
+      log.info(
+          "VectorEmbeddingService initialized - using local embedding model {}",
+          provider.getModelId());
+      return;
+    }
     // Don't initialize Bedrock client on startup - wait for AWS connection
     log.info(
         "VectorEmbeddingService initialized - AWS Bedrock will be available after user connects");
   }
 
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (embeddingCache != null) {
+      embeddingCache.close();
+    }
+  }
+
   /** Initialize Bedrock client when AWS credentials are provided. */
   public void initializeBedrockClient() {
     if (!awsCredentialsService.areCredentialsAvailable()) {
@@ -71,6 +170,10 @@ public class VectorEmbeddingService {
    * @return The embedding vector as a list of floats
    */
   public List<Float> generateEmbedding(String text) {
+    EmbeddingProvider provider = localProvider();
+    if (provider != null) {
+      return VectorMath.toList(provider.embed(text));
+    }
     if (bedrockClient == null) {
       throw new IllegalStateException("Cannot generate embeddings - AWS credentials not connected");
     }
@@ -79,9 +182,29 @@ public class VectorEmbeddingService {
         "Generating embedding for text: {}",
         text.substring(0, Math.min(text.length(), 100)) + "...");
 
+    EmbeddingCache.Key cacheKey =
+        EmbeddingCache.Key.of(embeddingModelId, bedrockDimensions(), text);
+    float[] cached = cache().get(cacheKey);
+    if (cached != null) {
+      return VectorMath.toList(cached);
+    }
+
+    try {
+      return invokeModel(text, cacheKey);
+    } catch (RuntimeException e) {
+      log.error("Error generating embedding for text", e);
+      throw e;
+    }
+  }
+
+  // Calls the model and caches the result
+  private List<Float> invokeModel(String text, EmbeddingCache.Key cacheKey) {
     try {
-      // Prepare the request payload for Titan embedding model
-      Map<String, Object> requestBody = Map.of("inputText", text);
+      // Prepare the request payload for Titan embedding model; v2 also takes the output size
+      Map<String, Object> requestBody =
+          requestsDimensions()
+              ? Map.of("inputText", text, "dimensions", embeddingDimensions, "normalize", true)
+              : Map.of("inputText", text);
 
       String payload = objectMapper.writeValueAsString(requestBody);
 
@@ -105,17 +228,115 @@ public class VectorEmbeddingService {
       List<Number> embedding = (List<Number>) responseMap.get("embedding");
 
       // Convert to Float list
-      return embedding.stream().map(Number::floatValue).collect(Collectors.toList());
+      List<Float> result = embedding.stream().map(Number::floatValue).collect(Collectors.toList());
+      if (bedrockDimensions() == 0 && !result.isEmpty()) {
+        observedDimensions = result.size();
+        log.info("Embedding model {} returns {} dimensions", embeddingModelId, result.size());
+      }
+      if (result.size() == bedrockDimensions()) {
+        cache().put(cacheKey, VectorMath.toArray(result));
+      }
+      return result;
 
     } catch (Exception e) {
-      log.error("Error generating embedding for text", e);
       throw new RuntimeException("Failed to generate embedding", e);
     }
   }
 
+  /**
+   * Seeds the embedding cache from stored vectors, whose {@link VectorData#getOriginalText()} is
+   * the text their embedding was generated from. Stored embeddings are unit length; every consumer
+   * normalizes embeddings before comparing them, so they can stand in for the model's output.
+   * Vectors of another dimension, left by a different model configuration, are skipped.
+   *
+   * @return the number of embeddings cached
+   */
+  public int warmCache(Collection<VectorData> vectors) {
+    if (localProvider() != null) {
+      return 0;
+    }
+    EmbeddingCache cache = cache();
+    int dimensions = bedrockDimensions();
+    int warmed = 0;
+    for (VectorData vector : vectors) {
+      float[] embedding = vector.getEmbedding();
+      if (vector.getOriginalText() != null && embedding != null && embedding.length == dimensions) {
+        cache.put(
+            EmbeddingCache.Key.of(embeddingModelId, dimensions, vector.getOriginalText()),
+            embedding);
+        warmed++;
+      }
+    }
+    log.debug("Warmed embedding cache with {} of {} stored vectors", warmed, vectors.size());
+    return warmed;
+  }
+
+  /** Current embedding cache sizes and hit counters. */
+  public EmbeddingCache.Stats getCacheStats() {
+    return cache().getStats();
+  }
+
+  /** Model the embeddings come from, as recorded with the cache entries. */
+  public String getModelId() {
+    EmbeddingProvider provider = localProvider();
+    return provider != null ? provider.getModelId() : embeddingModelId;
+  }
+
+  /**
+   * Length of the embeddings the configured model returns, or 0 while it is not yet known: a
+   * Bedrock model other than Titan v1 or v2 only reveals it with its first embedding.
+   */
+  public int getEmbeddingDimensions() {
+    EmbeddingProvider provider = localProvider();
+    return provider != null ? provider.getDimensions() : bedrockDimensions();
+  }
+
+  // The length asked of Titan v2, the fixed length of Titan v1, or the one observed from the model
+  private int bedrockDimensions() {
+    if (requestsDimensions()) {
+      return embeddingDimensions;
+    }
+    if (embeddingModelId != null && embeddingModelId.contains(TITAN_V1_MODEL)) {
+      return TITAN_V1_DIMENSIONS;
+    }
+    return observedDimensions;
+  }
+
+  // Titan v2 returns the length asked for; v1 has a fixed length and rejects the parameter
+  private boolean requestsDimensions() {
+    return embeddingDimensions > 0
+        && embeddingModelId != null
+        && embeddingModelId.contains(TITAN_V2_MODEL);
+  }
+
+  // Null when embeddings come from Bedrock
+  private synchronized EmbeddingProvider localProvider() {
+    if (localProvider == null
+        && embeddingProvider != null
+        && !embeddingProvider.isBlank()
+        && !"bedrock".equalsIgnoreCase(embeddingProvider)) {
+      if (!"local".equalsIgnoreCase(embeddingProvider)) {
+        throw new IllegalStateException("Unknown embedding provider: " + embeddingProvider);
+      }
+      localProvider = new HashedNgramEmbeddingProvider(localDimensions);
+    }
+    return localProvider;
+  }
+
+  private synchronized EmbeddingCache cache() {
+    if (embeddingCache == null) {
+      embeddingCache =
+          new EmbeddingCache(
+              cacheMaxEntries,
+              cacheDir == null || cacheDir.isBlank() ? null : Path.of(cacheDir),
+              cacheMaxDiskEntries);
+    }
+    return embeddingCache;
+  }
+
   /**
    * Generate embeddings for multiple texts in batch. Note: Titan embedding model doesn't support
-   * batch processing, so we process texts individually.
+   * batch processing, so texts are embedded individually, several at a time.
    *
    * @param texts List of texts to generate embeddings for
    * @return List of embedding vectors
@@ -123,16 +344,222 @@ public class VectorEmbeddingService {
   public List<List<Float>> generateEmbeddings(List<String> texts) {
     log.debug("Generating embeddings for {} texts", texts.size());
 
+    if (texts.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    List<List<Float>> embeddings = new ArrayList<>(Collections.nCopies(texts.size(), null));
+    List<Integer> failed;
     try {
-      return texts.stream().map(this::generateEmbedding).collect(Collectors.toList());
+      failed = generateEmbeddings(texts, embeddings::set);
     } catch (Exception e) {
       log.error("Error generating embeddings for batch", e);
       throw new RuntimeException("Failed to generate embeddings", e);
     }
+    if (!failed.isEmpty()) {
+      log.error("Failed to generate {} of {} embeddings in batch", failed.size(), texts.size());
+      throw new RuntimeException("Failed to generate embeddings");
+    }
+    return embeddings;
+  }
+
+  /**
+   * Generate embeddings for many texts, as for an index build. Cached texts are answered at once;
+   * the rest go to Bedrock with at most {@code vector.bulk-embedding.concurrency} requests in
+   * flight, started no faster than the rate limiter allows. Throttled requests slow the limiter
+   * down and are retried with exponential backoff, as are server and network errors, up to {@code
+   * vector.bulk-embedding.max-attempts} times per text. One text failing does not stop the others.
+   *
+   * @param texts texts to embed
+   * @param onEmbedded called with each text's position and embedding as soon as it is available,
+   *     possibly from a worker thread
+   * @return positions of the texts that could not be embedded, in ascending order
+   */
+  public List<Integer> generateEmbeddings(
+      List<String> texts, BiConsumer<Integer, List<Float>> onEmbedded) {
+    EmbeddingProvider provider = localProvider();
+    if (provider != null) {
+      return generateLocalEmbeddings(provider, texts, onEmbedded);
+    }
+    if (bedrockClient == null) {
+      throw new IllegalStateException("Cannot generate embeddings - AWS credentials not connected");
+    }
+
+    long start = System.currentTimeMillis();
+    List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+    List<Runnable> uncached = new ArrayList<>();
+    int cacheHits = 0;
+    for (int i = 0; i < texts.size(); i++) {
+      int position = i;
+      String text = texts.get(i);
+      EmbeddingCache.Key cacheKey;
+      float[] cached;
+      try {
+        cacheKey = EmbeddingCache.Key.of(embeddingModelId, bedrockDimensions(), text);
+        cached = cache().get(cacheKey);
+      } catch (RuntimeException e) {
+        log.warn("Cannot embed text {} of {}: {}", position + 1, texts.size(), e.toString());
+        failed.add(position);
+        continue;
+      }
+      if (cached != null) {
+        cacheHits++;
+        deliver(position, VectorMath.toList(cached), onEmbedded, failed);
+      } else {
+        uncached.add(
+            () -> {
+              try {
+                deliver(position, embedWithRetry(text, cacheKey), onEmbedded, failed);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.add(position);
+              } catch (RuntimeException e) {
+                log.warn(
+                    "Failed to embed text {} of {}: {}",
+                    position + 1,
+                    texts.size(),
+                    rootCause(e).toString());
+                failed.add(position);
+              }
+            });
+      }
+    }
+
+    int window = Math.min(Math.max(1, bulkConcurrency), uncached.size());
+    if (window <= 1) {
+      uncached.forEach(Runnable::run);
+    } else {
+      ExecutorService executor = Executors.newFixedThreadPool(window);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        uncached.forEach(task -> futures.add(executor.submit(task)));
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while generating embeddings", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Embedding task failed", e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    log.info(
+        "Embedded {} of {} texts ({} from cache) in {} ms",
+        texts.size() - failed.size(),
+        texts.size(),
+        cacheHits,
+        System.currentTimeMillis() - start);
+    List<Integer> result = new ArrayList<>(failed);
+    Collections.sort(result);
+    return result;
+  }
+
+  private static List<Integer> generateLocalEmbeddings(
+      EmbeddingProvider provider, List<String> texts, BiConsumer<Integer, List<Float>> onEmbedded) {
+    List<Integer> failed = new ArrayList<>();
+    for (int position = 0; position < texts.size(); position++) {
+      List<Float> embedding;
+      try {
+        embedding = VectorMath.toList(provider.embed(texts.get(position)));
+      } catch (RuntimeException e) {
+        log.warn("Cannot embed text {} of {}: {}", position + 1, texts.size(), e.toString());
+        failed.add(position);
+        continue;
+      }
+      deliver(position, embedding, onEmbedded, failed);
+    }
+    return failed;
+  }
+
+  private static void deliver(
+      int position,
+      List<Float> embedding,
+      BiConsumer<Integer, List<Float>> onEmbedded,
+      List<Integer> failed) {
+    try {
+      onEmbedded.accept(position, embedding);
+    } catch (RuntimeException e) {
+      log.error("Failed to process embedding {}", position + 1, e);
+      failed.add(position);
+    }
+  }
+
+  private List<Float> embedWithRetry(String text, EmbeddingCache.Key cacheKey)
+      throws InterruptedException {
+    AdaptiveRateLimiter limiter = rateLimiter();
+    int maxAttempts = Math.max(1, bulkMaxAttempts);
+    for (int attempt = 1; ; attempt++) {
+      if (limiter != null) {
+        limiter.acquire();
+      }
+      try {
+        List<Float> embedding = invokeModel(text, cacheKey);
+        if (limiter != null) {
+          limiter.onSuccess();
+        }
+        return embedding;
+      } catch (RuntimeException e) {
+        Throwable cause = rootCause(e);
+        boolean throttled = isThrottling(cause);
+        if (throttled && limiter != null) {
+          limiter.onThrottled();
+        }
+        if (attempt >= maxAttempts || !(throttled || isTransient(cause))) {
+          throw e;
+        }
+        long delay = backoffMillis(attempt);
+        log.debug(
+            "Embedding attempt {}/{} failed ({}), retrying in {} ms",
+            attempt,
+            maxAttempts,
+            cause.getClass().getSimpleName(),
+            delay);
+        Thread.sleep(delay);
+      }
+    }
+  }
+
+  // Exponential backoff with "equal jitter": half the delay is fixed, half random
+  private long backoffMillis(int attempt) {
+    long initial = Math.max(0, bulkInitialBackoffMs);
+    long delay =
+        Math.min(Math.max(initial, bulkMaxBackoffMs), initial << Math.min(attempt - 1, 20));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  private static boolean isThrottling(Throwable error) {
+    return error instanceof ThrottlingException
+        || (error instanceof AwsServiceException serviceError
+            && serviceError.isThrottlingException());
+  }
+
+  private static boolean isTransient(Throwable error) {
+    return (error instanceof AwsServiceException serviceError && serviceError.statusCode() >= 500)
+        || error instanceof SdkClientException;
+  }
+
+  private static Throwable rootCause(Throwable error) {
+    Throwable cause = error;
+    while (cause.getCause() != null && cause.getCause() != cause) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+
+  // Shared by all bulk requests so what it learns about the quota carries over; null if unlimited
+  private synchronized AdaptiveRateLimiter rateLimiter() {
+    if (rateLimiter == null && bulkRequestsPerSecond > 0) {
+      rateLimiter = new AdaptiveRateLimiter(bulkRequestsPerSecond, Math.max(1, bulkConcurrency));
+    }
+    return rateLimiter;
   }
 
   /**
-   * Calculate cosine similarity between two embedding vectors.
+   * Calculate cosine similarity between two embedding vectors. Searches compare pre-normalized
+   * vectors through {@link VectorMatrix} instead; this is for one-off comparisons.
    *
    * @param embedding1 First embedding vector
    * @param embedding2 Second embedding vector
@@ -148,9 +575,11 @@ public class VectorEmbeddingService {
     double norm2 = 0.0;
 
     for (int i = 0; i < embedding1.size(); i++) {
-      dotProduct += embedding1.get(i) * embedding2.get(i);
-      norm1 += Math.pow(embedding1.get(i), 2);
-      norm2 += Math.pow(embedding2.get(i), 2);
+      float a = embedding1.get(i);
+      float b = embedding2.get(i);
+      dotProduct += a * b;
+      norm1 += (double) a * a;
+      norm2 += (double) b * b;
     }
 
     return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
@@ -15,13 +15,21 @@ import org.springframework.stereotype.Service;
 import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
 import com.nl2fta.classifier.service.aws.AwsCredentialsService;
 import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.storage.HybridCustomSemanticTypeRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * Service responsible for initializing and maintaining the vector index. Only indexes semantic
- * types after AWS credentials are provided through the frontend.
+ * Service responsible for initializing and maintaining the vector index. With Bedrock embeddings,
+ * semantic types are only indexed after AWS credentials are provided through the frontend.
+ *
+ * <p>Initialization reconciles the stored vectors with the catalog by content hash, so only added
+ * or changed types are embedded again and vectors for deleted types are removed. With Bedrock it
+ * waits until the S3-backed repository and vector store are connected: before that the catalog is
+ * read from local files and vectors are only held in memory, so reconciling would re-embed every
+ * type through Bedrock. With {@code vector.embedding.provider=local} embedding is cheap, so the
+ * index is built in memory at startup and reconciled again once S3 is connected.
  */
 @Slf4j
 @Service
@@ -32,6 +40,8 @@ public class VectorIndexInitializationService {
   private final CustomSemanticTypeService customSemanticTypeService;
   private final AwsCredentialsService awsCredentialsService;
   private final VectorEmbeddingService vectorEmbeddingService;
+  private final HybridCustomSemanticTypeRepository hybridRepository;
+  private final S3VectorStorageService vectorStorageService;
 
   @Value("${vector.index.enabled:true}")
   private boolean vectorIndexEnabled;
@@ -39,16 +49,19 @@ public class VectorIndexInitializationService {
   @Value("${vector.index.rebuild-on-startup:false}")
   private boolean rebuildOnStartup;
 
+  // "local" embeddings are computed in process and need no AWS connection
+  @Value("${vector.embedding.provider:bedrock}")
+  private String embeddingProvider;
+
   // Indexing status tracking
   private final AtomicBoolean indexingInProgress = new AtomicBoolean(false);
   private final AtomicInteger totalTypesToIndex = new AtomicInteger(0);
   private final AtomicInteger indexedTypesCount = new AtomicInteger(0);
-  // Minimum expected number of indexed types when the bucket is already populated
-  private static final int MIN_EXPECTED_INDEXED_TYPES = 132;
 
   /**
-   * Initialize vector index after application is ready. No indexing on startup - waits for AWS
-   * credentials from frontend.
+   * Initialize vector index after application is ready. Reconciles the index if S3 storage is
+   * already connected or embeddings are computed locally; otherwise waits for AWS credentials from
+   * frontend.
    */
   @EventListener(ApplicationReadyEvent.class)
   public void onApplicationReady() {
@@ -57,6 +70,11 @@ public class VectorIndexInitializationService {
       return;
     }
 
+    if (usesLocalEmbeddings()
+        || (awsCredentialsService.areCredentialsAvailable() && isStorageConnected())) {
+      initializeAfterAwsConnection();
+      return;
+    }
     log.info("Vector index service ready - waiting for AWS credentials from frontend");
   }
 
@@ -70,13 +88,25 @@ public class VectorIndexInitializationService {
       return;
     }
 
-    if (!awsCredentialsService.areCredentialsAvailable()) {
-      log.warn("Cannot initialize vector index - AWS credentials not available");
-      return;
-    }
+    boolean storageConnected;
+    if (usesLocalEmbeddings()) {
+      // Local embeddings need no AWS: index into memory now, and into S3 once it is connected
+      storageConnected = awsCredentialsService.areCredentialsAvailable() && isStorageConnected();
+    } else {
+      if (!awsCredentialsService.areCredentialsAvailable()) {
+        log.warn("Cannot initialize vector index - AWS credentials not available");
+        return;
+      }
 
-    // Initialize the embedding service with AWS credentials
-    vectorEmbeddingService.initializeBedrockClient();
+      if (!isStorageConnected()) {
+        log.info("Vector index initialization deferred until S3 storage is connected");
+        return;
+      }
+
+      // Initialize the embedding service with AWS credentials
+      vectorEmbeddingService.initializeBedrockClient();
+      storageConnected = true;
+    }
 
     // Capture the username from MDC before async execution
     String username = MDC.get("username");
@@ -91,8 +121,10 @@ public class VectorIndexInitializationService {
               MDC.put("username", username);
             }
 
-            // Wait a bit to ensure S3 client is initialized
-            Thread.sleep(1000);
+            if (storageConnected) {
+              // Wait a bit to ensure S3 client is initialized
+              Thread.sleep(1000);
+            }
             initializeVectorIndex();
           } catch (Exception e) {
             log.error("Failed to initialize vector index", e);
@@ -103,7 +135,10 @@ public class VectorIndexInitializationService {
         });
   }
 
-  /** Initialize the vector index with all existing semantic types. */
+  /**
+   * Initialize the vector index with all existing semantic types, re-embedding only the types whose
+   * text changed since their vector was stored.
+   */
   private void initializeVectorIndex() {
     log.info("Starting vector index initialization...");
 
@@ -112,52 +147,40 @@ public class VectorIndexInitializationService {
       indexingInProgress.set(true);
       indexedTypesCount.set(0);
 
-      // Check if vectors already exist in S3
-      log.info("Checking for existing vectors in S3...");
-      boolean hasExistingVectors = vectorSearchService.hasAnyStoredVectors();
-
-      if (hasExistingVectors && !rebuildOnStartup) {
-        // Get counts to verify index integrity
-        int vectorCount = vectorSearchService.getStoredVectorCount();
-        log.info("Found {} vectors in S3 storage", vectorCount);
-
-        // New rule: only re-index if bucket clearly uninitialized (< MIN_EXPECTED_INDEXED_TYPES)
-        if (vectorCount >= MIN_EXPECTED_INDEXED_TYPES) {
-          log.info(
-              "Vector bucket appears initialized (>= {}). Skipping re-indexing.",
-              MIN_EXPECTED_INDEXED_TYPES);
-          totalTypesToIndex.set(vectorCount);
-          indexedTypesCount.set(vectorCount);
-          indexingInProgress.set(false);
-          return;
-        }
-
-        // Otherwise treat as first-time/partial and proceed to index
-        log.warn(
-            "Vector bucket has {} entries (< {}). Proceeding with indexing to complete the set.",
-            vectorCount,
-            MIN_EXPECTED_INDEXED_TYPES);
-      } else if (!hasExistingVectors) {
-        log.info("No existing vectors found in S3 - will index all semantic types");
-      }
-
       // Clear existing index if rebuild is requested
       if (rebuildOnStartup) {
         log.info("Clearing existing vector index for rebuild");
         vectorSearchService.clearIndex();
       }
 
+      // A sync that completes while the types are read may not be reflected in them, so the
+      // catalog only counts as complete if it was before and still is after
+      boolean catalogSynced = hybridRepository.isCatalogSynced();
+
       // Get all semantic types
       List<CustomSemanticType> allTypes = customSemanticTypeService.getAllCustomTypes();
-      log.info("Found {} semantic types to index", allTypes.size());
+      log.info("Reconciling vector index with {} semantic types", allTypes.size());
       totalTypesToIndex.set(allTypes.size());
 
-      // Index all types
       long startTime = System.currentTimeMillis();
-      vectorSearchService.indexSemanticTypes(allTypes);
+      // Only a complete copy of the shared catalog in S3 tells which types were deleted
+      catalogSynced = catalogSynced && hybridRepository.isCatalogSynced();
+      if (!catalogSynced) {
+        log.info("Catalog not fully synced from S3, keeping vectors of types not listed");
+      }
+      VectorSimilaritySearchService.ReconciliationSummary summary =
+          vectorSearchService.reconcileIndex(allTypes, catalogSynced);
+      vectorSearchService.warmIndex();
       long duration = System.currentTimeMillis() - startTime;
 
-      log.info("Vector index initialization completed in {} ms", duration);
+      log.info(
+          "Vector index initialization completed in {} ms: {} unchanged, {} re-embedded, {}"
+              + " removed, {} failed",
+          duration,
+          summary.getUnchanged(),
+          summary.getReembedded(),
+          summary.getRemoved(),
+          summary.getFailed());
 
     } catch (Exception e) {
       log.error("Error during vector index initialization", e);
@@ -167,6 +190,15 @@ public class VectorIndexInitializationService {
     }
   }
 
+  private boolean usesLocalEmbeddings() {
+    return "local".equalsIgnoreCase(embeddingProvider);
+  }
+
+  // Whether the catalog and the vectors are both read from S3
+  private boolean isStorageConnected() {
+    return hybridRepository.isUsingS3Storage() && vectorStorageService.isConnected();
+  }
+
   /**
    * Re-index a specific semantic type. Called when a type is created or updated.
    *
@@ -0,0 +1,97 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primitive kernels for embedding vectors. Embeddings are normalized to unit length once, when they
+ * are written, so cosine similarity reduces to a single dot product at search time.
+ */
+public final class VectorMath {
+
+  // Squared norms this close to 1 count as unit length; stored embeddings drift about 1e-6
+  private static final double UNIT_TOLERANCE = 1e-4;
+
+  private VectorMath() {}
+
+  /** Copies a boxed embedding, as returned by the embedding model, into a primitive array. */
+  public static float[] toArray(List<? extends Number> embedding) {
+    float[] values = new float[embedding.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = embedding.get(i).floatValue();
+    }
+    return values;
+  }
+
+  /** Boxes a primitive embedding into the list form the embedding service returns. */
+  public static List<Float> toList(float[] embedding) {
+    List<Float> values = new ArrayList<>(embedding.length);
+    for (float value : embedding) {
+      values.add(value);
+    }
+    return values;
+  }
+
+  /**
+   * Returns a unit-length copy of {@code vector}. A zero vector is returned as zeros, so it scores
+   * 0 against everything.
+   */
+  public static float[] normalize(float[] vector) {
+    float[] normalized = vector.clone();
+    double norm = Math.sqrt(dot(vector, 0, vector, 0, vector.length));
+    if (norm > 0) {
+      float scale = (float) (1.0 / norm);
+      for (int i = 0; i < normalized.length; i++) {
+        normalized[i] *= scale;
+      }
+    }
+    return normalized;
+  }
+
+  /**
+   * Returns {@code vector} itself if it is unit length already, to within float rounding, or else a
+   * unit-length copy. Lets indexes share embeddings that were normalized when written instead of
+   * keeping a second copy.
+   */
+  public static float[] unit(float[] vector) {
+    double squared = dot(vector, 0, vector, 0, vector.length);
+    return Math.abs(squared - 1) <= UNIT_TOLERANCE ? vector : normalize(vector);
+  }
+
+  /**
+   * Dot product of {@code length} elements of {@code a} and {@code b} starting at the given
+   * offsets. Unrolled with four independent accumulators so the additions do not serialize on one
+   * register.
+   */
+  public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+    float s0 = 0;
+    float s1 = 0;
+    float s2 = 0;
+    float s3 = 0;
+    int i = 0;
+    int bound = length & ~3;
+    for (; i < bound; i += 4) {
+      s0 += a[aOffset + i] * b[bOffset + i];
+      s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+      s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+      s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+    }
+    for (; i < length; i++) {
+      s0 += a[aOffset + i] * b[bOffset + i];
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  /**
+   * Dot product of {@code length} signed bytes of {@code a} and {@code b} starting at {@code
+   * bOffset}. Integer sums may be reordered, so the JIT can vectorize this loop, unlike the float
+   * one.
+   */
+  public static int dot(byte[] a, byte[] b, int bOffset, int length) {
+    int sum = 0;
+    for (int i = 0; i < length; i++) {
+      sum += a[i] * b[bOffset + i];
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,557 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Immutable search view of a set of vectors, one unit-length row per vector.
+ *
+ * <p>Without quantization the rows are the vectors' own embeddings, which are normalized when
+ * written, so the matrix adds no copy of them; only an embedding that is not unit length (written
+ * before embeddings were normalized) is copied and normalized. Vectors without an embedding, or
+ * whose dimension differs from the most common one (the first one on a tie), are left out.
+ *
+ * <p>Rows can instead be packed {@linkplain Quantization quantized} into one contiguous array, as
+ * one byte or one bit per element. Scores are then estimates, good enough to pick candidates;
+ * {@link #scores(float[], int)} re-scores the best candidates at full precision from the vectors'
+ * own embeddings. Those stay resident, so quantized rows speed up scoring but add to the memory the
+ * vectors take rather than replacing it; {@link #residentBytes()} counts both.
+ *
+ * <p>A {@link Writer} keeps a matrix up to date as vectors are stored and deleted without packing
+ * it again: stored vectors are appended, and the rows of deleted or replaced vectors are marked
+ * deleted until the writer repacks.
+ */
+@Slf4j
+public final class VectorMatrix {
+
+  /** How rows are packed. */
+  public enum Quantization {
+    /** 32-bit floats; scores are exact. */
+    NONE,
+    /** One signed byte per element, with a scale and offset per row. */
+    INT8,
+    /** One sign bit per element; scores are estimated from the Hamming distance. */
+    BINARY;
+
+    /**
+     * Parses a configured quantization name, case-insensitively; blank means {@link #NONE}.
+     *
+     * @throws IllegalArgumentException if the name is not a quantization
+     */
+    public static Quantization parse(String name) {
+      if (name == null || name.isBlank()) {
+        return NONE;
+      }
+      for (Quantization quantization : values()) {
+        if (quantization.name().equalsIgnoreCase(name.trim())) {
+          return quantization;
+        }
+      }
+      throw new IllegalArgumentException("Unknown vector quantization: " + name);
+    }
+  }
+
+  private static final VectorMatrix EMPTY =
+      new VectorMatrix(
+          new VectorData[0],
+          0,
+          0,
+          Quantization.NONE,
+          new float[0][],
+          null,
+          null,
+          null,
+          null,
+          null,
+          0);
+
+  // Arrays may be longer than size rows: a writer appends past the rows of the matrices it
+  // published
+  private final VectorData[] vectors;
+  private final int size;
+  private final int dimensions;
+  private final Quantization quantization;
+  // NONE: the unit-length embeddings, shared with the vectors where they already are
+  private final float[][] rows;
+  // INT8: element = offset + scale * code
+  private final byte[] codes;
+  private final float[] scales;
+  private final float[] offsets;
+  // BINARY: sign bits, words per row = ceil(dimensions / 64)
+  private final long[] signs;
+  // Bit per row, set for rows of deleted vectors; null when there are none
+  private final long[] deleted;
+  private final int deletedRows;
+
+  private VectorMatrix(
+      VectorData[] vectors,
+      int size,
+      int dimensions,
+      Quantization quantization,
+      float[][] rows,
+      byte[] codes,
+      float[] scales,
+      float[] offsets,
+      long[] signs,
+      long[] deleted,
+      int deletedRows) {
+    this.vectors = vectors;
+    this.size = size;
+    this.dimensions = dimensions;
+    this.quantization = quantization;
+    this.rows = rows;
+    this.codes = codes;
+    this.scales = scales;
+    this.offsets = offsets;
+    this.signs = signs;
+    this.deleted = deleted;
+    this.deletedRows = deletedRows;
+  }
+
+  public static VectorMatrix empty() {
+    return EMPTY;
+  }
+
+  public static VectorMatrix of(Collection<VectorData> vectors) {
+    return of(vectors, Quantization.NONE);
+  }
+
+  public static VectorMatrix of(Collection<VectorData> vectors, Quantization quantization) {
+    // Rows must share one dimension; left over from a model change, a minority is left out
+    Map<Integer, Integer> counts = new LinkedHashMap<>();
+    for (VectorData vector : vectors) {
+      float[] embedding = vector.getEmbedding();
+      if (embedding == null || embedding.length == 0) {
+        log.warn("Skipping vector without embedding: {}", vector.getSemanticType());
+      } else {
+        counts.merge(embedding.length, 1, Integer::sum);
+      }
+    }
+    int dimensions = 0;
+    int most = 0;
+    for (Map.Entry<Integer, Integer> count : counts.entrySet()) {
+      if (count.getValue() > most) {
+        dimensions = count.getKey();
+        most = count.getValue();
+      }
+    }
+    List<VectorData> packed = new ArrayList<>(most);
+    for (VectorData vector : vectors) {
+      float[] embedding = vector.getEmbedding();
+      if (embedding != null && embedding.length == dimensions) {
+        packed.add(vector);
+      }
+    }
+    if (counts.size() > 1) {
+      log.warn(
+          "Skipping {} vectors whose dimension is not {} (vectors by dimension: {})",
+          counts.values().stream().mapToInt(Integer::intValue).sum() - most,
+          dimensions,
+          counts);
+    }
+    if (packed.isEmpty()) {
+      return EMPTY;
+    }
+
+    int count = packed.size();
+    VectorData[] rowVectors = packed.toArray(new VectorData[0]);
+    switch (quantization) {
+      case INT8 -> {
+        byte[] codes = new byte[count * dimensions];
+        float[] scales = new float[count];
+        float[] offsets = new float[count];
+        for (int i = 0; i < count; i++) {
+          quantizeInt8(
+              VectorMath.normalize(rowVectors[i].getEmbedding()), codes, i, scales, offsets);
+        }
+        return new VectorMatrix(
+            rowVectors,
+            count,
+            dimensions,
+            quantization,
+            null,
+            codes,
+            scales,
+            offsets,
+            null,
+            null,
+            0);
+      }
+      case BINARY -> {
+        long[] signs = new long[count * words(dimensions)];
+        for (int i = 0; i < count; i++) {
+          packSigns(rowVectors[i].getEmbedding(), signs, i);
+        }
+        return new VectorMatrix(
+            rowVectors, count, dimensions, quantization, null, null, null, null, signs, null, 0);
+      }
+      default -> {
+        float[][] rows = new float[count][];
+        for (int i = 0; i < count; i++) {
+          rows[i] = VectorMath.unit(rowVectors[i].getEmbedding());
+        }
+        return new VectorMatrix(
+            rowVectors, count, dimensions, quantization, rows, null, null, null, null, null, 0);
+      }
+    }
+  }
+
+  private static int words(int dimensions) {
+    return (dimensions + 63) / 64;
+  }
+
+  private static void packSigns(float[] row, long[] signs, int index) {
+    int words = words(row.length);
+    for (int d = 0; d < row.length; d++) {
+      if (row[d] > 0) {
+        signs[index * words + d / 64] |= 1L << (d % 64);
+      }
+    }
+  }
+
+  // Maps the row's range [min, max] onto the 256 byte values
+  private static void quantizeInt8(
+      float[] row, byte[] codes, int index, float[] scales, float[] offsets) {
+    float min = Float.POSITIVE_INFINITY;
+    float max = Float.NEGATIVE_INFINITY;
+    for (float value : row) {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+    float scale = (max - min) / 255f;
+    scales[index] = scale;
+    offsets[index] = min + 128 * scale;
+    if (scale == 0) {
+      return;
+    }
+    int offset = index * row.length;
+    for (int d = 0; d < row.length; d++) {
+      codes[offset + d] = (byte) (Math.round((row[d] - min) / scale) - 128);
+    }
+  }
+
+  /** Number of rows, including those of deleted vectors. */
+  public int size() {
+    return size;
+  }
+
+  /** Number of rows whose vector has been deleted; they score negative infinity. */
+  public int deletedRows() {
+    return deletedRows;
+  }
+
+  /** Whether row {@code row} belongs to a deleted vector. */
+  public boolean isDeleted(int row) {
+    // Rows appended after the last delete lie past the end of the bits
+    return deleted != null && row >>> 6 < deleted.length && (deleted[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /** Embedding dimension, or 0 if the matrix is empty. */
+  public int getDimensions() {
+    return dimensions;
+  }
+
+  public Quantization getQuantization() {
+    return quantization;
+  }
+
+  /** The vector packed in row {@code row}. */
+  public VectorData getVector(int row) {
+    return vectors[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Bytes the matrix adds to its vectors' embeddings: the quantized rows and their per-row
+   * parameters, or without quantization the rows that had to be normalized into a copy.
+   */
+  public long packedBytes() {
+    return switch (quantization) {
+      case INT8 -> (long) size * dimensions + 8L * size;
+      case BINARY -> 8L * size * words(dimensions);
+      default -> {
+        long copied = 0;
+        for (int row = 0; row < size; row++) {
+          copied += rows[row] != vectors[row].getEmbedding() ? 4L * dimensions : 0;
+        }
+        yield copied;
+      }
+    };
+  }
+
+  /**
+   * Bytes resident for the matrix: {@link #packedBytes()} plus the embeddings of its vectors, which
+   * stay in memory for re-scoring whatever the quantization. Object headers are not counted.
+   */
+  public long residentBytes() {
+    return packedBytes() + 4L * size * dimensions;
+  }
+
+  /**
+   * The unit-length row {@code row}, usually the vector's own embedding, so callers must not modify
+   * it. Only a matrix without quantization has full-precision rows.
+   */
+  float[] row(int row) {
+    if (rows == null) {
+      throw new IllegalStateException("Quantized matrix has no full-precision rows");
+    }
+    return rows[Objects.checkIndex(row, size)];
+  }
+
+  /**
+   * Cosine similarity of a unit-length query to every row; estimated, if the rows are quantized.
+   *
+   * @throws IllegalArgumentException if the query dimension differs from the matrix dimension
+   */
+  public float[] scores(float[] query) {
+    float[] scores = new float[size];
+    if (scores.length == 0) {
+      return scores;
+    }
+    if (query.length != dimensions) {
+      throw new IllegalArgumentException("Embeddings must have the same dimension");
+    }
+    switch (quantization) {
+      case INT8 -> {
+        // Quantize the query too (symmetrically, to 127 steps) so rows are scored in integers
+        float querySum = 0;
+        float queryMax = 0;
+        for (float value : query) {
+          querySum += value;
+          queryMax = Math.max(queryMax, Math.abs(value));
+        }
+        float queryScale = queryMax > 0 ? queryMax / 127f : 1f;
+        byte[] queryCodes = new byte[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+          queryCodes[d] = (byte) Math.round(query[d] / queryScale);
+        }
+        for (int row = 0, offset = 0; row < scores.length; row++, offset += dimensions) {
+          scores[row] =
+              offsets[row] * querySum
+                  + scales[row]
+                      * queryScale
+                      * VectorMath.dot(queryCodes, codes, offset, dimensions);
+        }
+      }
+      case BINARY -> {
+        int words = words(dimensions);
+        long[] querySigns = new long[words];
+        for (int d = 0; d < dimensions; d++) {
+          if (query[d] > 0) {
+            querySigns[d / 64] |= 1L << (d % 64);
+          }
+        }
+        // The angle between two vectors is about pi times the share of signs that differ
+        float[] cosines = new float[dimensions + 1];
+        for (int distance = 0; distance <= dimensions; distance++) {
+          cosines[distance] = (float) Math.cos(Math.PI * distance / dimensions);
+        }
+        for (int row = 0, offset = 0; row < scores.length; row++, offset += words) {
+          int distance = 0;
+          for (int w = 0; w < words; w++) {
+            distance += Long.bitCount(querySigns[w] ^ signs[offset + w]);
+          }
+          scores[row] = cosines[distance];
+        }
+      }
+      default -> {
+        for (int row = 0; row < scores.length; row++) {
+          scores[row] = VectorMath.dot(query, 0, rows[row], 0, dimensions);
+        }
+      }
+    }
+    if (deleted != null) {
+      for (int row = 0; row < scores.length; row++) {
+        if (isDeleted(row)) {
+          scores[row] = Float.NEGATIVE_INFINITY;
+        }
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Cosine similarity of a unit-length query to every row. Without quantization this is {@link
+   * #scores(float[])}. With it, the {@code candidates} rows with the best estimates are scored
+   * again at full precision from their vectors' embeddings, and every other row scores negative
+   * infinity.
+   *
+   * @throws IllegalArgumentException if the query dimension differs from the matrix dimension
+   */
+  public float[] scores(float[] query, int candidates) {
+    float[] scores = scores(query);
+    if (quantization == Quantization.NONE) {
+      return scores;
+    }
+    PriorityQueue<Integer> best =
+        new PriorityQueue<>(candidates + 1, Comparator.comparingDouble(row -> scores[row]));
+    for (int row = 0; row < scores.length; row++) {
+      if (isDeleted(row)) {
+        continue;
+      }
+      if (best.size() < candidates) {
+        best.add(row);
+      } else if (candidates > 0 && scores[row] > scores[best.peek()]) {
+        best.poll();
+        best.add(row);
+      }
+    }
+    float[] exact = new float[scores.length];
+    Arrays.fill(exact, Float.NEGATIVE_INFINITY);
+    for (int row : best) {
+      float[] embedding = vectors[row].getEmbedding();
+      float norm = (float) Math.sqrt(VectorMath.dot(embedding, 0, embedding, 0, dimensions));
+      exact[row] = norm > 0 ? VectorMath.dot(query, 0, embedding, 0, dimensions) / norm : 0;
+    }
+    return exact;
+  }
+
+  /**
+   * Keeps a matrix up to date as vectors are stored and deleted, keyed by semantic type. Stored
+   * vectors are appended to arrays shared with the matrices already {@linkplain #publish()
+   * published}, which never read past their own rows; the rows of deleted or replaced vectors are
+   * marked in a copy of the deletion bits. Once deleted rows make up a quarter of the matrix, or
+   * vectors of another dimension outnumber the packed ones, {@link #needsRepack()} says to pack a
+   * new matrix. Not thread-safe: callers serialize updates and hand published matrices to readers.
+   */
+  static final class Writer {
+
+    private final Quantization quantization;
+    private final Map<String, Integer> rowsByType = new HashMap<>();
+    // Vectors left out for their dimension, by semantic type
+    private final Set<String> leftOut = new HashSet<>();
+    private int dimensions;
+    private VectorData[] vectors;
+    private int size;
+    private float[][] rows;
+    private byte[] codes;
+    private float[] scales;
+    private float[] offsets;
+    private long[] signs;
+    private long[] deleted;
+    private int deletedRows;
+    // Whether deleted is shared with a published matrix and must be copied before it changes
+    private boolean deletedPublished;
+
+    /** Packs {@code vectors}, which must have distinct semantic types. */
+    Writer(Collection<VectorData> vectors, Quantization quantization) {
+      VectorMatrix matrix = of(vectors, quantization);
+      this.quantization = quantization;
+      this.dimensions = matrix.dimensions;
+      this.vectors = matrix.vectors;
+      this.size = matrix.size;
+      if (size > 0) {
+        this.rows = matrix.rows;
+        this.codes = matrix.codes;
+        this.scales = matrix.scales;
+        this.offsets = matrix.offsets;
+        this.signs = matrix.signs;
+      }
+      for (int row = 0; row < size; row++) {
+        rowsByType.put(this.vectors[row].getSemanticType(), row);
+      }
+      for (VectorData vector : vectors) {
+        float[] embedding = vector.getEmbedding();
+        if (embedding != null && embedding.length > 0 && embedding.length != dimensions) {
+          leftOut.add(vector.getSemanticType());
+        }
+      }
+    }
+
+    /** Stores {@code vector}, replacing the vector stored under its semantic type. */
+    void put(VectorData vector) {
+      remove(vector.getSemanticType());
+      float[] embedding = vector.getEmbedding();
+      if (embedding == null || embedding.length == 0) {
+        log.warn("Skipping vector without embedding: {}", vector.getSemanticType());
+        return;
+      }
+      if (size == 0 && deletedRows == 0) {
+        dimensions = embedding.length;
+      }
+      if (embedding.length != dimensions) {
+        leftOut.add(vector.getSemanticType());
+        return;
+      }
+      ensureCapacity(size + 1);
+      vectors[size] = vector;
+      switch (quantization) {
+        case INT8 -> quantizeInt8(VectorMath.normalize(embedding), codes, size, scales, offsets);
+        case BINARY -> packSigns(embedding, signs, size);
+        default -> rows[size] = VectorMath.unit(embedding);
+      }
+      rowsByType.put(vector.getSemanticType(), size);
+      size++;
+    }
+
+    /** Deletes the vector stored under {@code semanticType}, if any. */
+    void remove(String semanticType) {
+      leftOut.remove(semanticType);
+      Integer row = rowsByType.remove(semanticType);
+      if (row == null) {
+        return;
+      }
+      if (deleted == null || deletedPublished || deleted.length < words(size)) {
+        deleted = deleted == null ? new long[words(size)] : Arrays.copyOf(deleted, words(size));
+        deletedPublished = false;
+      }
+      deleted[row >>> 6] |= 1L << row;
+      deletedRows++;
+    }
+
+    /** Whether the matrix has enough dead rows that it should be packed again. */
+    boolean needsRepack() {
+      return deletedRows > size / 4 || leftOut.size() > size - deletedRows;
+    }
+
+    /** A matrix of the vectors stored so far; later updates do not change it. */
+    VectorMatrix publish() {
+      deletedPublished = true;
+      if (size == 0) {
+        return EMPTY;
+      }
+      return new VectorMatrix(
+          vectors,
+          size,
+          dimensions,
+          quantization,
+          rows,
+          codes,
+          scales,
+          offsets,
+          signs,
+          deletedRows > 0 ? deleted : null,
+          deletedRows);
+    }
+
+    // Grows by half, so appends copy the rows an amortized constant number of times
+    private void ensureCapacity(int needed) {
+      if (vectors.length >= needed) {
+        return;
+      }
+      int capacity = Math.max(needed, vectors.length + (vectors.length >> 1) + 1);
+      vectors = Arrays.copyOf(vectors, capacity);
+      switch (quantization) {
+        case INT8 -> {
+          codes = Arrays.copyOf(codes == null ? new byte[0] : codes, capacity * dimensions);
+          scales = Arrays.copyOf(scales == null ? new float[0] : scales, capacity);
+          offsets = Arrays.copyOf(offsets == null ? new float[0] : offsets, capacity);
+        }
+        case BINARY -> signs =
+            Arrays.copyOf(signs == null ? new long[0] : signs, capacity * words(dimensions));
+        default -> rows = Arrays.copyOf(rows == null ? new float[0][] : rows, capacity);
+      }
+    }
+  }
+}
@@ -1,11 +1,23 @@
 package com.nl2fta.classifier.service.vector;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
@@ -18,6 +30,9 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * Service for performing vector-based similarity search for semantic types. Replaces the
  * prompt-based similarity checking with efficient vector search.
+ *
+ * <p>Searches run against the resident index held by {@link S3VectorStorageService}, so the only
+ * remote call per query is embedding the query text.
  */
 @Slf4j
 @Service
@@ -38,6 +53,14 @@ public class VectorSimilaritySearchService {
   /** Number of top matches to return for LLM evaluation. */
   private static final int TOP_K_FOR_LLM = 3;
 
+  /** Rows of a quantized index re-scored at full precision per search. */
+  @Value("${vector.index.rerank-candidates:256}")
+  private int rerankCandidates;
+
+  // Embeddings stored per write while indexing many types
+  @Value("${vector.index.store-batch-size:100}")
+  private int storeBatchSize;
+
   /**
    * Find similar semantic types based on vector similarity.
    *
@@ -51,61 +74,97 @@ public class VectorSimilaritySearchService {
     String queryText = generateQueryText(request);
     log.info("Query text for vector search: {}", queryText);
 
-    // Generate embedding for query
-    List<Float> queryEmbedding = embeddingService.generateEmbedding(queryText);
-
-    // Retrieve all vectors from storage
-    List<VectorData> allVectors = storageService.getAllVectors();
-
-    // Calculate similarities and filter by threshold (vectors are unique per type)
-    List<SimilaritySearchResult> rawResults =
-        allVectors.stream()
-            .map(
-                vectorData -> {
-                  double similarity =
-                      embeddingService.calculateCosineSimilarity(
-                          queryEmbedding, vectorData.getEmbedding());
-
-                  // Keep logs at debug to avoid noisy duplication in docker output
-                  if (similarity > 0.7) {
-                    log.debug(
-                        "Similarity for {} ({}): {}",
-                        vectorData.getSemanticType(),
-                        vectorData.getDescription(),
-                        similarity);
-                  }
-
-                  return SimilaritySearchResult.builder()
-                      .semanticType(vectorData.getSemanticType())
-                      .description(vectorData.getDescription())
-                      .similarityScore(similarity)
-                      .type(vectorData.getType())
-                      .pluginType(vectorData.getPluginType())
-                      .examples(vectorData.getExamples())
-                      .build();
-                })
-            .filter(result -> result.getSimilarityScore() >= threshold)
-            .collect(Collectors.toList());
-
-    // De-duplicate by semanticType, keeping the highest similarity score
-    var bestByType =
-        rawResults.stream()
-            .collect(
-                Collectors.toMap(
-                    SimilaritySearchResult::getSemanticType,
-                    r -> r,
-                    (a, b) -> a.getSimilarityScore() >= b.getSimilarityScore() ? a : b));
-
+    // Generate embedding for query; stored rows are unit length, so cosine is a dot product
+    float[] queryEmbedding =
+        VectorMath.normalize(VectorMath.toArray(embeddingService.generateEmbedding(queryText)));
+
+    // Resident index; only the first search after connecting loads it from S3. Large catalogs
+    // go through the approximate graph, smaller ones are scanned exactly
+    HnswIndex<VectorData> graph = storageService.getAnnIndex();
+    VectorMatrix matrix = graph == null ? storageService.getVectorMatrix() : null;
+    int indexDimensions = graph != null ? graph.getDimensions() : matrix.getDimensions();
+    if (indexDimensions != 0 && indexDimensions != queryEmbedding.length) {
+      // Embeddings of different sizes are not comparable; the index is re-embedded on reconcile
+      throw new IllegalStateException(
+          String.format(
+              "Vector index holds %d-dimensional embeddings but the model returns %d;"
+                  + " the index must be rebuilt",
+              indexDimensions, queryEmbedding.length));
+    }
     List<SimilaritySearchResult> results =
-        bestByType.values().stream()
-            .sorted((a, b) -> Double.compare(b.getSimilarityScore(), a.getSimilarityScore()))
-            .limit(TOP_K_MATCHES)
-            .collect(Collectors.toList());
+        graph != null
+            ? approximateTopMatches(graph, queryEmbedding, threshold)
+            : exactTopMatches(matrix, queryEmbedding, threshold);
 
     log.info("Found {} similar types above threshold {} for query", results.size(), threshold);
     return results;
   }
 
+  /**
+   * Scores every stored vector and keeps the best {@link #TOP_K_MATCHES} types above the threshold
+   * in a bounded heap, so only the matches returned are ever sorted.
+   */
+  private List<SimilaritySearchResult> exactTopMatches(
+      VectorMatrix matrix, float[] queryEmbedding, double threshold) {
+    float[] scores = matrix.scores(queryEmbedding, Math.max(TOP_K_MATCHES, rerankCandidates));
+
+    // Best row per semanticType among those above the threshold
+    Map<String, Integer> bestRowByType = new HashMap<>();
+    for (int row = 0; row < scores.length; row++) {
+      if (scores[row] >= threshold) {
+        bestRowByType.merge(
+            matrix.getVector(row).getSemanticType(), row, (a, b) -> scores[a] >= scores[b] ? a : b);
+      }
+    }
+
+    PriorityQueue<Integer> top =
+        new PriorityQueue<>(TOP_K_MATCHES + 1, Comparator.comparingDouble(row -> scores[row]));
+    for (int row : bestRowByType.values()) {
+      top.add(row);
+      if (top.size() > TOP_K_MATCHES) {
+        top.poll();
+      }
+    }
+
+    List<SimilaritySearchResult> results = new ArrayList<>(top.size());
+    while (!top.isEmpty()) {
+      int row = top.poll();
+      results.add(toResult(matrix.getVector(row), scores[row]));
+    }
+    Collections.reverse(results);
+    return results;
+  }
+
+  private List<SimilaritySearchResult> approximateTopMatches(
+      HnswIndex<VectorData> graph, float[] queryEmbedding, double threshold) {
+    List<SimilaritySearchResult> results = new ArrayList<>(TOP_K_MATCHES);
+    for (HnswIndex.Hit<VectorData> hit : graph.search(queryEmbedding, TOP_K_MATCHES)) {
+      if (hit.score() >= threshold) {
+        results.add(toResult(hit.item(), hit.score()));
+      }
+    }
+    return results;
+  }
+
+  private SimilaritySearchResult toResult(VectorData vectorData, double similarity) {
+    // Keep logs at debug to avoid noisy duplication in docker output
+    if (similarity > 0.7) {
+      log.debug(
+          "Similarity for {} ({}): {}",
+          vectorData.getSemanticType(),
+          vectorData.getDescription(),
+          similarity);
+    }
+    return SimilaritySearchResult.builder()
+        .semanticType(vectorData.getSemanticType())
+        .description(vectorData.getDescription())
+        .similarityScore(similarity)
+        .type(vectorData.getType())
+        .pluginType(vectorData.getPluginType())
+        .examples(vectorData.getExamples())
+        .build();
+  }
+
   /**
    * Find the most similar semantic type.
    *
@@ -142,35 +201,11 @@ public class VectorSimilaritySearchService {
   public void indexSemanticType(CustomSemanticType semanticType) {
     try {
       // Generate text representation
-      String text =
-          embeddingService.generateSemanticTypeText(
-              semanticType.getSemanticType(),
-              semanticType.getDescription(),
-              extractExamples(semanticType));
-
-      // Generate embedding
-      List<Float> embedding = embeddingService.generateEmbedding(text);
-
-      // Create vector data
-      VectorData vectorData =
-          VectorData.builder()
-              .id(storageService.generateVectorId(semanticType.getSemanticType()))
-              .semanticType(semanticType.getSemanticType())
-              .type(
-                  semanticType.getIsBuiltIn() != null && semanticType.getIsBuiltIn()
-                      ? "built-in"
-                      : "custom")
-              .description(semanticType.getDescription())
-              .embedding(embedding)
-              .originalText(text)
-              .pluginType(semanticType.getPluginType())
-              .examples(extractExamples(semanticType))
-              .createdAt(Instant.now())
-              .updatedAt(Instant.now())
-              .build();
-
-      // Store in S3
-      storageService.storeVector(vectorData);
+      String text = semanticTypeText(semanticType);
+
+      // Generate embedding and store it in S3
+      storageService.storeVector(
+          toVectorData(semanticType, text, embeddingService.generateEmbedding(text)));
       log.info("Indexed semantic type: {}", semanticType.getSemanticType());
 
     } catch (Exception e) {
@@ -180,25 +215,240 @@ public class VectorSimilaritySearchService {
   }
 
   /**
-   * Index multiple semantic types in batch.
+   * Index multiple semantic types in batch. Embeddings are generated concurrently under the
+   * embedding service's rate limit and stored in batches of {@code vector.index.store-batch-size}
+   * as they arrive; types are counted in the indexing progress once stored. Types that fail are
+   * logged and skipped.
    *
    * @param semanticTypes List of semantic types to index
    */
   public void indexSemanticTypes(List<CustomSemanticType> semanticTypes) {
     log.info("Indexing {} semantic types", semanticTypes.size());
 
+    List<CustomSemanticType> types = new ArrayList<>(semanticTypes.size());
+    List<String> texts = new ArrayList<>(semanticTypes.size());
     for (CustomSemanticType type : semanticTypes) {
       try {
-        indexSemanticType(type);
-        // Update progress if indexInitService is available
-        if (indexInitService != null) {
-          indexInitService.incrementIndexedTypesCount();
-        }
+        texts.add(semanticTypeText(type));
+        types.add(type);
+      } catch (Exception e) {
+        log.error(
+            "Failed to index semantic type: {}, continuing with others", type.getSemanticType(), e);
+      }
+    }
+    embedAndStore(types, texts);
+  }
+
+  /**
+   * Brings the stored vectors in line with the catalog, which is taken to be complete. See {@link
+   * #reconcileIndex(List, boolean)}.
+   */
+  public ReconciliationSummary reconcileIndex(List<CustomSemanticType> semanticTypes) {
+    return reconcileIndex(semanticTypes, true);
+  }
+
+  /**
+   * Brings the stored vectors in line with the catalog. Each stored vector carries a hash of the
+   * text it was embedded from; types whose current text hashes the same are left alone, added or
+   * changed types are re-embedded, and vectors for types no longer in the catalog are deleted.
+   *
+   * <p>Vectors are only deleted when the catalog is authoritative: a copy of the shared bucket
+   * taken by a sync that listed it and loaded every type in it. A catalog read from local files, or
+   * from a cache that a failed or partial sync left behind, says nothing about which types were
+   * removed; since the built-in types are always listed, it is rarely empty either.
+   *
+   * @param semanticTypes the current catalog
+   * @param authoritative whether the catalog holds every type in the shared bucket
+   * @return how many vectors were unchanged, re-embedded, removed or failed
+   */
+  public ReconciliationSummary reconcileIndex(
+      List<CustomSemanticType> semanticTypes, boolean authoritative) {
+    Map<String, VectorData> stored = new HashMap<>();
+    for (VectorData vector : storageService.getAllVectors()) {
+      stored.put(vector.getSemanticType(), vector);
+    }
+
+    // Last definition wins, as it does when the types are stored one after another
+    Map<String, CustomSemanticType> catalog = new LinkedHashMap<>();
+    for (CustomSemanticType type : semanticTypes) {
+      catalog.put(type.getSemanticType(), type);
+    }
+
+    int unchanged = 0;
+    List<CustomSemanticType> types = new ArrayList<>();
+    List<String> texts = new ArrayList<>();
+    int failed = 0;
+    for (CustomSemanticType type : catalog.values()) {
+      String text;
+      try {
+        text = semanticTypeText(type);
       } catch (Exception e) {
         log.error(
             "Failed to index semantic type: {}, continuing with others", type.getSemanticType(), e);
+        failed++;
+        continue;
       }
+      if (isCurrent(stored.get(type.getSemanticType()), text)) {
+        unchanged++;
+        reportProgress();
+      } else {
+        types.add(type);
+        texts.add(text);
+      }
+    }
+
+    int removed = 0;
+    if (!authoritative || catalog.isEmpty()) {
+      log.info("Catalog is empty or not authoritative, keeping vectors of types missing from it");
+    } else {
+      for (String semanticType : stored.keySet()) {
+        if (!catalog.containsKey(semanticType)) {
+          storageService.deleteVector(semanticType);
+          removed++;
+        }
+      }
+    }
+
+    if (!types.isEmpty()) {
+      log.info("Re-embedding {} added or changed semantic types", types.size());
     }
+    int embedFailures = embedAndStore(types, texts);
+    return ReconciliationSummary.builder()
+        .unchanged(unchanged)
+        .reembedded(types.size() - embedFailures)
+        .removed(removed)
+        .failed(failed + embedFailures)
+        .build();
+  }
+
+  // A stored vector is current when it was embedded from the same text by the configured model at
+  // the configured dimension. Vectors written before content hashes were recorded are compared by
+  // their original text instead
+  private boolean isCurrent(VectorData vector, String text) {
+    if (vector == null || vector.getEmbedding() == null) {
+      return false;
+    }
+    // Until the model has returned an embedding its dimension may be unknown; then only vectors
+    // recorded as coming from it are kept
+    String model = embeddingService.getModelId();
+    int dimensions = embeddingService.getEmbeddingDimensions();
+    if (dimensions > 0
+        ? vector.getEmbedding().length != dimensions
+        : vector.getEmbeddingModel() == null) {
+      return false;
+    }
+    // Vectors stored before the model was recorded are judged by their dimension alone
+    if (vector.getEmbeddingModel() != null
+        && model != null
+        && !vector.getEmbeddingModel().equals(model)) {
+      return false;
+    }
+    String hash = contentHash(text);
+    return vector.getContentHash() != null
+        ? vector.getContentHash().equals(hash)
+        : vector.getOriginalText() != null && contentHash(vector.getOriginalText()).equals(hash);
+  }
+
+  /** Hex SHA-256 of the text a semantic type is embedded from. */
+  static String contentHash(String text) {
+    try {
+      return HexFormat.of()
+          .formatHex(
+              MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // Embeds and stores the types, returning how many failed
+  private int embedAndStore(List<CustomSemanticType> types, List<String> texts) {
+    if (types.isEmpty()) {
+      return 0;
+    }
+
+    int batchSize = Math.max(1, storeBatchSize);
+    List<VectorData> pending = new ArrayList<>();
+    AtomicInteger storeFailures = new AtomicInteger();
+    List<Integer> failed =
+        embeddingService.generateEmbeddings(
+            texts,
+            (position, embedding) -> {
+              VectorData vector = toVectorData(types.get(position), texts.get(position), embedding);
+              List<VectorData> batch = null;
+              synchronized (pending) {
+                pending.add(vector);
+                if (pending.size() >= batchSize) {
+                  batch = new ArrayList<>(pending);
+                  pending.clear();
+                }
+              }
+              if (batch != null) {
+                storeFailures.addAndGet(store(batch));
+              }
+            });
+    storeFailures.addAndGet(store(pending));
+    for (int position : failed) {
+      log.error(
+          "Failed to index semantic type: {}, continuing with others",
+          types.get(position).getSemanticType());
+    }
+    return failed.size() + storeFailures.get();
+  }
+
+  // Stores a batch of embedded types, returning how many could not be stored
+  private int store(List<VectorData> batch) {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    try {
+      storageService.storeVectors(batch);
+    } catch (RuntimeException e) {
+      log.error(
+          "Failed to store {} semantic type vectors, continuing with others", batch.size(), e);
+      return batch.size();
+    }
+    for (VectorData vector : batch) {
+      log.info("Indexed semantic type: {}", vector.getSemanticType());
+      reportProgress();
+    }
+    return 0;
+  }
+
+  private void reportProgress() {
+    // Update progress if indexInitService is available
+    if (indexInitService != null) {
+      indexInitService.incrementIndexedTypesCount();
+    }
+  }
+
+  private String semanticTypeText(CustomSemanticType semanticType) {
+    return embeddingService.generateSemanticTypeText(
+        semanticType.getSemanticType(),
+        semanticType.getDescription(),
+        extractExamples(semanticType));
+  }
+
+  // Embedding is normalized once here so searches need only a dot product
+  private VectorData toVectorData(
+      CustomSemanticType semanticType, String text, List<Float> embedding) {
+    return VectorData.builder()
+        .id(storageService.generateVectorId(semanticType.getSemanticType()))
+        .semanticType(semanticType.getSemanticType())
+        .type(
+            semanticType.getIsBuiltIn() != null && semanticType.getIsBuiltIn()
+                ? "built-in"
+                : "custom")
+        .description(semanticType.getDescription())
+        .embedding(VectorMath.normalize(VectorMath.toArray(embedding)))
+        .embeddingModel(embeddingService.getModelId())
+        .originalText(text)
+        .contentHash(contentHash(text))
+        .pluginType(semanticType.getPluginType())
+        .examples(extractExamples(semanticType))
+        .createdAt(Instant.now())
+        .updatedAt(Instant.now())
+        .build();
   }
 
   /**
@@ -211,12 +461,30 @@ public class VectorSimilaritySearchService {
     log.info("Removed semantic type from index: {}", semanticType);
   }
 
-  /** Clear all vectors from the index. */
+  /**
+   * Clear all vectors from the index. Their embeddings are kept in the embedding cache first, so a
+   * rebuild that follows only calls the model for text that changed.
+   */
   public void clearIndex() {
+    try {
+      embeddingService.warmCache(storageService.getAllVectors());
+    } catch (Exception e) {
+      log.warn("Could not cache embeddings before clearing the index: {}", e.getMessage());
+    }
     storageService.clearAllVectors();
     log.info("Cleared all vectors from index");
   }
 
+  /**
+   * Loads the resident vector index if it is not loaded yet, so the first search is not slowed, and
+   * seeds the embedding cache from it.
+   */
+  public void warmIndex() {
+    List<VectorData> vectors = storageService.getAllVectors();
+    embeddingService.warmCache(vectors);
+    log.debug("Vector index warm with {} vectors", vectors.size());
+  }
+
   /**
    * Get all stored vectors from storage.
    *
@@ -312,6 +580,16 @@ public class VectorSimilaritySearchService {
     return examples;
   }
 
+  /** Outcome of {@link #reconcileIndex}. */
+  @lombok.Builder
+  @lombok.Data
+  public static class ReconciliationSummary {
+    private int unchanged;
+    private int reembedded;
+    private int removed;
+    private int failed;
+  }
+
   /** Result of a similarity search. */
   @lombok.Builder
   @lombok.Data
@@ -322,5 +600,13 @@ public class VectorSimilaritySearchService {
     private String type;
     private String pluginType;
     private List<String> examples;
+    // Found by keyword search: similarityScore is the share of the query's keywords the type
+    // matches rather than the similarity of the embeddings
+    private boolean keywordMatch;
+
+    /** What {@code similarityScore} measures, to label it with. */
+    public String scoreLabel() {
+      return keywordMatch ? "Keyword coverage" : "Similarity";
+    }
   }
 }
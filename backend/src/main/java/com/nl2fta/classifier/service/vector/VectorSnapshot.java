@@ -0,0 +1,371 @@
+package com.nl2fta.classifier.service.vector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * One version of the vector index in the binary snapshot format, and the delta logs written on top
+ * of it between snapshots.
+ *
+ * <p>Snapshot layout (big-endian):
+ *
+ * <pre>
+ * header    int magic "NLVS", int format version, long index version, int count, int dimensions
+ * rows      count * dimensions float32, one unit-length embedding per row
+ * metadata  count records, in row order: the remaining {@link VectorData} fields
+ * folded    int count, then the key of each delta log folded into this version
+ * unpacked  int count, then each vector that does not fit the rows as a metadata record, int
+ *           dimension and that many float32 (0 when it has no embedding)
+ * trailer   int CRC32C of everything before it
+ * </pre>
+ *
+ * <p>Delta log layout: header {@code int magic "NLVD", int format version, long index version, int
+ * count}, then one entry per change (a put carries the vector's metadata record, dimension and
+ * embedding; a delete carries only the semantic type), then the same CRC32C trailer. The header's
+ * version is the one the writer had loaded.
+ *
+ * <p>Format version 2 added the content hash at the end of each metadata record, version 3 the
+ * embedding model after it, version 4 the folded delta keys and version 5 the unpacked vectors;
+ * older data is still read, without them. The header's dimension and the embedding model together
+ * say which model configuration wrote the index.
+ *
+ * <p>The rows hold the vectors of the most common dimension, as {@link VectorMatrix} does. Vectors
+ * without an embedding, or left at another dimension by a model change that is still being
+ * re-embedded, follow in the unpacked section, so a snapshot keeps every vector it is given.
+ */
+public record VectorSnapshot(long version, List<VectorData> vectors, List<String> foldedDeltas) {
+
+  static final int FORMAT_VERSION = 5;
+
+  private static final int SNAPSHOT_MAGIC = 0x4E4C5653; // "NLVS"
+  private static final int DELTA_MAGIC = 0x4E4C5644; // "NLVD"
+
+  public VectorSnapshot {
+    vectors = List.copyOf(vectors);
+    foldedDeltas = foldedDeltas == null ? List.of() : List.copyOf(foldedDeltas);
+  }
+
+  public VectorSnapshot(long version, List<VectorData> vectors) {
+    this(version, vectors, List.of());
+  }
+
+  /** A change recorded in the delta log: a store of {@code vector}, or a delete when it is null. */
+  public record Delta(String semanticType, VectorData vector) {
+
+    public boolean isDelete() {
+      return vector == null;
+    }
+  }
+
+  /** Encodes the snapshot. */
+  public byte[] encode() {
+    VectorMatrix matrix = VectorMatrix.of(vectors);
+    Set<VectorData> packed = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (int row = 0; row < matrix.size(); row++) {
+      packed.add(matrix.getVector(row));
+    }
+    List<VectorData> unpacked =
+        vectors.stream().filter(vector -> !packed.contains(vector)).toList();
+    return write(
+        SNAPSHOT_MAGIC,
+        version,
+        matrix.size(),
+        out -> {
+          out.writeInt(matrix.getDimensions());
+          for (int row = 0; row < matrix.size(); row++) {
+            writeFloats(out, matrix.row(row));
+          }
+          for (int row = 0; row < matrix.size(); row++) {
+            writeMetadata(out, matrix.getVector(row));
+          }
+          out.writeInt(foldedDeltas.size());
+          for (String key : foldedDeltas) {
+            writeString(out, key);
+          }
+          out.writeInt(unpacked.size());
+          for (VectorData vector : unpacked) {
+            float[] embedding = vector.getEmbedding();
+            writeMetadata(out, vector);
+            writeEmbedding(
+                out,
+                embedding == null || embedding.length == 0
+                    ? null
+                    : VectorMath.normalize(embedding));
+          }
+        });
+  }
+
+  /**
+   * Decodes a snapshot written by {@link #encode()}.
+   *
+   * @throws IOException if the data is not a snapshot, is truncated or fails its checksum
+   */
+  public static VectorSnapshot decode(byte[] bytes) throws IOException {
+    ByteBuffer buffer = open(bytes, SNAPSHOT_MAGIC, "vector snapshot");
+    int format = buffer.getInt(4);
+    try {
+      long version = buffer.getLong();
+      int count = buffer.getInt();
+      int dimensions = buffer.getInt();
+      if (count < 0 || dimensions < 0) {
+        throw new IOException("Corrupt vector snapshot: negative size");
+      }
+      FloatBuffer rows = buffer.slice(buffer.position(), count * dimensions * 4).asFloatBuffer();
+      buffer.position(buffer.position() + count * dimensions * 4);
+
+      List<VectorData> vectors = new ArrayList<>(count);
+      for (int row = 0; row < count; row++) {
+        VectorData vector = readMetadata(buffer, format);
+        float[] embedding = new float[dimensions];
+        rows.get(embedding);
+        vector.setEmbedding(embedding);
+        vectors.add(vector);
+      }
+      List<String> folded = new ArrayList<>();
+      if (format >= 4) {
+        int keys = buffer.getInt();
+        for (int i = 0; i < keys; i++) {
+          folded.add(readString(buffer));
+        }
+      }
+      if (format >= 5) {
+        int unpacked = buffer.getInt();
+        for (int i = 0; i < unpacked; i++) {
+          VectorData vector = readMetadata(buffer, format);
+          vector.setEmbedding(readEmbedding(buffer));
+          vectors.add(vector);
+        }
+      }
+      return new VectorSnapshot(version, vectors, folded);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+      throw new IOException("Corrupt vector snapshot: truncated", e);
+    }
+  }
+
+  /** Encodes the delta log for index version {@code version}. */
+  public static byte[] encodeDeltaLog(long version, Collection<Delta> deltas) {
+    return write(
+        DELTA_MAGIC,
+        version,
+        deltas.size(),
+        out -> {
+          for (Delta delta : deltas) {
+            out.writeBoolean(!delta.isDelete());
+            if (delta.isDelete()) {
+              writeString(out, delta.semanticType());
+            } else {
+              writeMetadata(out, delta.vector());
+              writeEmbedding(out, delta.vector().getEmbedding());
+            }
+          }
+        });
+  }
+
+  /**
+   * Decodes a delta log written by {@link #encodeDeltaLog}.
+   *
+   * @throws IOException if the data is not a delta log for {@code version}, is truncated or fails
+   *     its checksum
+   */
+  public static List<Delta> decodeDeltaLog(byte[] bytes, long version) throws IOException {
+    return readDeltaLog(bytes, version);
+  }
+
+  /**
+   * Decodes a delta log written by {@link #encodeDeltaLog} on top of any index version.
+   *
+   * @throws IOException if the data is not a delta log, is truncated or fails its checksum
+   */
+  public static List<Delta> decodeDeltaLog(byte[] bytes) throws IOException {
+    return readDeltaLog(bytes, null);
+  }
+
+  private static List<Delta> readDeltaLog(byte[] bytes, Long version) throws IOException {
+    ByteBuffer buffer = open(bytes, DELTA_MAGIC, "vector delta log");
+    int format = buffer.getInt(4);
+    try {
+      long logVersion = buffer.getLong();
+      if (version != null && logVersion != version) {
+        throw new IOException(
+            "Vector delta log is for version " + logVersion + ", expected " + version);
+      }
+      int count = buffer.getInt();
+      List<Delta> deltas = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        if (buffer.get() == 0) {
+          deltas.add(new Delta(readString(buffer), null));
+          continue;
+        }
+        VectorData vector = readMetadata(buffer, format);
+        vector.setEmbedding(readEmbedding(buffer));
+        deltas.add(new Delta(vector.getSemanticType(), vector));
+      }
+      return deltas;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+      throw new IOException("Corrupt vector delta log: truncated", e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface BodyWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private static byte[] write(int magic, long version, int count, BodyWriter body) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      CheckedOutputStream checked = new CheckedOutputStream(bytes, new CRC32C());
+      DataOutputStream out = new DataOutputStream(checked);
+      out.writeInt(magic);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(version);
+      out.writeInt(count);
+      body.write(out);
+      out.flush();
+      new DataOutputStream(bytes).writeInt((int) checked.getChecksum().getValue());
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      // Only thrown by the underlying stream, and a ByteArrayOutputStream never throws
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Verifies the checksum and header and returns the buffer positioned after the format version
+  private static ByteBuffer open(byte[] bytes, int magic, String what) throws IOException {
+    if (bytes.length < 12) {
+      throw new IOException("Corrupt " + what + ": truncated");
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 4).slice();
+    CRC32C crc = new CRC32C();
+    crc.update(bytes, 0, bytes.length - 4);
+    if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) {
+      throw new IOException("Corrupt " + what + ": checksum mismatch");
+    }
+    if (buffer.getInt() != magic) {
+      throw new IOException("Not a " + what);
+    }
+    int format = buffer.getInt();
+    if (format < 1 || format > FORMAT_VERSION) {
+      throw new IOException("Unsupported " + what + " format version: " + format);
+    }
+    return buffer;
+  }
+
+  private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+    buffer.asFloatBuffer().put(values);
+    out.write(buffer.array());
+  }
+
+  // Length-prefixed; no embedding is written as length 0
+  private static void writeEmbedding(DataOutputStream out, float[] embedding) throws IOException {
+    out.writeInt(embedding == null ? 0 : embedding.length);
+    writeFloats(out, embedding == null ? new float[0] : embedding);
+  }
+
+  private static float[] readEmbedding(ByteBuffer in) {
+    float[] embedding = new float[in.getInt()];
+    in.asFloatBuffer().get(embedding);
+    in.position(in.position() + embedding.length * 4);
+    return embedding.length == 0 ? null : embedding;
+  }
+
+  // Every VectorData field except the embedding; keep in step with VectorData
+  private static void writeMetadata(DataOutputStream out, VectorData vector) throws IOException {
+    writeString(out, vector.getSemanticType());
+    writeString(out, vector.getId());
+    writeString(out, vector.getType());
+    writeString(out, vector.getDescription());
+    writeString(out, vector.getOriginalText());
+    writeString(out, vector.getPluginType());
+    List<String> examples = vector.getExamples();
+    out.writeInt(examples == null ? -1 : examples.size());
+    if (examples != null) {
+      for (String example : examples) {
+        writeString(out, example);
+      }
+    }
+    writeInstant(out, vector.getCreatedAt());
+    writeInstant(out, vector.getUpdatedAt());
+    writeString(out, vector.getContentHash());
+    writeString(out, vector.getEmbeddingModel());
+  }
+
+  private static VectorData readMetadata(ByteBuffer in, int format) {
+    VectorData.VectorDataBuilder vector =
+        VectorData.builder()
+            .semanticType(readString(in))
+            .id(readString(in))
+            .type(readString(in))
+            .description(readString(in))
+            .originalText(readString(in))
+            .pluginType(readString(in));
+    int examples = in.getInt();
+    if (examples >= 0) {
+      List<String> values = new ArrayList<>();
+      for (int i = 0; i < examples; i++) {
+        values.add(readString(in));
+      }
+      vector.examples(values);
+    }
+    vector.createdAt(readInstant(in)).updatedAt(readInstant(in));
+    if (format >= 2) {
+      vector.contentHash(readString(in));
+    }
+    if (format >= 3) {
+      vector.embeddingModel(readString(in));
+    }
+    return vector.build();
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(utf8.length);
+    out.write(utf8);
+  }
+
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String value =
+        new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+
+  private static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeLong(value.getEpochSecond());
+      out.writeInt(value.getNano());
+    }
+  }
+
+  private static Instant readInstant(ByteBuffer in) {
+    return in.get() == 0 ? null : Instant.ofEpochSecond(in.getLong(), in.getInt());
+  }
+}
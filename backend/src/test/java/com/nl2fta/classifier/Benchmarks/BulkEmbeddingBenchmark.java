@@ -0,0 +1,132 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.service.aws.AwsCredentialsService;
+import com.nl2fta.classifier.service.vector.VectorEmbeddingService;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+/**
+ * Measures a full index build's embedding phase against a simulated Bedrock endpoint with a fixed
+ * per-request latency and a requests-per-second quota, beyond which it throttles. Compares the
+ * previous one-at-a-time loop with the bounded-concurrency path, with and without the rate limiter.
+ * Run with {@code BENCHMARK_TESTS=true ./gradlew test --tests '*BulkEmbeddingBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class BulkEmbeddingBenchmark {
+
+  private static final int TEXTS = 200;
+  private static final long LATENCY_MS = 80;
+  private static final int QUOTA_PER_SECOND = 40;
+  private static final int DIMENSIONS = 1024;
+
+  @Test
+  void indexBuildEmbeddingTime() {
+    List<String> texts =
+        IntStream.range(0, TEXTS).mapToObj(i -> "Semantic Type: TYPE_" + i).toList();
+
+    run("sequential", texts, 1, 0);
+    run("concurrency 8, no limiter", texts, 8, 0);
+    run("concurrency 8, limiter at quota", texts, 8, QUOTA_PER_SECOND);
+  }
+
+  private void run(String label, List<String> texts, int concurrency, double requestsPerSecond) {
+    SimulatedBedrock bedrock = new SimulatedBedrock();
+    VectorEmbeddingService service =
+        new VectorEmbeddingService(new ObjectMapper(), mock(AwsCredentialsService.class));
+    ReflectionTestUtils.setField(service, "bedrockClient", bedrock.client);
+    ReflectionTestUtils.setField(service, "embeddingModelId", "amazon.titan-embed-text-v2:0");
+    ReflectionTestUtils.setField(service, "bulkConcurrency", concurrency);
+    ReflectionTestUtils.setField(service, "bulkRequestsPerSecond", requestsPerSecond);
+    ReflectionTestUtils.setField(service, "bulkMaxAttempts", 8);
+    ReflectionTestUtils.setField(service, "bulkInitialBackoffMs", 250L);
+    ReflectionTestUtils.setField(service, "bulkMaxBackoffMs", 5_000L);
+
+    long start = System.nanoTime();
+    List<Integer> failed;
+    if (concurrency == 1) {
+      // The previous loop: one request at a time, no retry
+      failed = new ArrayList<>();
+      for (int i = 0; i < texts.size(); i++) {
+        try {
+          service.generateEmbedding(texts.get(i));
+        } catch (RuntimeException e) {
+          failed.add(i);
+        }
+      }
+    } else {
+      failed = service.generateEmbeddings(texts, (position, embedding) -> {});
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    assertThat(failed).isEmpty();
+    System.out.printf(
+        "texts=%d latency=%dms quota=%d/s %-32s %5.1f s, %d requests, %d throttled%n",
+        texts.size(),
+        LATENCY_MS,
+        QUOTA_PER_SECOND,
+        label + ":",
+        seconds,
+        bedrock.requests.get(),
+        bedrock.throttled.get());
+  }
+
+  /** Titan stand-in: answers after a fixed delay, and throttles above its per-second quota. */
+  private static final class SimulatedBedrock {
+
+    private final BedrockRuntimeClient client = mock(BedrockRuntimeClient.class);
+    private final Deque<Long> window = new ArrayDeque<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final String response;
+
+    SimulatedBedrock() {
+      StringBuilder json = new StringBuilder("{\"embedding\":[");
+      for (int i = 0; i < DIMENSIONS; i++) {
+        json.append(i == 0 ? "" : ",").append(0.03125);
+      }
+      response = json.append("]}").toString();
+      when(client.invokeModel(any(InvokeModelRequest.class))).thenAnswer(invocation -> invoke());
+    }
+
+    private InvokeModelResponse invoke() throws InterruptedException {
+      requests.incrementAndGet();
+      synchronized (window) {
+        long now = System.nanoTime();
+        while (!window.isEmpty() && now - window.peekFirst() > 1_000_000_000L) {
+          window.pollFirst();
+        }
+        if (window.size() >= QUOTA_PER_SECOND) {
+          throttled.incrementAndGet();
+          throw ThrottlingException.builder().message("Too many requests").build();
+        }
+        window.addLast(now);
+      }
+      Thread.sleep(LATENCY_MS);
+      return InvokeModelResponse.builder().body(SdkBytes.fromUtf8String(response)).build();
+    }
+  }
+}
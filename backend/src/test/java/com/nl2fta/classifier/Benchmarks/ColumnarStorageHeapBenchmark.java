@@ -0,0 +1,83 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.service.data_processing.CsvParsingService;
+import com.nl2fta.classifier.service.storage.ColumnarTable;
+
+/**
+ * Compares retained heap of stored evaluator datasets as row maps and as dictionary-encoded
+ * columns. Run with {@code BENCHMARK_TESTS=true ./gradlew test --tests
+ * '*ColumnarStorageHeapBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class ColumnarStorageHeapBenchmark {
+
+  private static final Path DATASETS = Paths.get("..", "evaluator", "datasets", "data");
+  private static final String[] FILES = {
+    "banking/banking_data.csv",
+    "transactions/transactions_data.csv",
+    "telco_customer_churn/telco_customer_churn_data.csv"
+  };
+  private static final int COPIES = 5;
+
+  @Test
+  void columnarStorageReducesRetainedHeap() throws Exception {
+    for (String file : FILES) {
+      Path path = DATASETS.resolve(file);
+      long rows = retainedBytes(path, false);
+      long columnar = retainedBytes(path, true);
+
+      System.out.printf(
+          "%s: rows=%.1fMB columnar=%.1fMB saved=%.1f%%%n",
+          file, rows / 1048576.0, columnar / 1048576.0, 100.0 * (rows - columnar) / rows);
+      assertThat(columnar).isLessThan(rows);
+    }
+  }
+
+  /**
+   * Heap retained by {@link #COPIES} stored copies of the file, measured across forced GCs. Rows
+   * are parsed without interning so the baseline matches what was stored before encoding.
+   */
+  private long retainedBytes(Path file, boolean columnar) throws Exception {
+    CsvParsingService service = new CsvParsingService();
+    ReflectionTestUtils.setField(service, "defaultLocale", "en-US");
+
+    long before = usedHeap();
+    List<Object> retained = new ArrayList<>();
+    for (int i = 0; i < COPIES; i++) {
+      try (InputStream in = Files.newInputStream(file)) {
+        List<Map<String, Object>> rows =
+            service.parseCsvToRequest(in, file.toString(), null, null).getData();
+        retained.add(columnar ? ColumnarTable.encode(rows) : rows);
+      }
+    }
+    long after = usedHeap();
+    assertThat(retained).hasSize(COPIES);
+    return (after - before) / COPIES;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
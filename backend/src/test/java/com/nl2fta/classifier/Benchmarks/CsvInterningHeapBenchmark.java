@@ -0,0 +1,77 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
+import com.nl2fta.classifier.service.data_processing.CsvParsingService;
+
+/**
+ * Compares retained heap of parsed evaluator datasets with and without per-column interning. Run
+ * with {@code BENCHMARK_TESTS=true ./gradlew test --tests '*CsvInterningHeapBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class CsvInterningHeapBenchmark {
+
+  private static final Path DATASETS = Paths.get("..", "evaluator", "datasets", "data");
+  private static final String[] FILES = {
+    "banking/banking_data.csv",
+    "transactions/transactions_data.csv",
+    "telco_customer_churn/telco_customer_churn_data.csv"
+  };
+  private static final int COPIES = 5;
+
+  @Test
+  void interningReducesRetainedHeap() throws Exception {
+    for (String file : FILES) {
+      Path path = DATASETS.resolve(file);
+      long plain = retainedBytes(path, 0);
+      long interned = retainedBytes(path, 1024);
+
+      System.out.printf(
+          "%s: plain=%.1fMB interned=%.1fMB saved=%.1f%%%n",
+          file, plain / 1048576.0, interned / 1048576.0, 100.0 * (plain - interned) / plain);
+      assertThat(interned).isLessThan(plain);
+    }
+  }
+
+  /** Heap retained by {@link #COPIES} parsed copies of the file, measured across forced GCs. */
+  private long retainedBytes(Path file, int maxCardinality) throws Exception {
+    CsvParsingService service = new CsvParsingService();
+    ReflectionTestUtils.setField(service, "defaultLocale", "en-US");
+    ReflectionTestUtils.setField(service, "internMaxCardinality", maxCardinality);
+
+    long before = usedHeap();
+    List<TableClassificationRequest> retained = new ArrayList<>();
+    for (int i = 0; i < COPIES; i++) {
+      try (InputStream in = Files.newInputStream(file)) {
+        retained.add(service.parseCsvToRequest(in, file.toString(), null, null));
+      }
+    }
+    long after = usedHeap();
+    assertThat(retained).hasSize(COPIES);
+    return (after - before) / COPIES;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,80 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.service.data_processing.CsvParsingService;
+
+/**
+ * Measures parallel CSV parsing throughput on a generated file with quoted multi-line fields. Run
+ * with {@code BENCHMARK_TESTS=true ./gradlew test --tests '*CsvParallelParsingBenchmark'}. Thread
+ * counts above the available processors are skipped, since they can only show contention; scaling
+ * needs a machine with at least as many cores as the largest thread count.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class CsvParallelParsingBenchmark {
+
+  private static final int ROWS = 500_000;
+  private static final int[] THREADS = {1, 2, 4, 8};
+
+  @TempDir Path tempDir;
+
+  @Test
+  void parallelParsingScalesWithThreads() throws Exception {
+    Path file = tempDir.resolve("benchmark.csv");
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writer.write("id,name,email,amount,comment\n");
+      for (int i = 0; i < ROWS; i++) {
+        writer.write(i + ",user" + i + ",user" + i + "@example.com," + (i % 1000) + ".25,");
+        writer.write(i % 10 == 0 ? "\"multi\nline, \"\"quoted\"\"\"\n" : "plain\n");
+      }
+    }
+    long size = Files.size(file);
+    int processors = Runtime.getRuntime().availableProcessors();
+    System.out.printf("processors=%d%n", processors);
+
+    double baselineMs = 0;
+    for (int threads : THREADS) {
+      if (threads > 1 && threads > processors) {
+        System.out.printf("threads=%d skipped: only %d processors%n", threads, processors);
+        continue;
+      }
+      CsvParsingService service = new CsvParsingService();
+      ReflectionTestUtils.setField(service, "defaultLocale", "en-US");
+      ReflectionTestUtils.setField(service, "parallelThreads", threads);
+      ReflectionTestUtils.setField(service, "parallelTargetChunkBytes", 8L * 1024 * 1024);
+      ReflectionTestUtils.setField(service, "parallelMaxRows", ROWS);
+
+      // Warm up once, then time the best of three runs
+      service.parseCsvToRequest(file, "benchmark.csv", null, null);
+      long best = Long.MAX_VALUE;
+      int rows = 0;
+      for (int run = 0; run < 3; run++) {
+        long start = System.nanoTime();
+        rows = service.parseCsvToRequest(file, "benchmark.csv", null, null).getData().size();
+        best = Math.min(best, System.nanoTime() - start);
+      }
+      assertThat(rows).isEqualTo(ROWS);
+
+      double ms = best / 1_000_000.0;
+      if (threads == 1) {
+        baselineMs = ms;
+      }
+      System.out.printf(
+          "threads=%d size=%dMB time=%.1fms throughput=%.1fMB/s speedup=%.2fx%n",
+          threads, size >> 20, ms, (size / 1048576.0) / (ms / 1000), baselineMs / ms);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.service.aws.AwsCredentialsService;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypePluginService;
+import com.nl2fta.classifier.service.vector.HashedNgramEmbeddingProvider;
+import com.nl2fta.classifier.service.vector.VectorData;
+import com.nl2fta.classifier.service.vector.VectorEmbeddingService;
+import com.nl2fta.classifier.service.vector.VectorMath;
+import com.nl2fta.classifier.service.vector.VectorMatrix;
+
+/**
+ * Compares embedding sizes on the built-in catalog. Each type is indexed from its full text and
+ * queried by its description alone; for each size the benchmark reports how often the type ranks
+ * first and in the top {@value #TOP_K}, how far the top {@value #TOP_K} agrees with the largest
+ * size, the bytes per stored vector, and the time per embedding and per search. The local hashed
+ * n-gram model always runs; with AWS credentials in the environment ({@code AWS_ACCESS_KEY_ID},
+ * {@code AWS_SECRET_ACCESS_KEY}, optionally {@code AWS_REGION}) Titan v2 at 256, 512 and 1024
+ * dimensions does too. Run with {@code BENCHMARK_TESTS=true ./gradlew test --tests
+ * '*EmbeddingDimensionBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class EmbeddingDimensionBenchmark {
+
+  private static final int TOP_K = 5;
+  private static final int[] DIMENSIONS = {1024, 512, 256};
+  private static final String TITAN_V2 = "amazon.titan-embed-text-v2:0";
+
+  private final VectorEmbeddingService textService =
+      new VectorEmbeddingService(new ObjectMapper(), new AwsCredentialsService());
+
+  @Test
+  void localDimensions() throws IOException {
+    List<CustomSemanticType> types = builtInTypes();
+    // Warm-up, so the first size measured is not the one paying for JIT compilation
+    for (int round = 0; round < 5; round++) {
+      rank(types, new HashedNgramEmbeddingProvider(DIMENSIONS[round % DIMENSIONS.length])::embed);
+    }
+    Ranking largest = null;
+    for (int dimensions : DIMENSIONS) {
+      HashedNgramEmbeddingProvider provider = new HashedNgramEmbeddingProvider(dimensions);
+      Ranking ranking = rank(types, provider::embed);
+      largest = largest == null ? ranking : largest;
+      report("local", dimensions, ranking, largest);
+    }
+    assertThat(types).isNotEmpty();
+  }
+
+  @Test
+  @EnabledIfEnvironmentVariable(
+      named = "AWS_ACCESS_KEY_ID",
+      matches = ".+",
+      disabledReason = "Titan needs AWS credentials")
+  void titanDimensions() throws IOException {
+    List<CustomSemanticType> types = builtInTypes();
+    AwsCredentialsService credentials = new AwsCredentialsService();
+    credentials.setCredentials(
+        System.getenv("AWS_ACCESS_KEY_ID"),
+        System.getenv("AWS_SECRET_ACCESS_KEY"),
+        System.getenv().getOrDefault("AWS_REGION", "us-east-1"));
+    Ranking largest = null;
+    for (int dimensions : DIMENSIONS) {
+      VectorEmbeddingService titan = new VectorEmbeddingService(new ObjectMapper(), credentials);
+      ReflectionTestUtils.setField(titan, "embeddingModelId", TITAN_V2);
+      ReflectionTestUtils.setField(titan, "embeddingDimensions", dimensions);
+      titan.initializeBedrockClient();
+      Ranking ranking = rank(types, text -> VectorMath.toArray(titan.generateEmbedding(text)));
+      assertThat(ranking.matrix().getDimensions()).isEqualTo(dimensions);
+      largest = largest == null ? ranking : largest;
+      report("titan-v2", dimensions, ranking, largest);
+    }
+  }
+
+  private void report(String model, int dimensions, Ranking ranking, Ranking largest) {
+    double overlap = 0;
+    for (int query = 0; query < ranking.types().size(); query++) {
+      Set<String> top = new HashSet<>(ranking.top(query, TOP_K));
+      top.retainAll(largest.top(query, TOP_K));
+      overlap += top.size() / (double) TOP_K;
+    }
+    System.out.printf(
+        "types=%d %s dims=%d: top-1 %.1f%%, top-%d %.1f%%, top-%d overlap with %d dims %.1f%%,"
+            + " %d bytes/vector, %.1f us/embedding, %.1f us/search%n",
+        ranking.types().size(),
+        model,
+        dimensions,
+        100.0 * ranking.selfRecall(1),
+        TOP_K,
+        100.0 * ranking.selfRecall(TOP_K),
+        TOP_K,
+        DIMENSIONS[0],
+        100.0 * overlap / ranking.types().size(),
+        ranking.matrix().packedBytes() / ranking.matrix().size(),
+        ranking.embedMicros(),
+        ranking.searchMicros());
+  }
+
+  private List<CustomSemanticType> builtInTypes() throws IOException {
+    SemanticTypePluginService plugins = new SemanticTypePluginService(new ObjectMapper());
+    return plugins.loadBuiltInPlugins().stream()
+        .filter(plugins::hasEnglishOrUniversalLocale)
+        .map(plugins::convertPluginDefinitionToCustomType)
+        .filter(type -> type != null && type.getDescription() != null)
+        .collect(Collectors.toList());
+  }
+
+  // Indexes every type from its full text and ranks the catalog for a description-only query
+  private Ranking rank(List<CustomSemanticType> types, Function<String, float[]> embed) {
+    List<VectorData> vectors = new ArrayList<>(types.size());
+    long embedNanos = 0;
+    for (CustomSemanticType type : types) {
+      String text =
+          textService.generateSemanticTypeText(
+              type.getSemanticType(), type.getDescription(), examples(type));
+      long start = System.nanoTime();
+      float[] embedding = embed.apply(text);
+      embedNanos += System.nanoTime() - start;
+      vectors.add(
+          VectorData.builder().semanticType(type.getSemanticType()).embedding(embedding).build());
+    }
+    VectorMatrix matrix = VectorMatrix.of(vectors);
+    List<List<String>> rankings = new ArrayList<>(types.size());
+    long searchNanos = 0;
+    for (CustomSemanticType type : types) {
+      float[] query = VectorMath.normalize(embed.apply("Description: " + type.getDescription()));
+      long start = System.nanoTime();
+      float[] scores = matrix.scores(query);
+      searchNanos += System.nanoTime() - start;
+      List<Integer> rows = new ArrayList<>();
+      for (int row = 0; row < scores.length; row++) {
+        rows.add(row);
+      }
+      rows.sort((a, b) -> Float.compare(scores[b], scores[a]));
+      rankings.add(
+          rows.stream()
+              .limit(TOP_K)
+              .map(row -> matrix.getVector(row).getSemanticType())
+              .collect(Collectors.toList()));
+    }
+    return new Ranking(
+        types, rankings, matrix, embedNanos / 1e3 / types.size(), searchNanos / 1e3 / types.size());
+  }
+
+  private static List<String> examples(CustomSemanticType type) {
+    return type.getContent() != null && type.getContent().getValues() != null
+        ? type.getContent().getValues().stream().limit(10).collect(Collectors.toList())
+        : List.of();
+  }
+
+  private record Ranking(
+      List<CustomSemanticType> types,
+      List<List<String>> rankings,
+      VectorMatrix matrix,
+      double embedMicros,
+      double searchMicros) {
+
+    List<String> top(int query, int k) {
+      return rankings.get(query).subList(0, Math.min(k, rankings.get(query).size()));
+    }
+
+    double selfRecall(int k) {
+      int found = 0;
+      for (int query = 0; query < types.size(); query++) {
+        if (top(query, k).contains(types.get(query).getSemanticType())) {
+          found++;
+        }
+      }
+      return found / (double) types.size();
+    }
+  }
+}
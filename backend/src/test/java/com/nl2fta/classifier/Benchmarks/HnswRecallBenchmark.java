@@ -0,0 +1,148 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.nl2fta.classifier.service.vector.HnswIndex;
+import com.nl2fta.classifier.service.vector.VectorData;
+import com.nl2fta.classifier.service.vector.VectorMath;
+import com.nl2fta.classifier.service.vector.VectorMatrix;
+
+/**
+ * Compares HNSW search with the exact matrix scan: recall of the exact top-5 and per-query latency
+ * for several {@code efSearch} values. Embeddings are 256-dimensional (Titan v2's smallest size)
+ * and clustered around random centroids, like real descriptions of related types; queries are
+ * perturbed copies of stored vectors. Uniformly random vectors are avoided because in high
+ * dimensions their similarities are all nearly equal, which no graph index can rank. Also reports
+ * the bytes per vector the graph adds and the total resident with the embeddings. Run with {@code
+ * BENCHMARK_TESTS=true ./gradlew test --tests '*HnswRecallBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class HnswRecallBenchmark {
+
+  private static final int DIMENSIONS = 256;
+  private static final int[] TYPES = {10_000, 50_000};
+  private static final int[] EF_SEARCH = {16, 64, 128};
+  private static final int QUERIES = 200;
+  private static final int K = 5;
+  private static final int TYPES_PER_CLUSTER = 20;
+
+  @Test
+  void recallAndLatencyAgainstExactSearch() {
+    Random random = new Random(11);
+    for (int types : TYPES) {
+      List<float[]> centroids = new ArrayList<>();
+      for (int i = 0; i < types / TYPES_PER_CLUSTER; i++) {
+        centroids.add(randomUnitVector(random));
+      }
+      List<VectorData> vectors = new ArrayList<>(types);
+      for (int i = 0; i < types; i++) {
+        vectors.add(
+            VectorData.builder()
+                .semanticType("TYPE_" + i)
+                .embedding(perturb(centroids.get(i % centroids.size()), 0.8, random))
+                .build());
+      }
+      List<float[]> queries = new ArrayList<>();
+      for (int i = 0; i < QUERIES; i++) {
+        queries.add(perturb(vectors.get(random.nextInt(types)).getEmbedding(), 0.5, random));
+      }
+      VectorMatrix matrix = VectorMatrix.of(vectors);
+
+      long buildStart = System.nanoTime();
+      HnswIndex<VectorData> graph = new HnswIndex<>(DIMENSIONS, 16, 100, 64, 42L);
+      for (VectorData vector : vectors) {
+        graph.add(vector.getSemanticType(), vector.getEmbedding(), vector);
+      }
+      double buildMs = (System.nanoTime() - buildStart) / 1e6;
+
+      List<Set<String>> exact = new ArrayList<>();
+      for (float[] query : queries) {
+        exact.add(exactTop(matrix, query));
+      }
+      // Exact search cost is the full scan; selecting the top-K from the scores is negligible
+      float sink = 0;
+      long exactStart = System.nanoTime();
+      for (float[] query : queries) {
+        sink += matrix.scores(query)[0];
+      }
+      double exactUs = (System.nanoTime() - exactStart) / 1e3 / QUERIES;
+      assertThat(sink).isNotNaN();
+      System.out.printf(
+          "types=%d dims=%d build=%.0fms exact=%.0fus/query graph %.0f resident %.0f bytes/vector%n",
+          types,
+          DIMENSIONS,
+          buildMs,
+          exactUs,
+          graph.residentBytes(VectorData::getEmbedding) / (double) types,
+          (matrix.residentBytes() + graph.residentBytes(VectorData::getEmbedding))
+              / (double) types);
+
+      for (int ef : EF_SEARCH) {
+        graph.setEfSearch(ef);
+        // Warm up
+        for (float[] query : queries) {
+          graph.search(query, K);
+        }
+        int found = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+          for (HnswIndex.Hit<VectorData> hit : graph.search(queries.get(q), K)) {
+            if (exact.get(q).contains(hit.key())) {
+              found++;
+            }
+          }
+        }
+        double hnswUs = (System.nanoTime() - start) / 1e3 / QUERIES;
+        double recall = found / (double) (QUERIES * K);
+        System.out.printf(
+            "  efSearch=%d recall@%d=%.3f hnsw=%.0fus/query speedup=%.1fx%n",
+            ef, K, recall, hnswUs, exactUs / hnswUs);
+        assertThat(recall).isGreaterThan(0.5);
+      }
+    }
+  }
+
+  private static Set<String> exactTop(VectorMatrix matrix, float[] query) {
+    float[] scores = matrix.scores(query);
+    Integer[] rows = new Integer[scores.length];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = i;
+    }
+    Arrays.sort(rows, (a, b) -> Float.compare(scores[b], scores[a]));
+    Set<String> top = new HashSet<>();
+    for (int i = 0; i < K; i++) {
+      top.add(matrix.getVector(rows[i]).getSemanticType());
+    }
+    return top;
+  }
+
+  // Adds Gaussian noise of roughly the given norm to a unit vector and re-normalizes
+  private static float[] perturb(float[] base, double noise, Random random) {
+    float[] noisy = randomUnitVector(random);
+    for (int i = 0; i < DIMENSIONS; i++) {
+      noisy[i] = (float) (base[i] + noise * noisy[i]);
+    }
+    return VectorMath.normalize(noisy);
+  }
+
+  private static float[] randomUnitVector(Random random) {
+    float[] vector = new float[DIMENSIONS];
+    for (int i = 0; i < DIMENSIONS; i++) {
+      vector[i] = (float) random.nextGaussian();
+    }
+    return VectorMath.normalize(vector);
+  }
+}
@@ -0,0 +1,192 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+import java.io.FileReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.dto.semantic_type.SemanticTypeGenerationRequest;
+import com.nl2fta.classifier.service.aws.AwsBedrockService;
+import com.nl2fta.classifier.service.semantic_type.SemanticTypeComparisonService;
+import com.nl2fta.classifier.service.semantic_type.generation.SemanticTypePromptService;
+import com.nl2fta.classifier.service.semantic_type.generation.SemanticTypeResponseParserService;
+import com.nl2fta.classifier.service.semantic_type.generation.SemanticTypeSimilarityService;
+import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.vector.Bm25Index;
+import com.nl2fta.classifier.service.vector.LexicalSearchService;
+import com.nl2fta.classifier.service.vector.VectorSimilaritySearchService;
+import com.opencsv.CSVReader;
+
+/**
+ * Compares the similarity check of a generation request with and without the keyword (BM25)
+ * pre-check. The catalog is built from the evaluator's extension inputs (type name, first
+ * description, header and value examples); each type's other descriptions are the requests. The
+ * vector search is simulated by a fixed embedding latency that returns the correct type, so the
+ * difference is the embedding calls the keyword search makes unnecessary. Also reports how often
+ * the keyword search is decisive, how often a decisive match is the right type, and how many
+ * requests each mode sends to the LLM to choose between several candidates. Run with {@code
+ * BENCHMARK_TESTS=true ./gradlew test --tests '*HybridSimilarityBenchmark'}; the inputs file can be
+ * set with {@code -Dbenchmark.extensionInputs=...}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class HybridSimilarityBenchmark {
+
+  private static final String DEFAULT_INPUTS =
+      "../evaluator/datasets/generation-inputs/extension_inputs.csv";
+  private static final long EMBEDDING_LATENCY_MS = 40;
+
+  @Test
+  void generationRequestLatency() throws Exception {
+    Path inputs = Path.of(System.getProperty("benchmark.extensionInputs", DEFAULT_INPUTS));
+    assumeTrue(Files.exists(inputs), "Extension inputs not found: " + inputs);
+
+    List<CustomSemanticType> catalog = new ArrayList<>();
+    List<SemanticTypeGenerationRequest> requests = new ArrayList<>();
+    Map<SemanticTypeGenerationRequest, String> expected = new HashMap<>();
+    try (CSVReader reader = new CSVReader(new FileReader(inputs.toFile()))) {
+      reader.readNext();
+      for (String[] row : reader) {
+        catalog.add(catalogType(row));
+        Set<String> descriptions = new LinkedHashSet<>(Arrays.asList(row).subList(2, 7));
+        for (String description : descriptions) {
+          if (!description.isBlank()) {
+            SemanticTypeGenerationRequest request =
+                SemanticTypeGenerationRequest.builder().description(description).build();
+            requests.add(request);
+            expected.put(request, row[0]);
+          }
+        }
+      }
+    }
+
+    LexicalSearchService lexical = new LexicalSearchService();
+    ReflectionTestUtils.setField(lexical, "decisiveCoverage", 0.5);
+    ReflectionTestUtils.setField(lexical, "decisiveMargin", 1.5);
+    lexical.ensureIndexed(0L, catalog);
+
+    int decisive = 0;
+    int decisiveCorrect = 0;
+    for (SemanticTypeGenerationRequest request : requests) {
+      List<Bm25Index.Hit> hits = lexical.search(request, 10);
+      if (lexical.isDecisive(hits)) {
+        decisive++;
+        if (hits.get(0).id().equals(expected.get(request))) {
+          decisiveCorrect++;
+        }
+      }
+    }
+    for (int round = 0; round < 20; round++) {
+      requests.forEach(request -> lexical.search(request, 10));
+    }
+    long start = System.nanoTime();
+    int rounds = 50;
+    for (int round = 0; round < rounds; round++) {
+      requests.forEach(request -> lexical.search(request, 10));
+    }
+    double searchMicros = (System.nanoTime() - start) / 1e3 / (rounds * requests.size());
+
+    LexicalSearchService noKeywords = mock(LexicalSearchService.class);
+    when(noKeywords.search(any(), anyInt())).thenReturn(List.of());
+    Run vectorOnly = run(catalog, requests, expected, noKeywords);
+    Run hybrid = run(catalog, requests, expected, lexical);
+
+    System.out.printf(
+        "types=%d requests=%d keyword search %.1f us; decisive %.1f%% (%.1f%% correct)%n",
+        catalog.size(),
+        requests.size(),
+        searchMicros,
+        100.0 * decisive / requests.size(),
+        decisive == 0 ? 0 : 100.0 * decisiveCorrect / decisive);
+    System.out.printf(
+        "embedding latency %d ms: vector only %.1f ms (%d LLM evaluations),"
+            + " hybrid %.1f ms (%d LLM evaluations) per request%n",
+        EMBEDDING_LATENCY_MS,
+        vectorOnly.millisPerRequest(),
+        vectorOnly.llmEvaluations(),
+        hybrid.millisPerRequest(),
+        hybrid.llmEvaluations());
+    assertThat(hybrid.millisPerRequest()).isLessThanOrEqualTo(vectorOnly.millisPerRequest());
+  }
+
+  private record Run(double millisPerRequest, int llmEvaluations) {}
+
+  private Run run(
+      List<CustomSemanticType> catalog,
+      List<SemanticTypeGenerationRequest> requests,
+      Map<SemanticTypeGenerationRequest, String> expected,
+      LexicalSearchService lexical)
+      throws Exception {
+    CustomSemanticTypeService types = mock(CustomSemanticTypeService.class);
+    when(types.getAllCustomTypes()).thenReturn(catalog);
+    when(types.getCustomTypesOnly()).thenReturn(catalog);
+    VectorSimilaritySearchService vectors = mock(VectorSimilaritySearchService.class);
+    when(vectors.findTopSimilarTypesForLLM(any(), anyDouble()))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(EMBEDDING_LATENCY_MS);
+              return List.of(
+                  VectorSimilaritySearchService.SimilaritySearchResult.builder()
+                      .semanticType(expected.get(invocation.getArgument(0)))
+                      .similarityScore(0.8)
+                      .build());
+            });
+    SemanticTypePromptService prompts = mock(SemanticTypePromptService.class);
+    SemanticTypeSimilarityService service =
+        new SemanticTypeSimilarityService(
+            mock(AwsBedrockService.class),
+            types,
+            prompts,
+            mock(SemanticTypeResponseParserService.class),
+            vectors,
+            mock(SemanticTypeComparisonService.class),
+            lexical);
+
+    long start = System.nanoTime();
+    for (SemanticTypeGenerationRequest request : requests) {
+      // Several candidates go to the LLM, which is not simulated here; count those instead
+      service.checkForSimilarExistingType(request);
+    }
+    return new Run(
+        (System.nanoTime() - start) / 1e6 / requests.size(),
+        mockingDetails(prompts).getInvocations().size());
+  }
+
+  private static CustomSemanticType catalogType(String[] row) {
+    CustomSemanticType.HeaderRegExp header = new CustomSemanticType.HeaderRegExp();
+    header.setRegExp("(?i)(" + String.join("|", row[9].split(";\\s*")) + ")");
+    CustomSemanticType.LocaleConfig locale = new CustomSemanticType.LocaleConfig();
+    locale.setHeaderRegExps(List.of(header));
+    CustomSemanticType.ContentConfig content = new CustomSemanticType.ContentConfig();
+    content.setValues(Arrays.asList(row[7].split(";\\s*")));
+    CustomSemanticType type = new CustomSemanticType();
+    type.setSemanticType(row[0]);
+    type.setDescription(row[1]);
+    type.setPluginType("list");
+    type.setValidLocales(List.of(locale));
+    type.setContent(content);
+    return type;
+  }
+}
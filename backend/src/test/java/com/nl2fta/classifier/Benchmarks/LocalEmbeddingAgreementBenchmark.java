@@ -0,0 +1,185 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.service.aws.AwsCredentialsService;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypePluginService;
+import com.nl2fta.classifier.service.vector.HashedNgramEmbeddingProvider;
+import com.nl2fta.classifier.service.vector.VectorData;
+import com.nl2fta.classifier.service.vector.VectorEmbeddingService;
+import com.nl2fta.classifier.service.vector.VectorMath;
+import com.nl2fta.classifier.service.vector.VectorMatrix;
+
+/**
+ * Evaluates the local hashed n-gram embeddings on the built-in catalog. Each type is indexed from
+ * its full text (name, description, examples) and queried by its description alone, as a user
+ * describing the type would. Reports how often the type itself ranks first and in the top K, and
+ * how long an embedding takes. With AWS credentials in the environment ({@code AWS_ACCESS_KEY_ID},
+ * {@code AWS_SECRET_ACCESS_KEY}, optionally {@code AWS_REGION}) it also embeds the catalog with
+ * Titan and reports how far the two models' top K agree. Run with {@code BENCHMARK_TESTS=true
+ * ./gradlew test --tests '*LocalEmbeddingAgreementBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class LocalEmbeddingAgreementBenchmark {
+
+  private static final int TOP_K = 5;
+  private static final int DIMENSIONS = 512;
+
+  private final VectorEmbeddingService textService =
+      new VectorEmbeddingService(new ObjectMapper(), new AwsCredentialsService());
+
+  @Test
+  void localRetrievalQuality() throws IOException {
+    List<CustomSemanticType> types = builtInTypes();
+    HashedNgramEmbeddingProvider provider = new HashedNgramEmbeddingProvider(DIMENSIONS);
+
+    Ranking local = rank(types, provider::embed);
+
+    List<String> texts = types.stream().map(this::typeText).collect(Collectors.toList());
+    for (int round = 0; round < 50; round++) {
+      texts.forEach(provider::embed);
+    }
+    int rounds = 200;
+    long start = System.nanoTime();
+    for (int round = 0; round < rounds; round++) {
+      texts.forEach(provider::embed);
+    }
+    double nanosPerEmbedding = (System.nanoTime() - start) / (double) (rounds * texts.size());
+
+    System.out.printf(
+        "types=%d local %s: top-1 %.1f%%, top-%d %.1f%%, %.1f us per embedding%n",
+        types.size(),
+        provider.getModelId(),
+        100.0 * local.selfRecall(1),
+        TOP_K,
+        100.0 * local.selfRecall(TOP_K),
+        nanosPerEmbedding / 1_000.0);
+    assertThat(types).isNotEmpty();
+  }
+
+  @Test
+  @EnabledIfEnvironmentVariable(
+      named = "AWS_ACCESS_KEY_ID",
+      matches = ".+",
+      disabledReason = "Comparing with Titan needs AWS credentials")
+  void agreementWithTitan() throws IOException {
+    List<CustomSemanticType> types = builtInTypes();
+    AwsCredentialsService credentials = new AwsCredentialsService();
+    credentials.setCredentials(
+        System.getenv("AWS_ACCESS_KEY_ID"),
+        System.getenv("AWS_SECRET_ACCESS_KEY"),
+        System.getenv().getOrDefault("AWS_REGION", "us-east-1"));
+    VectorEmbeddingService titan = new VectorEmbeddingService(new ObjectMapper(), credentials);
+    ReflectionTestUtils.setField(titan, "embeddingModelId", "amazon.titan-embed-text-v2:0");
+    ReflectionTestUtils.setField(titan, "embeddingDimensions", 1024);
+    titan.initializeBedrockClient();
+
+    Ranking local = rank(types, new HashedNgramEmbeddingProvider(DIMENSIONS)::embed);
+    Ranking remote = rank(types, text -> VectorMath.toArray(titan.generateEmbedding(text)));
+
+    double overlap = 0;
+    int sameFirst = 0;
+    for (int query = 0; query < types.size(); query++) {
+      Set<String> localTop = new HashSet<>(local.top(query, TOP_K));
+      localTop.retainAll(remote.top(query, TOP_K));
+      overlap += localTop.size() / (double) TOP_K;
+      if (local.top(query, 1).equals(remote.top(query, 1))) {
+        sameFirst++;
+      }
+    }
+    System.out.printf(
+        "types=%d titan: top-1 %.1f%%, top-%d %.1f%%; local vs titan: top-%d overlap %.1f%%,"
+            + " same first %.1f%%%n",
+        types.size(),
+        100.0 * remote.selfRecall(1),
+        TOP_K,
+        100.0 * remote.selfRecall(TOP_K),
+        TOP_K,
+        100.0 * overlap / types.size(),
+        100.0 * sameFirst / types.size());
+  }
+
+  private List<CustomSemanticType> builtInTypes() throws IOException {
+    SemanticTypePluginService plugins = new SemanticTypePluginService(new ObjectMapper());
+    return plugins.loadBuiltInPlugins().stream()
+        .filter(plugins::hasEnglishOrUniversalLocale)
+        .map(plugins::convertPluginDefinitionToCustomType)
+        .filter(type -> type != null && type.getDescription() != null)
+        .collect(Collectors.toList());
+  }
+
+  // Indexes every type from its full text and ranks the catalog for a description-only query
+  private Ranking rank(List<CustomSemanticType> types, Function<String, float[]> embed) {
+    List<VectorData> vectors = new ArrayList<>(types.size());
+    for (CustomSemanticType type : types) {
+      String text = typeText(type);
+      vectors.add(
+          VectorData.builder()
+              .semanticType(type.getSemanticType())
+              .embedding(embed.apply(text))
+              .build());
+    }
+    VectorMatrix matrix = VectorMatrix.of(vectors);
+    List<List<String>> rankings = new ArrayList<>(types.size());
+    for (CustomSemanticType type : types) {
+      float[] scores =
+          matrix.scores(VectorMath.normalize(embed.apply("Description: " + type.getDescription())));
+      List<Integer> rows = new ArrayList<>();
+      for (int row = 0; row < scores.length; row++) {
+        rows.add(row);
+      }
+      rows.sort((a, b) -> Float.compare(scores[b], scores[a]));
+      rankings.add(
+          rows.stream()
+              .limit(TOP_K)
+              .map(row -> matrix.getVector(row).getSemanticType())
+              .collect(Collectors.toList()));
+    }
+    return new Ranking(types, rankings);
+  }
+
+  private String typeText(CustomSemanticType type) {
+    return textService.generateSemanticTypeText(
+        type.getSemanticType(), type.getDescription(), examples(type));
+  }
+
+  private static List<String> examples(CustomSemanticType type) {
+    return type.getContent() != null && type.getContent().getValues() != null
+        ? type.getContent().getValues().stream().limit(10).collect(Collectors.toList())
+        : List.of();
+  }
+
+  private record Ranking(List<CustomSemanticType> types, List<List<String>> rankings) {
+
+    List<String> top(int query, int k) {
+      return rankings.get(query).subList(0, Math.min(k, rankings.get(query).size()));
+    }
+
+    double selfRecall(int k) {
+      int found = 0;
+      for (int query = 0; query < types.size(); query++) {
+        if (top(query, k).contains(types.get(query).getSemanticType())) {
+          found++;
+        }
+      }
+      return found / (double) types.size();
+    }
+  }
+}
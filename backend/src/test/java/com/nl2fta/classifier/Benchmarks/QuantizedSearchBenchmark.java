@@ -0,0 +1,151 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.nl2fta.classifier.service.vector.VectorData;
+import com.nl2fta.classifier.service.vector.VectorMath;
+import com.nl2fta.classifier.service.vector.VectorMatrix;
+
+/**
+ * Compares the exact-search matrix packed as 32-bit floats, int8 and sign bits, with Titan-sized
+ * (1024-dimensional) embeddings. Vectors are drawn around cluster centres, so that neighbours are
+ * meaningfully closer than the rest, and queries are perturbed copies of stored vectors. Reports
+ * the bytes per vector the rows add to the embeddings and the total resident with the embeddings
+ * (which re-scoring keeps in memory), and for quantized rows the query latency and recall of the
+ * exact top {@value #TOP_K} with 64 and 256 candidates re-scored at full precision. Run with {@code
+ * BENCHMARK_TESTS=true ./gradlew test --tests '*QuantizedSearchBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class QuantizedSearchBenchmark {
+
+  private static final int DIMENSIONS = 1024;
+  private static final int[] TYPES = {1_000, 10_000, 100_000};
+  private static final int QUERIES = 50;
+  private static final int TOP_K = 5;
+  private static final int[] RERANK_CANDIDATES = {64, 256};
+  private static final int ROUNDS = 5;
+  // More neighbours per cluster than candidates re-ranked, so the first pass has to choose
+  private static final int CLUSTER_SIZE = 200;
+
+  @Test
+  void quantizedSearch() {
+    Random random = new Random(11);
+    for (int types : TYPES) {
+      List<VectorData> vectors = clusteredVectors(random, types);
+      List<float[]> queries = new ArrayList<>(QUERIES);
+      for (int q = 0; q < QUERIES; q++) {
+        float[] stored = vectors.get(random.nextInt(types)).getEmbedding();
+        queries.add(VectorMath.normalize(perturb(random, stored, 0.6f)));
+      }
+
+      List<Set<Integer>> truth = null;
+      for (VectorMatrix.Quantization quantization : VectorMatrix.Quantization.values()) {
+        VectorMatrix matrix = VectorMatrix.of(vectors, quantization);
+        assertThat(matrix.size()).isEqualTo(types);
+        if (truth == null) {
+          truth = run(matrix, queries, RERANK_CANDIDATES[0], null);
+          continue;
+        }
+        for (int candidates : RERANK_CANDIDATES) {
+          run(matrix, queries, candidates, truth);
+        }
+      }
+    }
+  }
+
+  /** Prints size, latency and, given the exact results, recall; returns the top rows found. */
+  private static List<Set<Integer>> run(
+      VectorMatrix matrix, List<float[]> queries, int candidates, List<Set<Integer>> truth) {
+    List<Set<Integer>> found = new ArrayList<>(QUERIES);
+    for (float[] query : queries) {
+      found.add(top(matrix.scores(query, candidates)));
+    }
+    int hits = 0;
+    for (int q = 0; q < QUERIES; q++) {
+      Set<Integer> overlap = new HashSet<>(found.get(q));
+      overlap.retainAll(truth != null ? truth.get(q) : found.get(q));
+      hits += overlap.size();
+    }
+
+    int sink = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      for (float[] query : queries) {
+        sink += top(matrix.scores(query, candidates)).size();
+      }
+    }
+    long start = System.nanoTime();
+    for (int round = 0; round < ROUNDS; round++) {
+      for (float[] query : queries) {
+        sink += top(matrix.scores(query, candidates)).size();
+      }
+    }
+    double micros = (System.nanoTime() - start) / 1e3 / (ROUNDS * QUERIES);
+    assertThat(sink).isPositive();
+
+    System.out.printf(
+        "types=%d dims=%d %-6s rerank=%-3s packed %6.0f resident %6.0f bytes/vector %7.1f MB"
+            + " %9.1f us/query recall@%d %.3f%n",
+        matrix.size(),
+        DIMENSIONS,
+        matrix.getQuantization(),
+        truth != null ? candidates : "-",
+        matrix.packedBytes() / (double) matrix.size(),
+        matrix.residentBytes() / (double) matrix.size(),
+        matrix.residentBytes() / 1e6,
+        micros,
+        TOP_K,
+        hits / (double) (QUERIES * TOP_K));
+    return found;
+  }
+
+  private static Set<Integer> top(float[] scores) {
+    Set<Integer> rows = new HashSet<>();
+    boolean[] taken = new boolean[scores.length];
+    for (int k = 0; k < TOP_K; k++) {
+      int best = -1;
+      for (int row = 0; row < scores.length; row++) {
+        if (!taken[row] && (best < 0 || scores[row] > scores[best])) {
+          best = row;
+        }
+      }
+      taken[best] = true;
+      rows.add(best);
+    }
+    return rows;
+  }
+
+  private static List<VectorData> clusteredVectors(Random random, int count) {
+    float[][] centres = new float[Math.max(1, count / CLUSTER_SIZE)][];
+    for (int c = 0; c < centres.length; c++) {
+      centres[c] = perturb(random, new float[DIMENSIONS], 1f);
+    }
+    List<VectorData> vectors = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      float[] embedding =
+          VectorMath.normalize(perturb(random, centres[random.nextInt(centres.length)], 0.7f));
+      vectors.add(VectorData.builder().semanticType("TYPE_" + i).embedding(embedding).build());
+    }
+    return vectors;
+  }
+
+  private static float[] perturb(Random random, float[] vector, float noise) {
+    float[] perturbed = new float[vector.length];
+    float scale = (float) (noise / Math.sqrt(vector.length));
+    for (int d = 0; d < vector.length; d++) {
+      perturbed[d] = vector[d] + scale * (float) random.nextGaussian();
+    }
+    return perturbed;
+  }
+}
@@ -0,0 +1,65 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
+import com.nl2fta.classifier.service.storage.S3BulkFetcher;
+
+/**
+ * Measures loading 10k small objects (the size of a semantic type JSON file) from an in-process S3
+ * stand-in that adds a fixed delay per request, one GET at a time and with increasing numbers of
+ * concurrent GETs. Load time is listing plus download; the delay stands in for the round trip to
+ * S3. Run with {@code BENCHMARK_TESTS=true ./gradlew test --tests '*S3BulkFetchBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class S3BulkFetchBenchmark {
+
+  private static final String BUCKET = "bench";
+  private static final int OBJECTS = 10_000;
+  private static final Duration LATENCY = Duration.ofMillis(2);
+  private static final int[] CONCURRENCY = {1, 16, 64};
+
+  @Test
+  void loadTimeByConcurrency() {
+    InMemoryS3Client s3 = new InMemoryS3Client();
+    byte[] body = new byte[2048];
+    for (int i = 0; i < OBJECTS; i++) {
+      s3.putBytes(String.format("semantic-types/TYPE_%05d.json", i), body);
+    }
+    s3.setLatency(LATENCY);
+
+    for (int concurrency : CONCURRENCY) {
+      S3BulkFetcher fetcher =
+          new S3BulkFetcher(
+              s3, concurrency == 1 ? null : s3.asyncClient(), concurrency, 3, Duration.ZERO);
+      s3.resetRequestCounts();
+      long start = System.nanoTime();
+      List<String> keys = fetcher.listKeys(BUCKET, "semantic-types/");
+      Map<String, byte[]> objects = fetcher.fetch(BUCKET, keys);
+      double ms = (System.nanoTime() - start) / 1e6;
+
+      assertThat(objects).hasSize(OBJECTS);
+      System.out.printf(
+          "objects=%d latency=%dms concurrency=%d: %d list + %d get requests, %.0f ms"
+              + " (%.0f objects/s, max in flight %d)%n",
+          OBJECTS,
+          LATENCY.toMillis(),
+          concurrency,
+          s3.requestCount("ListObjectsV2"),
+          s3.requestCount("GetObject"),
+          ms,
+          OBJECTS / (ms / 1000),
+          s3.maxInFlight());
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
+import com.nl2fta.classifier.service.storage.S3BulkFetcher;
+import com.nl2fta.classifier.service.storage.S3SemanticTypeCatalog;
+
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Compares a cold start that downloads every custom semantic type object with one that reads the
+ * consolidated catalog (snapshot plus pending deltas) and lists the per-type objects to confirm it,
+ * at growing catalog sizes, against an in-process S3 stand-in with a fixed delay per request. Run
+ * with {@code BENCHMARK_TESTS=true ./gradlew test --tests '*SemanticTypeCatalogBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class SemanticTypeCatalogBenchmark {
+
+  private static final String BUCKET = "bench";
+  private static final String PREFIX = "semantic-types/";
+  private static final Duration LATENCY = Duration.ofMillis(2);
+  private static final int[] SIZES = {100, 1_000, 10_000};
+  private static final int PENDING_DELTAS = 20;
+
+  @Test
+  void coldStartRequests() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    for (int size : SIZES) {
+      InMemoryS3Client s3 = new InMemoryS3Client();
+      S3BulkFetcher fetcher = new S3BulkFetcher(s3, s3.asyncClient(), 16, 3, Duration.ZERO);
+      S3SemanticTypeCatalog catalog = new S3SemanticTypeCatalog(s3, fetcher, mapper, BUCKET);
+      for (int i = 0; i < size; i++) {
+        String key = String.format("%sTYPE_%05d.json", PREFIX, i);
+        s3.putBytes(key, mapper.writeValueAsBytes(type(i)));
+      }
+      Map<String, S3SemanticTypeCatalog.Entry> seed = new HashMap<>();
+      for (S3Object object : fetcher.list(BUCKET, PREFIX)) {
+        int index = Integer.parseInt(object.key().replaceAll("\\D", ""));
+        seed.put(
+            object.key(),
+            new S3SemanticTypeCatalog.Entry(object.key(), object.eTag(), type(index)));
+      }
+      catalog.compact(() -> seed);
+      for (int i = 0; i < PENDING_DELTAS; i++) {
+        catalog.recordPut(String.format("%sTYPE_%05d.json", PREFIX, i), "\"changed\"", type(i));
+      }
+      s3.setLatency(LATENCY);
+
+      s3.resetRequestCounts();
+      long start = System.nanoTime();
+      List<String> keys = fetcher.listKeys(BUCKET, PREFIX);
+      assertThat(fetcher.fetch(BUCKET, keys)).hasSize(size);
+      report("per-type objects", size, s3, start);
+
+      s3.resetRequestCounts();
+      start = System.nanoTime();
+      assertThat(catalog.load()).hasSize(size);
+      assertThat(fetcher.list(BUCKET, PREFIX)).hasSize(size);
+      report("catalog + listing", size, s3, start);
+    }
+  }
+
+  private static void report(String strategy, int size, InMemoryS3Client s3, long start) {
+    System.out.printf(
+        "types=%d latency=%dms %-18s: %3d list + %5d get requests, %6.0f ms%n",
+        size,
+        LATENCY.toMillis(),
+        strategy,
+        s3.requestCount("ListObjectsV2"),
+        s3.requestCount("GetObject"),
+        (System.nanoTime() - start) / 1e6);
+  }
+
+  private static CustomSemanticType type(int index) {
+    return CustomSemanticType.builder()
+        .semanticType("TYPE." + index)
+        .description("Benchmark semantic type number " + index + " with a typical description")
+        .pluginType("regex")
+        .priority(2000 + index)
+        .build();
+  }
+}
@@ -0,0 +1,145 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.service.aws.AwsCredentialsService;
+import com.nl2fta.classifier.service.vector.VectorData;
+import com.nl2fta.classifier.service.vector.VectorEmbeddingService;
+import com.nl2fta.classifier.service.vector.VectorMath;
+import com.nl2fta.classifier.service.vector.VectorMatrix;
+
+/**
+ * Measures similarity search throughput over the packed, pre-normalized matrix against the previous
+ * boxed cosine computation, with Titan-sized (1024-dimensional) embeddings. Run with {@code
+ * BENCHMARK_TESTS=true ./gradlew test --tests '*VectorSearchBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class VectorSearchBenchmark {
+
+  private static final int DIMENSIONS = 1024;
+  private static final int[] TYPES = {1_000, 10_000, 100_000};
+  // The boxed baseline needs ~20 bytes per element; keep it to sizes that fit the test heap
+  private static final int MAX_BOXED_TYPES = 10_000;
+  private static final long RUN_NANOS = 2_000_000_000L;
+
+  @Test
+  void packedSearchThroughput() {
+    Random random = new Random(7);
+    VectorEmbeddingService embeddingService =
+        new VectorEmbeddingService(new ObjectMapper(), mock(AwsCredentialsService.class));
+    float[][] queries = new float[16][];
+    for (int i = 0; i < queries.length; i++) {
+      queries[i] = VectorMath.normalize(randomVector(random));
+    }
+
+    for (int types : TYPES) {
+      List<VectorData> vectors = new ArrayList<>(types);
+      for (int i = 0; i < types; i++) {
+        vectors.add(
+            VectorData.builder().semanticType("TYPE_" + i).embedding(randomVector(random)).build());
+      }
+      VectorMatrix matrix = VectorMatrix.of(vectors);
+      assertThat(matrix.size()).isEqualTo(types);
+
+      double packedQps =
+          measure(
+              queries,
+              query -> {
+                float[] scores = matrix.scores(query);
+                float best = Float.NEGATIVE_INFINITY;
+                for (float score : scores) {
+                  best = Math.max(best, score);
+                }
+                return best;
+              });
+
+      String boxed = "skipped";
+      if (types <= MAX_BOXED_TYPES) {
+        List<List<Float>> boxedVectors = new ArrayList<>(types);
+        for (VectorData vector : vectors) {
+          boxedVectors.add(box(vector.getEmbedding()));
+        }
+        List<List<Float>> boxedQueries = new ArrayList<>();
+        for (float[] query : queries) {
+          boxedQueries.add(box(query));
+        }
+        double boxedQps =
+            measure(
+                queries,
+                query -> {
+                  List<Float> boxedQuery = boxedQueries.get(indexOf(queries, query));
+                  double best = Double.NEGATIVE_INFINITY;
+                  for (List<Float> vector : boxedVectors) {
+                    best =
+                        Math.max(
+                            best, embeddingService.calculateCosineSimilarity(boxedQuery, vector));
+                  }
+                  return (float) best;
+                });
+        boxed = String.format("%.1f q/s (speedup=%.1fx)", boxedQps, packedQps / boxedQps);
+      }
+
+      System.out.printf(
+          "types=%d dims=%d packed=%.1f q/s boxed=%s%n", types, DIMENSIONS, packedQps, boxed);
+    }
+  }
+
+  private interface Search {
+    float run(float[] query);
+  }
+
+  /** Warms up, then runs queries round-robin for a fixed time and returns queries per second. */
+  private static double measure(float[][] queries, Search search) {
+    float sink = 0;
+    for (int i = 0; i < 3; i++) {
+      sink += search.run(queries[i % queries.length]);
+    }
+    long start = System.nanoTime();
+    long elapsed;
+    int done = 0;
+    do {
+      sink += search.run(queries[done % queries.length]);
+      done++;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < RUN_NANOS);
+    assertThat(sink).isNotNaN();
+    return done / (elapsed / 1e9);
+  }
+
+  private static int indexOf(float[][] queries, float[] query) {
+    for (int i = 0; i < queries.length; i++) {
+      if (queries[i] == query) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Unknown query");
+  }
+
+  private static float[] randomVector(Random random) {
+    float[] vector = new float[DIMENSIONS];
+    for (int i = 0; i < DIMENSIONS; i++) {
+      vector[i] = (float) random.nextGaussian();
+    }
+    return vector;
+  }
+
+  private static List<Float> box(float[] vector) {
+    List<Float> boxed = new ArrayList<>(vector.length);
+    for (float value : vector) {
+      boxed.add(value);
+    }
+    return boxed;
+  }
+}
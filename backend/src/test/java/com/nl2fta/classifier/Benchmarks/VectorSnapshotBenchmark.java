@@ -0,0 +1,151 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.config.CoreConfig;
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
+import com.nl2fta.classifier.service.vector.VectorData;
+import com.nl2fta.classifier.service.vector.VectorMath;
+import com.nl2fta.classifier.service.vector.VectorSnapshot;
+
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Compares a cold load of the vector index from the per-type JSON layout (one pretty-printed object
+ * per semantic type, as written by the application's ObjectMapper) with a load of the binary
+ * snapshot, both from an in-process S3 stand-in with Titan-sized (1024-dimensional) embeddings.
+ * Reports bytes fetched, S3 requests and client-side fetch-and-decode time; against real S3 each
+ * request also adds a network round trip. Run with {@code BENCHMARK_TESTS=true ./gradlew test
+ * --tests '*VectorSnapshotBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class VectorSnapshotBenchmark {
+
+  private static final int DIMENSIONS = 1024;
+  private static final int[] TYPES = {1_000, 5_000};
+  private static final int RUNS = 3;
+
+  @Test
+  void coldLoadJsonObjectsVersusSnapshot() throws Exception {
+    ObjectMapper objectMapper = new CoreConfig().objectMapper();
+    Random random = new Random(5);
+
+    for (int types : TYPES) {
+      InMemoryS3Client s3 = new InMemoryS3Client();
+      List<VectorData> vectors = new ArrayList<>(types);
+      long jsonBytes = 0;
+      for (int i = 0; i < types; i++) {
+        VectorData vector = randomVector("TYPE_" + i, random);
+        vectors.add(vector);
+        byte[] json = objectMapper.writeValueAsBytes(vector);
+        jsonBytes += json.length;
+        s3.putBytes("vectors/TYPE_" + i + ".json", json);
+      }
+      byte[] snapshot = new VectorSnapshot(1, vectors).encode();
+      s3.putBytes("snapshot/snapshot-000000000001.bin", snapshot);
+
+      double jsonMs = Double.MAX_VALUE;
+      double snapshotMs = Double.MAX_VALUE;
+      for (int run = 0; run < RUNS; run++) {
+        s3.resetRequestCounts();
+        long start = System.nanoTime();
+        List<VectorData> fromJson = loadJsonObjects(s3, objectMapper);
+        jsonMs = Math.min(jsonMs, (System.nanoTime() - start) / 1e6);
+        assertThat(fromJson).hasSize(types);
+        int jsonRequests = s3.requestCount("ListObjectsV2") + s3.requestCount("GetObject");
+
+        s3.resetRequestCounts();
+        start = System.nanoTime();
+        List<VectorData> fromSnapshot = loadSnapshot(s3);
+        snapshotMs = Math.min(snapshotMs, (System.nanoTime() - start) / 1e6);
+        assertThat(fromSnapshot).hasSize(types);
+        int snapshotRequests = s3.requestCount("GetObject");
+
+        if (run == RUNS - 1) {
+          System.out.printf(
+              "types=%d dims=%d json: %d requests, %.1f MB, %.0f ms | snapshot: %d request,"
+                  + " %.1f MB, %.0f ms (%.1fx)%n",
+              types,
+              DIMENSIONS,
+              jsonRequests,
+              jsonBytes / 1e6,
+              jsonMs,
+              snapshotRequests,
+              snapshot.length / 1e6,
+              snapshotMs,
+              jsonMs / snapshotMs);
+        }
+      }
+    }
+  }
+
+  // The previous load: list the prefix, then GET and parse each object in turn
+  private static List<VectorData> loadJsonObjects(InMemoryS3Client s3, ObjectMapper objectMapper)
+      throws Exception {
+    List<VectorData> vectors = new ArrayList<>();
+    String continuationToken = null;
+    do {
+      ListObjectsV2Response response =
+          s3.listObjectsV2(
+              ListObjectsV2Request.builder()
+                  .bucket("bench")
+                  .prefix("vectors/")
+                  .continuationToken(continuationToken)
+                  .build());
+      for (S3Object object : response.contents()) {
+        byte[] json =
+            s3.getObjectAsBytes(
+                    GetObjectRequest.builder().bucket("bench").key(object.key()).build())
+                .asByteArray();
+        vectors.add(objectMapper.readValue(json, VectorData.class));
+      }
+      continuationToken = response.nextContinuationToken();
+    } while (continuationToken != null);
+    return vectors;
+  }
+
+  private static List<VectorData> loadSnapshot(InMemoryS3Client s3) throws Exception {
+    byte[] bytes =
+        s3.getObjectAsBytes(
+                GetObjectRequest.builder()
+                    .bucket("bench")
+                    .key("snapshot/snapshot-000000000001.bin")
+                    .build())
+            .asByteArray();
+    return VectorSnapshot.decode(bytes).vectors();
+  }
+
+  private static VectorData randomVector(String semanticType, Random random) {
+    float[] embedding = new float[DIMENSIONS];
+    for (int i = 0; i < DIMENSIONS; i++) {
+      embedding[i] = (float) random.nextGaussian();
+    }
+    return VectorData.builder()
+        .id(semanticType.toLowerCase())
+        .semanticType(semanticType)
+        .type("custom")
+        .description("Description of " + semanticType)
+        .embedding(VectorMath.normalize(embedding))
+        .originalText("Semantic type " + semanticType + ": description and examples")
+        .pluginType("regex")
+        .examples(List.of("example-1", "example-2", "example-3"))
+        .createdAt(Instant.now())
+        .updatedAt(Instant.now())
+        .build();
+  }
+}
@@ -0,0 +1,104 @@
+package com.nl2fta.classifier.Benchmarks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
+import com.nl2fta.classifier.service.aws.AwsCredentialsService;
+import com.nl2fta.classifier.service.storage.S3BulkFetcher;
+import com.nl2fta.classifier.service.storage.S3CustomSemanticTypeRepository;
+import com.nl2fta.classifier.service.storage.S3SemanticTypeCatalog;
+
+/**
+ * Counts the S3 requests a bulk conversion makes with every write sent on its own and through the
+ * write-behind queue: 300 types saved, each updated twice (as when priorities are reassigned after
+ * conversion), then 50 deleted, against an in-process S3 stand-in with a fixed delay per request.
+ * Run with {@code BENCHMARK_TESTS=true ./gradlew test --tests '*WriteBehindBenchmark'}.
+ */
+@EnabledIfEnvironmentVariable(
+    named = "BENCHMARK_TESTS",
+    matches = "true",
+    disabledReason = "Benchmarks are opt-in")
+class WriteBehindBenchmark {
+
+  private static final String BUCKET = "bench";
+  private static final Duration LATENCY = Duration.ofMillis(2);
+  private static final int TYPES = 300;
+  private static final int DELETED = 50;
+
+  @Test
+  void bulkConversionRequests() {
+    run("one request per write", false);
+    run("write-behind queue", true);
+  }
+
+  private void run(String strategy, boolean writeBehind) {
+    InMemoryS3Client s3 = new InMemoryS3Client();
+    s3.setLatency(LATENCY);
+    ObjectMapper mapper = new ObjectMapper();
+    S3CustomSemanticTypeRepository repository =
+        new S3CustomSemanticTypeRepository(new AwsCredentialsService(), mapper);
+    ReflectionTestUtils.setField(repository, "bucketName", BUCKET);
+    ReflectionTestUtils.setField(repository, "initialized", true);
+    ReflectionTestUtils.setField(repository, "s3Client", s3);
+    ReflectionTestUtils.setField(
+        repository,
+        "catalog",
+        new S3SemanticTypeCatalog(
+            s3, new S3BulkFetcher(s3, null, 1, 1, Duration.ZERO), mapper, BUCKET));
+    ReflectionTestUtils.setField(repository, "asyncPersist", writeBehind);
+    ReflectionTestUtils.setField(repository, "writeBehindMaxBatch", 100);
+    ReflectionTestUtils.setField(repository, "writeBehindFlushIntervalMs", 1000L);
+    ReflectionTestUtils.setField(
+        repository, "scheduler", Executors.newSingleThreadScheduledExecutor());
+
+    long start = System.nanoTime();
+    for (int i = 0; i < TYPES; i++) {
+      repository.save(type(i, 2000));
+    }
+    for (int round = 1; round <= 2; round++) {
+      for (int i = 0; i < TYPES; i++) {
+        repository.update("TYPE." + i, type(i, 2000 + round * 10));
+      }
+    }
+    for (int i = 0; i < DELETED; i++) {
+      repository.deleteBySemanticType("TYPE." + i);
+    }
+    double callerMs = (System.nanoTime() - start) / 1e6;
+    repository.cleanup();
+    double totalMs = (System.nanoTime() - start) / 1e6;
+
+    assertThat(s3.keys())
+        .filteredOn(key -> key.startsWith("semantic-types/"))
+        .hasSize(TYPES - DELETED);
+    S3CustomSemanticTypeRepository.WriteBehindStats stats = repository.getWriteBehindStats();
+    System.out.printf(
+        "%-22s: %4d put + %3d delete + %d batch delete requests, caller %5.0f ms, total %5.0f ms"
+            + " (%d coalesced, %d flushes)%n",
+        strategy,
+        s3.requestCount("PutObject"),
+        s3.requestCount("DeleteObject"),
+        s3.requestCount("DeleteObjects"),
+        callerMs,
+        totalMs,
+        stats.getCoalescedWrites(),
+        stats.getFlushes());
+  }
+
+  private static CustomSemanticType type(int index, int priority) {
+    return CustomSemanticType.builder()
+        .semanticType("TYPE." + index)
+        .description("Converted built-in type " + index)
+        .pluginType("regex")
+        .priority(priority)
+        .build();
+  }
+}
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -26,11 +27,15 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.dto.semantic_type.SemanticTypePreviewRequest;
 import com.nl2fta.classifier.fixtures.TestFixtures;
 import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypePreviewService;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.PreviewResult;
 
 /**
  * Comprehensive unit tests for CustomSemanticTypeController. Tests all CRUD operations, validation,
@@ -42,6 +47,8 @@ class CustomSemanticTypeControllerTest {
 
   @Mock private CustomSemanticTypeService mockCustomSemanticTypeService;
 
+  @Mock private SemanticTypePreviewService mockPreviewService;
+
   @InjectMocks private CustomSemanticTypeController controller;
 
   private ObjectMapper objectMapper;
@@ -780,4 +787,54 @@ class CustomSemanticTypeControllerTest {
       verify(mockCustomSemanticTypeService, times(1)).removeCustomType(specialTypeName);
     }
   }
+
+  @Nested
+  @DisplayName("Preview Semantic Type Tests")
+  class PreviewSemanticTypeTests {
+
+    @Test
+    @DisplayName("Should return the preview computed by the service")
+    void shouldReturnPreviewResult() {
+      SemanticTypePreviewRequest request =
+          SemanticTypePreviewRequest.builder()
+              .semanticType(TestFixtures.createValidCustomSemanticType())
+              .build();
+      PreviewResult result = new PreviewResult();
+      result.setTotalUploadedFiles(3);
+      result.setFieldsToBeImpacted(2);
+      when(mockPreviewService.preview(request)).thenReturn(result);
+
+      ResponseEntity<PreviewResult> response = controller.previewSemanticType(request);
+
+      assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+      assertThat(response.getBody()).isSameAs(result);
+    }
+
+    @Test
+    @DisplayName("Should reject invalid candidates before streaming starts")
+    void shouldRejectInvalidCandidateBeforeStreaming() {
+      SemanticTypePreviewRequest request = new SemanticTypePreviewRequest();
+      when(mockPreviewService.previewAsync(any(), any()))
+          .thenThrow(new IllegalArgumentException("Semantic type is required for a preview"));
+
+      assertThatThrownBy(() -> controller.streamSemanticTypePreview(request))
+          .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should open an event stream for valid candidates")
+    void shouldStreamPreview() {
+      SemanticTypePreviewRequest request =
+          SemanticTypePreviewRequest.builder()
+              .semanticType(TestFixtures.createValidCustomSemanticType())
+              .build();
+      when(mockPreviewService.previewAsync(any(), any()))
+          .thenReturn(CompletableFuture.completedFuture(new PreviewResult()));
+
+      SseEmitter emitter = controller.streamSemanticTypePreview(request);
+
+      assertThat(emitter).isNotNull();
+      assertThat(emitter.getTimeout()).isPositive();
+    }
+  }
 }
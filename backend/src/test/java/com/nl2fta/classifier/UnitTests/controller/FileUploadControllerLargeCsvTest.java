@@ -0,0 +1,109 @@
+package com.nl2fta.classifier.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.util.unit.DataSize;
+
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
+import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
+import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+import com.nl2fta.classifier.service.TableClassificationService;
+import com.nl2fta.classifier.service.data_processing.CsvParsingService;
+import com.nl2fta.classifier.service.data_processing.SqlFileProcessorService;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService;
+
+/** Uploads a CSV past the parallel parsing threshold with the shipped configuration. */
+@WebMvcTest(FileUploadController.class)
+@Import(CsvParsingService.class)
+@DisplayName("File Upload Controller Large CSV Tests")
+class FileUploadControllerLargeCsvTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  @Autowired private Environment environment;
+
+  @MockitoSpyBean private CsvParsingService csvParsingService;
+
+  @MockitoBean private TableClassificationService classificationService;
+
+  @MockitoBean private SqlFileProcessorService sqlFileProcessorService;
+
+  @MockitoBean private AnalysisStorageService analysisStorageService;
+
+  @Test
+  @DisplayName("Should accept uploads large enough to be parsed in parallel")
+  void shouldAcceptUploadsLargeEnoughForParallelParsing() {
+    long parallelMinBytes = parallelMinFileBytes();
+
+    assertThat(environment.getRequiredProperty("app.upload.max-file-size", Long.class))
+        .isGreaterThan(parallelMinBytes);
+    assertThat(
+            DataSize.parse(
+                    environment.getRequiredProperty("spring.servlet.multipart.max-file-size"))
+                .toBytes())
+        .isGreaterThan(parallelMinBytes);
+  }
+
+  @Test
+  @DisplayName("Should spool a large upload and parse it in parallel byte ranges")
+  void shouldParseLargeUploadInParallel() throws Exception {
+    byte[] csv = csvOfAtLeast(parallelMinFileBytes());
+    MockMultipartFile file = new MockMultipartFile("file", "large.csv", "text/csv", csv);
+    when(classificationService.classifyTable(any(TableClassificationRequest.class)))
+        .thenReturn(new TableClassificationResponse());
+    when(analysisStorageService.storeAnalysis(anyString(), any())).thenReturn("analysis-large");
+
+    mockMvc
+        .perform(
+            multipart("/api/table-classification/analyze").file(file).param("maxSamples", "100"))
+        .andExpect(status().isOk());
+
+    verify(csvParsingService)
+        .parseCsvToRequest(
+            any(Path.class), eq("large.csv"), eq(100), isNull(), isNull(ColumnSelector.class));
+    ArgumentCaptor<TableClassificationRequest> request =
+        ArgumentCaptor.forClass(TableClassificationRequest.class);
+    verify(classificationService).classifyTable(request.capture());
+    assertThat(request.getValue().getColumns()).containsExactly("id", "name", "email");
+    assertThat(request.getValue().getData()).hasSize(100);
+    assertThat(request.getValue().getData().get(0)).containsEntry("id", "0");
+    assertThat(request.getValue().getData().get(99)).containsEntry("id", "99");
+  }
+
+  private long parallelMinFileBytes() {
+    return environment.getRequiredProperty("app.csv.parallel.min-file-bytes", Long.class);
+  }
+
+  private static byte[] csvOfAtLeast(long bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream((int) bytes + 1024);
+    out.writeBytes("id,name,email\n".getBytes(StandardCharsets.UTF_8));
+    for (int i = 0; out.size() < bytes; i++) {
+      out.writeBytes(
+          (i + ",\"name " + i + "\",user" + i + "@example.com\n").getBytes(StandardCharsets.UTF_8));
+    }
+    return out.toByteArray();
+  }
+}
@@ -1,6 +1,8 @@
 package com.nl2fta.classifier.controller;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.nullable;
 import static org.mockito.Mockito.doThrow;
@@ -13,15 +15,20 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.ApplicationContext;
@@ -33,10 +40,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
 import com.nl2fta.classifier.service.TableClassificationService;
 import com.nl2fta.classifier.service.data_processing.CsvParsingService;
+import com.nl2fta.classifier.service.data_processing.CsvRowIndex;
 import com.nl2fta.classifier.service.data_processing.SqlFileProcessorService;
 import com.nl2fta.classifier.service.storage.AnalysisStorageService;
 
@@ -118,6 +127,113 @@ class FileUploadControllerTest {
       verify(analysisStorageService).storeAnalysis("test.csv", mockResponse);
     }
 
+    @Test
+    @DisplayName("Should spool a retained CSV once and attach it with the index built from it")
+    void shouldSpoolRetainedCsvOnce() throws Exception {
+      FileUploadController controller = applicationContext.getBean(FileUploadController.class);
+      ReflectionTestUtils.setField(controller, "retainCsvSources", true);
+      try {
+        MockMultipartFile csvFile =
+            new MockMultipartFile("file", "test.csv", "text/csv", "id\n1\n2\n".getBytes());
+        CsvRowIndex rowIndex = CsvRowIndex.build(new ByteArrayInputStream("id\n1\n2\n".getBytes()));
+        when(csvParsingService.indexCsv(any(Path.class))).thenReturn(rowIndex);
+        when(csvParsingService.parseCsvToRequest(
+                any(Path.class),
+                anyString(),
+                any(),
+                nullable(String.class),
+                nullable(ColumnSelector.class)))
+            .thenReturn(mockRequest);
+        when(classificationService.classifyTable(any(TableClassificationRequest.class)))
+            .thenReturn(mockResponse);
+        when(analysisStorageService.storeAnalysis(anyString(), any())).thenReturn("analysis-123");
+        when(analysisStorageService.attachSource(anyString(), any(Path.class), any()))
+            .thenReturn(true);
+
+        mockMvc
+            .perform(multipart("/api/table-classification/analyze").file(csvFile))
+            .andExpect(status().isOk());
+
+        ArgumentCaptor<Path> parsed = ArgumentCaptor.forClass(Path.class);
+        verify(csvParsingService)
+            .parseCsvToRequest(
+                parsed.capture(),
+                anyString(),
+                any(),
+                nullable(String.class),
+                nullable(ColumnSelector.class));
+        verify(csvParsingService).indexCsv(parsed.getValue());
+        verify(analysisStorageService).attachSource("analysis-123", parsed.getValue(), rowIndex);
+        assertThat(parsed.getValue()).exists();
+        Files.deleteIfExists(parsed.getValue());
+      } finally {
+        ReflectionTestUtils.setField(controller, "retainCsvSources", false);
+      }
+    }
+
+    @Test
+    @DisplayName("Should draw a random sample through the row index when sampling=random")
+    void shouldSampleRandomRowsThroughIndex() throws Exception {
+      MockMultipartFile csvFile =
+          new MockMultipartFile("file", "test.csv", "text/csv", "id\n1\n2\n3\n".getBytes());
+      CsvRowIndex rowIndex =
+          CsvRowIndex.build(new ByteArrayInputStream("id\n1\n2\n3\n".getBytes()));
+      when(csvParsingService.indexCsv(any(Path.class))).thenReturn(rowIndex);
+      when(csvParsingService.sampleCsvToRequest(
+              any(Path.class),
+              any(CsvRowIndex.class),
+              anyString(),
+              anyInt(),
+              nullable(String.class),
+              nullable(ColumnSelector.class),
+              any(Random.class)))
+          .thenReturn(mockRequest);
+      when(classificationService.classifyTable(any(TableClassificationRequest.class)))
+          .thenReturn(mockResponse);
+      when(analysisStorageService.storeAnalysis(anyString(), any())).thenReturn("analysis-123");
+
+      mockMvc
+          .perform(
+              multipart("/api/table-classification/analyze")
+                  .file(csvFile)
+                  .param("maxSamples", "2")
+                  .param("sampling", "random"))
+          .andExpect(status().isOk());
+
+      ArgumentCaptor<Path> sampled = ArgumentCaptor.forClass(Path.class);
+      verify(csvParsingService)
+          .sampleCsvToRequest(
+              sampled.capture(),
+              org.mockito.ArgumentMatchers.eq(rowIndex),
+              org.mockito.ArgumentMatchers.eq("test.csv"),
+              org.mockito.ArgumentMatchers.eq(2),
+              nullable(String.class),
+              nullable(ColumnSelector.class),
+              any(Random.class));
+      verify(csvParsingService, times(0))
+          .parseCsvToRequest(any(InputStream.class), anyString(), any(), nullable(String.class));
+      // A random sample is not extended from its source, so the spooled copy is dropped
+      verify(analysisStorageService, times(0)).attachSource(anyString(), any(Path.class), any());
+      assertThat(sampled.getValue()).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown sampling mode")
+    void shouldRejectUnknownSampling() throws Exception {
+      MockMultipartFile csvFile =
+          new MockMultipartFile("file", "test.csv", "text/csv", "id\n1\n".getBytes());
+
+      mockMvc
+          .perform(
+              multipart("/api/table-classification/analyze")
+                  .file(csvFile)
+                  .param("maxSamples", "2")
+                  .param("sampling", "stratified"))
+          .andExpect(status().isBadRequest());
+
+      verify(classificationService, times(0)).classifyTable(any(TableClassificationRequest.class));
+    }
+
     @Test
     @DisplayName("Should handle CSV parsing with optional parameters")
     void shouldHandleCsvParsingWithOptionalParameters() throws Exception {
@@ -306,6 +422,36 @@ class FileUploadControllerTest {
           .updateAnalysis(anyString(), any(TableClassificationResponse.class));
     }
 
+    @Test
+    @DisplayName("Should re-analyze a prefix of the stored rows when maxSamples is smaller")
+    void shouldTruncateStoredRowsForSmallerSample() throws Exception {
+      String analysisId = "resample-analysis";
+      AnalysisStorageService.StoredAnalysis storedAnalysis =
+          new AnalysisStorageService.StoredAnalysis();
+      storedAnalysis.setFileName("original.csv");
+      storedAnalysis.setColumns(java.util.Arrays.asList("col1"));
+      storedAnalysis.setData(
+          java.util.Arrays.asList(
+              Map.<String, Object>of("col1", "a"),
+              Map.<String, Object>of("col1", "b"),
+              Map.<String, Object>of("col1", "c")));
+
+      when(analysisStorageService.getAnalysis(analysisId)).thenReturn(storedAnalysis);
+      when(classificationService.classifyTable(any(TableClassificationRequest.class)))
+          .thenReturn(mockResponse);
+
+      mockMvc
+          .perform(
+              post("/api/table-classification/reanalyze/{analysisId}", analysisId)
+                  .param("maxSamples", "2"))
+          .andExpect(status().isOk());
+
+      verify(classificationService)
+          .classifyTable(
+              org.mockito.ArgumentMatchers.argThat(
+                  request -> request.getData().size() == 2 && request.getMaxSamples() == 2));
+    }
+
     @Test
     @DisplayName("Should return not found for non-existent analysis")
     void shouldReturnNotFoundForNonExistentAnalysis() throws Exception {
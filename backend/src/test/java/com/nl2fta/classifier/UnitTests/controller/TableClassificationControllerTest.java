@@ -37,9 +37,13 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.nl2fta.classifier.config.ApplicationProperties;
+import com.nl2fta.classifier.dto.analysis.AnalysisSummary;
+import com.nl2fta.classifier.dto.analysis.AnalysisSummaryPage;
+import com.nl2fta.classifier.dto.analysis.BulkReanalysisStatus;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
 import com.nl2fta.classifier.exception.GlobalExceptionHandler;
+import com.nl2fta.classifier.service.BulkReanalysisService;
 import com.nl2fta.classifier.service.TableClassificationService;
 import com.nl2fta.classifier.service.storage.AnalysisStorageService;
 
@@ -56,6 +60,8 @@ class TableClassificationControllerTest {
 
   @Mock private ApplicationProperties applicationProperties;
 
+  @Mock private BulkReanalysisService bulkReanalysisService;
+
   @Captor private ArgumentCaptor<TableClassificationRequest> requestCaptor;
 
   @Captor private ArgumentCaptor<TableClassificationResponse> responseCaptor;
@@ -66,7 +72,10 @@ class TableClassificationControllerTest {
   void setUp() {
     controller =
         new TableClassificationController(
-            classificationService, analysisStorageService, applicationProperties);
+            classificationService,
+            analysisStorageService,
+            applicationProperties,
+            bulkReanalysisService);
     ReflectionTestUtils.setField(controller, "defaultMaxSamples", 1000);
     objectMapper = new ObjectMapper();
     objectMapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
@@ -420,6 +429,49 @@ class TableClassificationControllerTest {
           .andExpect(jsonPath("$[1].fileName").value("products.csv"));
     }
 
+    @Test
+    @DisplayName("Should return a page of summaries for the summary view")
+    void shouldReturnSummaryPage() throws Exception {
+      AnalysisSummary summary =
+          AnalysisSummary.builder()
+              .analysisId("analysis-1")
+              .fileName("users.csv")
+              .columnCount(3)
+              .rowCount(10)
+              .typeCounts(Map.of("EMAIL", 1))
+              .build();
+      when(analysisStorageService.listSummaries(
+              AnalysisStorageService.SummarySort.FILE_NAME, false, "abc", 2))
+          .thenReturn(
+              AnalysisSummaryPage.builder()
+                  .items(List.of(summary))
+                  .nextCursor("next")
+                  .totalCount(5)
+                  .build());
+
+      mockMvc
+          .perform(
+              get("/api/analyses")
+                  .param("view", "summary")
+                  .param("sort", "file_name")
+                  .param("order", "asc")
+                  .param("cursor", "abc")
+                  .param("limit", "2"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.items[0].analysis_id").value("analysis-1"))
+          .andExpect(jsonPath("$.items[0].type_counts.EMAIL").value(1))
+          .andExpect(jsonPath("$.next_cursor").value("next"))
+          .andExpect(jsonPath("$.total_count").value(5));
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown sort for the summary view")
+    void shouldRejectUnknownSummarySort() throws Exception {
+      mockMvc
+          .perform(get("/api/analyses").param("view", "summary").param("sort", "size"))
+          .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Should handle empty analyses list")
     void shouldHandleEmptyAnalysesList() throws Exception {
@@ -546,6 +598,54 @@ class TableClassificationControllerTest {
     }
   }
 
+  @Nested
+  @DisplayName("POST /api/analyses/reanalyze - Bulk Reanalysis")
+  class BulkReanalysis {
+
+    @Test
+    @DisplayName("Should start a bulk reanalysis for the changed types")
+    void shouldStartBulkReanalysis() throws Exception {
+      when(bulkReanalysisService.start(List.of("EMPLOYEE_ID")))
+          .thenReturn(
+              BulkReanalysisStatus.builder()
+                  .jobId("job-1")
+                  .state(BulkReanalysisStatus.State.RUNNING)
+                  .columnsToRetrain(2)
+                  .columnsSkipped(14)
+                  .build());
+
+      mockMvc
+          .perform(
+              post("/api/analyses/reanalyze")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content("{\"semantic_types\":[\"EMPLOYEE_ID\"]}"))
+          .andExpect(status().isAccepted())
+          .andExpect(jsonPath("$.job_id").value("job-1"))
+          .andExpect(jsonPath("$.columns_to_retrain").value(2))
+          .andExpect(jsonPath("$.columns_skipped").value(14));
+    }
+
+    @Test
+    @DisplayName("Should reject a bulk reanalysis without semantic types")
+    void shouldRejectEmptyBulkReanalysis() throws Exception {
+      when(bulkReanalysisService.start(any()))
+          .thenThrow(new IllegalArgumentException("At least one semantic type is required"));
+
+      mockMvc
+          .perform(
+              post("/api/analyses/reanalyze").contentType(MediaType.APPLICATION_JSON).content("{}"))
+          .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should return 404 for an unknown job")
+    void shouldReturn404ForUnknownJob() throws Exception {
+      when(bulkReanalysisService.getStatus("missing")).thenReturn(null);
+
+      mockMvc.perform(get("/api/analyses/reanalyze/missing")).andExpect(status().isNotFound());
+    }
+  }
+
   // Helper methods
   private List<Map<String, Object>> createSampleData() {
     List<Map<String, Object>> data = new ArrayList<>();
@@ -0,0 +1,57 @@
+package com.nl2fta.classifier.dto.analysis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DisplayName("ColumnSelector Tests")
+class ColumnSelectorTest {
+
+  private static final List<String> HEADERS =
+      List.of("id", "acct_number", "acct_type", "email", "notes");
+
+  @Test
+  @DisplayName("Should combine names, indices and pattern in header order")
+  void shouldCombineCriteriaInHeaderOrder() {
+    ColumnSelector selector =
+        ColumnSelector.builder()
+            .names(List.of("email"))
+            .indices(List.of(0))
+            .pattern("acct_.*")
+            .build();
+
+    assertThat(selector.resolve(HEADERS)).containsExactly(0, 1, 2, 3);
+  }
+
+  @Test
+  @DisplayName("Should reject unknown names, out-of-range indices and empty matches")
+  void shouldRejectInvalidSelections() {
+    assertThatThrownBy(
+            () -> ColumnSelector.builder().names(List.of("missing")).build().resolve(HEADERS))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("missing");
+    assertThatThrownBy(() -> ColumnSelector.builder().indices(List.of(5)).build().resolve(HEADERS))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> ColumnSelector.builder().pattern("zzz").build().resolve(HEADERS))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Column selector matched no columns");
+  }
+
+  @Test
+  @DisplayName("Should deserialize from snake_case request JSON")
+  void shouldDeserializeFromRequestJson() throws Exception {
+    String json = "{\"columns\":[\"a\",\"b\"],\"data\":[],\"column_selector\":{\"indices\":[1]}}";
+
+    TableClassificationRequest request =
+        new ObjectMapper().readValue(json, TableClassificationRequest.class);
+
+    assertThat(request.getColumnSelector().resolve(request.getColumns())).containsExactly(1);
+    assertThat(new ColumnSelector().isEmpty()).isTrue();
+  }
+}
@@ -0,0 +1,269 @@
+package com.nl2fta.classifier.UnitTests.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.analysis.BulkReanalysisStatus;
+import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
+import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.service.BulkReanalysisService;
+import com.nl2fta.classifier.service.TableClassificationService;
+import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService;
+
+class BulkReanalysisServiceTest {
+
+  private AnalysisStorageService storage;
+  private TableClassificationService classificationService;
+  private CustomSemanticTypeService customSemanticTypeService;
+  private BulkReanalysisService service;
+  private String employees;
+  private String orders;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    storage = new AnalysisStorageService();
+    ReflectionTestUtils.setField(storage, "maxResidentBytes", 0L);
+    classificationService = mock(TableClassificationService.class);
+    customSemanticTypeService = mock(CustomSemanticTypeService.class);
+    service = new BulkReanalysisService(storage, classificationService, customSemanticTypeService);
+    ReflectionTestUtils.setField(service, "threads", 2);
+
+    employees =
+        storage.storeAnalysis(
+            "employees.csv",
+            response(
+                Map.of("emp_id", "NONE", "name", "NAME.FIRST_LAST", "zip", "POSTAL_CODE.ZIP5_US"),
+                List.of("emp_id", "name", "zip"),
+                List.of(
+                    List.of("E12345P", "Alice Smith", "90210"),
+                    List.of("E23456F", "Bob Jones", "10001"))));
+    orders =
+        storage.storeAnalysis(
+            "orders.csv",
+            response(
+                Map.of("order_ref", "NONE", "state", "STATE_PROVINCE.STATE_US"),
+                List.of("order_ref", "state"),
+                List.of(List.of("ORD-1", "CA"), List.of("ORD-2", "NY"))));
+
+    when(customSemanticTypeService.getCustomType("EMPLOYEE_ID"))
+        .thenReturn(
+            CustomSemanticType.builder()
+                .semanticType("EMPLOYEE_ID")
+                .pluginType("regex")
+                .validLocales(
+                    List.of(
+                        CustomSemanticType.LocaleConfig.builder()
+                            .matchEntries(
+                                List.of(
+                                    CustomSemanticType.MatchEntry.builder()
+                                        .regExpReturned("E\\d{5}[PF]")
+                                        .build()))
+                            .build()))
+                .build());
+    when(customSemanticTypeService.getCustomType("REMOVED_TYPE"))
+        .thenThrow(new IllegalArgumentException("Semantic type not found: REMOVED_TYPE"));
+    when(classificationService.classifyTable(any()))
+        .thenAnswer(
+            invocation -> {
+              TableClassificationRequest request = invocation.getArgument(0);
+              Map<String, TableClassificationResponse.ColumnClassification> columns =
+                  new LinkedHashMap<>();
+              for (String name : request.getColumnSelector().getNames()) {
+                columns.put(name, classification(name, "EMPLOYEE_ID"));
+              }
+              return TableClassificationResponse.builder().columnClassifications(columns).build();
+            });
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.shutdown();
+  }
+
+  @Test
+  void shouldRetrainOnlyColumnsTheTypeCanAffect() {
+    BulkReanalysisStatus started = service.start(List.of("EMPLOYEE_ID"));
+
+    assertThat(started.getColumnsToRetrain()).isEqualTo(1);
+    assertThat(started.getColumnsSkipped()).isEqualTo(4);
+    assertThat(started.getTotalAnalyses()).isEqualTo(1);
+
+    BulkReanalysisStatus finished = awaitCompletion(started.getJobId());
+    assertThat(finished.getCompletedAnalyses()).isEqualTo(1);
+    assertThat(finished.getColumnsRetrained()).isEqualTo(1);
+    assertThat(finished.getFinishedAt()).isNotNull();
+
+    ArgumentCaptor<TableClassificationRequest> request =
+        ArgumentCaptor.forClass(TableClassificationRequest.class);
+    verify(classificationService).classifyTable(request.capture());
+    assertThat(request.getValue().getColumnSelector().getNames()).containsExactly("emp_id");
+    assertThat(request.getValue().getData()).hasSize(2);
+
+    AnalysisStorageService.StoredAnalysis patched = storage.getAnalysis(employees);
+    assertThat(patched.getResponse().getColumnClassifications().keySet())
+        .containsExactly("emp_id", "name", "zip");
+    assertThat(patched.getResponse().getColumnClassifications().get("emp_id").getSemanticType())
+        .isEqualTo("EMPLOYEE_ID");
+    assertThat(patched.getResponse().getColumnClassifications().get("zip").getSemanticType())
+        .isEqualTo("POSTAL_CODE.ZIP5_US");
+    assertThat(patched.getFields())
+        .filteredOn(field -> field.getFieldName().equals("emp_id"))
+        .extracting(AnalysisStorageService.FieldData::getCurrentSemanticType)
+        .containsExactly("EMPLOYEE_ID");
+  }
+
+  @Test
+  void shouldRetrainColumnsClassifiedAsRemovedType() throws Exception {
+    AnalysisStorageService.StoredAnalysis stored = storage.getAnalysis(orders);
+    stored.getResponse().getColumnClassifications().get("state").setSemanticType("REMOVED_TYPE");
+    storage.updateAnalysis(orders, stored.getResponse());
+
+    BulkReanalysisStatus started = service.start(List.of("REMOVED_TYPE"));
+
+    assertThat(started.getColumnsToRetrain()).isEqualTo(1);
+    assertThat(started.getColumnsSkipped()).isEqualTo(4);
+    awaitCompletion(started.getJobId());
+    assertThat(storage.getAnalysis(orders).getResponse().getColumnClassifications())
+        .containsKey("state");
+  }
+
+  @Test
+  void shouldSkipEverythingWhenNoColumnIsAffected() throws Exception {
+    when(customSemanticTypeService.getCustomType("EMPLOYEE_ID"))
+        .thenThrow(new IllegalArgumentException("Semantic type not found: EMPLOYEE_ID"));
+
+    BulkReanalysisStatus started = service.start(List.of("EMPLOYEE_ID"));
+
+    assertThat(started.getColumnsToRetrain()).isZero();
+    assertThat(started.getColumnsSkipped()).isEqualTo(5);
+    assertThat(awaitCompletion(started.getJobId()).getState())
+        .isEqualTo(BulkReanalysisStatus.State.COMPLETED);
+    verify(classificationService, never()).classifyTable(any());
+  }
+
+  @Test
+  void shouldKeepUpdatesMadeWhileRetraining() {
+    doAnswer(
+            invocation -> {
+              // Another writer relabels a column while FTA is running
+              storage.updateResponse(
+                  employees,
+                  current -> {
+                    Map<String, TableClassificationResponse.ColumnClassification> columns =
+                        new LinkedHashMap<>(current.getColumnClassifications());
+                    columns.put("zip", classification("zip", "POSTAL_CODE.ZIP5_CUSTOM"));
+                    return TableClassificationResponse.builder()
+                        .tableName(current.getTableName())
+                        .columnClassifications(columns)
+                        .data(current.getData())
+                        .build();
+                  });
+              return TableClassificationResponse.builder()
+                  .columnClassifications(Map.of("emp_id", classification("emp_id", "EMPLOYEE_ID")))
+                  .build();
+            })
+        .when(classificationService)
+        .classifyTable(any());
+
+    awaitCompletion(service.start(List.of("EMPLOYEE_ID")).getJobId());
+
+    Map<String, TableClassificationResponse.ColumnClassification> stored =
+        storage.getAnalysis(employees).getResponse().getColumnClassifications();
+    assertThat(stored.get("emp_id").getSemanticType()).isEqualTo("EMPLOYEE_ID");
+    assertThat(stored.get("zip").getSemanticType()).isEqualTo("POSTAL_CODE.ZIP5_CUSTOM");
+  }
+
+  @Test
+  void shouldPlanWithoutLoadingEveryAnalysis() {
+    AnalysisStorageService spiedStorage = spy(storage);
+    BulkReanalysisService planner =
+        new BulkReanalysisService(spiedStorage, classificationService, customSemanticTypeService);
+
+    try {
+      awaitCompletion(planner.start(List.of("EMPLOYEE_ID")), planner);
+    } finally {
+      planner.shutdown();
+    }
+
+    // Only employees.csv has a field whose fingerprint admits an employee id
+    verify(spiedStorage, never()).getAllAnalyses();
+    verify(spiedStorage, times(1)).readAnalysis(employees);
+    verify(spiedStorage, never()).readAnalysis(orders);
+  }
+
+  @Test
+  void shouldRejectEmptyTypeList() {
+    assertThatThrownBy(() -> service.start(List.of())).isInstanceOf(IllegalArgumentException.class);
+    assertThat(service.getStatus("unknown")).isNull();
+  }
+
+  private BulkReanalysisStatus awaitCompletion(String jobId) {
+    return awaitCompletion(service.getStatus(jobId), service);
+  }
+
+  private static BulkReanalysisStatus awaitCompletion(
+      BulkReanalysisStatus started, BulkReanalysisService service) {
+    String jobId = started.getJobId();
+    long deadline = System.currentTimeMillis() + 10_000;
+    BulkReanalysisStatus status = service.getStatus(jobId);
+    while (status.getState() == BulkReanalysisStatus.State.RUNNING
+        && System.currentTimeMillis() < deadline) {
+      Thread.onSpinWait();
+      status = service.getStatus(jobId);
+    }
+    assertThat(status.getState()).isEqualTo(BulkReanalysisStatus.State.COMPLETED);
+    return status;
+  }
+
+  private static TableClassificationResponse.ColumnClassification classification(
+      String column, String semanticType) {
+    return TableClassificationResponse.ColumnClassification.builder()
+        .columnName(column)
+        .semanticType(semanticType)
+        .confidence(0.9)
+        .build();
+  }
+
+  private static TableClassificationResponse response(
+      Map<String, String> types, List<String> columns, List<List<String>> values) {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (List<String> rowValues : values) {
+      LinkedHashMap<String, Object> row = new LinkedHashMap<>();
+      for (int i = 0; i < columns.size(); i++) {
+        row.put(columns.get(i), rowValues.get(i));
+      }
+      rows.add(row);
+    }
+    Map<String, TableClassificationResponse.ColumnClassification> classifications =
+        new LinkedHashMap<>();
+    for (String column : columns) {
+      classifications.put(column, classification(column, types.get(column)));
+    }
+    return TableClassificationResponse.builder()
+        .tableName("table")
+        .columnClassifications(classifications)
+        .data(rows)
+        .build();
+  }
+}
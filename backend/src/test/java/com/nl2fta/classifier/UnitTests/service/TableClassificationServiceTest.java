@@ -1,6 +1,7 @@
 package com.nl2fta.classifier.UnitTests.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -20,6 +21,7 @@ import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
 import com.nl2fta.classifier.service.TableClassificationService;
@@ -73,6 +75,16 @@ class TableClassificationServiceTest {
     assertThat(response.getProcessingMetadata().getFtaVersion()).isEqualTo("16.0.3");
   }
 
+  @Test
+  void shouldRejectColumnSelectorThatMatchesNothing() {
+    TableClassificationRequest request = createSimpleRequest();
+    request.setColumnSelector(ColumnSelector.builder().pattern("does_not_match").build());
+
+    assertThatThrownBy(() -> tableClassificationService.classifyTable(request))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Column selector matched no columns");
+  }
+
   @Test
   void shouldHandleRequestWithMaxSamples() {
     // Given
@@ -0,0 +1,61 @@
+package com.nl2fta.classifier.service.data_processing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
+
+class ColumnInternerTest {
+
+  @Test
+  void shouldShareInstancesForRepeatedValues() {
+    ColumnInterner interner = new ColumnInterner(1, 10);
+
+    String first = interner.intern(0, new String("ACTIVE"));
+    String second = interner.intern(0, new String("ACTIVE"));
+
+    assertThat(second).isSameAs(first);
+    assertThat(interner.hitRate(0)).isEqualTo(0.5);
+    assertThat(interner.intern(0, null)).isNull();
+  }
+
+  @Test
+  void shouldDisableColumnAboveCardinalityThreshold() {
+    ColumnInterner interner = new ColumnInterner(2, 3);
+
+    for (int i = 0; i < 10; i++) {
+      interner.intern(0, "id-" + i);
+      interner.intern(1, i % 2 == 0 ? "Y" : "N");
+    }
+
+    assertThat(interner.isDisabled(0)).isTrue();
+    assertThat(interner.isDisabled(1)).isFalse();
+    assertThat(interner.hitRate(1)).isEqualTo(0.8);
+    String value = new String("id-0");
+    assertThat(interner.intern(0, value)).isSameAs(value);
+  }
+
+  @Test
+  void shouldInternLowCardinalityColumnsWhileParsing() throws Exception {
+    CsvParsingService service = new CsvParsingService();
+    ReflectionTestUtils.setField(service, "defaultLocale", "en-US");
+    ReflectionTestUtils.setField(service, "internMaxCardinality", 2);
+    String csv = "id,status\n1,OPEN\n2,CLOSED\n3,OPEN\n4,OPEN\n";
+
+    TableClassificationRequest request =
+        service.parseCsvToRequest(
+            new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), "t.csv", null, null);
+
+    List<Map<String, Object>> rows = request.getData();
+    assertThat(rows.get(2).get("status")).isSameAs(rows.get(0).get("status"));
+    assertThat(rows.get(3).get("status")).isSameAs(rows.get(0).get("status"));
+    assertThat(rows).extracting(row -> row.get("id")).containsExactly("1", "2", "3", "4");
+  }
+}
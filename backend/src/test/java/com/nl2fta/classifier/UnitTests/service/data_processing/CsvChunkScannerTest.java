@@ -0,0 +1,201 @@
+package com.nl2fta.classifier.service.data_processing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
+import com.opencsv.CSVReader;
+
+class CsvChunkScannerTest {
+
+  private static final String QUOTED_CSV =
+      "id,comment,amount\n"
+          + "1,\"multi\nline\",10\n"
+          + "2,\"has \"\"quotes\"\", and comma\",20\n"
+          + "3,plain,30\n"
+          + "4,\"ends with newline\n\",40\n"
+          + "5,\"\n\n\",50\n"
+          + "6,last,60";
+
+  /** Backslash escapes as OpenCSV's default parser reads them, inside quotes and out. */
+  private static final String ESCAPED_CSV =
+      "id,comment,amount\n"
+          + "1,\"say \\\"hi\\\", then\nleave\",10\n"
+          + "2,\"path C:\\\\\",20\n"
+          + "3,a\\\"b,30\n"
+          + "4,\"\\\\\\\"\",40\n"
+          + "5,\"\\\"\n\\\"\",50\n"
+          + "6,last,60";
+
+  @TempDir Path tempDir;
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldFindRecordBoundariesForEveryRangeCount() throws Exception {
+    Path file = write(QUOTED_CSV);
+    List<String[]> expected = readAllWithOpenCsv(QUOTED_CSV);
+
+    for (int ranges = 1; ranges <= QUOTED_CSV.length(); ranges++) {
+      CsvChunkScanner.ScanResult scan = CsvChunkScanner.scan(file, ranges, executor);
+
+      assertThat(scan.getRecordCount()).as("ranges=%d", ranges).isEqualTo(expected.size());
+      assertThat(scan.getDataRowCount()).isEqualTo(6);
+      assertThat(CsvChunkScanner.readHeader(file, scan)).containsExactly("id", "comment", "amount");
+
+      List<List<String[]>> chunks =
+          CsvChunkScanner.parseRanges(file, scan, executor, (range, reader) -> reader.readAll());
+      List<String[]> merged = new ArrayList<>();
+      chunks.forEach(merged::addAll);
+
+      assertThat(merged).as("ranges=%d", ranges).hasSize(6);
+      for (int i = 0; i < merged.size(); i++) {
+        assertThat(merged.get(i)).containsExactly(expected.get(i + 1));
+      }
+    }
+  }
+
+  @Test
+  void shouldFindRecordBoundariesWithBackslashEscapesForEveryRangeCount() throws Exception {
+    Path file = write(ESCAPED_CSV);
+    List<String[]> expected = readAllWithOpenCsv(ESCAPED_CSV);
+    assertThat(expected).hasSize(7);
+
+    for (int ranges = 1; ranges <= ESCAPED_CSV.length(); ranges++) {
+      CsvChunkScanner.ScanResult scan = CsvChunkScanner.scan(file, ranges, executor);
+
+      assertThat(scan.getRecordCount()).as("ranges=%d", ranges).isEqualTo(expected.size());
+
+      List<List<String[]>> chunks =
+          CsvChunkScanner.parseRanges(file, scan, executor, (range, reader) -> reader.readAll());
+      List<String[]> merged = new ArrayList<>();
+      chunks.forEach(merged::addAll);
+
+      assertThat(merged).as("ranges=%d", ranges).hasSize(6);
+      for (int i = 0; i < merged.size(); i++) {
+        assertThat(merged.get(i)).containsExactly(expected.get(i + 1));
+      }
+    }
+  }
+
+  @Test
+  void shouldReportRecordCountPerRange() throws Exception {
+    Path file = write(QUOTED_CSV);
+
+    CsvChunkScanner.ScanResult scan = CsvChunkScanner.scan(file, 7, executor);
+
+    long total =
+        scan.getDataRanges().stream().mapToLong(CsvChunkScanner.ByteRange::getRecordCount).sum();
+    assertThat(total).isEqualTo(6);
+    assertThat(scan.getDataRanges().get(0).getStart()).isEqualTo(scan.getHeaderEnd());
+    assertThat(scan.getDataRanges().get(scan.getDataRanges().size() - 1).getEnd())
+        .isEqualTo(scan.getFileSize());
+  }
+
+  @Test
+  void shouldCountTrailingNewlineAndHeaderOnlyFiles() throws Exception {
+    assertThat(CsvChunkScanner.scan(write("a,b\n1,2\n"), 3, executor).getDataRowCount())
+        .isEqualTo(1);
+    assertThat(CsvChunkScanner.scan(write("a,b\n"), 3, executor).getDataRanges()).isEmpty();
+    assertThat(CsvChunkScanner.scan(write("a,b"), 2, executor).getRecordCount()).isEqualTo(1);
+    assertThat(CsvChunkScanner.scan(write(""), 2, executor).getRecordCount()).isZero();
+  }
+
+  @Test
+  void shouldCountRecordsFromStream() throws Exception {
+    long records =
+        CsvChunkScanner.countRecords(
+            new ByteArrayInputStream(QUOTED_CSV.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(records).isEqualTo(7);
+  }
+
+  @Test
+  void shouldParseFileInParallelLikeStreamingParser() throws Exception {
+    StringBuilder csv = new StringBuilder("id,note\n");
+    for (int i = 0; i < 500; i++) {
+      csv.append(i).append(i % 7 == 0 ? ",\"line\nbreak\"\n" : ",plain\n");
+    }
+    Path file = write(csv.toString());
+
+    CsvParsingService service = new CsvParsingService();
+    ReflectionTestUtils.setField(service, "defaultLocale", "en-US");
+    ReflectionTestUtils.setField(service, "parallelTargetChunkBytes", 256L);
+    ReflectionTestUtils.setField(service, "parallelThreads", 4);
+    ReflectionTestUtils.setField(service, "parallelMaxRows", 100000);
+
+    TableClassificationRequest parallel = service.parseCsvToRequest(file, "notes.csv", null, null);
+    TableClassificationRequest streaming =
+        service.parseCsvToRequest(Files.newInputStream(file), "notes.csv", null, null);
+
+    assertThat(parallel.getTableName()).isEqualTo("notes");
+    assertThat(parallel.getColumns()).containsExactly("id", "note");
+    assertThat(parallel.getData()).isEqualTo(streaming.getData());
+    assertThat(service.parseCsvToRequest(file, "notes.csv", 42, null).getData())
+        .isEqualTo(streaming.getData().subList(0, 42));
+  }
+
+  @Test
+  void shouldBoundParallelParseWithoutMaxSamples() throws Exception {
+    StringBuilder csv = new StringBuilder("id,note\n");
+    for (int i = 0; i < 500; i++) {
+      csv.append(i).append(i < 40 && i % 2 == 0 ? ",bad,row\n" : ",plain\n");
+    }
+    Path file = write(csv.toString());
+
+    CsvParsingService service = new CsvParsingService();
+    ReflectionTestUtils.setField(service, "defaultLocale", "en-US");
+    ReflectionTestUtils.setField(service, "parallelTargetChunkBytes", 64L);
+    ReflectionTestUtils.setField(service, "parallelThreads", 4);
+    ReflectionTestUtils.setField(service, "parallelMaxRows", 30);
+
+    TableClassificationRequest parallel = service.parseCsvToRequest(file, "notes.csv", null, null);
+    TableClassificationRequest streaming =
+        service.parseCsvToRequest(Files.newInputStream(file), "notes.csv", 30, null);
+
+    assertThat(parallel.getData()).hasSize(30).isEqualTo(streaming.getData());
+    assertThat(parallel.getSkippedRows()).isGreaterThanOrEqualTo(20);
+    assertThat(parallel.getMaxSamples()).isNull();
+  }
+
+  private Path write(String content) throws Exception {
+    Path file = Files.createTempFile(tempDir, "scan-", ".csv");
+    Files.writeString(file, content, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private List<String[]> readAllWithOpenCsv(String content) throws Exception {
+    try (CSVReader reader =
+        new CSVReader(
+            new InputStreamReader(
+                new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                StandardCharsets.UTF_8))) {
+      return reader.readAll();
+    }
+  }
+}
@@ -3,13 +3,16 @@ package com.nl2fta.classifier.service.data_processing;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
 import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
 
 class CsvParsingServiceTest {
@@ -184,4 +187,27 @@ class CsvParsingServiceTest {
         .isEqualTo("Data with \"quotes\" and commas");
     assertThat(result.getData().get(1).get("description")).isEqualTo("Unicode: αβγ 中文");
   }
+
+  @Test
+  void shouldMaterializeOnlySelectedColumns() throws Exception {
+    String csvContent =
+        "id,name,email,notes\n1,John,john@example.com,x\nbad,row\n2,Jane,jane@example.com,y";
+    ColumnSelector selector =
+        ColumnSelector.builder().names(List.of("email")).indices(List.of(0)).build();
+
+    TableClassificationRequest result =
+        csvParsingService.parseCsvToRequest(
+            new ByteArrayInputStream(csvContent.getBytes(StandardCharsets.UTF_8)),
+            "users.csv",
+            null,
+            "en-US",
+            selector);
+
+    assertThat(result.getColumns()).containsExactly("id", "name", "email", "notes");
+    assertThat(result.getColumnSelector()).isEqualTo(selector);
+    assertThat(result.getData()).hasSize(2);
+    assertThat(result.getData().get(0)).containsOnlyKeys("id", "email");
+    assertThat(result.getData().get(1).get("email")).isEqualTo("jane@example.com");
+    assertThat(result.getSkippedRows()).isEqualTo(1);
+  }
 }
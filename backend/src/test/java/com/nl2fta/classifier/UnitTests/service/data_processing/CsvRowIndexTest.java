@@ -0,0 +1,238 @@
+package com.nl2fta.classifier.service.data_processing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.analysis.ColumnSelector;
+import com.nl2fta.classifier.dto.analysis.TableClassificationRequest;
+
+class CsvRowIndexTest {
+
+  @TempDir Path tempDir;
+
+  private CsvParsingService csvParsingService;
+
+  @BeforeEach
+  void setUp() {
+    csvParsingService = new CsvParsingService();
+    ReflectionTestUtils.setField(csvParsingService, "defaultLocale", "en-US");
+  }
+
+  @Test
+  void shouldIndexOffsetsFieldCountsAndMalformedRows() throws Exception {
+    String csv = "a,b\n1,2\n\"x,\ny\",3\nbad\n4,5,6\n7,8";
+
+    CsvRowIndex index = index(csv);
+
+    assertThat(index.getRowCount()).isEqualTo(5);
+    assertThat(index.getWellFormedRowCount()).isEqualTo(3);
+    assertThat(index.getHeaderFieldCount()).isEqualTo(2);
+    assertThat(index.getMaxFieldCount()).isEqualTo(3);
+    assertThat(index.getMalformedRows()).containsExactly(2, 3);
+    assertThat(index.offsetOf(0)).isEqualTo(csv.indexOf("1,2"));
+    assertThat(index.offsetOf(1)).isEqualTo(csv.indexOf("\"x"));
+    assertThat(index.offsetOf(4)).isEqualTo(csv.indexOf("7,8"));
+    assertThat(index.endOf(4)).isEqualTo(csv.length());
+    assertThat(index.wellFormedRow(2)).isEqualTo(4);
+  }
+
+  @Test
+  void shouldLocateRowsAcrossCheckpoints() throws Exception {
+    StringBuilder csv = new StringBuilder("id,value\n");
+    for (int i = 0; i < 1000; i++) {
+      csv.append(i).append(',').append("v".repeat(i % 300)).append('\n');
+    }
+    String content = csv.toString();
+
+    CsvRowIndex index = index(content);
+
+    assertThat(index.getRowCount()).isEqualTo(1000);
+    for (int row : new int[] {0, 63, 64, 65, 127, 500, 999}) {
+      assertThat(index.offsetOf(row)).isEqualTo(content.indexOf("\n" + row + ",") + 1);
+    }
+    assertThat(index.getIndexBytes()).isLessThan(content.length() / 4);
+    assertThatThrownBy(() -> index.offsetOf(1001)).isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  @Test
+  void shouldRestoreSavedIndex() throws Exception {
+    StringBuilder csv = new StringBuilder("id,value\n");
+    for (int i = 0; i < 200; i++) {
+      csv.append(i).append(',').append(i % 7 == 0 ? "x,y" : "v").append('\n');
+    }
+    CsvRowIndex index = index(csv.toString());
+
+    CsvRowIndex restored = CsvRowIndex.fromBytes(index.toBytes());
+
+    assertThat(restored.getRowCount()).isEqualTo(index.getRowCount());
+    assertThat(restored.getFileSize()).isEqualTo(index.getFileSize());
+    assertThat(restored.getMaxFieldCount()).isEqualTo(3);
+    assertThat(restored.getMalformedRows()).isEqualTo(index.getMalformedRows());
+    for (int row : new int[] {0, 63, 64, 150, 200}) {
+      assertThat(restored.offsetOf(row)).isEqualTo(index.offsetOf(row));
+    }
+    assertThatThrownBy(() -> CsvRowIndex.fromBytes(new byte[] {0, 0, 0, 9}))
+        .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void shouldHandleHeaderOnlyAndEmptyFiles() throws Exception {
+    assertThat(index("a,b\n").getRowCount()).isZero();
+    assertThat(index("").getRowCount()).isZero();
+  }
+
+  @Test
+  void shouldReadRowsAfterSkippingPrefix() throws Exception {
+    Path file = write("a,b\n1,2\nbad\n3,4\n5,6\n7,8\n");
+    CsvRowIndex index = csvParsingService.indexCsv(file);
+
+    List<Map<String, Object>> rows = csvParsingService.readCsvRows(file, index, 1, 2);
+
+    assertThat(rows).extracting(row -> row.get("a")).containsExactly("3", "5");
+    assertThat(csvParsingService.readCsvRows(file, index, 4, 10)).isEmpty();
+  }
+
+  @Test
+  void shouldReadOnlySelectedColumns() throws Exception {
+    Path file = write("a,b,c\n1,2,3\n4,5,6\n");
+    CsvRowIndex index = csvParsingService.indexCsv(file);
+
+    List<Map<String, Object>> rows =
+        csvParsingService.readCsvRows(
+            file, index, 1, 5, ColumnSelector.builder().names(List.of("c", "a")).build());
+
+    assertThat(rows).hasSize(1);
+    assertThat(rows.get(0)).containsExactly(entry("a", "4"), entry("c", "6"));
+  }
+
+  @Test
+  void shouldCountRowsLikeTheIndex() throws Exception {
+    String csv = "a,b\n1,\"two\nlines\"\n\"x\"\"y\",3\nbad\n7,8";
+
+    assertThat(
+            csvParsingService.countCsvDataRows(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))))
+        .isEqualTo(index(csv).getRowCount())
+        .isEqualTo(4);
+  }
+
+  @Test
+  void shouldCloseStreamAfterCountingRows() throws Exception {
+    AtomicBoolean closed = new AtomicBoolean();
+    ByteArrayInputStream in =
+        new ByteArrayInputStream("a,b\n1,2\n".getBytes(StandardCharsets.UTF_8)) {
+          @Override
+          public void close() {
+            closed.set(true);
+          }
+        };
+
+    assertThat(csvParsingService.countCsvDataRows(in)).isEqualTo(1);
+    assertThat(closed).isTrue();
+  }
+
+  @Test
+  void shouldSampleDistinctWellFormedRowsInFileOrder() throws Exception {
+    StringBuilder csv = new StringBuilder("n,square\n");
+    for (int i = 0; i < 200; i++) {
+      csv.append(i % 10 == 0 ? "broken" : i + "," + (i * i)).append('\n');
+    }
+    Path file = write(csv.toString());
+    CsvRowIndex index = csvParsingService.indexCsv(file);
+
+    List<Map<String, Object>> sample =
+        csvParsingService.sampleCsvRows(file, index, 50, new Random(42), null);
+
+    assertThat(sample).hasSize(50);
+    List<Integer> values =
+        sample.stream().map(row -> Integer.parseInt((String) row.get("n"))).toList();
+    assertThat(values).isSorted().doesNotHaveDuplicates().allMatch(n -> n % 10 != 0);
+    sample.forEach(
+        row ->
+            assertThat(Integer.parseInt((String) row.get("square")))
+                .isEqualTo(
+                    Integer.parseInt((String) row.get("n"))
+                        * Integer.parseInt((String) row.get("n"))));
+    assertThat(index.sampleRows(1000, new Random(1))).hasSize(180);
+  }
+
+  @Test
+  void shouldSampleRequestFromWholeFile() throws Exception {
+    StringBuilder csv = new StringBuilder("id,name\n");
+    for (int i = 0; i < 1000; i++) {
+      csv.append(i == 500 ? "broken" : i + ",name-" + i).append('\n');
+    }
+    Path file = write(csv.toString());
+    CsvRowIndex index = csvParsingService.indexCsv(file);
+
+    TableClassificationRequest request =
+        csvParsingService.sampleCsvToRequest(
+            file,
+            index,
+            "people.csv",
+            20,
+            null,
+            ColumnSelector.builder().names(List.of("id")).build(),
+            new Random(7));
+
+    assertThat(request.getTableName()).isEqualTo("people");
+    assertThat(request.getColumns()).containsExactly("id", "name");
+    assertThat(request.getData()).hasSize(20).allMatch(row -> row.keySet().equals(Set.of("id")));
+    assertThat(request.getSkippedRows()).isEqualTo(1);
+    // Drawn from the whole file, not from its first rows
+    assertThat(request.getData()).anyMatch(row -> Integer.parseInt((String) row.get("id")) >= 500);
+  }
+
+  @Test
+  void shouldSplitRecordsLikeTheParserWithBackslashEscapedQuotes() throws Exception {
+    // OpenCSV's default parser takes \" and \\ literally, inside quotes or not
+    String csv = "a,b\n\"a \\\", b\",1\nx\\\",2\n\"multi\\\"\nline\",3\np,\"q\\\\\"\nr,4\n";
+    Path file = write(csv);
+    List<Map<String, Object>> parsed =
+        csvParsingService
+            .parseCsvToRequest(csv.getBytes(StandardCharsets.UTF_8), "escaped.csv", null, null)
+            .getData();
+
+    CsvRowIndex index = csvParsingService.indexCsv(file);
+
+    assertThat(parsed).extracting(row -> row.get("b")).containsExactly("1", "2", "3", "q\\", "4");
+    assertThat(index.getRowCount()).isEqualTo(5);
+    assertThat(index.getMalformedRows()).isEmpty();
+    assertThat(index.getMaxFieldCount()).isEqualTo(2);
+    assertThat(
+            csvParsingService.countCsvDataRows(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))))
+        .isEqualTo(5);
+    for (int row = 0; row < parsed.size(); row++) {
+      assertThat(csvParsingService.readCsvRows(file, index, row, 1))
+          .containsExactly(parsed.get(row));
+    }
+  }
+
+  private CsvRowIndex index(String csv) throws Exception {
+    return CsvRowIndex.build(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private Path write(String content) throws Exception {
+    Path file = Files.createTempFile(tempDir, "index-", ".csv");
+    Files.writeString(file, content, StandardCharsets.UTF_8);
+    return file;
+  }
+}
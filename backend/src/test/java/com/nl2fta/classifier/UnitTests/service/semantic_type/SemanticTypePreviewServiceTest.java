@@ -0,0 +1,321 @@
+package com.nl2fta.classifier.service.semantic_type.management;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.dto.semantic_type.SemanticTypePreviewRequest;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.ImpactedAnalysis;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.ImpactedField;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.PreviewResult;
+import com.nl2fta.classifier.service.semantic_type.management.SemanticTypeValidationService.ValidationResult;
+import com.nl2fta.classifier.service.storage.AnalysisStorageService;
+import com.nl2fta.classifier.service.storage.ValueFingerprint;
+
+class SemanticTypePreviewServiceTest {
+
+  private AnalysisStorageService storage;
+  private SemanticTypeValidationService validationService;
+  private SemanticTypePreviewService previewService;
+
+  @BeforeEach
+  void setUp() {
+    storage = new AnalysisStorageService();
+    ReflectionTestUtils.setField(storage, "maxResidentBytes", 0L);
+    validationService = mock(SemanticTypeValidationService.class);
+    previewService = new SemanticTypePreviewService(storage, validationService);
+    ReflectionTestUtils.setField(previewService, "threads", 2);
+
+    storage.storeAnalysis(
+        "employees.csv",
+        response(
+            List.of("emp_id", "name", "zip"),
+            List.of(
+                List.of("E12345P", "Alice Smith", "90210"),
+                List.of("E23456F", "Bob Jones", "10001"),
+                List.of("E34567P", "Carol White", "60601"))));
+    storage.storeAnalysis(
+        "orders.csv",
+        response(
+            List.of("order_ref", "state"),
+            List.of(List.of("E11111P", "CA"), List.of("E22222F", "ny"), List.of("X-1", "TX"))));
+  }
+
+  @AfterEach
+  void tearDown() {
+    previewService.shutdown();
+  }
+
+  @Test
+  void shouldReportFieldsMatchingRegexCandidate() {
+    CustomSemanticType type = regexType("E\\d{5}[PF]", ".*(?i)emp.*id.*", false);
+    type.setThreshold(60);
+
+    PreviewResult result = previewService.preview(request(type));
+
+    assertThat(result.getTotalUploadedFiles()).isEqualTo(2);
+    assertThat(result.getTotalFieldsAnalyzed()).isEqualTo(5);
+    assertThat(result.getFieldsToBeImpacted()).isEqualTo(2);
+    assertThat(result.getImpactedAnalyses())
+        .extracting(ImpactedAnalysis::getFileName)
+        .containsExactly("employees.csv", "orders.csv");
+
+    ImpactedField empId = result.getImpactedAnalyses().get(0).getImpactedFields().get(0);
+    assertThat(empId.getFieldName()).isEqualTo("emp_id");
+    assertThat(empId.isWouldMatch()).isTrue();
+    assertThat(empId.isHeaderMatched()).isTrue();
+    assertThat(empId.getMatchedValues()).containsExactly("E12345P", "E23456F", "E34567P");
+
+    ImpactedField orderRef = result.getImpactedAnalyses().get(1).getImpactedFields().get(0);
+    assertThat(orderRef.getFieldName()).isEqualTo("order_ref");
+    assertThat(orderRef.isHeaderMatched()).isFalse();
+    assertThat(orderRef.getMatchedValues()).containsExactly("E11111P", "E22222F");
+    assertThat(orderRef.getUnmatchedValues()).containsExactly("X-1");
+  }
+
+  @Test
+  void shouldSkipFieldsWhoseFingerprintCannotMatch() {
+    PreviewResult result = previewService.preview(request(regexType("E\\d{5}[PF]", null, false)));
+
+    // name (spaces, lower case), zip (too short) and state (too short) never reach the regex
+    assertThat(result.getFieldsSkippedByFingerprint()).isEqualTo(3);
+    assertThat(result.getImpactedAnalyses())
+        .flatExtracting(ImpactedAnalysis::getImpactedFields)
+        .extracting(ImpactedField::getFieldName)
+        .containsExactlyInAnyOrder("emp_id", "order_ref");
+  }
+
+  @Test
+  void shouldRequireMandatoryHeaderForMatch() {
+    PreviewResult result =
+        previewService.preview(request(regexType("E\\d{5}[PF]", ".*(?i)emp.*id.*", true)));
+
+    assertThat(result.getFieldsToBeImpacted()).isEqualTo(1);
+    ImpactedField orderRef = result.getImpactedAnalyses().get(1).getImpactedFields().get(0);
+    assertThat(orderRef.isWouldMatch()).isFalse();
+  }
+
+  @Test
+  void shouldMatchListCandidateCaseInsensitively() {
+    CustomSemanticType type =
+        CustomSemanticType.builder()
+            .semanticType("STATE.TEST")
+            .pluginType("list")
+            .threshold(60)
+            .content(
+                CustomSemanticType.ContentConfig.builder()
+                    .type("inline")
+                    .values(List.of("CA", "NY", "TX"))
+                    .build())
+            .build();
+
+    PreviewResult result = previewService.preview(request(type));
+
+    assertThat(result.getFieldsToBeImpacted()).isEqualTo(1);
+    ImpactedField state = result.getImpactedAnalyses().get(0).getImpactedFields().get(0);
+    assertThat(state.getFieldName()).isEqualTo("state");
+    assertThat(state.getMatchedValues()).containsExactlyInAnyOrder("CA", "ny", "TX");
+    // Every other column is longer than any list value
+    assertThat(result.getFieldsSkippedByFingerprint()).isEqualTo(4);
+  }
+
+  @Test
+  void shouldStreamImpactedAnalysesAsTheyComplete() {
+    List<ImpactedAnalysis> streamed = new CopyOnWriteArrayList<>();
+
+    PreviewResult result =
+        previewService
+            .previewAsync(request(regexType("E\\d{5}[PF]", null, false)), streamed::add)
+            .join();
+
+    assertThat(streamed)
+        .extracting(ImpactedAnalysis::getFileName)
+        .containsExactlyInAnyOrder("employees.csv", "orders.csv");
+    assertThat(result.getImpactedAnalyses()).hasSize(2);
+  }
+
+  @Test
+  void shouldValidateExamplesWhenProvided() {
+    ValidationResult validation = new ValidationResult();
+    validation.setValid(true);
+    when(validationService.validateSemanticType(any(), anyList(), anyList()))
+        .thenReturn(validation);
+    SemanticTypePreviewRequest request = request(regexType("E\\d{5}[PF]", null, false));
+    request.setPositiveExamples(List.of("E99999P"));
+
+    assertThat(previewService.preview(request).getValidation()).isSameAs(validation);
+  }
+
+  @Test
+  void shouldRejectInvalidCandidates() {
+    assertThatThrownBy(() -> previewService.preview(request(regexType("E[", null, false))))
+        .isInstanceOf(IllegalArgumentException.class);
+    CustomSemanticType java = CustomSemanticType.builder().pluginType("java").build();
+    assertThatThrownBy(() -> previewService.preview(request(java)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("regex and list");
+  }
+
+  @Test
+  void shouldDeriveConservativeShapeFromRegex() {
+    ValueFingerprint shape = RegexShape.of("E\\d{5}[PF]");
+    assertThat(shape.getMinLength()).isEqualTo(7);
+    assertThat(shape.getMaxLength()).isEqualTo(7);
+    assertThat(shape.getAnyClasses()).isEqualTo(ValueFingerprint.UPPER | ValueFingerprint.DIGIT);
+
+    ValueFingerprint optional = RegexShape.of("(?:\\d{3}-)?\\d{4,}|[a-z]+");
+    assertThat(optional.getMinLength()).isEqualTo(1);
+    assertThat(optional.getMaxLength()).isEqualTo(Integer.MAX_VALUE);
+    assertThat(optional.getAnyClasses())
+        .isEqualTo(ValueFingerprint.DIGIT | ValueFingerprint.PUNCT | ValueFingerprint.LOWER);
+
+    assertThat(RegexShape.of("(?i)[a-c]{2}").getAnyClasses())
+        .isEqualTo(ValueFingerprint.UPPER | ValueFingerprint.LOWER);
+    // Constructs the analysis does not understand leave the candidate unconstrained
+    assertThat(RegexShape.of("(a)\\1")).isEqualTo(ValueFingerprint.unconstrained());
+    assertThat(RegexShape.of("[^0-9]+").getAnyClasses()).isEqualTo(ValueFingerprint.ALL);
+  }
+
+  @Test
+  void shouldFoldCaseOnlyWhereCaseInsensitiveMatchingApplies() {
+    assertThat(RegexShape.of("[a-c]{2}", Pattern.CASE_INSENSITIVE).getAnyClasses())
+        .isEqualTo(ValueFingerprint.UPPER | ValueFingerprint.LOWER);
+    // An inline flag holds until the end of its group and can be turned off again
+    assertThat(RegexShape.of("(?i)1b").getAnyClasses())
+        .isEqualTo(ValueFingerprint.DIGIT | ValueFingerprint.UPPER | ValueFingerprint.LOWER);
+    assertThat(RegexShape.of("(?:(?i)1)b").getAnyClasses())
+        .isEqualTo(ValueFingerprint.DIGIT | ValueFingerprint.LOWER);
+    assertThat(RegexShape.of("(?i:1)b").getAnyClasses())
+        .isEqualTo(ValueFingerprint.DIGIT | ValueFingerprint.LOWER);
+    assertThat(RegexShape.of("(?-i)b", Pattern.CASE_INSENSITIVE).getAnyClasses())
+        .isEqualTo(ValueFingerprint.LOWER);
+    assertThat(RegexShape.of("(?i)(?-i)b").getAnyClasses()).isEqualTo(ValueFingerprint.LOWER);
+    // "(?i" inside a class or an escape is not a flag
+    assertThat(RegexShape.of("[(?i]b").getAnyClasses())
+        .isEqualTo(ValueFingerprint.PUNCT | ValueFingerprint.LOWER);
+    // Comments mode changes what the characters mean, so it is not analyzed
+    assertThat(RegexShape.of("(?x) a b")).isEqualTo(ValueFingerprint.unconstrained());
+    assertThat(RegexShape.of("a b", Pattern.COMMENTS)).isEqualTo(ValueFingerprint.unconstrained());
+  }
+
+  @Test
+  void shouldConsumeOperandsOfOctalAndControlEscapes() {
+    ValueFingerprint octal = RegexShape.of("\\0101\\d{2}");
+    assertThat(octal.getMinLength()).isEqualTo(3);
+    assertThat(octal.getMaxLength()).isEqualTo(3);
+    assertThat(octal.getAnyClasses()).isEqualTo(ValueFingerprint.UPPER | ValueFingerprint.DIGIT);
+
+    // \0 takes at most three digits and never a value above 0377
+    assertThat(RegexShape.of("\\0777").getMinLength()).isEqualTo(2);
+    assertThat(RegexShape.of("[\\011\\0101]").getAnyClasses())
+        .isEqualTo(ValueFingerprint.SPACE | ValueFingerprint.UPPER);
+
+    ValueFingerprint control = RegexShape.of("\\cI\\d{2}");
+    assertThat(control.getMinLength()).isEqualTo(3);
+    assertThat(control.getMaxLength()).isEqualTo(3);
+    assertThat(RegexShape.of("[\\cIx]").getAnyClasses())
+        .isEqualTo(ValueFingerprint.SPACE | ValueFingerprint.LOWER);
+  }
+
+  @Test
+  void shouldReadRowsOnlyOfAnalysesWithCandidateFields() {
+    AnalysisStorageService spiedStorage = spy(storage);
+    SemanticTypePreviewService spiedPreview =
+        new SemanticTypePreviewService(spiedStorage, validationService);
+    ReflectionTestUtils.setField(spiedPreview, "threads", 1);
+    CustomSemanticType states =
+        CustomSemanticType.builder()
+            .semanticType("STATE.TEST")
+            .pluginType("list")
+            .content(
+                CustomSemanticType.ContentConfig.builder()
+                    .type("inline")
+                    .values(List.of("CA", "NY", "TX"))
+                    .build())
+            .build();
+
+    try {
+      spiedPreview.preview(request(states));
+    } finally {
+      spiedPreview.shutdown();
+    }
+
+    // Every employees.csv field is longer than any state code, so only orders.csv is read
+    verify(spiedStorage, never()).getAllAnalyses();
+    verify(spiedStorage, times(1)).readAnalysis(any());
+  }
+
+  private static SemanticTypePreviewRequest request(CustomSemanticType type) {
+    return SemanticTypePreviewRequest.builder().semanticType(type).build();
+  }
+
+  private static CustomSemanticType regexType(String regex, String header, boolean mandatory) {
+    CustomSemanticType.LocaleConfig locale =
+        CustomSemanticType.LocaleConfig.builder()
+            .matchEntries(
+                List.of(CustomSemanticType.MatchEntry.builder().regExpReturned(regex).build()))
+            .build();
+    if (header != null) {
+      locale.setHeaderRegExps(
+          List.of(
+              CustomSemanticType.HeaderRegExp.builder()
+                  .regExp(header)
+                  .mandatory(mandatory)
+                  .build()));
+    }
+    return CustomSemanticType.builder()
+        .semanticType("IDENTIFIER.EMPLOYEE_ID")
+        .pluginType("regex")
+        .validLocales(List.of(locale))
+        .build();
+  }
+
+  private static TableClassificationResponse response(
+      List<String> columns, List<List<String>> values) {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (List<String> rowValues : values) {
+      LinkedHashMap<String, Object> row = new LinkedHashMap<>();
+      for (int i = 0; i < columns.size(); i++) {
+        row.put(columns.get(i), rowValues.get(i));
+      }
+      rows.add(row);
+    }
+    Map<String, TableClassificationResponse.ColumnClassification> classifications =
+        new LinkedHashMap<>();
+    for (String column : columns) {
+      classifications.put(
+          column,
+          TableClassificationResponse.ColumnClassification.builder()
+              .columnName(column)
+              .semanticType("NONE")
+              .confidence(0.5)
+              .build());
+    }
+    return TableClassificationResponse.builder()
+        .tableName("table")
+        .columnClassifications(classifications)
+        .data(rows)
+        .build();
+  }
+}
@@ -3,8 +3,11 @@ package com.nl2fta.classifier.service.semantic_type.generation;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -21,6 +24,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -32,6 +36,8 @@ import com.nl2fta.classifier.dto.semantic_type.SemanticTypeGenerationRequest;
 import com.nl2fta.classifier.service.aws.AwsBedrockService;
 import com.nl2fta.classifier.service.semantic_type.SemanticTypeComparisonService;
 import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.vector.Bm25Index;
+import com.nl2fta.classifier.service.vector.LexicalSearchService;
 import com.nl2fta.classifier.service.vector.VectorSimilaritySearchService;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,6 +56,8 @@ class SemanticTypeSimilarityServiceTest {
 
   @Mock private SemanticTypeComparisonService comparisonService;
 
+  @Mock private LexicalSearchService lexicalSearchService;
+
   @InjectMocks private SemanticTypeSimilarityService similarityService;
 
   private SemanticTypeGenerationRequest testRequest;
@@ -313,6 +321,83 @@ class SemanticTypeSimilarityServiceTest {
       assertThat(result.isExistingTypeIsBuiltIn()).isTrue(); // NAME.FIRST is built-in
     }
 
+    @Test
+    @DisplayName("Should skip vector search for a decisive keyword match")
+    void shouldSkipVectorSearchForDecisiveKeywordMatch() throws IOException {
+      // Given
+      List<Bm25Index.Hit> hits = List.of(new Bm25Index.Hit("EMAIL.ADDRESS", 9.5, 0.92, 4));
+      when(customSemanticTypeService.getCatalogVersion()).thenReturn(7L);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockAllTypes);
+      when(customSemanticTypeService.getCustomTypesOnly()).thenReturn(mockCustomTypesOnly);
+      when(lexicalSearchService.search(eq(testRequest), anyInt())).thenReturn(hits);
+      when(lexicalSearchService.isDecisive(hits)).thenReturn(true);
+      when(comparisonService.compareSemanticTypes(eq(testRequest), any()))
+          .thenReturn(new SemanticTypeComparison());
+
+      // When
+      GeneratedSemanticType result = similarityService.checkForSimilarExistingType(testRequest);
+
+      // Then
+      assertThat(result).isNotNull();
+      assertThat(result.getExistingTypeMatch()).isEqualTo("EMAIL.ADDRESS");
+      assertThat(result.getExplanation())
+          .contains("92.00% keyword coverage based on keyword analysis");
+      verify(lexicalSearchService).ensureIndexed(7L, mockAllTypes);
+      verify(vectorSearchService, never()).findTopSimilarTypesForLLM(any(), anyDouble());
+    }
+
+    @Test
+    @DisplayName("Should re-rank vector matches by keyword coverage")
+    void shouldFuseKeywordCoverageIntoVectorRanking() throws Exception {
+      // Given
+      List<Bm25Index.Hit> hits = List.of(new Bm25Index.Hit("EMAIL.ADDRESS", 3.0, 0.6, 2));
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockAllTypes);
+      when(customSemanticTypeService.getCustomTypesOnly()).thenReturn(mockCustomTypesOnly);
+      when(lexicalSearchService.search(eq(testRequest), anyInt())).thenReturn(hits);
+      when(vectorSearchService.findTopSimilarTypesForLLM(eq(testRequest), eq(0.35)))
+          .thenReturn(
+              Arrays.asList(
+                  createMockSimilarityResult("PHONE.NUMBER", 0.6),
+                  createMockSimilarityResult("EMAIL.ADDRESS", 0.5)));
+      when(promptService.buildMultipleMatchEvaluationPrompt(any(), any(), any()))
+          .thenReturn("prompt");
+
+      // When
+      similarityService.checkForSimilarExistingType(testRequest);
+
+      // Then
+      @SuppressWarnings("unchecked")
+      ArgumentCaptor<List<VectorSimilaritySearchService.SimilaritySearchResult>> candidates =
+          ArgumentCaptor.forClass(List.class);
+      verify(promptService)
+          .buildMultipleMatchEvaluationPrompt(eq(testRequest), any(), candidates.capture());
+      assertThat(candidates.getValue())
+          .extracting(VectorSimilaritySearchService.SimilaritySearchResult::getSemanticType)
+          .containsExactly("EMAIL.ADDRESS", "PHONE.NUMBER");
+      assertThat(candidates.getValue().get(0).getSimilarityScore()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Should fall back to keyword matches when vector search fails")
+    void shouldFallBackToKeywordMatchesWhenVectorSearchFails() throws IOException {
+      // Given
+      List<Bm25Index.Hit> hits = List.of(new Bm25Index.Hit("PHONE.NUMBER", 4.0, 0.7, 2));
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockAllTypes);
+      when(customSemanticTypeService.getCustomTypesOnly()).thenReturn(mockCustomTypesOnly);
+      when(lexicalSearchService.search(eq(testRequest), anyInt())).thenReturn(hits);
+      when(vectorSearchService.findTopSimilarTypesForLLM(eq(testRequest), eq(0.35)))
+          .thenThrow(new RuntimeException("Vector search failed"));
+      when(comparisonService.compareSemanticTypes(eq(testRequest), any()))
+          .thenReturn(new SemanticTypeComparison());
+
+      // When
+      GeneratedSemanticType result = similarityService.checkForSimilarExistingType(testRequest);
+
+      // Then
+      assertThat(result).isNotNull();
+      assertThat(result.getExistingTypeMatch()).isEqualTo("PHONE.NUMBER");
+    }
+
     @Test
     @DisplayName("Should handle IOException from custom type service")
     void shouldHandleIOExceptionFromCustomTypeService() throws IOException {
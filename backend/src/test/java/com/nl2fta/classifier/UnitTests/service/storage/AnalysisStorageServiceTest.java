@@ -1,17 +1,35 @@
 package com.nl2fta.classifier.UnitTests.service.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
-
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.nl2fta.classifier.dto.analysis.AnalysisSummary;
+import com.nl2fta.classifier.dto.analysis.AnalysisSummaryPage;
 import com.nl2fta.classifier.dto.analysis.TableClassificationResponse;
+import com.nl2fta.classifier.service.data_processing.CsvRowIndex;
 import com.nl2fta.classifier.service.storage.AnalysisStorageService;
 
 class AnalysisStorageServiceTest {
@@ -484,4 +502,436 @@ class AnalysisStorageServiceTest {
     assertThat(storedAnalysis.getFields().get(0).getFieldName()).isEqualTo("field2");
     assertThat(storedAnalysis.getFields().get(0).getCurrentSemanticType()).isEqualTo("NEW.TYPE");
   }
+
+  @Test
+  void shouldLeavePreviouslyReturnedAnalysisUnchangedOnUpdate() {
+    String analysisId = analysisStorageService.storeAnalysis("before.csv", responseWithRows(10));
+    AnalysisStorageService.StoredAnalysis before = analysisStorageService.getAnalysis(analysisId);
+    TableClassificationResponse.ColumnClassification renamed =
+        TableClassificationResponse.ColumnClassification.builder()
+            .columnName("name")
+            .semanticType("NAME.FIRST")
+            .build();
+    TableClassificationResponse updated = responseWithRows(3);
+    updated.setColumnClassifications(new LinkedHashMap<>(Map.of("name", renamed)));
+
+    analysisStorageService.updateAnalysis(analysisId, updated);
+
+    assertThat(before.getFields()).extracting("fieldName").containsExactly("id");
+    assertThat(before.getData()).hasSize(10);
+    AnalysisStorageService.StoredAnalysis after = analysisStorageService.getAnalysis(analysisId);
+    assertThat(after).isNotSameAs(before);
+    assertThat(after.getFields()).extracting("fieldName").containsExactly("name");
+    assertThat(after.getData()).hasSize(10);
+  }
+
+  @Test
+  void shouldNotLoseStoredRowsWhenReanalyzingSmallerThenLargerSample() {
+    List<Map<String, Object>> original = responseWithRows(50).getData();
+    String analysisId = analysisStorageService.storeAnalysis("rows.csv", responseWithRows(50));
+
+    // Re-analysis with maxSamples=10 classifies a prefix of the stored rows
+    TableClassificationResponse small = responseWithRows(50);
+    small.setData(new ArrayList<>(small.getData().subList(0, 10)));
+    analysisStorageService.updateAnalysis(analysisId, small);
+
+    assertThat(analysisStorageService.getAnalysis(analysisId).getData()).isEqualTo(original);
+    assertThat(analysisStorageService.getAnalysis(analysisId).getSummary().getRowCount())
+        .isEqualTo(50);
+
+    // Re-analysis with maxSamples=80 extends the stored rows from the source file
+    analysisStorageService.updateAnalysis(analysisId, responseWithRows(80));
+
+    List<Map<String, Object>> extended = analysisStorageService.getAnalysis(analysisId).getData();
+    assertThat(extended).hasSize(80);
+    assertThat(extended.subList(0, 50)).isEqualTo(original);
+  }
+
+  @Test
+  void shouldDeleteSourceOfSpilledAnalysis(@TempDir Path spillDir) throws Exception {
+    configureBudget(spillDir, "LRU");
+    String spilled = analysisStorageService.storeAnalysis("spilled.csv", responseWithRows(50));
+    Path source = Files.writeString(spillDir.resolve("spilled-source.csv"), "id\n1\n");
+    analysisStorageService.attachSource(
+        spilled,
+        source,
+        CsvRowIndex.build(new ByteArrayInputStream("id\n1\n".getBytes(StandardCharsets.UTF_8))));
+    analysisStorageService.storeAnalysis("second.csv", responseWithRows(50));
+    analysisStorageService.storeAnalysis("third.csv", responseWithRows(50));
+    assertThat(analysisStorageService.getStats().getSpilledCount()).isEqualTo(1);
+
+    assertThat(analysisStorageService.deleteAnalysis(spilled)).isTrue();
+
+    assertThat(source).doesNotExist();
+    assertThat(analysisStorageService.getStats().getReloads()).isZero();
+  }
+
+  @Test
+  void shouldRestoreRowIndexOfSpilledAnalysis(@TempDir Path spillDir) throws Exception {
+    configureBudget(spillDir, "LRU");
+    String spilled = analysisStorageService.storeAnalysis("spilled.csv", responseWithRows(50));
+    Path source = Files.writeString(spillDir.resolve("spilled-source.csv"), "id\n1\n");
+    analysisStorageService.attachSource(
+        spilled,
+        source,
+        CsvRowIndex.build(new ByteArrayInputStream("id\n1\n".getBytes(StandardCharsets.UTF_8))));
+    analysisStorageService.storeAnalysis("second.csv", responseWithRows(50));
+    analysisStorageService.storeAnalysis("third.csv", responseWithRows(50));
+    // The index is saved with the analysis, so a changed file shows it was not rescanned
+    Files.writeString(source, "id\n1\n2\n3\n");
+
+    AnalysisStorageService.StoredAnalysis reloaded = analysisStorageService.getAnalysis(spilled);
+
+    assertThat(reloaded.getSourceFile()).isEqualTo(source);
+    assertThat(reloaded.getRowIndex().getRowCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldAttachSourceAndDeleteItWithAnalysis(@TempDir Path tempDir) throws Exception {
+    String analysisId =
+        analysisStorageService.storeAnalysis("source.csv", new TableClassificationResponse());
+    Path source = Files.writeString(tempDir.resolve("source.csv"), "a,b\n1,2\n");
+    CsvRowIndex index =
+        CsvRowIndex.build(new ByteArrayInputStream("a,b\n1,2\n".getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(analysisStorageService.attachSource(analysisId, source, index)).isTrue();
+    assertThat(analysisStorageService.attachSource("missing", source, index)).isFalse();
+    assertThat(analysisStorageService.getAnalysis(analysisId).getRowIndex().getRowCount())
+        .isEqualTo(1);
+
+    analysisStorageService.deleteAnalysis(analysisId);
+
+    assertThat(source).doesNotExist();
+  }
+
+  @Test
+  void shouldSpillLeastRecentlyUsedAnalysisAndReloadIt(@TempDir Path spillDir) {
+    configureBudget(spillDir, "LRU");
+
+    String first = analysisStorageService.storeAnalysis("first.csv", responseWithRows(50));
+    String second = analysisStorageService.storeAnalysis("second.csv", responseWithRows(50));
+    String third = analysisStorageService.storeAnalysis("third.csv", responseWithRows(50));
+
+    AnalysisStorageService.StorageStats stats = analysisStorageService.getStats();
+    assertThat(stats.getResidentCount()).isEqualTo(2);
+    assertThat(stats.getSpilledCount()).isEqualTo(1);
+    assertThat(stats.getSpilledBytes()).isPositive();
+    assertThat(stats.getEvictions()).isEqualTo(1);
+
+    AnalysisStorageService.StoredAnalysis reloaded = analysisStorageService.getAnalysis(first);
+
+    assertThat(reloaded.getFileName()).isEqualTo("first.csv");
+    assertThat(reloaded.getData()).hasSize(50);
+    assertThat(reloaded.getData().get(7)).containsEntry("id", "7");
+    assertThat(reloaded.getColumns()).containsExactly("id", "name");
+    assertThat(reloaded.getResponse().getData()).isSameAs(reloaded.getData());
+    assertThat(reloaded.getFields()).extracting("fieldName").containsExactly("id");
+    assertThat(analysisStorageService.getStats().getReloads()).isEqualTo(1);
+    // Reloading the first analysis pushed out the least recently used one
+    assertThat(analysisStorageService.getStats().getSpilledCount()).isEqualTo(1);
+    assertThat(analysisStorageService.getAllAnalyses())
+        .extracting(AnalysisStorageService.StoredAnalysis::getAnalysisId)
+        .containsExactlyInAnyOrder(first, second, third);
+    assertThat(analysisStorageService.getStats().getResidentCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldEvictLeastFrequentlyUsedAnalysis(@TempDir Path spillDir) {
+    configureBudget(spillDir, "LFU");
+
+    String popular = analysisStorageService.storeAnalysis("popular.csv", responseWithRows(50));
+    String rare = analysisStorageService.storeAnalysis("rare.csv", responseWithRows(50));
+    for (int i = 0; i < 3; i++) {
+      analysisStorageService.getAnalysis(popular);
+    }
+    analysisStorageService.getAnalysis(rare);
+
+    analysisStorageService.storeAnalysis("new.csv", responseWithRows(50));
+
+    assertThat(analysisStorageService.getStats().getSpilledCount()).isEqualTo(1);
+    assertThat(analysisStorageService.getAnalysis(rare)).isNotNull();
+    assertThat(analysisStorageService.getStats().getReloads()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldExpireAnalysesAfterTtl(@TempDir Path spillDir) throws Exception {
+    configureBudget(spillDir, "LRU");
+    ReflectionTestUtils.setField(analysisStorageService, "ttlMinutes", 10L);
+    Instant start = Instant.parse("2026-01-01T00:00:00Z");
+    ReflectionTestUtils.setField(
+        analysisStorageService, "clock", Clock.fixed(start, ZoneOffset.UTC));
+
+    String old = analysisStorageService.storeAnalysis("old.csv", responseWithRows(50));
+    Path source = Files.writeString(spillDir.resolve("old-source.csv"), "id\n1\n");
+    analysisStorageService.attachSource(
+        old,
+        source,
+        CsvRowIndex.build(new ByteArrayInputStream("id\n1\n".getBytes(StandardCharsets.UTF_8))));
+    analysisStorageService.storeAnalysis("spilled.csv", responseWithRows(50));
+    analysisStorageService.storeAnalysis("evicting.csv", responseWithRows(50));
+
+    ReflectionTestUtils.setField(
+        analysisStorageService,
+        "clock",
+        Clock.fixed(start.plus(Duration.ofMinutes(5)), ZoneOffset.UTC));
+    String fresh = analysisStorageService.storeAnalysis("fresh.csv", responseWithRows(50));
+
+    ReflectionTestUtils.setField(
+        analysisStorageService,
+        "clock",
+        Clock.fixed(start.plus(Duration.ofMinutes(12)), ZoneOffset.UTC));
+    analysisStorageService.expireNow();
+
+    AnalysisStorageService.StorageStats stats = analysisStorageService.getStats();
+    assertThat(stats.getExpirations()).isEqualTo(3);
+    assertThat(stats.getResidentCount() + stats.getSpilledCount()).isEqualTo(1);
+    assertThat(analysisStorageService.getAnalysis(old)).isNull();
+    assertThat(analysisStorageService.getAnalysis(fresh)).isNotNull();
+    assertThat(source).doesNotExist();
+  }
+
+  @Test
+  void shouldReloadPersistedAnalysesAfterRestart(@TempDir Path storeDir) {
+    AnalysisStorageService beforeRestart = persistentService(storeDir);
+    String kept = beforeRestart.storeAnalysis("kept.csv", responseWithRows(20));
+    String deleted = beforeRestart.storeAnalysis("deleted.csv", responseWithRows(20));
+    beforeRestart.deleteAnalysis(deleted);
+    beforeRestart.close();
+
+    AnalysisStorageService afterRestart = persistentService(storeDir);
+
+    assertThat(afterRestart.getStats().getResidentCount()).isZero();
+    assertThat(afterRestart.getStats().getSpilledCount()).isEqualTo(1);
+    assertThat(afterRestart.getAnalysis(deleted)).isNull();
+    AnalysisStorageService.StoredAnalysis reloaded = afterRestart.getAnalysis(kept);
+    assertThat(reloaded.getFileName()).isEqualTo("kept.csv");
+    assertThat(reloaded.getData()).hasSize(20);
+    assertThat(reloaded.getFields()).extracting("fieldName").containsExactly("id");
+    afterRestart.close();
+  }
+
+  @Test
+  void shouldPersistUpdatesAndReclaimDeletedAnalyses(@TempDir Path storeDir) throws Exception {
+    AnalysisStorageService service = persistentService(storeDir, 8192L);
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      ids.add(service.storeAnalysis("file" + i + ".csv", responseWithRows(20)));
+    }
+    long segmentsBefore = segmentCount(storeDir);
+    for (String id : ids.subList(0, 18)) {
+      service.deleteAnalysis(id);
+    }
+    TableClassificationResponse updated = responseWithRows(5);
+    updated.setTableName("updated");
+    service.updateAnalysis(ids.get(19), updated);
+    service.close();
+
+    assertThat(segmentCount(storeDir)).isLessThan(segmentsBefore);
+
+    AnalysisStorageService restarted = persistentService(storeDir, 8192L);
+    assertThat(restarted.getAllAnalyses())
+        .extracting(AnalysisStorageService.StoredAnalysis::getAnalysisId)
+        .containsExactlyInAnyOrder(ids.get(18), ids.get(19));
+    assertThat(restarted.getAnalysis(ids.get(19)).getResponse().getTableName())
+        .isEqualTo("updated");
+    // A smaller sample does not shrink the stored rows
+    assertThat(restarted.getAnalysis(ids.get(19)).getData()).hasSize(20);
+    restarted.close();
+  }
+
+  @Test
+  void shouldPageSummariesWithCursor() {
+    for (int i = 0; i < 5; i++) {
+      analysisStorageService.storeAnalysis("file" + i + ".csv", responseWithRows(i + 1));
+    }
+
+    AnalysisSummaryPage first =
+        analysisStorageService.listSummaries(
+            AnalysisStorageService.SummarySort.ROW_COUNT, true, null, 2);
+    AnalysisSummaryPage second =
+        analysisStorageService.listSummaries(
+            AnalysisStorageService.SummarySort.ROW_COUNT, true, first.getNextCursor(), 2);
+    AnalysisSummaryPage last =
+        analysisStorageService.listSummaries(
+            AnalysisStorageService.SummarySort.ROW_COUNT, true, second.getNextCursor(), 2);
+
+    assertThat(first.getTotalCount()).isEqualTo(5);
+    assertThat(first.getItems()).extracting(AnalysisSummary::getRowCount).containsExactly(5, 4);
+    assertThat(second.getItems()).extracting(AnalysisSummary::getRowCount).containsExactly(3, 2);
+    assertThat(last.getItems()).extracting(AnalysisSummary::getRowCount).containsExactly(1);
+    assertThat(last.getNextCursor()).isNull();
+    AnalysisSummary summary = first.getItems().get(0);
+    assertThat(summary.getFileName()).isEqualTo("file4.csv");
+    assertThat(summary.getColumnCount()).isEqualTo(2);
+    assertThat(summary.getTypeCounts()).containsExactly(Map.entry("IDENTIFIER", 1));
+    assertThatThrownBy(
+            () ->
+                analysisStorageService.listSummaries(
+                    AnalysisStorageService.SummarySort.FILE_NAME, true, first.getNextCursor(), 2))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRefreshSummaryOnUpdateAndKeepItAcrossRestart(@TempDir Path storeDir) {
+    AnalysisStorageService service = persistentService(storeDir);
+    String analysisId = service.storeAnalysis("file.csv", responseWithRows(3));
+    AnalysisSummary created = service.getAnalysis(analysisId).getSummary();
+
+    service.updateAnalysis(analysisId, responseWithRows(7));
+    service.close();
+    AnalysisStorageService restarted = persistentService(storeDir);
+
+    AnalysisSummary summary =
+        restarted
+            .listSummaries(AnalysisStorageService.SummarySort.CREATED_AT, false, null, 10)
+            .getItems()
+            .get(0);
+    assertThat(summary.getRowCount()).isEqualTo(7);
+    assertThat(summary.getCreatedAt()).isEqualTo(created.getCreatedAt());
+    assertThat(summary.getUpdatedAt()).isAfterOrEqualTo(created.getUpdatedAt());
+    // Listing is served from the index without reloading the analysis
+    assertThat(restarted.getStats().getResidentCount()).isZero();
+    assertThat(restarted.getStats().getReloads()).isZero();
+    restarted.close();
+  }
+
+  @Test
+  void shouldKeepFieldsOutOfIndexAndReadThemFromPayload(@TempDir Path storeDir) throws Exception {
+    AnalysisStorageService beforeRestart = persistentService(storeDir);
+    String analysisId = beforeRestart.storeAnalysis("fields.csv", responseWithRows(20));
+    beforeRestart.close();
+
+    String index = Files.readString(storeDir.resolve("index.log"), StandardCharsets.ISO_8859_1);
+    assertThat(index).contains("fields.csv").doesNotContain("fieldName", "fingerprint");
+
+    AnalysisStorageService afterRestart = persistentService(storeDir);
+    List<AnalysisStorageService.AnalysisFields> listed = afterRestart.listFields();
+
+    assertThat(listed).hasSize(1);
+    assertThat(listed.get(0).analysisId()).isEqualTo(analysisId);
+    assertThat(listed.get(0).storedRows()).isEqualTo(20);
+    assertThat(listed.get(0).fields()).extracting("fieldName").containsExactly("id");
+    assertThat(listed.get(0).fields().get(0).getFingerprint()).isNotNull();
+    assertThat(afterRestart.getStats().getResidentCount()).isZero();
+    assertThat(afterRestart.getStats().getReloads()).isZero();
+    afterRestart.close();
+  }
+
+  @Test
+  void shouldResolveDefaultPersistentDirectoryAgainstDataDir(@TempDir Path dataDir) {
+    AnalysisStorageService service = new AnalysisStorageService();
+    ReflectionTestUtils.setField(service, "persistent", true);
+    ReflectionTestUtils.setField(service, "spillDir", "");
+    ReflectionTestUtils.setField(service, "dataDir", dataDir.toString());
+    service.open();
+
+    service.storeAnalysis("located.csv", responseWithRows(5));
+    service.close();
+
+    assertThat(dataDir.resolve("analyses").resolve("index.log")).exists();
+  }
+
+  @Test
+  void shouldServeReadsWhileAnalysisIsWrittenToDisk(@TempDir Path storeDir) throws Exception {
+    AnalysisStorageService service = persistentService(storeDir);
+    String existing = service.storeAnalysis("existing.csv", responseWithRows(20));
+    Object storeWriteLock = ReflectionTestUtils.getField(service, "storeWriteLock");
+    CountDownLatch held = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread writer =
+        new Thread(
+            () -> {
+              synchronized (storeWriteLock) {
+                held.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }
+            });
+    writer.start();
+    held.await();
+
+    // The store blocks on the held write lock once its bookkeeping is done
+    CompletableFuture<String> stored =
+        CompletableFuture.supplyAsync(
+            () -> service.storeAnalysis("blocked.csv", responseWithRows(20)));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (service.getStats().getResidentCount() < 2 && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+
+    assertThat(service.getStats().getResidentCount()).isEqualTo(2);
+    assertThat(service.getAnalysis(existing)).isNotNull();
+    assertThat(
+            service
+                .listSummaries(AnalysisStorageService.SummarySort.CREATED_AT, true, null, 10)
+                .getItems())
+        .hasSize(2);
+    assertThat(stored).isNotDone();
+
+    release.countDown();
+    String blocked = stored.get(5, TimeUnit.SECONDS);
+    writer.join();
+    service.close();
+
+    AnalysisStorageService restarted = persistentService(storeDir);
+    assertThat(restarted.getAnalysis(blocked).getFileName()).isEqualTo("blocked.csv");
+    restarted.close();
+  }
+
+  private AnalysisStorageService persistentService(Path storeDir) {
+    return persistentService(storeDir, 0L);
+  }
+
+  private AnalysisStorageService persistentService(Path storeDir, long segmentMaxBytes) {
+    AnalysisStorageService service = new AnalysisStorageService();
+    ReflectionTestUtils.setField(service, "segmentMaxBytes", segmentMaxBytes);
+    ReflectionTestUtils.setField(service, "persistent", true);
+    ReflectionTestUtils.setField(service, "spillDir", storeDir.toString());
+    service.open();
+    return service;
+  }
+
+  private static long segmentCount(Path storeDir) throws Exception {
+    try (var files = Files.list(storeDir)) {
+      return files.filter(file -> file.getFileName().toString().startsWith("segment-")).count();
+    }
+  }
+
+  private void configureBudget(Path spillDir, String policy) {
+    AnalysisStorageService probe = new AnalysisStorageService();
+    probe.storeAnalysis("probe.csv", responseWithRows(50));
+    long oneAnalysis = probe.getStats().getResidentBytes();
+    ReflectionTestUtils.setField(
+        analysisStorageService, "maxResidentBytes", oneAnalysis * 2 + oneAnalysis / 2);
+    ReflectionTestUtils.setField(analysisStorageService, "evictionPolicy", policy);
+    ReflectionTestUtils.setField(analysisStorageService, "spillDir", spillDir.toString());
+    ReflectionTestUtils.setField(analysisStorageService, "segmentMaxBytes", 4096L);
+  }
+
+  private TableClassificationResponse responseWithRows(int rowCount) {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (int i = 0; i < rowCount; i++) {
+      LinkedHashMap<String, Object> row = new LinkedHashMap<>();
+      row.put("id", String.valueOf(i));
+      row.put("name", "name-" + i);
+      rows.add(row);
+    }
+    Map<String, TableClassificationResponse.ColumnClassification> classifications =
+        new LinkedHashMap<>();
+    classifications.put(
+        "id",
+        TableClassificationResponse.ColumnClassification.builder()
+            .columnName("id")
+            .semanticType("IDENTIFIER")
+            .confidence(0.9)
+            .build());
+    return TableClassificationResponse.builder()
+        .tableName("table")
+        .columnClassifications(classifications)
+        .data(rows)
+        .build();
+  }
 }
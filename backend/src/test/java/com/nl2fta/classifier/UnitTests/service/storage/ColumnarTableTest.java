@@ -0,0 +1,91 @@
+package com.nl2fta.classifier.UnitTests.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.nl2fta.classifier.service.storage.ColumnarTable;
+
+class ColumnarTableTest {
+
+  @Test
+  void shouldRoundTripRowsInColumnOrder() {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    rows.add(row("id", "1", "state", "CA", "amount", 10));
+    rows.add(row("id", "2", "state", "NY", "amount", 20));
+    rows.add(row("id", "3", "state", "CA", "amount", 10));
+
+    ColumnarTable table = ColumnarTable.encode(rows);
+
+    assertThat(table.getRowCount()).isEqualTo(3);
+    assertThat(table.getColumnNames()).containsExactly("id", "state", "amount");
+    assertThat(table.getDictionary("state")).containsExactly("CA", "NY");
+    assertThat(table.getDictionary("amount")).containsExactly(10, 20);
+    assertThat(table.rows()).isEqualTo(rows);
+    assertThat(table.rows().get(1).keySet()).containsExactly("id", "state", "amount");
+    assertThat(table.getValue(2, "state")).isEqualTo("CA");
+  }
+
+  @Test
+  void shouldDistinguishNullValuesFromMissingColumns() {
+    Map<String, Object> withNull = row("a", "x", "b", null);
+    Map<String, Object> withoutB = row("a", "y");
+    List<Map<String, Object>> rows = List.of(withNull, withoutB);
+
+    ColumnarTable table = ColumnarTable.encode(rows);
+
+    assertThat(table.isNull(0, 1)).isTrue();
+    assertThat(table.isNull(1, 1)).isFalse();
+    assertThat(table.rows().get(0)).containsKey("b").containsEntry("b", null);
+    assertThat(table.rows().get(1)).doesNotContainKey("b").hasSize(1);
+    assertThat(table.rows()).isEqualTo(rows);
+  }
+
+  @Test
+  void shouldReuseTableWhenEncodingItsOwnRows() {
+    ColumnarTable table = ColumnarTable.encode(List.of(row("a", "1")));
+
+    assertThat(ColumnarTable.encode(table.rows())).isSameAs(table);
+    assertThat(ColumnarTable.encode(null).getRowCount()).isZero();
+  }
+
+  @Test
+  void shouldExposeReadOnlyRows() {
+    ColumnarTable table = ColumnarTable.encode(List.of(row("a", "1")));
+
+    assertThatThrownBy(() -> table.rows().get(0).put("a", "2"))
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> table.rows().get(1)).isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  @Test
+  void shouldBeSmallerThanRowMapsForRepetitiveColumns() {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Map<String, Object> row = new HashMap<>();
+      row.put("status", i % 2 == 0 ? "ACTIVE" : "INACTIVE");
+      row.put("id", String.valueOf(i));
+      rows.add(row);
+    }
+
+    ColumnarTable table = ColumnarTable.encode(rows);
+
+    assertThat(table.getDictionary("status")).hasSize(2);
+    assertThat(table.estimateBytes()).isLessThan(1000L * 2 * 48);
+  }
+
+  private static Map<String, Object> row(Object... keysAndValues) {
+    Map<String, Object> row = new LinkedHashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      row.put((String) keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return row;
+  }
+}
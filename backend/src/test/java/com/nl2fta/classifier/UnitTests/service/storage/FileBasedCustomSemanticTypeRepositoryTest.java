@@ -57,6 +57,25 @@ class FileBasedCustomSemanticTypeRepositoryTest {
     assertThat(found.get().getDescription()).isEqualTo("User identifier");
   }
 
+  @Test
+  void shouldChangeCatalogVersionOnEveryChange() {
+    long initial = repository.getCatalogVersion();
+    assertThat(repository.getCatalogVersion()).isEqualTo(initial);
+
+    repository.save(createSampleCustomType("USER.ID", "User identifier"));
+    long saved = repository.getCatalogVersion();
+    repository.update("USER.ID", createSampleCustomType("USER.ID", "Updated"));
+    long updated = repository.getCatalogVersion();
+    assertThat(repository.deleteBySemanticType("MISSING")).isFalse();
+    assertThat(repository.getCatalogVersion()).isEqualTo(updated);
+    repository.deleteBySemanticType("USER.ID");
+    long deleted = repository.getCatalogVersion();
+    repository.reload();
+
+    assertThat(List.of(initial, saved, updated, deleted, repository.getCatalogVersion()))
+        .doesNotHaveDuplicates();
+  }
+
   @Test
   void shouldPersistCustomTypesToFileAfterSave() throws IOException {
     CustomSemanticType customType = createSampleCustomType("ORDER.ID", "Order number");
@@ -70,6 +70,18 @@ class HybridCustomSemanticTypeRepositoryTest {
     assertThat(hybridRepository.isUsingFileStorage()).isFalse();
   }
 
+  @Test
+  void shouldReportCatalogSyncedOnlyAfterFullS3Sync() {
+    when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
+    assertThat(hybridRepository.isCatalogSynced()).isFalse();
+
+    hybridRepository.initializeS3Repository();
+    when(s3Repository.isFullySynced()).thenReturn(false, true);
+
+    assertThat(hybridRepository.isCatalogSynced()).isFalse();
+    assertThat(hybridRepository.isCatalogSynced()).isTrue();
+  }
+
   @Test
   void shouldFallbackToFileStorageWhenS3InitializationFails() {
     when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
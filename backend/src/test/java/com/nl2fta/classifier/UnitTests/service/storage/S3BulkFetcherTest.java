@@ -0,0 +1,140 @@
+package com.nl2fta.classifier.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
+
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@DisplayName("S3BulkFetcher Tests")
+class S3BulkFetcherTest {
+
+  private static final String BUCKET = "test-bucket";
+  private static final int OBJECTS = 10_000;
+
+  private InMemoryS3Client s3;
+
+  @BeforeEach
+  void setUp() {
+    s3 = new InMemoryS3Client();
+  }
+
+  @Test
+  @DisplayName("Should list every page of a prefix with more than 1000 objects")
+  void shouldListAllPages() {
+    List<String> keys = store(OBJECTS);
+    s3.putBytes("other/ignored.json", new byte[1]);
+
+    List<String> listed = fetcher(null, 1).listKeys(BUCKET, "types/");
+
+    assertThat(listed).containsExactlyElementsOf(keys);
+    assertThat(s3.requestCount("ListObjectsV2")).isEqualTo(10);
+  }
+
+  @Test
+  @DisplayName("Should download 10k objects concurrently, bounded by the concurrency limit")
+  void shouldFetchConcurrentlyWithinLimit() {
+    List<String> keys = store(OBJECTS);
+    s3.setLatency(Duration.ofMillis(1));
+
+    Map<String, byte[]> fetched = fetcher(s3.asyncClient(), 16).fetch(BUCKET, keys);
+
+    assertThat(fetched.keySet()).containsExactlyElementsOf(keys);
+    assertThat(new String(fetched.get(keys.get(42)), StandardCharsets.UTF_8))
+        .isEqualTo(keys.get(42));
+    assertThat(s3.requestCount("GetObject")).isEqualTo(OBJECTS);
+    assertThat(s3.maxInFlight()).isBetween(2, 16);
+  }
+
+  @Test
+  @DisplayName("Should retry throttling and server errors")
+  void shouldRetryTransientFailures() {
+    List<String> keys = store(3);
+    s3.failNext("GetObject", S3Exception.builder().statusCode(503).message("Slow Down").build());
+    s3.failNext("GetObject", S3Exception.builder().statusCode(500).build());
+
+    Map<String, byte[]> fetched = fetcher(s3.asyncClient(), 1).fetch(BUCKET, keys);
+
+    assertThat(fetched).containsOnlyKeys(keys);
+    assertThat(s3.requestCount("GetObject")).isEqualTo(5);
+  }
+
+  @Test
+  @DisplayName("Should leave out missing keys without retrying them")
+  void shouldSkipMissingKeys() {
+    List<String> keys = new ArrayList<>(store(2));
+    keys.add(1, "types/missing.json");
+
+    Map<String, byte[]> fetched = fetcher(s3.asyncClient(), 4).fetch(BUCKET, keys);
+
+    assertThat(fetched.keySet()).containsExactly(keys.get(0), keys.get(2));
+    assertThat(s3.requestCount("GetObject")).isEqualTo(3);
+    assertThatThrownBy(() -> fetcher(s3.asyncClient(), 4).get(BUCKET, "types/missing.json"))
+        .isInstanceOf(NoSuchKeyException.class);
+  }
+
+  @Test
+  @DisplayName("Should give up on an object once its attempts are exhausted")
+  void shouldGiveUpAfterMaxAttempts() {
+    List<String> keys = store(1);
+    for (int i = 0; i < 6; i++) {
+      s3.failNext("GetObject", S3Exception.builder().statusCode(503).build());
+    }
+
+    assertThat(fetcher(s3.asyncClient(), 1).fetch(BUCKET, keys)).isEmpty();
+    assertThatThrownBy(() -> fetcher(null, 1).get(BUCKET, keys.get(0)))
+        .isInstanceOf(S3Exception.class);
+    assertThat(s3.requestCount("GetObject")).isEqualTo(6);
+  }
+
+  @Test
+  @DisplayName("Should download sequentially through the sync client without an async client")
+  void shouldFetchSequentiallyWithoutAsyncClient() {
+    List<String> keys = store(50);
+    s3.failNext("GetObject", S3Exception.builder().statusCode(429).build());
+
+    Map<String, byte[]> fetched = fetcher(null, 16).fetch(BUCKET, keys);
+
+    assertThat(fetched.keySet()).containsExactlyElementsOf(keys);
+    assertThat(s3.requestCount("GetObject")).isEqualTo(51);
+    assertThat(s3.maxInFlight()).isZero();
+  }
+
+  @Test
+  @DisplayName("Should reject invalid settings")
+  void shouldRejectInvalidSettings() {
+    assertThatThrownBy(() -> new S3BulkFetcher(s3, null, 0, 3, Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new S3BulkFetcher(s3, null, 1, 0, Duration.ZERO))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new S3BulkFetcher(s3, null, 1, 1, Duration.ofMillis(-1)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private S3BulkFetcher fetcher(S3AsyncClient asyncClient, int maxConcurrency) {
+    return new S3BulkFetcher(s3, asyncClient, maxConcurrency, 3, Duration.ofMillis(1));
+  }
+
+  private List<String> store(int count) {
+    List<String> keys = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      String key = String.format("types/TYPE_%05d.json", i);
+      s3.putBytes(key, key.getBytes(StandardCharsets.UTF_8));
+      keys.add(key);
+    }
+    return keys;
+  }
+}
@@ -12,15 +12,20 @@ import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -42,6 +47,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
 import com.nl2fta.classifier.service.aws.AwsCredentialsService;
 
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
@@ -63,6 +69,7 @@ import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
 import software.amazon.awssdk.services.sts.StsClient;
@@ -1303,6 +1310,428 @@ class S3CustomSemanticTypeRepositoryTest {
       // Ensure no exceptions occur during reload with null priority data
       assertThatCode(() -> repository.reload()).doesNotThrowAnyException();
     }
+
+    @Test
+    @DisplayName("Should download only new or changed objects on incremental sync")
+    void shouldDownloadOnlyNewOrChangedObjects() throws Exception {
+      stubTypeDownloads();
+      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+          .thenReturn(listing("A", "\"1\"", "B", "\"1\""))
+          .thenReturn(listing("A", "\"1\"", "B", "\"1\""))
+          .thenReturn(listing("A", "\"1\"", "B", "\"2\""));
+
+      repository.reload();
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+      verify(mockS3Client, times(2)).getObjectAsBytes(any(GetObjectRequest.class));
+
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+      verify(mockS3Client, times(3)).getObjectAsBytes(any(GetObjectRequest.class));
+      verify(mockS3Client, times(2))
+          .getObjectAsBytes(
+              argThat((GetObjectRequest req) -> req.key().equals("semantic-types/B.json")));
+
+      assertThat(repository.findAll()).hasSize(2);
+      S3CustomSemanticTypeRepository.SyncStats stats = repository.getSyncStats();
+      assertThat(stats.getSyncs()).isEqualTo(3);
+      assertThat(stats.getDownloads()).isEqualTo(3);
+      assertThat(stats.getDownloadsSkipped()).isEqualTo(3);
+      assertThat(stats.getTrackedObjects()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should drop types whose object is gone without downloading the rest")
+    void shouldDropTypesWhoseObjectIsGone() throws Exception {
+      stubTypeDownloads();
+      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+          .thenReturn(listing("A", "\"1\"", "B", "\"1\""))
+          .thenReturn(listing("A", "\"1\""));
+
+      repository.reload();
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+
+      assertThat(repository.existsBySemanticType("A")).isTrue();
+      assertThat(repository.existsBySemanticType("B")).isFalse();
+      verify(mockS3Client, times(2)).getObjectAsBytes(any(GetObjectRequest.class));
+      assertThat(repository.getSyncStats().getTrackedObjects()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not download objects the repository wrote itself")
+    void shouldNotDownloadOwnWrites() throws Exception {
+      setupObjectMapperMocks();
+      when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+          .thenReturn(PutObjectResponse.builder().eTag("\"9\"").build());
+      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+          .thenReturn(listing("CUSTOM.TEST", "\"9\""));
+
+      repository.save(sampleCustomType);
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+
+      verify(mockS3Client, never()).getObjectAsBytes(any(GetObjectRequest.class));
+      assertThat(repository.existsBySemanticType("CUSTOM.TEST")).isTrue();
+      assertThat(repository.getSyncStats().getDownloadsSkipped()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should change the catalog version only when a sync changes the cache")
+    void shouldVersionCatalogBySyncChanges() throws Exception {
+      stubTypeDownloads();
+      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+          .thenReturn(listing("A", "\"1\"", "B", "\"1\""))
+          .thenReturn(listing("A", "\"1\"", "B", "\"1\""))
+          .thenReturn(listing("A", "\"1\"", "B", "\"2\""))
+          .thenReturn(listing("A", "\"1\""));
+
+      long empty = repository.getCatalogVersion();
+      repository.reload();
+      long loaded = repository.getCatalogVersion();
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+      assertThat(repository.getCatalogVersion()).isEqualTo(loaded);
+
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+      long changed = repository.getCatalogVersion();
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+
+      assertThat(List.of(empty, loaded, changed, repository.getCatalogVersion()))
+          .doesNotHaveDuplicates();
+    }
+
+    @Test
+    @DisplayName("Should report a full sync only once every listed type has loaded")
+    void shouldReportFullSyncOnlyWhenEveryTypeLoaded() throws Exception {
+      stubTypeDownloads();
+      when(mockS3Client.getObjectAsBytes(
+              argThat((GetObjectRequest req) -> req.key().equals("semantic-types/B.json"))))
+          .thenThrow(S3Exception.builder().message("Service unavailable").build())
+          .thenReturn(
+              ResponseBytes.fromByteArray(
+                  GetObjectResponse.builder().build(), "B".getBytes(StandardCharsets.UTF_8)));
+      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+          .thenReturn(listing("A", "\"1\"", "B", "\"1\""))
+          .thenReturn(listing("A", "\"1\"", "B", "\"1\""))
+          .thenThrow(S3Exception.builder().message("Access denied").build());
+
+      repository.reload();
+      assertThat(repository.findAll()).hasSize(1);
+      assertThat(repository.isFullySynced()).isFalse();
+
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+      assertThat(repository.findAll()).hasSize(2);
+      assertThat(repository.isFullySynced()).isTrue();
+
+      // A failed listing keeps the cache but no longer vouches for it
+      ReflectionTestUtils.invokeMethod(repository, "syncFromS3", false);
+      assertThat(repository.findAll()).hasSize(2);
+      assertThat(repository.isFullySynced()).isFalse();
+    }
+
+    private ListObjectsV2Response listing(String... keysAndETags) {
+      List<S3Object> objects = new ArrayList<>();
+      for (int i = 0; i < keysAndETags.length; i += 2) {
+        objects.add(
+            S3Object.builder()
+                .key("semantic-types/" + keysAndETags[i] + ".json")
+                .eTag(keysAndETags[i + 1])
+                .build());
+      }
+      return ListObjectsV2Response.builder().contents(objects).build();
+    }
+
+    // Each object's content is its semantic type name
+    private void stubTypeDownloads() throws Exception {
+      when(mockS3Client.getObjectAsBytes(any(GetObjectRequest.class)))
+          .thenAnswer(
+              invocation -> {
+                String key = invocation.<GetObjectRequest>getArgument(0).key();
+                String name =
+                    key.substring("semantic-types/".length(), key.length() - ".json".length());
+                return ResponseBytes.fromByteArray(
+                    GetObjectResponse.builder().build(), name.getBytes(StandardCharsets.UTF_8));
+              });
+      when(objectMapper.readValue(any(byte[].class), eq(CustomSemanticType.class)))
+          .thenAnswer(
+              invocation ->
+                  CustomSemanticType.builder()
+                      .semanticType(
+                          new String(invocation.<byte[]>getArgument(0), StandardCharsets.UTF_8))
+                      .priority(2000)
+                      .build());
+    }
+  }
+
+  @Nested
+  @DisplayName("Catalog Tests")
+  class CatalogTests {
+
+    private InMemoryS3Client s3;
+
+    @BeforeEach
+    void setupCatalogTests() {
+      s3 = new InMemoryS3Client();
+    }
+
+    @Test
+    @DisplayName("Should cold start from the catalog without downloading each type")
+    void shouldColdStartFromCatalog() {
+      S3CustomSemanticTypeRepository writer = repositoryOverInMemoryS3();
+      for (int i = 0; i < 200; i++) {
+        writer.save(CustomSemanticType.builder().semanticType("TYPE." + i).priority(2000).build());
+      }
+      ReflectionTestUtils.invokeMethod(writer, "compactCatalog");
+      s3.resetRequestCounts();
+
+      S3CustomSemanticTypeRepository reader = repositoryOverInMemoryS3();
+      ReflectionTestUtils.invokeMethod(reader, "loadInitialData");
+
+      assertThat(reader.findAll()).hasSize(200);
+      assertThat(s3.requestCount("GetObject")).isEqualTo(1);
+      assertThat(reader.getSyncStats().getDownloadsSkipped()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("Should download types the catalog does not know about")
+    void shouldDownloadTypesMissingFromCatalog() throws Exception {
+      S3CustomSemanticTypeRepository writer = repositoryOverInMemoryS3();
+      writer.save(sampleCustomType);
+      ReflectionTestUtils.invokeMethod(writer, "compactCatalog");
+      CustomSemanticType outOfBand =
+          CustomSemanticType.builder().semanticType("OUT.OF.BAND").priority(2100).build();
+      s3.putBytes(
+          "semantic-types/OUT.OF.BAND.json", new ObjectMapper().writeValueAsBytes(outOfBand));
+      s3.resetRequestCounts();
+
+      S3CustomSemanticTypeRepository reader = repositoryOverInMemoryS3();
+      ReflectionTestUtils.invokeMethod(reader, "loadInitialData");
+
+      assertThat(reader.existsBySemanticType("CUSTOM.TEST")).isTrue();
+      assertThat(reader.existsBySemanticType("OUT.OF.BAND")).isTrue();
+      assertThat(s3.requestCount("GetObject")).isEqualTo(2);
+    }
+
+    private S3CustomSemanticTypeRepository repositoryOverInMemoryS3() {
+      return repositoryOver(s3);
+    }
+  }
+
+  @Nested
+  @DisplayName("Write-behind Tests")
+  class WriteBehindTests {
+
+    private InMemoryS3Client s3;
+    private S3CustomSemanticTypeRepository writer;
+
+    @BeforeEach
+    void setupWriteBehindTests() {
+      s3 = new InMemoryS3Client();
+      writer = repositoryOver(s3);
+      ReflectionTestUtils.setField(writer, "asyncPersist", true);
+      ReflectionTestUtils.setField(writer, "scheduler", mockScheduler);
+      ReflectionTestUtils.setField(writer, "writeBehindMaxBatch", 100);
+      ReflectionTestUtils.setField(writer, "writeBehindFlushIntervalMs", 1000L);
+    }
+
+    @Test
+    @DisplayName("Should coalesce repeated writes of a type into one PUT per flush")
+    void shouldCoalesceRepeatedWrites() {
+      for (int i = 0; i < 5; i++) {
+        writer.save(type("CUSTOM.A", "Revision " + i));
+      }
+      writer.update("CUSTOM.A", type("CUSTOM.A", "Final"));
+      writer.save(type("CUSTOM.B", "Other"));
+
+      verify(mockScheduler).schedule(any(Runnable.class), eq(1000L), eq(TimeUnit.MILLISECONDS));
+      assertThat(writer.getWriteBehindStats().getPendingWrites()).isEqualTo(2);
+      assertThat(s3.requestCount("PutObject")).isZero();
+
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites");
+
+      assertThat(s3.keys())
+          .filteredOn(key -> key.startsWith("semantic-types/"))
+          .containsExactly("semantic-types/CUSTOM.A.json", "semantic-types/CUSTOM.B.json");
+      assertThat(new String(s3.getBytes("semantic-types/CUSTOM.A.json"), StandardCharsets.UTF_8))
+          .contains("Final");
+      // Two type objects plus one catalog delta for the whole flush
+      assertThat(s3.requestCount("PutObject")).isEqualTo(3);
+      S3CustomSemanticTypeRepository.WriteBehindStats stats = writer.getWriteBehindStats();
+      assertThat(stats.getPendingWrites()).isZero();
+      assertThat(stats.getCoalescedWrites()).isEqualTo(5);
+      assertThat(stats.getFlushes()).isEqualTo(1);
+      assertThat(stats.getFlushNanos()).isPositive();
+    }
+
+    @Test
+    @DisplayName("Should send queued deletions in one DeleteObjects request")
+    void shouldBatchDeletions() {
+      ReflectionTestUtils.setField(writer, "asyncPersist", false);
+      for (int i = 0; i < 3; i++) {
+        writer.save(type("CUSTOM." + i, "Stored"));
+      }
+      ReflectionTestUtils.setField(writer, "asyncPersist", true);
+      s3.resetRequestCounts();
+
+      for (int i = 0; i < 3; i++) {
+        writer.deleteBySemanticType("CUSTOM." + i);
+      }
+      writer.save(type("CUSTOM.TEMP", "Short-lived"));
+      writer.deleteBySemanticType("CUSTOM.TEMP");
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites");
+
+      assertThat(s3.keys()).noneMatch(key -> key.startsWith("semantic-types/"));
+      assertThat(s3.requestCount("DeleteObjects")).isEqualTo(1);
+      assertThat(s3.requestCount("DeleteObject")).isZero();
+      // Only the catalog delta; the type saved and deleted before the flush is never written
+      assertThat(s3.requestCount("PutObject")).isEqualTo(1);
+      assertThat(writer.getSyncStats().getTrackedObjects()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should flush right away once a full batch is queued")
+    void shouldFlushFullBatch() {
+      ReflectionTestUtils.setField(writer, "writeBehindMaxBatch", 3);
+
+      writer.save(type("CUSTOM.1", "One"));
+      writer.save(type("CUSTOM.2", "Two"));
+      verify(mockScheduler, never()).execute(any(Runnable.class));
+      writer.save(type("CUSTOM.3", "Three"));
+      writer.save(type("CUSTOM.3", "Three again"));
+
+      verify(mockScheduler).execute(any(Runnable.class));
+    }
+
+    @Test
+    @DisplayName("Should flush queued writes on shutdown")
+    void shouldFlushOnShutdown() {
+      writer.save(type("CUSTOM.A", "Pending"));
+
+      writer.cleanup();
+
+      assertThat(s3.keys()).contains("semantic-types/CUSTOM.A.json");
+      verify(mockScheduler).shutdown();
+    }
+
+    @Test
+    @DisplayName("Should queue a failed PUT again and retry it once its backoff has passed")
+    void shouldRetryFailedWrites() {
+      ReflectionTestUtils.setField(writer, "writeBehindRetryBackoffMs", 60_000L);
+      ReflectionTestUtils.setField(writer, "writeBehindMaxRetryBackoffMs", 60_000L);
+      s3.failNext("PutObject", new RuntimeException("S3 unavailable"));
+      writer.save(type("CUSTOM.A", "Pending"));
+
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites");
+
+      assertThat(s3.keys()).doesNotContain("semantic-types/CUSTOM.A.json");
+      S3CustomSemanticTypeRepository.WriteBehindStats stats = writer.getWriteBehindStats();
+      assertThat(stats.getPendingWrites()).isEqualTo(1);
+      assertThat(stats.getRetryingWrites()).isEqualTo(1);
+      assertThat(stats.getFailedWrites()).isEqualTo(1);
+      verify(mockScheduler)
+          .schedule(
+              any(Runnable.class),
+              ArgumentMatchers.longThat(delay -> delay > 1000L),
+              eq(TimeUnit.MILLISECONDS));
+
+      // Still backing off
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites");
+      assertThat(s3.keys()).doesNotContain("semantic-types/CUSTOM.A.json");
+
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites", true);
+      assertThat(s3.keys()).contains("semantic-types/CUSTOM.A.json");
+      assertThat(writer.getWriteBehindStats().getRetryingWrites()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should drop a failed write that a newer write of the type replaced")
+    void shouldPreferNewerWriteOverRetry() {
+      s3.failNext("PutObject", new RuntimeException("S3 unavailable"));
+      writer.save(type("CUSTOM.A", "Stale"));
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites");
+
+      writer.save(type("CUSTOM.A", "Newer"));
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites");
+
+      assertThat(new String(s3.getBytes("semantic-types/CUSTOM.A.json"), StandardCharsets.UTF_8))
+          .contains("Newer");
+      assertThat(writer.getWriteBehindStats().getPendingWrites()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should queue failed deletions again")
+    void shouldRetryFailedDeletions() {
+      ReflectionTestUtils.setField(writer, "asyncPersist", false);
+      writer.save(type("CUSTOM.A", "Stored"));
+      ReflectionTestUtils.setField(writer, "asyncPersist", true);
+      s3.failNext("DeleteObjects", new RuntimeException("S3 unavailable"));
+
+      writer.deleteBySemanticType("CUSTOM.A");
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites");
+      assertThat(s3.keys()).contains("semantic-types/CUSTOM.A.json");
+      assertThat(writer.getWriteBehindStats().getRetryingWrites()).isEqualTo(1);
+
+      ReflectionTestUtils.invokeMethod(writer, "flushWrites", true);
+      assertThat(s3.keys()).doesNotContain("semantic-types/CUSTOM.A.json");
+    }
+
+    @Test
+    @DisplayName("Should write out queued writes before replacing the scheduler on reconnect")
+    void shouldDrainWritesBeforeReplacingScheduler() throws Exception {
+      writer.save(type("CUSTOM.A", "Pending"));
+
+      ReflectionTestUtils.invokeMethod(writer, "retireScheduler");
+
+      assertThat(s3.keys()).contains("semantic-types/CUSTOM.A.json");
+      verify(mockScheduler).shutdown();
+      verify(mockScheduler, never()).shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should keep a write queued while the scheduler rejects work")
+    void shouldQueueWritesWhileSchedulerIsReplaced() {
+      when(mockScheduler.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class)))
+          .thenThrow(new RejectedExecutionException("Shut down"));
+
+      assertThatCode(() -> writer.save(type("CUSTOM.A", "Pending"))).doesNotThrowAnyException();
+      assertThat(writer.getWriteBehindStats().getPendingWrites()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not let a sync overwrite a type with a queued write")
+    void shouldKeepQueuedWriteOverRemoteChange() throws Exception {
+      ReflectionTestUtils.setField(writer, "asyncPersist", false);
+      writer.save(type("CUSTOM.A", "Original"));
+      ReflectionTestUtils.setField(writer, "asyncPersist", true);
+      s3.putBytes(
+          "semantic-types/CUSTOM.A.json",
+          new ObjectMapper().writeValueAsBytes(type("CUSTOM.A", "Remote")));
+
+      writer.save(type("CUSTOM.A", "Local"));
+      ReflectionTestUtils.invokeMethod(writer, "syncFromS3", false);
+
+      assertThat(writer.findBySemanticType("CUSTOM.A").orElseThrow().getDescription())
+          .isEqualTo("Local");
+    }
+
+    private CustomSemanticType type(String semanticType, String description) {
+      return CustomSemanticType.builder()
+          .semanticType(semanticType)
+          .description(description)
+          .priority(2000)
+          .build();
+    }
+  }
+
+  private S3CustomSemanticTypeRepository repositoryOver(InMemoryS3Client s3) {
+    ObjectMapper mapper = new ObjectMapper();
+    S3CustomSemanticTypeRepository repo =
+        new S3CustomSemanticTypeRepository(awsCredentialsService, mapper);
+    ReflectionTestUtils.setField(repo, "bucketName", "test-bucket");
+    ReflectionTestUtils.setField(repo, "initialized", true);
+    ReflectionTestUtils.setField(repo, "s3Client", s3);
+    ReflectionTestUtils.setField(
+        repo,
+        "catalog",
+        new S3SemanticTypeCatalog(
+            s3, new S3BulkFetcher(s3, null, 1, 1, Duration.ZERO), mapper, "test-bucket"));
+    return repo;
   }
 
   // Helper methods
@@ -0,0 +1,117 @@
+package com.nl2fta.classifier.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
+
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@DisplayName("S3SemanticTypeCatalog Tests")
+class S3SemanticTypeCatalogTest {
+
+  private static final String BUCKET = "test-bucket";
+
+  private InMemoryS3Client s3;
+  private S3SemanticTypeCatalog catalog;
+
+  @BeforeEach
+  void setUp() {
+    s3 = new InMemoryS3Client();
+    catalog = newCatalog();
+  }
+
+  @Test
+  @DisplayName("Should load the snapshot and later deltas in a constant number of requests")
+  void shouldLoadSnapshotAndDeltas() {
+    for (int i = 0; i < 500; i++) {
+      catalog.recordPut(key("TYPE." + i), "\"etag-" + i + "\"", type("TYPE." + i));
+    }
+    assertThat(catalog.compact(Map::of)).isTrue();
+    catalog.recordPut(key("TYPE.NEW"), "\"etag-new\"", type("TYPE.NEW"));
+    catalog.recordDelete(key("TYPE.7"));
+    s3.resetRequestCounts();
+
+    Map<String, S3SemanticTypeCatalog.Entry> entries = newCatalog().load();
+
+    assertThat(entries).hasSize(500).containsKey(key("TYPE.NEW")).doesNotContainKey(key("TYPE.7"));
+    assertThat(entries.get(key("TYPE.42")).eTag()).isEqualTo("\"etag-42\"");
+    assertThat(entries.get(key("TYPE.42")).type().getSemanticType()).isEqualTo("TYPE.42");
+    assertThat(s3.requestCount("GetObject")).isEqualTo(3);
+    assertThat(s3.requestCount("ListObjectsV2")).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should fold deltas into the next generation and delete them")
+  void shouldFoldDeltasAndDeleteThem() {
+    catalog.recordPut(key("A"), "\"1\"", type("A"));
+    assertThat(catalog.compact(Map::of)).isTrue();
+    catalog.recordPut(key("B"), "\"1\"", type("B"));
+    catalog.recordPut(key("A"), "\"2\"", type("A"));
+
+    assertThat(catalog.compact(Map::of)).isTrue();
+    assertThat(catalog.compact(Map::of)).isFalse();
+
+    assertThat(s3.keys()).containsExactly(S3SemanticTypeCatalog.SNAPSHOT_KEY);
+    Map<String, S3SemanticTypeCatalog.Entry> entries = catalog.load();
+    assertThat(entries).containsOnlyKeys(key("A"), key("B"));
+    assertThat(entries.get(key("A")).eTag()).isEqualTo("\"2\"");
+  }
+
+  @Test
+  @DisplayName("Should start the first snapshot from the seed")
+  void shouldSeedFirstSnapshot() {
+    catalog.recordPut(key("B"), "\"1\"", type("B"));
+
+    catalog.compact(
+        () -> Map.of(key("A"), new S3SemanticTypeCatalog.Entry(key("A"), "\"1\"", type("A"))));
+
+    assertThat(newCatalog().load()).containsOnlyKeys(key("A"), key("B"));
+  }
+
+  @Test
+  @DisplayName("Should leave the deltas alone when another writer replaced the snapshot first")
+  void shouldYieldToConcurrentCompaction() {
+    catalog.recordPut(key("A"), "\"1\"", type("A"));
+    s3.failNext(
+        "PutObject", S3Exception.builder().statusCode(412).message("Precondition Failed").build());
+
+    assertThat(catalog.compact(Map::of)).isFalse();
+
+    assertThat(s3.keys()).noneMatch(key -> key.equals(S3SemanticTypeCatalog.SNAPSHOT_KEY));
+    assertThat(s3.keys()).anyMatch(key -> key.startsWith(S3SemanticTypeCatalog.DELTA_PREFIX));
+  }
+
+  @Test
+  @DisplayName("Should replace an unreadable snapshot on the next compaction")
+  void shouldReplaceUnreadableSnapshot() {
+    s3.putBytes(S3SemanticTypeCatalog.SNAPSHOT_KEY, "not gzip".getBytes(StandardCharsets.UTF_8));
+    catalog.recordPut(key("A"), "\"1\"", type("A"));
+
+    assertThat(catalog.load()).containsOnlyKeys(key("A"));
+    assertThat(catalog.compact(Map::of)).isTrue();
+    assertThat(newCatalog().load()).containsOnlyKeys(key("A"));
+  }
+
+  private S3SemanticTypeCatalog newCatalog() {
+    return new S3SemanticTypeCatalog(
+        s3, new S3BulkFetcher(s3, null, 1, 1, Duration.ZERO), new ObjectMapper(), BUCKET);
+  }
+
+  private static String key(String semanticType) {
+    return "semantic-types/" + semanticType + ".json";
+  }
+
+  private static CustomSemanticType type(String semanticType) {
+    return CustomSemanticType.builder().semanticType(semanticType).priority(2000).build();
+  }
+}
@@ -0,0 +1,97 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("AdaptiveRateLimiter Tests")
+class AdaptiveRateLimiterTest {
+
+  private static final long SECOND = 1_000_000_000L;
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  @DisplayName("Should allow a burst, then space requests at the configured rate")
+  void shouldSpaceRequestsAfterBurst() {
+    AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10, 2, now::get);
+
+    assertThat(limiter.reserve()).isZero();
+    assertThat(limiter.reserve()).isZero();
+    assertThat(limiter.reserve()).isEqualTo(SECOND / 10);
+    assertThat(limiter.reserve()).isEqualTo(2 * SECOND / 10);
+
+    now.addAndGet(SECOND);
+    // 10 tokens accrued, 2 owed: back to the full burst
+    assertThat(limiter.reserve()).isZero();
+    assertThat(limiter.reserve()).isZero();
+    assertThat(limiter.reserve()).isPositive();
+  }
+
+  @Test
+  @DisplayName("Should halve the rate when throttled and recover it on success")
+  void shouldAdaptRateToThrottling() {
+    AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(100, 1, now::get);
+
+    limiter.onThrottled();
+    limiter.reserve();
+    limiter.onThrottled();
+    assertThat(limiter.getRate()).isEqualTo(25);
+
+    for (int i = 0; i < 10; i++) {
+      limiter.reserve();
+      limiter.onThrottled();
+    }
+    assertThat(limiter.getRate()).isEqualTo(100.0 / 32);
+
+    for (int i = 0; i < 100; i++) {
+      limiter.onSuccess();
+    }
+    assertThat(limiter.getRate()).isEqualTo(100);
+  }
+
+  @Test
+  @DisplayName("Should cut the rate once for throttles of requests already in flight")
+  void shouldCutOncePerBurst() {
+    AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(80, 4, now::get);
+    for (int i = 0; i < 4; i++) {
+      limiter.reserve();
+    }
+
+    for (int i = 0; i < 4; i++) {
+      limiter.onThrottled();
+    }
+    assertThat(limiter.getRate()).isEqualTo(40);
+
+    for (int i = 0; i < 4; i++) {
+      limiter.reserve();
+    }
+    limiter.onThrottled();
+    assertThat(limiter.getRate()).isEqualTo(20);
+  }
+
+  @Test
+  @DisplayName("Should space requests at the reduced rate")
+  void shouldUseReducedRate() {
+    AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(10, 1, now::get);
+    limiter.onThrottled();
+
+    assertThat(limiter.reserve()).isZero();
+    assertThat(limiter.reserve()).isEqualTo(SECOND / 5);
+  }
+
+  @Test
+  @DisplayName("Should reject invalid settings")
+  void shouldRejectInvalidSettings() {
+    assertThatThrownBy(() -> new AdaptiveRateLimiter(0, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AdaptiveRateLimiter(Double.NaN, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new AdaptiveRateLimiter(5, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
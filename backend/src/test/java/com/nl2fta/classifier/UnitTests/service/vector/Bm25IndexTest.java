@@ -0,0 +1,71 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Bm25Index Tests")
+class Bm25IndexTest {
+
+  private Bm25Index index;
+
+  @BeforeEach
+  void setUp() {
+    index = new Bm25Index();
+    index.put("EMAIL", Map.of("email", 3f, "address", 2f, "mail", 1f));
+    index.put("ADDRESS.STREET", Map.of("street", 3f, "address", 3f, "road", 1f));
+    index.put("PHONE", Map.of("phone", 3f, "number", 2f, "telephone", 1f));
+  }
+
+  @Test
+  @DisplayName("Should rank documents matching the rarer terms first")
+  void shouldRankByBm25() {
+    List<Bm25Index.Hit> hits = index.search(List.of("email", "address"), 10);
+
+    assertThat(hits).extracting(Bm25Index.Hit::id).containsExactly("EMAIL", "ADDRESS.STREET");
+    assertThat(hits.get(0).matchedTerms()).isEqualTo(2);
+    assertThat(hits.get(0).coverage()).isEqualTo(1.0);
+    assertThat(hits.get(1).coverage()).isBetween(0.0, 0.5);
+  }
+
+  @Test
+  @DisplayName("Should ignore query terms the index has never seen when computing coverage")
+  void shouldIgnoreUnknownTermsInCoverage() {
+    List<Bm25Index.Hit> hits = index.search(List.of("phone", "mobile", "phone"), 10);
+
+    assertThat(hits)
+        .singleElement()
+        .satisfies(
+            hit -> {
+              assertThat(hit.id()).isEqualTo("PHONE");
+              assertThat(hit.coverage()).isEqualTo(1.0);
+              assertThat(hit.matchedTerms()).isEqualTo(1);
+            });
+  }
+
+  @Test
+  @DisplayName("Should replace and remove documents")
+  void shouldReplaceAndRemoveDocuments() {
+    index.put("PHONE", Map.of("mobile", 1f));
+    assertThat(index.search(List.of("phone"), 10)).isEmpty();
+    assertThat(index.search(List.of("mobile"), 10))
+        .extracting(Bm25Index.Hit::id)
+        .containsExactly("PHONE");
+
+    index.remove("PHONE");
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(index.search(List.of("mobile"), 10)).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should return at most the requested number of hits")
+  void shouldLimitHits() {
+    assertThat(index.search(List.of("address", "phone"), 1)).hasSize(1);
+    assertThat(index.search(List.of("address"), 0)).isEmpty();
+  }
+}
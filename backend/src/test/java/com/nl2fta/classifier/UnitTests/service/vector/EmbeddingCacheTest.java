@@ -0,0 +1,194 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@DisplayName("EmbeddingCache Tests")
+class EmbeddingCacheTest {
+
+  private static final String MODEL = "amazon.titan-embed-text-v2:0";
+
+  @Test
+  @DisplayName("Should key by model, dimension and normalized text")
+  void shouldKeyByNormalizedText() {
+    EmbeddingCache.Key key = EmbeddingCache.Key.of(MODEL, 3, "Semantic Type: EMAIL\nDescription");
+
+    assertThat(EmbeddingCache.Key.of(MODEL, 3, "  Semantic Type:  EMAIL Description\t"))
+        .isEqualTo(key);
+    assertThat(EmbeddingCache.Key.of(MODEL, 3, "Caf\u00e9"))
+        .isEqualTo(EmbeddingCache.Key.of(MODEL, 3, "Cafe\u0301"));
+    assertThat(EmbeddingCache.Key.of(MODEL, 3, "semantic type: email description"))
+        .isNotEqualTo(key);
+    assertThat(EmbeddingCache.Key.of(MODEL, 256, "Semantic Type: EMAIL\nDescription"))
+        .isNotEqualTo(key);
+    assertThat(EmbeddingCache.Key.of("other-model", 3, "Semantic Type: EMAIL\nDescription"))
+        .isNotEqualTo(key);
+  }
+
+  @Test
+  @DisplayName("Should evict the least recently used embedding and count hits and misses")
+  void shouldEvictLeastRecentlyUsed() {
+    EmbeddingCache cache = new EmbeddingCache(2, null);
+    EmbeddingCache.Key a = EmbeddingCache.Key.of(MODEL, 2, "a");
+    EmbeddingCache.Key b = EmbeddingCache.Key.of(MODEL, 2, "b");
+    EmbeddingCache.Key c = EmbeddingCache.Key.of(MODEL, 2, "c");
+
+    cache.put(a, new float[] {1f, 0f});
+    cache.put(b, new float[] {0f, 1f});
+    assertThat(cache.get(a)).containsExactly(1f, 0f);
+    cache.put(c, new float[] {1f, 1f});
+
+    assertThat(cache.get(b)).isNull();
+    assertThat(cache.get(a)).isNotNull();
+    assertThat(cache.get(c)).isNotNull();
+    EmbeddingCache.Stats stats = cache.getStats();
+    assertThat(stats.getMemoryEntries()).isEqualTo(2);
+    assertThat(stats.getEvictions()).isEqualTo(1);
+    assertThat(stats.getHits()).isEqualTo(3);
+    assertThat(stats.getMisses()).isEqualTo(1);
+    assertThat(stats.getHitRate()).isEqualTo(0.75);
+  }
+
+  @Test
+  @DisplayName("Should hand out copies so callers cannot change cached embeddings")
+  void shouldCopyEmbeddings() {
+    EmbeddingCache cache = new EmbeddingCache(4, null);
+    EmbeddingCache.Key key = EmbeddingCache.Key.of(MODEL, 2, "a");
+    float[] embedding = {1f, 2f};
+
+    cache.put(key, embedding);
+    embedding[0] = 9f;
+    cache.get(key)[1] = 9f;
+
+    assertThat(cache.get(key)).containsExactly(1f, 2f);
+  }
+
+  @Test
+  @DisplayName("Should keep embeddings on disk across instances and promote disk hits to memory")
+  void shouldPersistToDisk(@TempDir Path dir) {
+    EmbeddingCache.Key key = EmbeddingCache.Key.of(MODEL, 3, "email address");
+    try (EmbeddingCache cache = new EmbeddingCache(8, dir)) {
+      cache.put(key, new float[] {0.6f, 0.8f, 0f});
+      cache.put(EmbeddingCache.Key.of(MODEL, 3, "phone"), new float[] {0f, 0f, 1f});
+    }
+
+    try (EmbeddingCache reopened = new EmbeddingCache(8, dir)) {
+      assertThat(reopened.getStats().getDiskEntries()).isEqualTo(2);
+      assertThat(reopened.get(key)).containsExactly(0.6f, 0.8f, 0f);
+      assertThat(reopened.get(key)).containsExactly(0.6f, 0.8f, 0f);
+      assertThat(reopened.get(EmbeddingCache.Key.of(MODEL, 3, "zip code"))).isNull();
+
+      EmbeddingCache.Stats stats = reopened.getStats();
+      assertThat(stats.getDiskHits()).isEqualTo(1);
+      assertThat(stats.getHits()).isEqualTo(1);
+      assertThat(stats.getMisses()).isEqualTo(1);
+      assertThat(stats.getMemoryEntries()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  @DisplayName("Should drop a torn record at the end of the disk file and keep appending")
+  void shouldRecoverFromTornWrite(@TempDir Path dir) throws IOException {
+    EmbeddingCache.Key first = EmbeddingCache.Key.of(MODEL, 2, "first");
+    EmbeddingCache.Key second = EmbeddingCache.Key.of(MODEL, 2, "second");
+    try (EmbeddingCache cache = new EmbeddingCache(0, dir)) {
+      cache.put(first, new float[] {1f, 0f});
+      cache.put(second, new float[] {0f, 1f});
+    }
+    Path file = dir.resolve(EmbeddingCache.FILE_NAME);
+    long intact = Files.size(file);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+    try (EmbeddingCache cache = new EmbeddingCache(0, dir)) {
+      assertThat(cache.get(first)).containsExactly(1f, 0f);
+      assertThat(cache.get(second)).isNull();
+      cache.put(second, new float[] {0f, 1f});
+    }
+    Files.write(file, new byte[] {0, 0, 0}, StandardOpenOption.APPEND);
+
+    try (EmbeddingCache cache = new EmbeddingCache(0, dir)) {
+      assertThat(cache.getStats().getDiskEntries()).isEqualTo(2);
+      assertThat(cache.get(second)).containsExactly(0f, 1f);
+    }
+    assertThat(Files.size(file)).isEqualTo(intact);
+  }
+
+  @Test
+  @DisplayName("Should keep only the newest embeddings on disk and compact the file")
+  void shouldBoundAndCompactDiskTier(@TempDir Path dir) throws IOException {
+    Path single = dir.resolve("single");
+    try (EmbeddingCache cache = new EmbeddingCache(0, single)) {
+      cache.put(EmbeddingCache.Key.of(MODEL, 2, "text"), new float[] {0f, 1f});
+    }
+    long record = Files.size(single.resolve(EmbeddingCache.FILE_NAME));
+    Path file = dir.resolve(EmbeddingCache.FILE_NAME);
+
+    try (EmbeddingCache cache = new EmbeddingCache(0, dir, 4)) {
+      for (int i = 0; i < 12; i++) {
+        cache.put(EmbeddingCache.Key.of(MODEL, 2, "text " + i), new float[] {i, 1f});
+      }
+      assertThat(cache.getStats().getDiskEntries()).isEqualTo(4);
+      assertThat(cache.get(EmbeddingCache.Key.of(MODEL, 2, "text 7"))).isNull();
+      assertThat(cache.get(EmbeddingCache.Key.of(MODEL, 2, "text 8"))).containsExactly(8f, 1f);
+      // Compacted after the 9th put, when 5 evicted records outweighed 4 live ones
+      assertThat(Files.size(file)).isEqualTo(7 * record);
+    }
+
+    try (EmbeddingCache reopened = new EmbeddingCache(0, dir, 2)) {
+      assertThat(reopened.getStats().getDiskEntries()).isEqualTo(2);
+      assertThat(Files.size(file)).isEqualTo(2 * record);
+      assertThat(reopened.get(EmbeddingCache.Key.of(MODEL, 2, "text 9"))).isNull();
+      assertThat(reopened.get(EmbeddingCache.Key.of(MODEL, 2, "text 11"))).containsExactly(11f, 1f);
+      reopened.put(EmbeddingCache.Key.of(MODEL, 2, "text 12"), new float[] {12f, 1f});
+      assertThat(reopened.get(EmbeddingCache.Key.of(MODEL, 2, "text 12"))).containsExactly(12f, 1f);
+      assertThat(reopened.get(EmbeddingCache.Key.of(MODEL, 2, "text 10"))).isNull();
+    }
+  }
+
+  @Test
+  @DisplayName("Should answer from memory while the disk tier is busy")
+  void shouldNotWaitForDiskOnMemoryHit(@TempDir Path dir) throws Exception {
+    try (EmbeddingCache cache = new EmbeddingCache(8, dir)) {
+      EmbeddingCache.Key key = EmbeddingCache.Key.of(MODEL, 1, "hot");
+      cache.put(key, new float[] {1f});
+      Object disk = ReflectionTestUtils.getField(cache, "disk");
+      ReadWriteLock lock = (ReadWriteLock) ReflectionTestUtils.getField(disk, "lock");
+
+      lock.writeLock().lock();
+      try {
+        CompletableFuture<float[]> hit = CompletableFuture.supplyAsync(() -> cache.get(key));
+        assertThat(hit.get(5, TimeUnit.SECONDS)).containsExactly(1f);
+        assertThat(cache.getStats().getHits()).isEqualTo(1);
+      } finally {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Should serve from disk alone when the memory tier is disabled")
+  void shouldWorkWithoutMemoryTier(@TempDir Path dir) {
+    try (EmbeddingCache cache = new EmbeddingCache(0, dir)) {
+      EmbeddingCache.Key key = EmbeddingCache.Key.of(MODEL, 1, "a");
+      cache.put(key, new float[] {1f});
+
+      assertThat(cache.get(key)).containsExactly(1f);
+      assertThat(cache.getStats().getMemoryEntries()).isZero();
+      assertThat(cache.getStats().getDiskHits()).isEqualTo(1);
+    }
+  }
+}
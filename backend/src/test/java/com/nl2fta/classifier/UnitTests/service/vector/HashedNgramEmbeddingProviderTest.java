@@ -0,0 +1,65 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("HashedNgramEmbeddingProvider Tests")
+class HashedNgramEmbeddingProviderTest {
+
+  private final HashedNgramEmbeddingProvider provider = new HashedNgramEmbeddingProvider(256);
+
+  @Test
+  @DisplayName("Should return the same unit-length embedding for the same text")
+  void shouldBeDeterministic() {
+    float[] embedding = provider.embed("Semantic Type: EMAIL\nDescription: Email address");
+
+    assertThat(embedding).hasSize(256);
+    assertThat(dot(embedding, embedding)).isCloseTo(1.0, within(1e-5));
+    assertThat(
+            new HashedNgramEmbeddingProvider(256)
+                .embed("Semantic Type: EMAIL\nDescription: Email address"))
+        .containsExactly(embedding);
+  }
+
+  @Test
+  @DisplayName("Should ignore case and punctuation")
+  void shouldNormalizeText() {
+    assertThat(provider.embed("First-Name, of a PERSON"))
+        .containsExactly(provider.embed("first name of a person"));
+  }
+
+  @Test
+  @DisplayName("Should score texts that share words and word fragments higher")
+  void shouldScoreSimilarTextsHigher() {
+    float[] email = provider.embed("Description: Email address\nExamples: john@example.com");
+    float[] emails = provider.embed("Description: Email addresses of customers");
+    float[] phone = provider.embed("Description: Telephone number\nExamples: +1 555 0100");
+
+    assertThat(dot(email, emails)).isGreaterThan(dot(email, phone));
+    assertThat(dot(emails, email)).isGreaterThan(dot(emails, phone));
+  }
+
+  @Test
+  @DisplayName("Should return zeros for text without words")
+  void shouldHandleTextWithoutWords() {
+    assertThat(provider.embed("")).containsOnly(0f);
+    assertThat(provider.embed(" -- ")).containsOnly(0f);
+  }
+
+  @Test
+  @DisplayName("Should name the model by its dimension and reject dimensions below 1")
+  void shouldDescribeModel() {
+    assertThat(provider.getModelId()).isEqualTo(HashedNgramEmbeddingProvider.MODEL_ID + "-256");
+    assertThat(provider.getDimensions()).isEqualTo(256);
+    assertThatThrownBy(() -> new HashedNgramEmbeddingProvider(0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static double dot(float[] a, float[] b) {
+    return VectorMath.dot(a, 0, b, 0, a.length);
+  }
+}
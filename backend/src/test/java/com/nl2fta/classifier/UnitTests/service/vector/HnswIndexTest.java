@@ -0,0 +1,238 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("HnswIndex Tests")
+class HnswIndexTest {
+
+  private static final int DIMENSIONS = 32;
+  private static final int SIZE = 2_000;
+
+  private List<float[]> vectors;
+  private HnswIndex<String> index;
+
+  @BeforeEach
+  void setUp() {
+    Random random = new Random(1);
+    vectors = new ArrayList<>();
+    index = new HnswIndex<>(DIMENSIONS, 12, 100, 64, 7L);
+    for (int i = 0; i < SIZE; i++) {
+      float[] vector = randomUnitVector(random);
+      vectors.add(vector);
+      index.add("TYPE_" + i, vector, "payload-" + i);
+    }
+  }
+
+  @Test
+  @DisplayName("Should find nearly the same top-10 as exact search")
+  void shouldApproximateExactSearch() {
+    Random random = new Random(2);
+    int hits = 0;
+    int queries = 50;
+    for (int q = 0; q < queries; q++) {
+      float[] query = randomUnitVector(random);
+      Set<String> exact = exactTop(query, 10);
+      for (HnswIndex.Hit<String> hit : index.search(query, 10)) {
+        if (exact.contains(hit.key())) {
+          hits++;
+        }
+      }
+    }
+    assertThat(hits / (queries * 10.0)).isGreaterThanOrEqualTo(0.9);
+  }
+
+  @Test
+  @DisplayName("Should return hits best first with payload and cosine score")
+  void shouldReturnSortedHits() {
+    List<HnswIndex.Hit<String>> hits = index.search(vectors.get(5), 5);
+
+    assertThat(hits).hasSize(5);
+    assertThat(hits.get(0).key()).isEqualTo("TYPE_5");
+    assertThat(hits.get(0).item()).isEqualTo("payload-5");
+    assertThat(hits.get(0).score()).isGreaterThan(0.999f);
+    for (int i = 1; i < hits.size(); i++) {
+      assertThat(hits.get(i).score()).isLessThanOrEqualTo(hits.get(i - 1).score());
+    }
+  }
+
+  @Test
+  @DisplayName("Should exclude deleted entries and replace entries re-added with the same key")
+  void shouldDeleteAndReplace() {
+    assertThat(index.remove("TYPE_5")).isTrue();
+    assertThat(index.remove("TYPE_5")).isFalse();
+    assertThat(index.search(vectors.get(5), 5))
+        .extracting(HnswIndex.Hit::key)
+        .doesNotContain("TYPE_5");
+
+    index.add("TYPE_6", vectors.get(7), "moved");
+    List<HnswIndex.Hit<String>> hits = index.search(vectors.get(7), 2);
+    assertThat(hits).extracting(HnswIndex.Hit::key).containsExactlyInAnyOrder("TYPE_6", "TYPE_7");
+    assertThat(index.size()).isEqualTo(SIZE - 1);
+    assertThat(index.contains("TYPE_5")).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should rebuild without tombstones once most entries are deleted")
+  void shouldCompactAfterMassDeletion() {
+    for (int i = 0; i < SIZE - 10; i++) {
+      index.remove("TYPE_" + i);
+    }
+
+    assertThat(index.size()).isEqualTo(10);
+    assertThat(index.search(vectors.get(SIZE - 1), 10))
+        .extracting(HnswIndex.Hit::key)
+        .hasSize(10)
+        .allMatch(key -> Integer.parseInt(key.substring(5)) >= SIZE - 10);
+  }
+
+  @Test
+  @DisplayName("Should keep serving searches while the rebuild is pending")
+  void shouldRebuildOnCompactor() {
+    List<Runnable> rebuilds = new ArrayList<>();
+    index.setCompactor(rebuilds::add);
+    for (int i = 0; i < SIZE - 10; i++) {
+      index.remove("TYPE_" + i);
+    }
+
+    assertThat(rebuilds).hasSize(1);
+    assertThat(index.search(vectors.get(SIZE - 1), 1).get(0).key()).isEqualTo("TYPE_" + (SIZE - 1));
+    long withTombstones = index.residentBytes(item -> null);
+
+    rebuilds.get(0).run();
+    assertThat(index.size()).isEqualTo(10);
+    assertThat(index.residentBytes(item -> null)).isLessThan(withTombstones / 100);
+  }
+
+  @Test
+  @DisplayName("Should apply inserts and deletes made during a rebuild to the rebuilt graph")
+  void shouldApplyChangesMadeDuringRebuild() throws Exception {
+    List<Thread> rebuilds = new ArrayList<>();
+    index.setCompactor(
+        rebuild -> {
+          Thread thread = new Thread(rebuild);
+          rebuilds.add(thread);
+          thread.start();
+        });
+    for (int i = 0; i < SIZE / 2 + 1; i++) {
+      index.remove("TYPE_" + i);
+    }
+    assertThat(rebuilds).hasSize(1);
+
+    // Re-add some deleted entries and delete some live ones while the rebuild runs
+    for (int i = 0; i < 100; i++) {
+      index.add("TYPE_" + i, vectors.get(i), "readded-" + i);
+      index.remove("TYPE_" + (SIZE - 1 - i));
+    }
+    rebuilds.get(0).join();
+
+    assertThat(index.size()).isEqualTo(SIZE / 2 - 1);
+    for (int i = 0; i < 100; i++) {
+      assertThat(index.search(vectors.get(i), 1).get(0).item()).isEqualTo("readded-" + i);
+      assertThat(index.contains("TYPE_" + (SIZE - 1 - i))).isFalse();
+    }
+    assertThat(index.search(vectors.get(SIZE / 2 + 1), 1).get(0).key())
+        .isEqualTo("TYPE_" + (SIZE / 2 + 1));
+  }
+
+  @Test
+  @DisplayName("Should restore an identical graph from a snapshot")
+  void shouldRoundTripSnapshot() throws IOException {
+    index.remove("TYPE_3");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    index.writeTo(new DataOutputStream(bytes));
+
+    HnswIndex<String> restored =
+        HnswIndex.readFrom(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+            key -> key.equals("TYPE_4") ? null : "restored-" + key,
+            7L);
+
+    assertThat(restored.size()).isEqualTo(SIZE - 2);
+    assertThat(restored.contains("TYPE_4")).isFalse();
+    float[] query = vectors.get(10);
+    assertThat(restored.search(query, 5))
+        .extracting(HnswIndex.Hit::key)
+        .containsExactlyElementsOf(
+            index.search(query, 5).stream().map(HnswIndex.Hit::key).toList());
+    assertThat(restored.search(query, 1).get(0).item()).isEqualTo("restored-TYPE_10");
+
+    assertThatThrownBy(
+            () ->
+                HnswIndex.readFrom(
+                    new DataInputStream(new ByteArrayInputStream(new byte[8])), key -> key, 1L))
+        .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  @DisplayName("Should share payload vectors on restore and leave them out of its size")
+  void shouldSharePayloadVectors() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    index.writeTo(new DataOutputStream(bytes));
+
+    HnswIndex<float[]> restored =
+        HnswIndex.readFrom(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+            key -> vectors.get(Integer.parseInt(key.substring(5))).clone(),
+            vector -> vector,
+            7L);
+
+    long shared = restored.residentBytes(vector -> vector);
+    long copied = restored.residentBytes(vector -> null);
+    assertThat(copied - shared).isEqualTo(4L * DIMENSIONS * SIZE);
+    assertThat(restored.search(vectors.get(10), 1).get(0).key()).isEqualTo("TYPE_10");
+  }
+
+  @Test
+  @DisplayName("Should reject vectors of another dimension and invalid parameters")
+  void shouldValidateInput() {
+    assertThatThrownBy(() -> index.add("BAD", new float[3], "bad"))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> index.search(new float[3], 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> new HnswIndex<String>(DIMENSIONS, 1, 10, 10, 1L))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(new HnswIndex<String>(DIMENSIONS, 4, 10, 10, 1L).search(new float[DIMENSIONS], 3))
+        .isEmpty();
+  }
+
+  private Set<String> exactTop(float[] query, int k) {
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < vectors.size(); i++) {
+      ids.add(i);
+    }
+    ids.sort(
+        (a, b) ->
+            Float.compare(
+                VectorMath.dot(query, 0, vectors.get(b), 0, DIMENSIONS),
+                VectorMath.dot(query, 0, vectors.get(a), 0, DIMENSIONS)));
+    Set<String> top = new HashSet<>();
+    for (int i = 0; i < k; i++) {
+      top.add("TYPE_" + ids.get(i));
+    }
+    return top;
+  }
+
+  private static float[] randomUnitVector(Random random) {
+    float[] vector = new float[DIMENSIONS];
+    for (int i = 0; i < DIMENSIONS; i++) {
+      vector[i] = (float) random.nextGaussian();
+    }
+    return VectorMath.normalize(vector);
+  }
+}
@@ -0,0 +1,130 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
+import com.nl2fta.classifier.dto.semantic_type.SemanticTypeGenerationRequest;
+
+@DisplayName("LexicalSearchService Tests")
+class LexicalSearchServiceTest {
+
+  private LexicalSearchService service;
+  private List<CustomSemanticType> catalog;
+
+  @BeforeEach
+  void setUp() {
+    service = new LexicalSearchService();
+    ReflectionTestUtils.setField(service, "decisiveCoverage", 0.5);
+    ReflectionTestUtils.setField(service, "decisiveMargin", 1.5);
+    catalog =
+        new ArrayList<>(
+            List.of(
+                type("EMAIL", "Email addresses", "(?i)(email|e_mail)[ _]?(address)?"),
+                type("POSTAL_CODE.ZIP5_US", "US ZIP codes", "(?i)zip[ _]?code"),
+                type("PHONE_NUMBER", "Telephone numbers", "(?i)(phone|telephone)"),
+                type("COUNTRY.TEXT_EN", "Country names in English", "(?i)country")));
+    service.ensureIndexed(1L, catalog);
+  }
+
+  @Test
+  @DisplayName("Should tokenize on punctuation and camel case, dropping plurals and stop words")
+  void shouldTokenize() {
+    List<String> terms = new ArrayList<>();
+    LexicalSearchService.addTerms(terms, "The customerEmailAddresses of a_user; categories");
+
+    assertThat(terms).containsExactly("customer", "email", "address", "user", "category");
+  }
+
+  @Test
+  @DisplayName("Should find a type from its description and headers, decisively")
+  void shouldFindDecisiveMatch() {
+    List<Bm25Index.Hit> hits = service.search(request("Email addresses of users", "email"), 5);
+
+    assertThat(hits.get(0).id()).isEqualTo("EMAIL");
+    assertThat(service.isDecisive(hits)).isTrue();
+  }
+
+  @Test
+  @DisplayName("Should not be decisive when the query is only partly covered")
+  void shouldNotBeDecisiveForPartialMatch() {
+    List<Bm25Index.Hit> hits =
+        service.search(request("Country or phone of the customer", "contact"), 5);
+
+    assertThat(hits).extracting(Bm25Index.Hit::id).contains("COUNTRY.TEXT_EN", "PHONE_NUMBER");
+    assertThat(service.isDecisive(hits)).isFalse();
+    assertThat(service.isDecisive(List.of())).isFalse();
+  }
+
+  @Test
+  @DisplayName("Should reflect added, removed and reloaded types")
+  void shouldTrackCatalogChanges() {
+    CustomSemanticType iban = type("IBAN", "International bank account numbers", "(?i)iban");
+    service.put(iban);
+    assertThat(service.search(request("Bank account IBAN", "iban"), 5).get(0).id())
+        .isEqualTo("IBAN");
+
+    service.remove("IBAN");
+    assertThat(service.search(request("Bank account IBAN", "iban"), 5)).isEmpty();
+
+    catalog.add(iban);
+    service.invalidate();
+    service.ensureIndexed(1L, catalog);
+    assertThat(service.search(request("Bank account IBAN", "iban"), 5).get(0).id())
+        .isEqualTo("IBAN");
+  }
+
+  @Test
+  @DisplayName("Should rebuild when the catalog version changes")
+  void shouldRebuildWhenCatalogVersionChanges() {
+    Bm25Index previous = (Bm25Index) ReflectionTestUtils.getField(service, "index");
+    catalog.set(2, type("IBAN", "International bank account numbers", "(?i)iban"));
+
+    service.ensureIndexed(2L, catalog);
+
+    assertThat(service.search(request("Bank account IBAN", "iban"), 5).get(0).id())
+        .isEqualTo("IBAN");
+    assertThat(service.search(request("Telephone numbers", "phone"), 5))
+        .extracting(Bm25Index.Hit::id)
+        .doesNotContain("PHONE_NUMBER");
+    // The new index is swapped in; the one searches were using is left whole
+    assertThat(ReflectionTestUtils.getField(service, "index")).isNotSameAs(previous);
+    assertThat(previous.size()).isEqualTo(4);
+  }
+
+  @Test
+  @DisplayName("Should keep the built index while the catalog version is unchanged")
+  void shouldNotRebuildForSameCatalogVersion() {
+    Bm25Index built = (Bm25Index) ReflectionTestUtils.getField(service, "index");
+
+    service.ensureIndexed(1L, new ArrayList<>(catalog));
+
+    assertThat(ReflectionTestUtils.getField(service, "index")).isSameAs(built);
+  }
+
+  private static SemanticTypeGenerationRequest request(String description, String header) {
+    return SemanticTypeGenerationRequest.builder()
+        .description(description)
+        .positiveHeaderExamples(List.of(header))
+        .build();
+  }
+
+  private static CustomSemanticType type(String name, String description, String headerRegExp) {
+    CustomSemanticType.HeaderRegExp header = new CustomSemanticType.HeaderRegExp();
+    header.setRegExp(headerRegExp);
+    CustomSemanticType.LocaleConfig locale = new CustomSemanticType.LocaleConfig();
+    locale.setHeaderRegExps(List.of(header));
+    CustomSemanticType type = new CustomSemanticType();
+    type.setSemanticType(name);
+    type.setDescription(description);
+    type.setValidLocales(List.of(locale));
+    return type;
+  }
+}
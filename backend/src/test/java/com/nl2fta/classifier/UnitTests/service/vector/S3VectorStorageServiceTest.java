@@ -5,15 +5,16 @@ import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -25,19 +26,13 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nl2fta.classifier.fixtures.InMemoryS3Client;
 import com.nl2fta.classifier.service.aws.AwsCredentialsService;
 
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("S3VectorStorageService Tests")
@@ -63,7 +58,7 @@ class S3VectorStorageServiceTest {
             .semanticType("EMAIL")
             .type("built-in")
             .description("Email address")
-            .embedding(Arrays.asList(0.1f, 0.2f, 0.3f))
+            .embedding(new float[] {0.1f, 0.2f, 0.3f})
             .originalText("email@example.com")
             .pluginType("regex")
             .examples(Arrays.asList("test@example.com", "user@domain.org"))
@@ -137,9 +132,6 @@ class S3VectorStorageServiceTest {
     void shouldStoreVectorInMemoryWhenS3ClientUnavailable() throws Exception {
       ReflectionTestUtils.setField(s3VectorStorageService, "s3Client", null);
 
-      String expectedJson = "{\"id\":\"test-vector-id\"}";
-      when(objectMapper.writeValueAsString(sampleVectorData)).thenReturn(expectedJson);
-
       s3VectorStorageService.storeVector(sampleVectorData);
 
       @SuppressWarnings("unchecked")
@@ -200,97 +192,117 @@ class S3VectorStorageServiceTest {
 
       assertThat(inMemoryStorage).isEmpty();
     }
-
-    @Test
-    @DisplayName("Should handle JSON serialization error gracefully")
-    void shouldHandleJsonSerializationErrorGracefully() throws Exception {
-      ReflectionTestUtils.setField(s3VectorStorageService, "s3Client", null);
-
-      when(objectMapper.writeValueAsString(sampleVectorData))
-          .thenThrow(new RuntimeException("JSON error"));
-
-      assertThatCode(() -> s3VectorStorageService.storeVector(sampleVectorData))
-          .isInstanceOf(RuntimeException.class)
-          .hasMessage("Failed to store vector");
-    }
   }
 
   @Nested
   @DisplayName("S3 Operations Tests")
   class S3OperationsTests {
 
+    private InMemoryS3Client s3;
+
     @BeforeEach
     void setupS3Tests() {
-      ReflectionTestUtils.setField(s3VectorStorageService, "s3Client", mockS3Client);
-      ReflectionTestUtils.setField(s3VectorStorageService, "bucketName", "test-bucket");
+      s3 = new InMemoryS3Client();
+      connect(s3VectorStorageService, s3);
     }
 
     @Test
-    @DisplayName("Should store vector in S3 when client available")
-    void shouldStoreVectorInS3WhenClientAvailable() throws Exception {
-      String expectedJson = "{\"id\":\"test-vector-id\"}";
-      when(objectMapper.writeValueAsString(sampleVectorData)).thenReturn(expectedJson);
-
+    @DisplayName("Should write each store to a delta log of its own")
+    void shouldStoreVectorInS3WhenClientAvailable() {
       s3VectorStorageService.storeVector(sampleVectorData);
 
-      verify(mockS3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
-      verify(objectMapper).writeValueAsString(sampleVectorData);
+      assertThat(s3.keys()).singleElement().asString().startsWith("vectors/index/deltas/");
+      assertThat(s3.requestCount("PutObject")).isEqualTo(1);
+      assertThat(s3VectorStorageService.getAllVectors()).containsExactly(sampleVectorData);
+    }
+
+    @Test
+    @DisplayName("Should store a batch of vectors with one delta log")
+    void shouldStoreBatchInOneDeltaLog() {
+      List<VectorData> batch =
+          List.of("EMAIL", "PHONE", "ZIP").stream()
+              .map(
+                  type ->
+                      VectorData.builder()
+                          .semanticType(type)
+                          .embedding(new float[] {1f, 0f, 0f})
+                          .build())
+              .toList();
+
+      s3VectorStorageService.storeVectors(batch);
+
+      assertThat(s3.keys()).singleElement().asString().startsWith("vectors/index/deltas/");
+      assertThat(s3.requestCount("PutObject")).isEqualTo(1);
+      assertThat(newConnectedService(s3).getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactlyInAnyOrder("EMAIL", "PHONE", "ZIP");
     }
 
     @Test
     @DisplayName("Should handle S3 store error gracefully")
-    void shouldHandleS3StoreErrorGracefully() throws Exception {
-      String expectedJson = "{\"id\":\"test-vector-id\"}";
-      when(objectMapper.writeValueAsString(sampleVectorData)).thenReturn(expectedJson);
-      when(mockS3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
-          .thenThrow(new RuntimeException("S3 error"));
+    void shouldHandleS3StoreErrorGracefully() {
+      s3.failNext("PutObject", new RuntimeException("S3 error"));
 
       assertThatCode(() -> s3VectorStorageService.storeVector(sampleVectorData))
           .isInstanceOf(RuntimeException.class)
           .hasMessage("Failed to store vector");
+      assertThat(s3VectorStorageService.getAllVectors()).isEmpty();
     }
 
     @Test
-    @DisplayName("Should retrieve all vectors from S3")
+    @DisplayName("Should migrate per-type JSON objects to a snapshot on first load")
     void shouldRetrieveAllVectorsFromS3() throws Exception {
-      // Mock S3 list response
-      S3Object s3Object =
-          S3Object.builder().key("semantic-type-vectors/test-vector-id.json").build();
-      ListObjectsV2Response listResponse =
-          ListObjectsV2Response.builder().contents(s3Object).build();
-      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(listResponse);
-
-      // Mock get object response
-      @SuppressWarnings("unchecked")
-      ResponseBytes<GetObjectResponse> responseBytes =
-          (ResponseBytes<GetObjectResponse>)
-              (ResponseBytes<?>)
-                  ResponseBytes.fromByteArray(
-                      GetObjectResponse.builder().build(),
-                      "{\"id\":\"test-vector-id\"}".getBytes());
-      when(mockS3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(responseBytes);
+      s3.putBytes("vectors/EMAIL.json", "{\"id\":\"test-vector-id\"}".getBytes());
       when(objectMapper.readValue(any(byte[].class), eq(VectorData.class)))
           .thenReturn(sampleVectorData);
 
       List<VectorData> vectors = s3VectorStorageService.getAllVectors();
 
-      assertThat(vectors).hasSize(1);
-      assertThat(vectors.get(0)).isEqualTo(sampleVectorData);
-      verify(mockS3Client).listObjectsV2(any(ListObjectsV2Request.class));
-      verify(mockS3Client).getObjectAsBytes(any(GetObjectRequest.class));
+      assertThat(vectors).containsExactly(sampleVectorData);
+      assertThat(s3.keys()).containsExactly("vectors/index/snapshot-000000000001.bin");
+
+      S3VectorStorageService reloaded = newConnectedService(s3);
+      s3.resetRequestCounts();
+      List<VectorData> fromSnapshot = reloaded.getAllVectors();
+
+      assertThat(fromSnapshot).hasSize(1);
+      VectorData email = fromSnapshot.get(0);
+      assertThat(email.getSemanticType()).isEqualTo("EMAIL");
+      assertThat(email.getExamples()).isEqualTo(sampleVectorData.getExamples());
+      assertThat(email.getCreatedAt()).isEqualTo(sampleVectorData.getCreatedAt());
+      assertThat(email.getEmbedding())
+          .containsExactly(VectorMath.normalize(sampleVectorData.getEmbedding()));
+      assertThat(s3.requestCount("ListObjectsV2")).isEqualTo(1);
+      assertThat(s3.requestCount("GetObject")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should migrate every page of per-type JSON objects, downloading in parallel")
+    void shouldMigrateLegacyObjectsBeyondFirstPage() throws Exception {
+      for (int i = 0; i < 2500; i++) {
+        s3.putBytes(String.format("vectors/TYPE_%04d.json", i), ("TYPE_" + i).getBytes());
+      }
+      when(objectMapper.readValue(any(byte[].class), eq(VectorData.class)))
+          .thenAnswer(
+              invocation ->
+                  VectorData.builder()
+                      .semanticType(new String(invocation.<byte[]>getArgument(0)))
+                      .embedding(new float[] {1f, 0f, 0f})
+                      .build());
+      s3.setLatency(Duration.ofMillis(1));
+      ReflectionTestUtils.setField(s3VectorStorageService, "s3AsyncClient", s3.asyncClient());
+      ReflectionTestUtils.setField(s3VectorStorageService, "fetchMaxConcurrency", 8);
+
+      assertThat(s3VectorStorageService.getVectorCount()).isEqualTo(2500);
+      assertThat(s3.maxInFlight()).isBetween(2, 8);
+      assertThat(s3.keys()).containsExactly("vectors/index/snapshot-000000000001.bin");
     }
 
     @Test
     @DisplayName("Should handle NoSuchKeyException when getting vector")
     void shouldHandleNoSuchKeyExceptionWhenGettingVector() {
-      S3Object s3Object =
-          S3Object.builder().key("semantic-type-vectors/test-vector-id.json").build();
-      ListObjectsV2Response listResponse =
-          ListObjectsV2Response.builder().contents(s3Object).build();
-      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(listResponse);
-
-      when(mockS3Client.getObjectAsBytes(any(GetObjectRequest.class)))
-          .thenThrow(NoSuchKeyException.builder().build());
+      s3.putBytes("vectors/EMAIL.json", "{}".getBytes());
+      s3.failNext("GetObject", NoSuchKeyException.builder().build());
 
       List<VectorData> vectors = s3VectorStorageService.getAllVectors();
 
@@ -300,25 +312,69 @@ class S3VectorStorageServiceTest {
     @Test
     @DisplayName("Should handle general exception when getting vector")
     void shouldHandleGeneralExceptionWhenGettingVector() {
-      S3Object s3Object =
-          S3Object.builder().key("semantic-type-vectors/test-vector-id.json").build();
-      ListObjectsV2Response listResponse =
-          ListObjectsV2Response.builder().contents(s3Object).build();
-      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(listResponse);
-
-      when(mockS3Client.getObjectAsBytes(any(GetObjectRequest.class)))
-          .thenThrow(new RuntimeException("S3 error"));
+      s3.putBytes("vectors/EMAIL.json", "{}".getBytes());
+      s3.failNext("GetObject", new RuntimeException("S3 error"));
 
       List<VectorData> vectors = s3VectorStorageService.getAllVectors();
 
       assertThat(vectors).isEmpty();
     }
 
+    @Test
+    @DisplayName("Should postpone the migration while a per-type object fails to download")
+    void shouldKeepLegacyObjectsWhenDownloadFails() throws Exception {
+      s3.putBytes("vectors/EMAIL.json", "EMAIL".getBytes());
+      s3.putBytes("vectors/PHONE.json", "PHONE".getBytes());
+      when(objectMapper.readValue(any(byte[].class), eq(VectorData.class)))
+          .thenAnswer(
+              invocation ->
+                  VectorData.builder()
+                      .semanticType(new String(invocation.<byte[]>getArgument(0)))
+                      .embedding(new float[] {1f, 0f, 0f})
+                      .build());
+      s3.failNext("GetObject", new RuntimeException("S3 error"));
+
+      assertThat(s3VectorStorageService.getAllVectors()).hasSize(1);
+      assertThat(s3.keys()).containsExactlyInAnyOrder("vectors/EMAIL.json", "vectors/PHONE.json");
+
+      s3VectorStorageService.reloadIndex();
+
+      assertThat(s3VectorStorageService.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactlyInAnyOrder("EMAIL", "PHONE");
+      assertThat(s3.keys()).containsExactly("vectors/index/snapshot-000000000001.bin");
+    }
+
+    @Test
+    @DisplayName("Should migrate decodable per-type objects and keep the ones that fail to decode")
+    void shouldKeepUndecodableLegacyObjects() throws Exception {
+      s3.putBytes("vectors/EMAIL.json", "EMAIL".getBytes());
+      s3.putBytes("vectors/BROKEN.json", "BROKEN".getBytes());
+      when(objectMapper.readValue(any(byte[].class), eq(VectorData.class)))
+          .thenAnswer(
+              invocation -> {
+                String type = new String(invocation.<byte[]>getArgument(0));
+                if (type.equals("BROKEN")) {
+                  throw new IOException("Unexpected end of input");
+                }
+                return VectorData.builder()
+                    .semanticType(type)
+                    .embedding(new float[] {1f, 0f, 0f})
+                    .build();
+              });
+
+      assertThat(s3VectorStorageService.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("EMAIL");
+      assertThat(s3.keys())
+          .containsExactlyInAnyOrder(
+              "vectors/BROKEN.json", "vectors/index/snapshot-000000000001.bin");
+    }
+
     @Test
     @DisplayName("Should handle S3 list error in getAllVectors")
     void shouldHandleS3ListErrorInGetAllVectors() {
-      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class)))
-          .thenThrow(new RuntimeException("S3 list error"));
+      s3.failNext("ListObjectsV2", new RuntimeException("S3 list error"));
 
       // Implementation throws runtime on list error
       org.assertj.core.api.Assertions.assertThatThrownBy(
@@ -327,48 +383,127 @@ class S3VectorStorageServiceTest {
           .hasMessage("Failed to retrieve vectors");
     }
 
+    @Test
+    @DisplayName("Should reject a snapshot that fails its checksum")
+    void shouldRejectCorruptSnapshot() {
+      byte[] snapshot = new VectorSnapshot(1, List.of(sampleVectorData)).encode();
+      snapshot[snapshot.length / 2] ^= 1;
+      s3.putBytes("vectors/index/snapshot-000000000001.bin", snapshot);
+
+      org.assertj.core.api.Assertions.assertThatThrownBy(
+              () -> s3VectorStorageService.getAllVectors())
+          .isInstanceOf(RuntimeException.class)
+          .hasMessage("Failed to retrieve vectors");
+    }
+
     @Test
     @DisplayName("Should delete vector from S3 by semantic type")
-    void shouldDeleteVectorFromS3BySemanticType() throws Exception {
+    void shouldDeleteVectorFromS3BySemanticType() {
+      s3VectorStorageService.storeVector(sampleVectorData);
+
       s3VectorStorageService.deleteVector("EMAIL");
+      s3VectorStorageService.deleteVector("PHONE");
 
-      // Delete is invoked for single-key layout only
-      verify(mockS3Client, times(1)).deleteObject(any(DeleteObjectRequest.class));
+      assertThat(s3VectorStorageService.getAllVectors()).isEmpty();
+      assertThat(newConnectedService(s3).getAllVectors()).isEmpty();
+      // A delete of a type that is not stored writes nothing
+      assertThat(s3.requestCount("PutObject")).isEqualTo(2);
     }
 
     @Test
     @DisplayName("Should handle delete vector error gracefully")
     void shouldHandleDeleteVectorErrorGracefully() {
-      // Now we fail fast on delete errors
-      doThrow(new RuntimeException("S3 delete error"))
-          .when(mockS3Client)
-          .deleteObject(any(DeleteObjectRequest.class));
+      s3VectorStorageService.storeVector(sampleVectorData);
+      s3.failNext("PutObject", new RuntimeException("S3 delete error"));
 
       org.assertj.core.api.Assertions.assertThatThrownBy(
               () -> s3VectorStorageService.deleteVector("EMAIL"))
           .isInstanceOf(RuntimeException.class)
           .hasMessage("Failed to delete vectors");
+      assertThat(s3VectorStorageService.getAllVectors()).containsExactly(sampleVectorData);
+    }
+
+    @Test
+    @DisplayName("Should write a new snapshot version once the delta log is full")
+    void shouldCompactDeltaLogIntoSnapshot() {
+      ReflectionTestUtils.setField(s3VectorStorageService, "maxDeltaEntries", 2);
+
+      for (String type : List.of("EMAIL", "PHONE", "ZIP")) {
+        s3VectorStorageService.storeVector(
+            VectorData.builder().semanticType(type).embedding(new float[] {1f, 0f, 0f}).build());
+      }
+      assertThat(s3.keys()).containsExactly("vectors/index/snapshot-000000000001.bin");
+
+      s3VectorStorageService.deleteVector("PHONE");
+      assertThat(s3.keys()).hasSize(2).contains("vectors/index/snapshot-000000000001.bin");
+
+      s3.resetRequestCounts();
+      assertThat(newConnectedService(s3).getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("EMAIL", "ZIP");
+      assertThat(s3.requestCount("GetObject")).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should keep the changes of every instance sharing the bucket")
+    void shouldKeepChangesOfConcurrentWriters() {
+      S3VectorStorageService other = newConnectedService(s3);
+      s3VectorStorageService.getAllVectors();
+      other.getAllVectors();
+
+      s3VectorStorageService.storeVector(sampleVectorData);
+      other.storeVector(
+          VectorData.builder().semanticType("PHONE").embedding(new float[] {1f, 0f, 0f}).build());
+
+      assertThat(newConnectedService(s3).getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactlyInAnyOrder("EMAIL", "PHONE");
+    }
+
+    @Test
+    @DisplayName("Should fold other instances' changes and defer to their snapshots")
+    void shouldNotLoseChangesWhenInstancesCompact() {
+      ReflectionTestUtils.setField(s3VectorStorageService, "maxDeltaEntries", 1);
+      S3VectorStorageService other = newConnectedService(s3);
+      ReflectionTestUtils.setField(other, "maxDeltaEntries", 1);
+      s3VectorStorageService.getAllVectors();
+      other.getAllVectors();
+
+      s3VectorStorageService.storeVector(sampleVectorData);
+      other.storeVector(
+          VectorData.builder().semanticType("PHONE").embedding(new float[] {1f, 0f, 0f}).build());
+      // Folds EMAIL and PHONE into version 1
+      s3VectorStorageService.storeVector(
+          VectorData.builder().semanticType("ZIP").embedding(new float[] {0f, 1f, 0f}).build());
+      // Finds version 1 and reloads instead of writing a version 1 of its own
+      other.storeVector(
+          VectorData.builder().semanticType("STATE").embedding(new float[] {0f, 0f, 1f}).build());
+
+      assertThat(s3.keys()).contains("vectors/index/snapshot-000000000001.bin");
+      assertThat(other.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactlyInAnyOrder("EMAIL", "PHONE", "ZIP", "STATE");
+      assertThat(newConnectedService(s3).getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactlyInAnyOrder("EMAIL", "PHONE", "ZIP", "STATE");
     }
 
     @Test
     @DisplayName("Should clear all vectors from S3")
     void shouldClearAllVectorsFromS3() {
-      S3Object s3Object1 = S3Object.builder().key("semantic-type-vectors/test1.json").build();
-      S3Object s3Object2 = S3Object.builder().key("semantic-type-vectors/test2.json").build();
-      ListObjectsV2Response listResponse =
-          ListObjectsV2Response.builder().contents(s3Object1, s3Object2).build();
-      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(listResponse);
+      s3.putBytes("vectors/test1.json", new byte[0]);
+      s3.putBytes("vectors/index/snapshot-000000000003.bin", new byte[0]);
 
       s3VectorStorageService.clearAllVectors();
 
-      verify(mockS3Client, times(2)).deleteObject(any(DeleteObjectRequest.class));
+      assertThat(s3.keys()).isEmpty();
+      assertThat(s3.requestCount("DeleteObject")).isEqualTo(2);
     }
 
     @Test
     @DisplayName("Should handle clear vectors error gracefully")
     void shouldHandleClearVectorsErrorGracefully() {
-      when(mockS3Client.listObjectsV2(any(ListObjectsV2Request.class)))
-          .thenThrow(new RuntimeException("S3 clear error"));
+      s3.failNext("ListObjectsV2", new RuntimeException("S3 clear error"));
 
       assertThatCode(() -> s3VectorStorageService.clearAllVectors())
           .isInstanceOf(RuntimeException.class)
@@ -376,6 +511,232 @@ class S3VectorStorageServiceTest {
     }
   }
 
+  @Nested
+  @DisplayName("Resident Index Tests")
+  class ResidentIndexTests {
+
+    private InMemoryS3Client s3;
+
+    @BeforeEach
+    void setupResidentIndex() {
+      s3 = new InMemoryS3Client();
+      s3.putBytes(
+          "vectors/index/snapshot-000000000001.bin",
+          new VectorSnapshot(1, List.of(sampleVectorData)).encode());
+      connect(s3VectorStorageService, s3);
+    }
+
+    @Test
+    @DisplayName("Should load vectors from S3 once and serve later reads from memory")
+    void shouldLoadVectorsOnce() {
+      assertThat(s3VectorStorageService.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("EMAIL");
+      assertThat(s3VectorStorageService.getAllVectors()).hasSize(1);
+      assertThat(s3VectorStorageService.getVectorCount()).isEqualTo(1);
+      assertThat(s3VectorStorageService.hasAnyVectors()).isTrue();
+
+      assertThat(s3.requestCount("ListObjectsV2")).isEqualTo(1);
+      assertThat(s3.requestCount("GetObject")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should write stores and deletes through to S3 and the resident index")
+    void shouldWriteThroughToResidentIndex() {
+      s3VectorStorageService.getAllVectors();
+      VectorData phone =
+          VectorData.builder().semanticType("PHONE").embedding(new float[] {1f, 0f, 0f}).build();
+
+      s3VectorStorageService.storeVector(phone);
+      assertThat(s3VectorStorageService.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("EMAIL", "PHONE");
+
+      s3VectorStorageService.deleteVector("EMAIL");
+      assertThat(s3VectorStorageService.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("PHONE");
+
+      assertThat(s3.requestCount("PutObject")).isEqualTo(2);
+      assertThat(s3.requestCount("ListObjectsV2")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should serve the packed matrix from the resident index")
+    void shouldServeMatrixFromResidentIndex() {
+      VectorMatrix matrix = s3VectorStorageService.getVectorMatrix();
+
+      assertThat(matrix.size()).isEqualTo(1);
+      assertThat(matrix.getVector(0).getSemanticType()).isEqualTo("EMAIL");
+      assertThat(s3VectorStorageService.getVectorMatrix()).isSameAs(matrix);
+      assertThat(s3.requestCount("ListObjectsV2")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should extend the published matrix on store instead of repacking it")
+    void shouldUpdateMatrixIncrementally() {
+      VectorMatrix before = s3VectorStorageService.getVectorMatrix();
+
+      s3VectorStorageService.storeVector(
+          VectorData.builder().semanticType("PHONE").embedding(new float[] {1f, 0f, 0f}).build());
+      VectorMatrix after = s3VectorStorageService.getVectorMatrix();
+
+      assertThat(before.size()).isEqualTo(1);
+      assertThat(after.size()).isEqualTo(2);
+      assertThat(after.getVector(0)).isSameAs(before.getVector(0));
+      assertThat(after.getVector(1).getSemanticType()).isEqualTo("PHONE");
+      assertThat(s3VectorStorageService.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("EMAIL", "PHONE");
+
+      // Half the rows deleted: packed again rather than left as a dead row
+      s3VectorStorageService.deleteVector("EMAIL");
+      VectorMatrix repacked = s3VectorStorageService.getVectorMatrix();
+      assertThat(repacked.size()).isEqualTo(1);
+      assertThat(repacked.deletedRows()).isZero();
+      assertThat(repacked.getVector(0).getSemanticType()).isEqualTo("PHONE");
+    }
+
+    @Test
+    @DisplayName("Should maintain the approximate index once the catalog is large enough")
+    void shouldMaintainApproximateIndex() {
+      enableAnn(s3VectorStorageService);
+      assertThat(s3VectorStorageService.getAnnIndex()).isNull();
+
+      s3VectorStorageService.getAllVectors();
+      HnswIndex<VectorData> graph = s3VectorStorageService.getAnnIndex();
+      assertThat(graph).isNotNull();
+      assertThat(graph.contains("EMAIL")).isTrue();
+
+      VectorData phone =
+          VectorData.builder().semanticType("PHONE").embedding(new float[] {1f, 0f, 0f}).build();
+      s3VectorStorageService.storeVector(phone);
+      s3VectorStorageService.deleteVector("EMAIL");
+
+      assertThat(s3VectorStorageService.getAnnIndex()).isSameAs(graph);
+      assertThat(graph.size()).isEqualTo(1);
+      assertThat(graph.search(new float[] {1f, 0f, 0f}, 1).get(0).item()).isEqualTo(phone);
+    }
+
+    @Test
+    @DisplayName("Should build the approximate index in the background and catch it up")
+    void shouldBuildApproximateIndexOffLock() {
+      enableAnn(s3VectorStorageService);
+      List<Runnable> builds = new ArrayList<>();
+      ReflectionTestUtils.setField(s3VectorStorageService, "graphBuilder", (Executor) builds::add);
+
+      s3VectorStorageService.getAllVectors();
+      VectorData phone =
+          VectorData.builder().semanticType("PHONE").embedding(new float[] {1f, 0f, 0f}).build();
+      s3VectorStorageService.storeVector(phone);
+
+      // Searched exactly until the build finishes; a store does not start a second build
+      assertThat(s3VectorStorageService.getAnnIndex()).isNull();
+      assertThat(builds).hasSize(1);
+
+      builds.get(0).run();
+      HnswIndex<VectorData> graph = s3VectorStorageService.getAnnIndex();
+      assertThat(graph).isNotNull();
+      assertThat(graph.contains("EMAIL")).isTrue();
+      assertThat(graph.search(new float[] {1f, 0f, 0f}, 1).get(0).item()).isEqualTo(phone);
+    }
+
+    @Test
+    @DisplayName("Should discard an approximate index built before a reload")
+    void shouldDiscardStaleApproximateIndexBuild() {
+      enableAnn(s3VectorStorageService);
+      List<Runnable> builds = new ArrayList<>();
+      ReflectionTestUtils.setField(s3VectorStorageService, "graphBuilder", (Executor) builds::add);
+
+      s3VectorStorageService.getAllVectors();
+      s3VectorStorageService.reloadIndex();
+      assertThat(builds).hasSize(2);
+
+      builds.get(0).run();
+      assertThat(s3VectorStorageService.getAnnIndex()).isNull();
+      builds.get(1).run();
+      assertThat(s3VectorStorageService.getAnnIndex()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should restore the approximate index written with the snapshot")
+    void shouldRestoreApproximateIndexFromSnapshot() {
+      enableAnn(s3VectorStorageService);
+      ReflectionTestUtils.setField(s3VectorStorageService, "maxDeltaEntries", 0);
+      VectorData phone =
+          VectorData.builder().semanticType("PHONE").embedding(new float[] {1f, 0f, 0f}).build();
+      s3VectorStorageService.storeVector(phone);
+      // Version 1 is kept for loads that listed it before version 2 was written
+      assertThat(s3.keys())
+          .containsExactly(
+              "vectors/index/graph-000000000002.bin",
+              "vectors/index/snapshot-000000000001.bin",
+              "vectors/index/snapshot-000000000002.bin");
+
+      // Changes logged after the snapshot are applied to the restored graph
+      ReflectionTestUtils.setField(s3VectorStorageService, "maxDeltaEntries", 64);
+      s3VectorStorageService.deleteVector("EMAIL");
+      S3VectorStorageService reloaded = newConnectedService(s3);
+      enableAnn(reloaded);
+      s3.resetRequestCounts();
+
+      assertThat(reloaded.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("PHONE");
+      HnswIndex<VectorData> graph = reloaded.getAnnIndex();
+      assertThat(graph).isNotNull();
+      assertThat(graph.contains("EMAIL")).isFalse();
+      assertThat(graph.search(new float[] {1f, 0f, 0f}, 1).get(0).key()).isEqualTo("PHONE");
+      assertThat(s3.requestCount("GetObject")).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should rebuild the approximate index when the stored graph is unreadable")
+    void shouldRebuildUnreadableApproximateIndex() {
+      s3.putBytes("vectors/index/graph-000000000001.bin", new byte[] {1, 2, 3});
+      enableAnn(s3VectorStorageService);
+
+      s3VectorStorageService.getAllVectors();
+
+      assertThat(s3VectorStorageService.getAnnIndex()).isNotNull();
+      assertThat(s3VectorStorageService.getAnnIndex().contains("EMAIL")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should reload the resident index from S3 on request")
+    void shouldReloadResidentIndex() {
+      s3VectorStorageService.getAllVectors();
+      s3VectorStorageService.reloadIndex();
+
+      assertThat(s3VectorStorageService.getAllVectors())
+          .extracting(VectorData::getSemanticType)
+          .containsExactly("EMAIL");
+      assertThat(s3.requestCount("ListObjectsV2")).isEqualTo(2);
+    }
+  }
+
+  private static void enableAnn(S3VectorStorageService service) {
+    // Builds in the calling thread, so the graph is there as soon as the index is loaded
+    ReflectionTestUtils.setField(service, "graphBuilder", (Executor) Runnable::run);
+    ReflectionTestUtils.setField(service, "annMinSize", 1);
+    ReflectionTestUtils.setField(service, "annM", 4);
+    ReflectionTestUtils.setField(service, "annEfConstruction", 10);
+    ReflectionTestUtils.setField(service, "annEfSearch", 10);
+  }
+
+  private S3VectorStorageService newConnectedService(InMemoryS3Client s3) {
+    S3VectorStorageService service =
+        new S3VectorStorageService(objectMapper, awsCredentialsService);
+    connect(service, s3);
+    return service;
+  }
+
+  private static void connect(S3VectorStorageService service, InMemoryS3Client s3) {
+    ReflectionTestUtils.setField(service, "s3Client", s3);
+    ReflectionTestUtils.setField(service, "bucketName", "test-bucket");
+    ReflectionTestUtils.setField(service, "maxDeltaEntries", 64);
+  }
+
   @Nested
   @DisplayName("Utility Tests")
   class UtilityTests {
@@ -439,9 +800,6 @@ class S3VectorStorageServiceTest {
     void shouldHandleConcurrentStorageOperations() throws Exception {
       ReflectionTestUtils.setField(s3VectorStorageService, "s3Client", null);
 
-      String expectedJson = "{\"id\":\"test-vector-id\"}";
-      when(objectMapper.writeValueAsString(any())).thenReturn(expectedJson);
-
       Runnable storeTask =
           () -> {
             try {
@@ -475,9 +833,9 @@ class S3VectorStorageServiceTest {
     void shouldHandleLargeVectorData() throws Exception {
       ReflectionTestUtils.setField(s3VectorStorageService, "s3Client", null);
 
-      List<Float> largeEmbedding = new ArrayList<>();
+      float[] largeEmbedding = new float[1000];
       for (int i = 0; i < 1000; i++) {
-        largeEmbedding.add((float) i);
+        largeEmbedding[i] = i;
       }
 
       VectorData largeVectorData =
@@ -487,9 +845,6 @@ class S3VectorStorageServiceTest {
               .embedding(largeEmbedding)
               .build();
 
-      String expectedJson = "{\"large\":\"data\"}";
-      when(objectMapper.writeValueAsString(largeVectorData)).thenReturn(expectedJson);
-
       assertThatCode(() -> s3VectorStorageService.storeVector(largeVectorData))
           .doesNotThrowAnyException();
     }
@@ -6,6 +6,7 @@ import static org.assertj.core.api.Assertions.within;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -17,6 +18,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -24,6 +27,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -124,6 +128,51 @@ class VectorEmbeddingServiceTest {
     verify(objectMapper).readValue(eq(responseJson), eq(Map.class));
   }
 
+  @Test
+  @DisplayName("Should serve repeated and reformatted text from the embedding cache")
+  void shouldCacheEmbeddingsByNormalizedText() throws Exception {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", bedrockClient);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingDimensions", 3);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "cacheMaxEntries", 16);
+
+    when(objectMapper.writeValueAsString(any(Map.class))).thenReturn("{}");
+    InvokeModelResponse mockResponse = mock(InvokeModelResponse.class);
+    when(mockResponse.body()).thenReturn(SdkBytes.fromUtf8String("{}"));
+    when(bedrockClient.invokeModel(any(InvokeModelRequest.class))).thenReturn(mockResponse);
+    when(objectMapper.readValue(anyString(), eq(Map.class)))
+        .thenReturn(Map.of("embedding", Arrays.asList(0.1, 0.2, 0.3)));
+
+    List<Float> first = vectorEmbeddingService.generateEmbedding("Semantic Type: EMAIL");
+    List<Float> second = vectorEmbeddingService.generateEmbedding("  Semantic Type:  EMAIL\n");
+
+    assertThat(second).isEqualTo(first).containsExactly(0.1f, 0.2f, 0.3f);
+    verify(bedrockClient, times(1)).invokeModel(any(InvokeModelRequest.class));
+    assertThat(vectorEmbeddingService.getCacheStats().getHits()).isEqualTo(1);
+    assertThat(vectorEmbeddingService.getCacheStats().getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  @DisplayName("Should warm the embedding cache from stored vectors of the configured dimension")
+  void shouldWarmCacheFromStoredVectors() {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", bedrockClient);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingDimensions", 2);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "cacheMaxEntries", 16);
+
+    int warmed =
+        vectorEmbeddingService.warmCache(
+            List.of(
+                VectorData.builder().originalText("email").embedding(new float[] {1f, 0f}).build(),
+                VectorData.builder()
+                    .originalText("wide")
+                    .embedding(new float[] {1f, 0f, 0f})
+                    .build(),
+                VectorData.builder().originalText("none").build()));
+
+    assertThat(warmed).isEqualTo(1);
+    assertThat(vectorEmbeddingService.generateEmbedding("email")).containsExactly(1f, 0f);
+    verifyNoInteractions(bedrockClient);
+  }
+
   @Test
   void shouldThrowExceptionWhenBedrockClientIsNull() {
     ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", null);
@@ -537,6 +586,207 @@ class VectorEmbeddingServiceTest {
     }
   }
 
+  @Nested
+  @DisplayName("Bulk Embedding")
+  class BulkEmbedding {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUpBulk() throws Exception {
+      ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", bedrockClient);
+      ReflectionTestUtils.setField(vectorEmbeddingService, "bulkMaxAttempts", 3);
+      // Each text is a number; its embedding is that number, so results can be matched up
+      when(objectMapper.writeValueAsString(any(Map.class)))
+          .thenAnswer(
+              invocation -> invocation.<Map<String, Object>>getArgument(0).get("inputText"));
+      lenient()
+          .when(objectMapper.readValue(anyString(), eq(Map.class)))
+          .thenAnswer(
+              invocation ->
+                  Map.of("embedding", List.of(Double.parseDouble(invocation.getArgument(0)))));
+    }
+
+    private InvokeModelResponse echo(InvokeModelRequest request) {
+      return InvokeModelResponse.builder().body(request.body()).build();
+    }
+
+    @Test
+    @DisplayName("Should embed concurrently within the window and report each result by position")
+    void shouldEmbedConcurrentlyWithinWindow() {
+      ReflectionTestUtils.setField(vectorEmbeddingService, "bulkConcurrency", 4);
+      when(bedrockClient.invokeModel(any(InvokeModelRequest.class)))
+          .thenAnswer(
+              invocation -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                inFlight.decrementAndGet();
+                return echo(invocation.getArgument(0));
+              });
+      List<String> texts = IntStream.range(0, 16).mapToObj(String::valueOf).toList();
+      Map<Integer, List<Float>> delivered = new ConcurrentHashMap<>();
+
+      List<Integer> failed = vectorEmbeddingService.generateEmbeddings(texts, delivered::put);
+
+      assertThat(failed).isEmpty();
+      assertThat(delivered).hasSize(16);
+      delivered.forEach(
+          (position, embedding) -> assertThat(embedding).containsExactly(position * 1f));
+      assertThat(maxInFlight.get()).isBetween(2, 4);
+    }
+
+    @Test
+    @DisplayName("Should retry throttled requests and slow the rate limiter down")
+    void shouldRetryThrottledRequests() {
+      ReflectionTestUtils.setField(vectorEmbeddingService, "bulkRequestsPerSecond", 1000.0);
+      when(bedrockClient.invokeModel(any(InvokeModelRequest.class)))
+          .thenThrow(ThrottlingException.builder().message("Too many requests").build())
+          .thenThrow(ThrottlingException.builder().message("Too many requests").build())
+          .thenAnswer(invocation -> echo(invocation.getArgument(0)));
+
+      List<List<Float>> results = vectorEmbeddingService.generateEmbeddings(List.of("7"));
+
+      assertThat(results).containsExactly(List.of(7f));
+      verify(bedrockClient, times(3)).invokeModel(any(InvokeModelRequest.class));
+      AdaptiveRateLimiter limiter =
+          (AdaptiveRateLimiter) ReflectionTestUtils.getField(vectorEmbeddingService, "rateLimiter");
+      assertThat(limiter.getRate()).isLessThan(1000.0);
+    }
+
+    @Test
+    @DisplayName("Should not retry rejected requests, and give up on throttling after max attempts")
+    void shouldReportItemsThatCannotBeEmbedded() {
+      when(bedrockClient.invokeModel(any(InvokeModelRequest.class)))
+          .thenAnswer(
+              invocation -> {
+                String text = invocation.<InvokeModelRequest>getArgument(0).body().asUtf8String();
+                if (text.equals("1")) {
+                  throw ValidationException.builder().message("Bad input").build();
+                }
+                if (text.equals("2")) {
+                  throw ThrottlingException.builder().message("Too many requests").build();
+                }
+                return echo(invocation.getArgument(0));
+              });
+      Map<Integer, List<Float>> delivered = new ConcurrentHashMap<>();
+
+      List<Integer> failed =
+          vectorEmbeddingService.generateEmbeddings(List.of("0", "1", "2", "3"), delivered::put);
+
+      assertThat(failed).containsExactly(1, 2);
+      assertThat(delivered).containsOnlyKeys(0, 3);
+      // 0 and 3 once, 1 once (not retryable), 2 three times
+      verify(bedrockClient, times(6)).invokeModel(any(InvokeModelRequest.class));
+    }
+  }
+
+  @Test
+  @DisplayName("Should embed with the local provider without an AWS connection")
+  void shouldEmbedWithLocalProvider() {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", null);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingProvider", "local");
+    ReflectionTestUtils.setField(vectorEmbeddingService, "localDimensions", 64);
+
+    List<Float> single = vectorEmbeddingService.generateEmbedding("Email address");
+    List<List<Float>> batch =
+        vectorEmbeddingService.generateEmbeddings(List.of("Email address", "Phone number"));
+
+    assertThat(single).hasSize(64);
+    assertThat(batch).hasSize(2);
+    assertThat(batch.get(0)).isEqualTo(single);
+    assertThat(vectorEmbeddingService.getEmbeddingDimensions()).isEqualTo(64);
+    assertThat(vectorEmbeddingService.getModelId())
+        .isEqualTo(HashedNgramEmbeddingProvider.MODEL_ID + "-64");
+    verifyNoInteractions(bedrockClient);
+  }
+
+  @Test
+  @DisplayName("Should reject an unknown embedding provider")
+  void shouldRejectUnknownProvider() {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingProvider", "openai");
+
+    assertThatThrownBy(() -> vectorEmbeddingService.init())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Unknown embedding provider: openai");
+  }
+
+  @Test
+  void shouldRequestConfiguredDimensionsFromTitanV2() throws Exception {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", bedrockClient);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingDimensions", 256);
+    String responseJson = "{\"embedding\":[0.6,0.8]}";
+    when(objectMapper.writeValueAsString(any(Map.class))).thenReturn("{}");
+    InvokeModelResponse mockResponse = mock(InvokeModelResponse.class);
+    when(mockResponse.body()).thenReturn(SdkBytes.fromUtf8String(responseJson));
+    when(bedrockClient.invokeModel(any(InvokeModelRequest.class))).thenReturn(mockResponse);
+    when(objectMapper.readValue(eq(responseJson), eq(Map.class)))
+        .thenReturn(Map.of("embedding", Arrays.asList(0.6, 0.8)));
+
+    vectorEmbeddingService.generateEmbedding("email address");
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Map<String, Object>> body = ArgumentCaptor.forClass(Map.class);
+    verify(objectMapper).writeValueAsString(body.capture());
+    assertThat(body.getValue())
+        .containsEntry("inputText", "email address")
+        .containsEntry("dimensions", 256)
+        .containsEntry("normalize", true);
+  }
+
+  @Test
+  @DisplayName("Should report and cache the fixed dimension of Titan v1")
+  void shouldUseTitanV1Dimensions() throws Exception {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", bedrockClient);
+    ReflectionTestUtils.setField(
+        vectorEmbeddingService, "embeddingModelId", "amazon.titan-embed-text-v1");
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingDimensions", 1024);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "cacheMaxEntries", 16);
+    List<Double> embedding = Collections.nCopies(1536, 0.025);
+    when(objectMapper.writeValueAsString(any(Map.class))).thenReturn("{}");
+    InvokeModelResponse mockResponse = mock(InvokeModelResponse.class);
+    when(mockResponse.body()).thenReturn(SdkBytes.fromUtf8String("{}"));
+    when(bedrockClient.invokeModel(any(InvokeModelRequest.class))).thenReturn(mockResponse);
+    when(objectMapper.readValue(anyString(), eq(Map.class)))
+        .thenReturn(Map.of("embedding", embedding));
+
+    assertThat(vectorEmbeddingService.getEmbeddingDimensions()).isEqualTo(1536);
+    vectorEmbeddingService.generateEmbedding("email address");
+    vectorEmbeddingService.generateEmbedding("email address");
+
+    verify(bedrockClient, times(1)).invokeModel(any(InvokeModelRequest.class));
+  }
+
+  @Test
+  @DisplayName("Should learn the dimension of another model from its first embedding")
+  void shouldLearnDimensionsFromFirstResponse() throws Exception {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "bedrockClient", bedrockClient);
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingModelId", "cohere.embed-v3");
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingDimensions", 1024);
+    when(objectMapper.writeValueAsString(any(Map.class))).thenReturn("{}");
+    InvokeModelResponse mockResponse = mock(InvokeModelResponse.class);
+    when(mockResponse.body()).thenReturn(SdkBytes.fromUtf8String("{}"));
+    when(bedrockClient.invokeModel(any(InvokeModelRequest.class))).thenReturn(mockResponse);
+    when(objectMapper.readValue(anyString(), eq(Map.class)))
+        .thenReturn(Map.of("embedding", Arrays.asList(0.6, 0.8)));
+
+    assertThat(vectorEmbeddingService.getEmbeddingDimensions()).isZero();
+    vectorEmbeddingService.generateEmbedding("email address");
+
+    assertThat(vectorEmbeddingService.getEmbeddingDimensions()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldRejectDimensionsTitanV2DoesNotSupport() {
+    ReflectionTestUtils.setField(vectorEmbeddingService, "embeddingDimensions", 768);
+
+    assertThatThrownBy(() -> vectorEmbeddingService.init())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage(
+            "Unsupported embedding dimensions 768 for amazon.titan-embed-text-v2:0;"
+                + " supported: [256, 512, 1024]");
+  }
+
   @Nested
   @DisplayName("Cosine Similarity Edge Cases")
   class CosineSimilarityEdgeCases {
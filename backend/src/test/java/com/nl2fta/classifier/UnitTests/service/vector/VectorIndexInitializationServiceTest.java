@@ -2,11 +2,14 @@ package com.nl2fta.classifier.service.vector;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
@@ -28,6 +31,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
 import com.nl2fta.classifier.service.aws.AwsCredentialsService;
 import com.nl2fta.classifier.service.semantic_type.management.CustomSemanticTypeService;
+import com.nl2fta.classifier.service.storage.HybridCustomSemanticTypeRepository;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("VectorIndexInitializationService Tests")
@@ -41,6 +45,10 @@ class VectorIndexInitializationServiceTest {
 
   @Mock private VectorEmbeddingService vectorEmbeddingService;
 
+  @Mock private HybridCustomSemanticTypeRepository hybridRepository;
+
+  @Mock private S3VectorStorageService vectorStorageService;
+
   @InjectMocks private VectorIndexInitializationService indexInitService;
 
   private List<CustomSemanticType> mockSemanticTypes;
@@ -51,6 +59,12 @@ class VectorIndexInitializationServiceTest {
     // Set default configuration values using reflection
     ReflectionTestUtils.setField(indexInitService, "vectorIndexEnabled", true);
     ReflectionTestUtils.setField(indexInitService, "rebuildOnStartup", false);
+    lenient()
+        .when(vectorSearchService.reconcileIndex(anyList(), anyBoolean()))
+        .thenReturn(VectorSimilaritySearchService.ReconciliationSummary.builder().build());
+    lenient().when(hybridRepository.isUsingS3Storage()).thenReturn(true);
+    lenient().when(hybridRepository.isCatalogSynced()).thenReturn(true);
+    lenient().when(vectorStorageService.isConnected()).thenReturn(true);
 
     mockSemanticTypes =
         Arrays.asList(
@@ -88,6 +102,55 @@ class VectorIndexInitializationServiceTest {
       // Then - Should complete without triggering vector-related calls when disabled
       verifyNoInteractions(vectorSearchService, customSemanticTypeService, vectorEmbeddingService);
     }
+
+    @Test
+    @DisplayName("Should reconcile the index when AWS credentials are already available")
+    void shouldReconcileWhenCredentialsAvailableAtStartup() throws Exception {
+      // Given
+      when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
+
+      // When
+      indexInitService.onApplicationReady();
+      Thread.sleep(1500);
+
+      // Then
+      verify(vectorEmbeddingService).initializeBedrockClient();
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, true);
+    }
+
+    @Test
+    @DisplayName("Should not reconcile at startup while storage is still file-based")
+    void shouldNotReconcileBeforeS3StorageIsConnected() throws Exception {
+      // Given - credentials from the environment, but S3 is only connected through the frontend
+      when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
+      when(hybridRepository.isUsingS3Storage()).thenReturn(false);
+
+      // When
+      indexInitService.onApplicationReady();
+      Thread.sleep(1500);
+
+      // Then
+      verifyNoInteractions(vectorSearchService, customSemanticTypeService, vectorEmbeddingService);
+    }
+
+    @Test
+    @DisplayName("Should index into memory at startup with local embeddings and no AWS")
+    void shouldIndexLocallyWithoutAwsAtStartup() throws Exception {
+      // Given
+      ReflectionTestUtils.setField(indexInitService, "embeddingProvider", "local");
+      when(awsCredentialsService.areCredentialsAvailable()).thenReturn(false);
+      when(hybridRepository.isCatalogSynced()).thenReturn(false);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
+
+      // When
+      indexInitService.onApplicationReady();
+
+      // Then - the local catalog is not authoritative, so nothing is deleted
+      verify(vectorSearchService, timeout(1000)).reconcileIndex(mockSemanticTypes, false);
+      verify(vectorSearchService, timeout(1000)).warmIndex();
+      verify(vectorEmbeddingService, never()).initializeBedrockClient();
+    }
   }
 
   @Nested
@@ -99,7 +162,6 @@ class VectorIndexInitializationServiceTest {
     void shouldInitializeVectorIndexAfterAwsConnection() throws Exception {
       // Given
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
 
       // When
@@ -110,9 +172,25 @@ class VectorIndexInitializationServiceTest {
 
       // Then
       verify(vectorEmbeddingService).initializeBedrockClient();
-      verify(vectorSearchService).hasAnyStoredVectors();
       verify(customSemanticTypeService).getAllCustomTypes();
-      verify(vectorSearchService).indexSemanticTypes(mockSemanticTypes);
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, true);
+      verify(vectorSearchService).warmIndex();
+    }
+
+    @Test
+    @DisplayName("Should reconcile against S3 with local embeddings once connected")
+    void shouldReconcileLocalEmbeddingsAgainstS3() throws Exception {
+      // Given
+      ReflectionTestUtils.setField(indexInitService, "embeddingProvider", "local");
+      when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
+
+      // When
+      indexInitService.initializeAfterAwsConnection();
+
+      // Then
+      verify(vectorSearchService, timeout(2500)).reconcileIndex(mockSemanticTypes, true);
+      verify(vectorEmbeddingService, never()).initializeBedrockClient();
     }
 
     @Test
@@ -132,6 +210,20 @@ class VectorIndexInitializationServiceTest {
           customSemanticTypeService);
     }
 
+    @Test
+    @DisplayName("Should wait for the vector store before reconciling")
+    void shouldSkipInitializationWhenVectorStoreNotConnected() {
+      // Given
+      when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
+      when(vectorStorageService.isConnected()).thenReturn(false);
+
+      // When
+      indexInitService.initializeAfterAwsConnection();
+
+      // Then
+      verifyNoInteractions(vectorEmbeddingService, vectorSearchService, customSemanticTypeService);
+    }
+
     @Test
     @DisplayName("Should skip initialization when AWS credentials not available")
     void shouldSkipInitializationWhenAwsCredentialsNotAvailable() {
@@ -147,14 +239,11 @@ class VectorIndexInitializationServiceTest {
     }
 
     @Test
-    @DisplayName("Should skip re-indexing when existing vectors found and rebuild not requested")
-    void shouldSkipReIndexingWhenExistingVectorsFoundAndRebuildNotRequested() throws Exception {
+    @DisplayName("Should reconcile existing vectors instead of rebuilding them")
+    void shouldReconcileExistingVectorsWithoutRebuilding() throws Exception {
       // Given
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(true);
-      // Updated logic skips re-indexing only when bucket appears initialized (>=
-      // MIN_EXPECTED_INDEXED_TYPES)
-      when(vectorSearchService.getStoredVectorCount()).thenReturn(200);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
 
       // When
       indexInitService.initializeAfterAwsConnection();
@@ -163,8 +252,7 @@ class VectorIndexInitializationServiceTest {
       Thread.sleep(1500);
 
       // Then
-      verify(vectorSearchService).hasAnyStoredVectors();
-      verify(vectorSearchService).getStoredVectorCount();
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, true);
       verify(vectorSearchService, never()).indexSemanticTypes(anyList());
       verify(vectorSearchService, never()).clearIndex();
     }
@@ -175,7 +263,6 @@ class VectorIndexInitializationServiceTest {
       // Given
       ReflectionTestUtils.setField(indexInitService, "rebuildOnStartup", true);
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(true);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
 
       // When
@@ -187,7 +274,7 @@ class VectorIndexInitializationServiceTest {
       // Then
       verify(vectorSearchService).clearIndex();
       verify(customSemanticTypeService).getAllCustomTypes();
-      verify(vectorSearchService).indexSemanticTypes(mockSemanticTypes);
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, true);
     }
 
     @Test
@@ -195,7 +282,6 @@ class VectorIndexInitializationServiceTest {
     void shouldHandleExceptionDuringInitializationGracefully() throws Exception {
       // Given
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(Collections.emptyList());
 
       // When
@@ -205,31 +291,7 @@ class VectorIndexInitializationServiceTest {
       Thread.sleep(1500);
 
       // Then - Exception should be handled gracefully
-      verify(vectorSearchService).hasAnyStoredVectors();
-      verify(vectorSearchService).indexSemanticTypes(Collections.emptyList());
-    }
-
-    @Test
-    @DisplayName("Should re-index when vector count does not match semantic type count")
-    void shouldReindexWhenVectorCountMismatch() throws Exception {
-      // Given
-      when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(true);
-      when(vectorSearchService.getStoredVectorCount()).thenReturn(10); // Mismatch: 10 vectors
-      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes); // 3 types
-
-      // When
-      indexInitService.initializeAfterAwsConnection();
-
-      // Give the async operation a moment to complete
-      Thread.sleep(1500);
-
-      // Then
-      verify(vectorSearchService).hasAnyStoredVectors();
-      verify(vectorSearchService).getStoredVectorCount();
-      // Updated logic indexes to complete the set without clearing the index
-      verify(customSemanticTypeService, times(1)).getAllCustomTypes();
-      verify(vectorSearchService).indexSemanticTypes(mockSemanticTypes); // Should re-index
+      verify(vectorSearchService).reconcileIndex(Collections.emptyList(), true);
     }
   }
 
@@ -337,7 +399,6 @@ class VectorIndexInitializationServiceTest {
     @DisplayName("Should rebuild index successfully")
     void shouldRebuildIndexSuccessfully() throws Exception {
       // Given
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
 
       // When
@@ -345,9 +406,50 @@ class VectorIndexInitializationServiceTest {
 
       // Then
       verify(vectorSearchService).clearIndex();
-      verify(vectorSearchService).hasAnyStoredVectors();
       verify(customSemanticTypeService).getAllCustomTypes();
-      verify(vectorSearchService).indexSemanticTypes(mockSemanticTypes);
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, true);
+    }
+
+    @Test
+    @DisplayName("Should not treat the file-based catalog as authoritative")
+    void shouldReconcileFileBasedCatalogWithoutRemovingVectors() throws Exception {
+      // Given
+      when(hybridRepository.isCatalogSynced()).thenReturn(false);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
+
+      // When
+      indexInitService.rebuildIndex();
+
+      // Then
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, false);
+    }
+
+    @Test
+    @DisplayName("Should not remove vectors while the S3 catalog is not fully synced")
+    void shouldReconcileUnsyncedS3CatalogWithoutRemovingVectors() throws Exception {
+      // Given - S3 is connected, but its last sync failed
+      when(hybridRepository.isCatalogSynced()).thenReturn(false);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
+
+      // When
+      indexInitService.rebuildIndex();
+
+      // Then
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, false);
+    }
+
+    @Test
+    @DisplayName("Should not remove vectors when the S3 sync fails while the catalog is read")
+    void shouldReconcileWithoutRemovingVectorsWhenSyncFailsMeanwhile() throws Exception {
+      // Given
+      when(hybridRepository.isCatalogSynced()).thenReturn(true, false);
+      when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
+
+      // When
+      indexInitService.rebuildIndex();
+
+      // Then
+      verify(vectorSearchService).reconcileIndex(mockSemanticTypes, false);
     }
 
     @Test
@@ -407,7 +509,6 @@ class VectorIndexInitializationServiceTest {
     void shouldTrackIndexingProgressDuringInitialization() throws Exception {
       // Given
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
 
       // When
@@ -440,7 +541,6 @@ class VectorIndexInitializationServiceTest {
     void shouldHandleEmptySemanticTypesListDuringInitialization() throws Exception {
       // Given
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(Collections.emptyList());
 
       // When
@@ -449,8 +549,10 @@ class VectorIndexInitializationServiceTest {
       // Give the async operation a moment to complete
       Thread.sleep(1500);
 
-      // Then
-      verify(vectorSearchService).indexSemanticTypes(Collections.emptyList());
+      // Then - the search service keeps every vector when the catalog is empty
+      verify(vectorSearchService).reconcileIndex(Collections.emptyList(), true);
+      verify(vectorSearchService, never()).clearIndex();
+      verify(vectorSearchService, never()).removeFromIndex(anyString());
     }
 
     @Test
@@ -478,7 +580,6 @@ class VectorIndexInitializationServiceTest {
     void shouldHandleCustomTypeServiceExceptionInInitialization() throws Exception {
       // Given
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes())
           .thenThrow(new RuntimeException("Service unavailable"));
 
@@ -497,7 +598,6 @@ class VectorIndexInitializationServiceTest {
     void shouldHandleConcurrentInitializationAttempts() throws Exception {
       // Given
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(mockSemanticTypes);
 
       // When - Call initialization multiple times concurrently
@@ -520,7 +620,6 @@ class VectorIndexInitializationServiceTest {
       List<CustomSemanticType> largeList =
           Collections.nCopies(10000, createMockSemanticType("LARGE.TYPE", "Large type"));
       when(awsCredentialsService.areCredentialsAvailable()).thenReturn(true);
-      when(vectorSearchService.hasAnyStoredVectors()).thenReturn(false);
       when(customSemanticTypeService.getAllCustomTypes()).thenReturn(largeList);
 
       // When
@@ -530,7 +629,7 @@ class VectorIndexInitializationServiceTest {
       Thread.sleep(3000);
 
       // Then
-      verify(vectorSearchService).indexSemanticTypes(largeList);
+      verify(vectorSearchService).reconcileIndex(largeList, true);
     }
   }
 
@@ -549,7 +648,7 @@ class VectorIndexInitializationServiceTest {
         .semanticType(semanticType)
         .type("built-in")
         .description("Mock vector for " + semanticType)
-        .embedding(Arrays.asList(0.1f, 0.2f, 0.3f))
+        .embedding(new float[] {0.1f, 0.2f, 0.3f})
         .originalText("Mock text")
         .pluginType("regex")
         .examples(Arrays.asList("example1", "example2"))
@@ -0,0 +1,233 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("VectorMatrix Tests")
+class VectorMatrixTest {
+
+  @Test
+  @DisplayName("Should match a naive dot product for every remainder of the unrolled loop")
+  void shouldMatchNaiveDotProduct() {
+    Random random = new Random(42);
+    for (int length = 0; length <= 9; length++) {
+      float[] a = new float[length + 2];
+      float[] b = new float[length + 3];
+      for (int i = 0; i < a.length; i++) {
+        a[i] = random.nextFloat() - 0.5f;
+      }
+      for (int i = 0; i < b.length; i++) {
+        b[i] = random.nextFloat() - 0.5f;
+      }
+      double expected = 0;
+      for (int i = 0; i < length; i++) {
+        expected += a[2 + i] * b[3 + i];
+      }
+      assertThat((double) VectorMath.dot(a, 2, b, 3, length)).isCloseTo(expected, within(1e-5));
+    }
+  }
+
+  @Test
+  @DisplayName("Should normalize rows so scores are cosine similarities")
+  void shouldScoreCosineSimilarity() {
+    VectorMatrix matrix =
+        VectorMatrix.of(List.of(vector("A", 3f, 4f, 0f), vector("B", 0f, 0f, 2f)));
+
+    float[] scores = matrix.scores(VectorMath.normalize(new float[] {3f, 4f, 0f}));
+
+    assertThat(matrix.size()).isEqualTo(2);
+    assertThat(matrix.getDimensions()).isEqualTo(3);
+    assertThat((double) scores[0]).isCloseTo(1.0, within(1e-6));
+    assertThat((double) scores[1]).isCloseTo(0.0, within(1e-6));
+  }
+
+  @Test
+  @DisplayName("Should leave out vectors without embedding or with another dimension")
+  void shouldSkipUnusableVectors() {
+    VectorData missing = VectorData.builder().semanticType("MISSING").build();
+    VectorMatrix matrix =
+        VectorMatrix.of(List.of(missing, vector("A", 1f, 0f), vector("B", 1f, 0f, 0f)));
+
+    assertThat(matrix.size()).isEqualTo(1);
+    assertThat(matrix.getVector(0).getSemanticType()).isEqualTo("A");
+    assertThatThrownBy(() -> matrix.scores(new float[] {1f, 0f, 0f}))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(VectorMatrix.empty().scores(new float[] {1f})).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should keep the most common dimension when dimensions are mixed")
+  void shouldKeepMostCommonDimension() {
+    VectorMatrix matrix =
+        VectorMatrix.of(
+            List.of(vector("OLD", 1f, 0f, 0f), vector("NEW_A", 1f, 0f), vector("NEW_B", 0f, 1f)));
+
+    assertThat(matrix.getDimensions()).isEqualTo(2);
+    assertThat(matrix.size()).isEqualTo(2);
+    assertThat(matrix.getVector(0).getSemanticType()).isEqualTo("NEW_A");
+  }
+
+  @Test
+  @DisplayName("Should estimate scores closely from int8 rows and re-rank candidates exactly")
+  void shouldScoreInt8Rows() {
+    List<VectorData> vectors = randomVectors(new Random(3), 200, 64);
+    VectorMatrix exact = VectorMatrix.of(vectors);
+    VectorMatrix int8 = VectorMatrix.of(vectors, VectorMatrix.Quantization.INT8);
+    float[] query = VectorMath.normalize(vectors.get(17).getEmbedding());
+
+    float[] expected = exact.scores(query);
+    float[] estimated = int8.scores(query);
+    for (int row = 0; row < expected.length; row++) {
+      assertThat((double) estimated[row]).isCloseTo(expected[row], within(0.02));
+    }
+    assertThat(int8.packedBytes()).isEqualTo(200 * 64 + 200 * 8);
+    assertThat(int8.residentBytes()).isEqualTo(int8.packedBytes() + 200 * 64 * 4);
+
+    float[] reranked = int8.scores(query, 10);
+    assertThat((double) reranked[17]).isCloseTo(1.0, within(1e-5));
+    int scored = 0;
+    for (int row = 0; row < reranked.length; row++) {
+      if (reranked[row] != Float.NEGATIVE_INFINITY) {
+        scored++;
+        assertThat((double) reranked[row]).isCloseTo(expected[row], within(1e-5));
+      }
+    }
+    assertThat(scored).isEqualTo(10);
+  }
+
+  @Test
+  @DisplayName("Should find the nearest rows through sign bits and re-rank them exactly")
+  void shouldScoreBinaryRows() {
+    List<VectorData> vectors = randomVectors(new Random(5), 200, 128);
+    VectorMatrix binary = VectorMatrix.of(vectors, VectorMatrix.Quantization.BINARY);
+    float[] query = VectorMath.normalize(vectors.get(42).getEmbedding());
+
+    assertThat((double) binary.scores(query)[42]).isCloseTo(1.0, within(1e-6));
+    float[] reranked = binary.scores(query, 5);
+    assertThat((double) reranked[42]).isCloseTo(1.0, within(1e-5));
+    assertThat(binary.packedBytes()).isEqualTo(200 * 2 * 8);
+    assertThat(binary.residentBytes()).isEqualTo(200 * 2 * 8 + 200 * 128 * 4);
+    assertThatThrownBy(() -> binary.row(0)).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  @DisplayName("Should use unit-length embeddings as rows instead of copying them")
+  void shouldShareUnitLengthEmbeddings() {
+    VectorData unit = vector("UNIT", 0.6f, 0.8f);
+    VectorData raw = vector("RAW", 3f, 4f);
+
+    VectorMatrix matrix = VectorMatrix.of(List.of(unit, raw));
+
+    assertThat(matrix.row(0)).isSameAs(unit.getEmbedding());
+    assertThat(matrix.row(1)).isNotSameAs(raw.getEmbedding()).containsExactly(0.6f, 0.8f);
+    assertThat(matrix.packedBytes()).isEqualTo(2 * 4);
+    assertThat(matrix.residentBytes()).isEqualTo(2 * 4 + 2 * 2 * 4);
+  }
+
+  @Test
+  @DisplayName("Should parse configured quantization names")
+  void shouldParseQuantization() {
+    assertThat(VectorMatrix.Quantization.parse(null)).isEqualTo(VectorMatrix.Quantization.NONE);
+    assertThat(VectorMatrix.Quantization.parse(" int8 ")).isEqualTo(VectorMatrix.Quantization.INT8);
+    assertThat(VectorMatrix.Quantization.parse("BINARY"))
+        .isEqualTo(VectorMatrix.Quantization.BINARY);
+    assertThatThrownBy(() -> VectorMatrix.Quantization.parse("pq"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Unknown vector quantization: pq");
+  }
+
+  @Test
+  @DisplayName("Should append stored vectors without changing published matrices")
+  void shouldAppendToPublishedMatrix() {
+    VectorMatrix.Writer writer =
+        new VectorMatrix.Writer(
+            List.of(vector("A", 1f, 0f, 0f), vector("B", 0f, 1f, 0f)),
+            VectorMatrix.Quantization.NONE);
+    VectorMatrix before = writer.publish();
+
+    writer.put(vector("C", 0f, 0f, 3f));
+    writer.put(vector("A", -1f, 0f, 0f));
+    VectorMatrix after = writer.publish();
+
+    float[] query = {1f, 0f, 0f};
+    assertThat(before.size()).isEqualTo(2);
+    assertThat(before.scores(query)).containsExactly(1f, 0f);
+    assertThat(after.size()).isEqualTo(4);
+    assertThat(after.deletedRows()).isEqualTo(1);
+    assertThat(after.isDeleted(0)).isTrue();
+    assertThat(after.scores(query)).containsExactly(Float.NEGATIVE_INFINITY, 0f, 0f, -1f);
+    assertThat(after.getVector(3).getSemanticType()).isEqualTo("A");
+    assertThat(after.row(3)).isSameAs(after.getVector(3).getEmbedding());
+    assertThat(after.packedBytes()).isEqualTo(4 * 3);
+  }
+
+  @Test
+  @DisplayName("Should leave deleted rows out of the re-ranked candidates")
+  void shouldSkipDeletedRowsWhenReranking() {
+    List<VectorData> vectors = randomVectors(new Random(9), 64, 64);
+    VectorMatrix.Writer writer = new VectorMatrix.Writer(vectors, VectorMatrix.Quantization.INT8);
+    writer.remove("TYPE_7");
+    VectorMatrix matrix = writer.publish();
+
+    float[] scores = matrix.scores(VectorMath.normalize(vectors.get(7).getEmbedding()), 64);
+
+    assertThat(scores[7]).isEqualTo(Float.NEGATIVE_INFINITY);
+    int scored = 0;
+    for (float score : scores) {
+      scored += score > Float.NEGATIVE_INFINITY ? 1 : 0;
+    }
+    assertThat(scored).isEqualTo(63);
+
+    writer.put(vector("LATE", vectors.get(3).getEmbedding()));
+    VectorMatrix grown = writer.publish();
+    assertThat(grown.size()).isEqualTo(65);
+    assertThat(grown.isDeleted(64)).isFalse();
+    assertThat(grown.scores(VectorMath.normalize(vectors.get(3).getEmbedding()), 2)[64])
+        .isGreaterThan(0.99f);
+  }
+
+  @Test
+  @DisplayName("Should ask to repack once deleted rows or other dimensions pile up")
+  void shouldAskToRepack() {
+    VectorMatrix.Writer writer =
+        new VectorMatrix.Writer(randomVectors(new Random(3), 8, 4), VectorMatrix.Quantization.NONE);
+    writer.remove("TYPE_0");
+    writer.remove("TYPE_1");
+    assertThat(writer.needsRepack()).isFalse();
+    writer.remove("TYPE_2");
+    assertThat(writer.needsRepack()).isTrue();
+
+    VectorMatrix.Writer resized =
+        new VectorMatrix.Writer(randomVectors(new Random(4), 2, 4), VectorMatrix.Quantization.NONE);
+    resized.put(vector("WIDE_1", 1f, 2f, 3f, 4f, 5f));
+    resized.put(vector("WIDE_2", 1f, 2f, 3f, 4f, 5f));
+    assertThat(resized.needsRepack()).isFalse();
+    resized.put(vector("WIDE_3", 1f, 2f, 3f, 4f, 5f));
+    assertThat(resized.needsRepack()).isTrue();
+    assertThat(resized.publish().size()).isEqualTo(2);
+  }
+
+  private static List<VectorData> randomVectors(Random random, int count, int dimensions) {
+    List<VectorData> vectors = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      float[] embedding = new float[dimensions];
+      for (int d = 0; d < dimensions; d++) {
+        embedding[d] = (float) random.nextGaussian();
+      }
+      vectors.add(vector("TYPE_" + i, embedding));
+    }
+    return vectors;
+  }
+
+  private static VectorData vector(String semanticType, float... embedding) {
+    return VectorData.builder().semanticType(semanticType).embedding(embedding).build();
+  }
+}
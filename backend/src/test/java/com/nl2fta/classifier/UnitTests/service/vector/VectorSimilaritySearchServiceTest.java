@@ -2,11 +2,15 @@ package com.nl2fta.classifier.service.vector;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -15,6 +19,7 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -22,9 +27,11 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.nl2fta.classifier.dto.semantic_type.CustomSemanticType;
 import com.nl2fta.classifier.dto.semantic_type.SemanticTypeGenerationRequest;
@@ -63,7 +70,7 @@ class VectorSimilaritySearchServiceTest {
             .semanticType("NAME.FIRST")
             .type("built-in")
             .description("First name of a person")
-            .embedding(Arrays.asList(0.1f, 0.2f, 0.3f))
+            .embedding(new float[] {0.1f, 0.2f, 0.3f})
             .originalText("NAME.FIRST semantic type")
             .pluginType("regex")
             .examples(Arrays.asList("John", "Jane", "Michael"))
@@ -77,7 +84,7 @@ class VectorSimilaritySearchServiceTest {
             .semanticType("EMAIL.ADDRESS")
             .type("built-in")
             .description("Email address format")
-            .embedding(Arrays.asList(0.8f, 0.1f, 0.1f))
+            .embedding(new float[] {0.8f, 0.1f, 0.1f})
             .originalText("EMAIL.ADDRESS semantic type")
             .pluginType("regex")
             .examples(Arrays.asList("user@example.com", "test@domain.org"))
@@ -86,28 +93,21 @@ class VectorSimilaritySearchServiceTest {
             .build();
 
     testVectors = Arrays.asList(nameFirstVector, emailVector);
-    queryEmbedding = Arrays.asList(0.2f, 0.3f, 0.4f);
+    queryEmbedding = Arrays.asList(1f, 0f, 0f);
   }
 
   @Test
   void shouldFindSimilarTypesSuccessfully() {
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(testVectors);
-
-    // Mock similarity calculations
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.1f, 0.2f, 0.3f))))
-        .thenReturn(0.85); // High similarity for NAME.FIRST
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.8f, 0.1f, 0.1f))))
-        .thenReturn(0.3); // Low similarity for EMAIL
+    // High similarity for NAME.FIRST, low for EMAIL
+    stubIndex(testVectors, 0.85, 0.3);
 
     List<SimilaritySearchResult> results =
         vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
 
     assertThat(results).hasSize(1);
     assertThat(results.get(0).getSemanticType()).isEqualTo("NAME.FIRST");
-    assertThat(results.get(0).getSimilarityScore()).isEqualTo(0.85);
+    assertThat(results.get(0).getSimilarityScore()).isCloseTo(0.85, within(1e-6));
     assertThat(results.get(0).getDescription()).isEqualTo("First name of a person");
     assertThat(results.get(0).getType()).isEqualTo("built-in");
     assertThat(results.get(0).getPluginType()).isEqualTo("regex");
@@ -116,17 +116,16 @@ class VectorSimilaritySearchServiceTest {
     // Implementation may generate more than one embedding call; accept at least one invocation
     org.mockito.Mockito.verify(embeddingService, org.mockito.Mockito.atLeastOnce())
         .generateEmbedding(anyString());
-    verify(storageService).getAllVectors();
-    verify(embeddingService, times(2)).calculateCosineSimilarity(any(), any());
+    verify(storageService).getVectorMatrix();
+    // Stored rows are pre-normalized, so no per-pair cosine is computed
+    verify(embeddingService, never()).calculateCosineSimilarity(any(), any());
   }
 
   @Test
   void shouldReturnEmptyListWhenNoVectorsAboveThreshold() {
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(testVectors);
-
-    // Mock low similarity scores
-    when(embeddingService.calculateCosineSimilarity(any(), any())).thenReturn(0.3, 0.2);
+    // Low similarity scores
+    stubIndex(testVectors, 0.3, 0.2);
 
     List<SimilaritySearchResult> results =
         vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
@@ -137,24 +136,17 @@ class VectorSimilaritySearchServiceTest {
   @Test
   void shouldSortResultsBySimilarityDescending() {
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(testVectors);
-
-    // Mock similarity scores - EMAIL higher than NAME.FIRST
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.1f, 0.2f, 0.3f))))
-        .thenReturn(0.7); // NAME.FIRST
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.8f, 0.1f, 0.1f))))
-        .thenReturn(0.9); // EMAIL
+    // EMAIL higher than NAME.FIRST
+    stubIndex(testVectors, 0.7, 0.9);
 
     List<SimilaritySearchResult> results =
         vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
 
     assertThat(results).hasSize(2);
     assertThat(results.get(0).getSemanticType()).isEqualTo("EMAIL.ADDRESS");
-    assertThat(results.get(0).getSimilarityScore()).isEqualTo(0.9);
+    assertThat(results.get(0).getSimilarityScore()).isCloseTo(0.9, within(1e-6));
     assertThat(results.get(1).getSemanticType()).isEqualTo("NAME.FIRST");
-    assertThat(results.get(1).getSimilarityScore()).isEqualTo(0.7);
+    assertThat(results.get(1).getSimilarityScore()).isCloseTo(0.7, within(1e-6));
   }
 
   @Test
@@ -170,11 +162,8 @@ class VectorSimilaritySearchServiceTest {
             createTestVector("TYPE6", 0.6f));
 
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(manyVectors);
-
-    // Mock decreasing similarity scores
-    when(embeddingService.calculateCosineSimilarity(any(), any()))
-        .thenReturn(0.9, 0.8, 0.75, 0.7, 0.55, 0.3);
+    // Decreasing similarity scores
+    stubIndex(manyVectors, 0.9, 0.8, 0.75, 0.7, 0.55, 0.3);
 
     List<SimilaritySearchResult> results =
         vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
@@ -185,31 +174,40 @@ class VectorSimilaritySearchServiceTest {
   }
 
   @Test
-  void shouldFindMostSimilarType() {
+  void shouldSearchApproximateIndexWhenAvailable() {
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(testVectors);
+    HnswIndex<VectorData> graph = new HnswIndex<>(3, 4, 10, 10, 1L);
+    graph.add("NAME.FIRST", withSimilarity(0.9), testVectors.get(0));
+    graph.add("EMAIL.ADDRESS", withSimilarity(0.4), testVectors.get(1));
+    when(storageService.getAnnIndex()).thenReturn(graph);
 
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.1f, 0.2f, 0.3f))))
-        .thenReturn(0.85);
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.8f, 0.1f, 0.1f))))
-        .thenReturn(0.3);
+    List<SimilaritySearchResult> results =
+        vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
+
+    assertThat(results)
+        .extracting(SimilaritySearchResult::getSemanticType)
+        .containsExactly("NAME.FIRST");
+    assertThat(results.get(0).getSimilarityScore()).isCloseTo(0.9, within(1e-6));
+    verify(storageService, never()).getVectorMatrix();
+  }
+
+  @Test
+  void shouldFindMostSimilarType() {
+    when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
+    stubIndex(testVectors, 0.85, 0.3);
 
     SimilaritySearchResult result = vectorSimilaritySearchService.findMostSimilarType(testRequest);
 
     assertThat(result).isNotNull();
     assertThat(result.getSemanticType()).isEqualTo("NAME.FIRST");
-    assertThat(result.getSimilarityScore()).isEqualTo(0.85);
+    assertThat(result.getSimilarityScore()).isCloseTo(0.85, within(1e-6));
   }
 
   @Test
   void shouldReturnNullWhenNoSimilarTypeFound() {
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(testVectors);
-
-    // Mock low similarity scores below default threshold (0.35)
-    when(embeddingService.calculateCosineSimilarity(any(), any())).thenReturn(0.3, 0.2);
+    // Low similarity scores below default threshold (0.35)
+    stubIndex(testVectors, 0.3, 0.2);
 
     SimilaritySearchResult result = vectorSimilaritySearchService.findMostSimilarType(testRequest);
 
@@ -219,21 +217,14 @@ class VectorSimilaritySearchServiceTest {
   @Test
   void shouldFindTopSimilarTypesForLLM() {
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(testVectors);
-
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.1f, 0.2f, 0.3f))))
-        .thenReturn(0.9);
-    when(embeddingService.calculateCosineSimilarity(
-            eq(queryEmbedding), eq(Arrays.asList(0.8f, 0.1f, 0.1f))))
-        .thenReturn(0.87);
+    stubIndex(testVectors, 0.9, 0.87);
 
     List<SimilaritySearchResult> results =
         vectorSimilaritySearchService.findTopSimilarTypesForLLM(testRequest, 0.85);
 
     assertThat(results).hasSize(2);
-    assertThat(results.get(0).getSimilarityScore()).isEqualTo(0.9);
-    assertThat(results.get(1).getSimilarityScore()).isEqualTo(0.87);
+    assertThat(results.get(0).getSimilarityScore()).isCloseTo(0.9, within(1e-6));
+    assertThat(results.get(1).getSimilarityScore()).isCloseTo(0.87, within(1e-6));
   }
 
   @Test
@@ -247,10 +238,7 @@ class VectorSimilaritySearchServiceTest {
             createTestVector("TYPE5", 0.86f));
 
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(manyVectors);
-
-    when(embeddingService.calculateCosineSimilarity(any(), any()))
-        .thenReturn(0.95, 0.9, 0.88, 0.87, 0.86);
+    stubIndex(manyVectors, 0.95, 0.9, 0.88, 0.87, 0.86);
 
     List<SimilaritySearchResult> results =
         vectorSimilaritySearchService.findTopSimilarTypesForLLM(testRequest, 0.85);
@@ -279,6 +267,19 @@ class VectorSimilaritySearchServiceTest {
     verify(storageService).storeVector(any(VectorData.class));
   }
 
+  @Test
+  void shouldStoreNormalizedEmbeddingWhenIndexing() {
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenReturn("Generated text for embedding");
+    when(embeddingService.generateEmbedding(anyString())).thenReturn(Arrays.asList(3f, 4f, 0f));
+
+    vectorSimilaritySearchService.indexSemanticType(createCustomSemanticType());
+
+    ArgumentCaptor<VectorData> stored = ArgumentCaptor.forClass(VectorData.class);
+    verify(storageService).storeVector(stored.capture());
+    assertThat(stored.getValue().getEmbedding()).containsExactly(0.6f, 0.8f, 0f);
+  }
+
   @Test
   void shouldHandleIndexSemanticTypeException() {
     CustomSemanticType customType = createCustomSemanticType();
@@ -302,13 +303,56 @@ class VectorSimilaritySearchServiceTest {
 
     when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
         .thenReturn("Generated text");
-    when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
+    stubBulkEmbeddings(List.of());
     when(storageService.generateVectorId(anyString())).thenReturn("ID1", "ID2");
 
     vectorSimilaritySearchService.indexSemanticTypes(types);
 
     verify(embeddingService, times(2)).generateSemanticTypeText(anyString(), anyString(), any());
-    verify(storageService, times(2)).storeVector(any(VectorData.class));
+    verify(storageService, never()).storeVector(any(VectorData.class));
+    assertThat(storedVectors()).hasSize(2);
+  }
+
+  @Test
+  @DisplayName("Should store embedded types in batches of the configured size")
+  void shouldStoreVectorsInBatches() {
+    ReflectionTestUtils.setField(vectorSimilaritySearchService, "storeBatchSize", 2);
+    List<CustomSemanticType> types =
+        IntStream.range(0, 5)
+            .mapToObj(i -> createCustomSemanticType("TYPE" + i, "Description " + i))
+            .toList();
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenReturn("Generated text");
+    stubBulkEmbeddings(List.of());
+    when(storageService.generateVectorId(anyString())).thenReturn("ID");
+
+    vectorSimilaritySearchService.indexSemanticTypes(types);
+
+    ArgumentCaptor<List<VectorData>> batches = ArgumentCaptor.captor();
+    verify(storageService, times(3)).storeVectors(batches.capture());
+    assertThat(batches.getAllValues()).extracting(List::size).containsExactly(2, 2, 1);
+  }
+
+  @Test
+  @DisplayName("Should count a batch that could not be stored as failed")
+  void shouldCountFailedBatchStores() {
+    when(storageService.getAllVectors()).thenReturn(List.of());
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenReturn("Generated text");
+    stubBulkEmbeddings(List.of());
+    when(storageService.generateVectorId(anyString())).thenReturn("ID");
+    doThrow(new RuntimeException("Failed to store vectors"))
+        .when(storageService)
+        .storeVectors(anyList());
+
+    VectorSimilaritySearchService.ReconciliationSummary summary =
+        vectorSimilaritySearchService.reconcileIndex(
+            Arrays.asList(
+                createCustomSemanticType("TYPE1", "Description 1"),
+                createCustomSemanticType("TYPE2", "Description 2")));
+
+    assertThat(summary.getReembedded()).isZero();
+    assertThat(summary.getFailed()).isEqualTo(2);
   }
 
   @Test
@@ -322,13 +366,169 @@ class VectorSimilaritySearchServiceTest {
         .thenThrow(new RuntimeException("Failed for TYPE1"));
     when(embeddingService.generateSemanticTypeText(eq("TYPE2"), anyString(), any()))
         .thenReturn("Generated text");
-    when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
+    stubBulkEmbeddings(List.of());
     when(storageService.generateVectorId("TYPE2")).thenReturn("ID2");
 
     vectorSimilaritySearchService.indexSemanticTypes(types);
 
     // Should still process TYPE2 despite TYPE1 failure
-    verify(storageService, times(1)).storeVector(any(VectorData.class));
+    assertThat(storedVectors()).extracting(VectorData::getSemanticType).containsExactly("TYPE2");
+  }
+
+  @Test
+  @DisplayName("Should store only the types whose embeddings were generated")
+  void shouldSkipTypesWhoseEmbeddingFailed() {
+    List<CustomSemanticType> types =
+        Arrays.asList(
+            createCustomSemanticType("TYPE1", "Description 1"),
+            createCustomSemanticType("TYPE2", "Description 2"));
+
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenReturn("Generated text");
+    stubBulkEmbeddings(List.of(0));
+    when(storageService.generateVectorId("TYPE2")).thenReturn("ID2");
+
+    vectorSimilaritySearchService.indexSemanticTypes(types);
+
+    assertThat(storedVectors()).extracting(VectorData::getSemanticType).containsExactly("TYPE2");
+    verify(embeddingService, never()).generateEmbedding(anyString());
+  }
+
+  @Test
+  @DisplayName("Should re-embed only added or changed types and remove orphaned vectors")
+  void shouldReconcileIndexByContentHash() {
+    when(storageService.getAllVectors())
+        .thenReturn(
+            Arrays.asList(
+                storedVector("KEEP", "text KEEP", true),
+                storedVector("LEGACY", "text LEGACY", false),
+                storedVector("CHANGED", "old text", true),
+                storedVector("ORPHAN", "text ORPHAN", true)));
+    when(embeddingService.getEmbeddingDimensions()).thenReturn(2);
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenAnswer(invocation -> "text " + invocation.getArgument(0));
+    stubBulkEmbeddings(List.of());
+    when(storageService.generateVectorId(anyString())).thenReturn("ID");
+
+    VectorSimilaritySearchService.ReconciliationSummary summary =
+        vectorSimilaritySearchService.reconcileIndex(
+            Arrays.asList(
+                createCustomSemanticType("KEEP", "Kept"),
+                createCustomSemanticType("LEGACY", "Stored before hashes"),
+                createCustomSemanticType("CHANGED", "Edited"),
+                createCustomSemanticType("NEW", "Added")));
+
+    assertThat(summary.getUnchanged()).isEqualTo(2);
+    assertThat(summary.getReembedded()).isEqualTo(2);
+    assertThat(summary.getRemoved()).isEqualTo(1);
+    assertThat(summary.getFailed()).isZero();
+    verify(embeddingService).generateEmbeddings(eq(List.of("text CHANGED", "text NEW")), any());
+    verify(storageService).deleteVector("ORPHAN");
+    verify(storageService, never()).deleteVector("KEEP");
+    assertThat(storedVectors())
+        .extracting(VectorData::getContentHash)
+        .containsExactly(
+            VectorSimilaritySearchService.contentHash("text CHANGED"),
+            VectorSimilaritySearchService.contentHash("text NEW"));
+  }
+
+  @Test
+  @DisplayName("Should keep every vector when the catalog is empty or not authoritative")
+  void shouldNotRemoveVectorsWithoutAuthoritativeCatalog() {
+    when(storageService.getAllVectors())
+        .thenReturn(
+            Arrays.asList(
+                storedVector("KEEP", "text KEEP", true),
+                storedVector("OTHER", "text OTHER", true)));
+    when(embeddingService.getEmbeddingDimensions()).thenReturn(2);
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenAnswer(invocation -> "text " + invocation.getArgument(0));
+
+    VectorSimilaritySearchService.ReconciliationSummary empty =
+        vectorSimilaritySearchService.reconcileIndex(Collections.emptyList());
+    VectorSimilaritySearchService.ReconciliationSummary partial =
+        vectorSimilaritySearchService.reconcileIndex(
+            List.of(createCustomSemanticType("KEEP", "Kept")), false);
+
+    assertThat(empty.getRemoved()).isZero();
+    assertThat(partial.getRemoved()).isZero();
+    assertThat(partial.getUnchanged()).isEqualTo(1);
+    verify(storageService, never()).deleteVector(anyString());
+  }
+
+  @Test
+  @DisplayName("Should keep vectors of the same model while its dimension is not yet known")
+  void shouldReconcileBeforeDimensionIsKnown() {
+    VectorData recorded = storedVector("RECORDED", "text RECORDED", true);
+    recorded.setEmbeddingModel("cohere.embed-v3");
+    VectorData unrecorded = storedVector("UNRECORDED", "text UNRECORDED", true);
+    when(storageService.getAllVectors()).thenReturn(Arrays.asList(recorded, unrecorded));
+    when(embeddingService.getEmbeddingDimensions()).thenReturn(0);
+    when(embeddingService.getModelId()).thenReturn("cohere.embed-v3");
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenAnswer(invocation -> "text " + invocation.getArgument(0));
+    stubBulkEmbeddings(List.of());
+    when(storageService.generateVectorId(anyString())).thenReturn("ID");
+
+    VectorSimilaritySearchService.ReconciliationSummary summary =
+        vectorSimilaritySearchService.reconcileIndex(
+            Arrays.asList(
+                createCustomSemanticType("RECORDED", "Recorded model"),
+                createCustomSemanticType("UNRECORDED", "Stored before models were recorded")));
+
+    assertThat(summary.getUnchanged()).isEqualTo(1);
+    assertThat(storedVectors())
+        .extracting(VectorData::getSemanticType)
+        .containsExactly("UNRECORDED");
+  }
+
+  @Test
+  @DisplayName("Should re-embed vectors stored by another embedding model")
+  void shouldReembedVectorsFromAnotherModel() {
+    VectorData sameModel = storedVector("SAME", "text SAME", true);
+    sameModel.setEmbeddingModel("amazon.titan-embed-text-v2:0");
+    VectorData otherModel = storedVector("OTHER", "text OTHER", true);
+    otherModel.setEmbeddingModel("local-hashed-ngram-v1-2");
+    when(storageService.getAllVectors()).thenReturn(Arrays.asList(sameModel, otherModel));
+    when(embeddingService.getEmbeddingDimensions()).thenReturn(2);
+    when(embeddingService.getModelId()).thenReturn("amazon.titan-embed-text-v2:0");
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenAnswer(invocation -> "text " + invocation.getArgument(0));
+    stubBulkEmbeddings(List.of());
+    when(storageService.generateVectorId(anyString())).thenReturn("ID");
+
+    VectorSimilaritySearchService.ReconciliationSummary summary =
+        vectorSimilaritySearchService.reconcileIndex(
+            Arrays.asList(
+                createCustomSemanticType("SAME", "Same model"),
+                createCustomSemanticType("OTHER", "Other model")));
+
+    assertThat(summary.getUnchanged()).isEqualTo(1);
+    assertThat(summary.getReembedded()).isEqualTo(1);
+    List<VectorData> stored = storedVectors();
+    assertThat(stored).extracting(VectorData::getSemanticType).containsExactly("OTHER");
+    assertThat(stored.get(0).getEmbeddingModel()).isEqualTo("amazon.titan-embed-text-v2:0");
+  }
+
+  @Test
+  @DisplayName("Should count types whose embedding failed during reconciliation")
+  void shouldReportFailedReconciliation() {
+    when(storageService.getAllVectors()).thenReturn(List.of());
+    when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
+        .thenReturn("Generated text");
+    stubBulkEmbeddings(List.of(1));
+    when(storageService.generateVectorId(anyString())).thenReturn("ID");
+
+    VectorSimilaritySearchService.ReconciliationSummary summary =
+        vectorSimilaritySearchService.reconcileIndex(
+            Arrays.asList(
+                createCustomSemanticType("TYPE1", "Description 1"),
+                createCustomSemanticType("TYPE2", "Description 2")));
+
+    assertThat(summary.getReembedded()).isEqualTo(1);
+    assertThat(summary.getFailed()).isEqualTo(1);
+    assertThat(summary.getUnchanged()).isZero();
+    assertThat(summary.getRemoved()).isZero();
   }
 
   @Test
@@ -337,7 +537,7 @@ class VectorSimilaritySearchServiceTest {
 
     when(embeddingService.generateSemanticTypeText(anyString(), anyString(), any()))
         .thenReturn("Generated text");
-    when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
+    stubBulkEmbeddings(List.of());
     when(storageService.generateVectorId(anyString())).thenReturn("ID1");
 
     // Set the indexInitService (normally injected)
@@ -382,7 +582,7 @@ class VectorSimilaritySearchServiceTest {
             .build();
 
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(Collections.emptyList());
+    when(storageService.getVectorMatrix()).thenReturn(VectorMatrix.empty());
 
     vectorSimilaritySearchService.findSimilarTypes(request, 0.5);
 
@@ -405,7 +605,7 @@ class VectorSimilaritySearchServiceTest {
             .build();
 
     when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-    when(storageService.getAllVectors()).thenReturn(Collections.emptyList());
+    when(storageService.getVectorMatrix()).thenReturn(VectorMatrix.empty());
 
     vectorSimilaritySearchService.findSimilarTypes(request, 0.5);
 
@@ -501,6 +701,7 @@ class VectorSimilaritySearchServiceTest {
     // For now, removing the line as it's not directly applicable to Mockito.
     // when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
     // when(storageService.getAllVectors()).thenReturn(Collections.emptyList());
+    when(storageService.getVectorMatrix()).thenReturn(VectorMatrix.empty());
 
     vectorSimilaritySearchService.findSimilarTypes(request, 0.5);
 
@@ -510,13 +711,28 @@ class VectorSimilaritySearchServiceTest {
         .generateEmbedding(anyString());
   }
 
+  /**
+   * Points each vector's embedding at the given cosine similarity to the query ({@code [1, 0, 0]})
+   * and serves them from the stubbed index.
+   */
+  private void stubIndex(List<VectorData> vectors, double... similarities) {
+    for (int i = 0; i < vectors.size(); i++) {
+      vectors.get(i).setEmbedding(withSimilarity(similarities[i]));
+    }
+    when(storageService.getVectorMatrix()).thenReturn(VectorMatrix.of(vectors));
+  }
+
+  private static float[] withSimilarity(double similarity) {
+    return new float[] {(float) similarity, (float) Math.sqrt(1 - similarity * similarity), 0f};
+  }
+
   private VectorData createTestVector(String semanticType, float embeddingValue) {
     return VectorData.builder()
         .id(semanticType + "_123")
         .semanticType(semanticType)
         .type("built-in")
         .description("Description for " + semanticType)
-        .embedding(Arrays.asList(embeddingValue, 0.1f, 0.1f))
+        .embedding(new float[] {embeddingValue, 0.1f, 0.1f})
         .originalText(semanticType + " semantic type")
         .pluginType("regex")
         .examples(Arrays.asList("example1", "example2"))
@@ -563,8 +779,7 @@ class VectorSimilaritySearchServiceTest {
     @DisplayName("Should handle extreme threshold values")
     void shouldHandleExtremeThresholdValues() {
       when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-      when(storageService.getAllVectors()).thenReturn(testVectors);
-      when(embeddingService.calculateCosineSimilarity(any(), any())).thenReturn(0.5, 0.3);
+      stubIndex(testVectors, 0.5, 0.3);
 
       // Test with threshold 0.0 - should return all results
       List<SimilaritySearchResult> results1 =
@@ -591,7 +806,7 @@ class VectorSimilaritySearchServiceTest {
     @DisplayName("Should handle empty storage gracefully")
     void shouldHandleEmptyStorageGracefully() {
       when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-      when(storageService.getAllVectors()).thenReturn(Collections.emptyList());
+      when(storageService.getVectorMatrix()).thenReturn(VectorMatrix.empty());
 
       List<SimilaritySearchResult> results =
           vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
@@ -624,7 +839,7 @@ class VectorSimilaritySearchServiceTest {
               .semanticType("EMPTY.EMBEDDING")
               .type("built-in")
               .description("Vector with empty embedding")
-              .embedding(Collections.emptyList())
+              .embedding(new float[0])
               .build();
 
       List<VectorData> problematicVectors =
@@ -634,15 +849,16 @@ class VectorSimilaritySearchServiceTest {
               testVectors.get(0) // One valid vector
               );
 
+      testVectors.get(0).setEmbedding(withSimilarity(0.85));
       when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-      when(storageService.getAllVectors()).thenReturn(problematicVectors);
-      // First call will fail due to null embedding
-      when(embeddingService.calculateCosineSimilarity(eq(queryEmbedding), any()))
-          .thenThrow(new NullPointerException("Cannot calculate similarity with null embedding"));
+      when(storageService.getVectorMatrix()).thenReturn(VectorMatrix.of(problematicVectors));
 
-      // The service will throw NPE when trying to calculate similarity with null embedding
-      assertThatThrownBy(() -> vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5))
-          .isInstanceOf(NullPointerException.class);
+      // Vectors without an embedding are left out of the index instead of failing the search
+      List<SimilaritySearchResult> results =
+          vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
+      assertThat(results)
+          .extracting(SimilaritySearchResult::getSemanticType)
+          .containsExactly("NAME.FIRST");
     }
 
     @Test
@@ -664,7 +880,7 @@ class VectorSimilaritySearchServiceTest {
     @DisplayName("Should handle storage service failures")
     void shouldHandleStorageServiceFailures() {
       when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-      when(storageService.getAllVectors())
+      when(storageService.getVectorMatrix())
           .thenThrow(new RuntimeException("Storage service unavailable"));
 
       assertThatThrownBy(() -> vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5))
@@ -673,50 +889,36 @@ class VectorSimilaritySearchServiceTest {
     }
 
     @Test
-    @DisplayName("Should handle NaN and infinite similarity scores")
-    void shouldHandleNanAndInfiniteSimilarityScores() {
-      when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-      when(storageService.getAllVectors()).thenReturn(testVectors);
-
-      // Mock NaN and infinite similarity scores
-      when(embeddingService.calculateCosineSimilarity(any(), any()))
-          .thenReturn(Double.NaN, Double.POSITIVE_INFINITY);
-
-      List<SimilaritySearchResult> results =
-          vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5);
-
-      // NaN comparisons always return false, so NaN won't pass threshold
-      // Infinity will pass threshold since Infinity >= 0.5 is true
-      assertThat(results).hasSize(1);
-      assertThat(results.get(0).getSimilarityScore()).isEqualTo(Double.POSITIVE_INFINITY);
+    @DisplayName("Should treat a zero query embedding as dissimilar to everything")
+    void shouldTreatZeroQueryEmbeddingAsDissimilar() {
+      when(embeddingService.generateEmbedding(anyString())).thenReturn(Arrays.asList(0f, 0f, 0f));
+      stubIndex(testVectors, 0.9, 0.8);
+
+      // A zero vector cannot be normalized; it scores 0 rather than NaN
+      assertThat(vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5)).isEmpty();
+      assertThat(vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.0))
+          .extracting(SimilaritySearchResult::getSimilarityScore)
+          .containsOnly(0.0);
     }
 
     @Test
-    @DisplayName("Should handle similarity calculation exceptions")
-    void shouldHandleSimilarityCalculationExceptions() {
-      when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-      when(storageService.getAllVectors()).thenReturn(testVectors);
-      when(embeddingService.calculateCosineSimilarity(any(), any()))
-          .thenThrow(new IllegalArgumentException("Dimension mismatch"));
+    @DisplayName("Should reject query embeddings of a different dimension")
+    void shouldRejectQueryEmbeddingsOfDifferentDimension() {
+      when(embeddingService.generateEmbedding(anyString())).thenReturn(Arrays.asList(1f, 0f));
+      stubIndex(testVectors, 0.9, 0.8);
 
-      // The service will throw exception when calculating similarity
       assertThatThrownBy(() -> vectorSimilaritySearchService.findSimilarTypes(testRequest, 0.5))
-          .isInstanceOf(IllegalArgumentException.class)
-          .hasMessage("Dimension mismatch");
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessage(
+              "Vector index holds 3-dimensional embeddings but the model returns 2;"
+                  + " the index must be rebuilt");
     }
 
     @Test
     @DisplayName("Should handle concurrent access to similarity search")
     void shouldHandleConcurrentAccessToSimilaritySearch() {
       when(embeddingService.generateEmbedding(anyString())).thenReturn(queryEmbedding);
-      when(storageService.getAllVectors()).thenReturn(testVectors);
-      // Make mock deterministic - return based on the exact embedding list
-      when(embeddingService.calculateCosineSimilarity(
-              eq(queryEmbedding), eq(Arrays.asList(0.1f, 0.2f, 0.3f))))
-          .thenReturn(0.8); // NAME.FIRST
-      when(embeddingService.calculateCosineSimilarity(
-              eq(queryEmbedding), eq(Arrays.asList(0.8f, 0.1f, 0.1f))))
-          .thenReturn(0.6); // EMAIL.ADDRESS
+      stubIndex(testVectors, 0.8, 0.6);
 
       // Simulate concurrent access
       List<List<SimilaritySearchResult>> results =
@@ -731,11 +933,41 @@ class VectorSimilaritySearchServiceTest {
           result -> {
             assertThat(result).hasSize(2); // Both vectors above 0.5 threshold
             // Results are sorted by score descending
-            assertThat(result.get(0).getSimilarityScore()).isEqualTo(0.8);
+            assertThat(result.get(0).getSimilarityScore()).isCloseTo(0.8, within(1e-6));
             assertThat(result.get(0).getSemanticType()).isEqualTo("NAME.FIRST");
-            assertThat(result.get(1).getSimilarityScore()).isEqualTo(0.6);
+            assertThat(result.get(1).getSimilarityScore()).isCloseTo(0.6, within(1e-6));
             assertThat(result.get(1).getSemanticType()).isEqualTo("EMAIL.ADDRESS");
           });
     }
   }
+
+  // Answers bulk embedding requests with queryEmbedding, except at the given failed positions
+  private VectorData storedVector(String semanticType, String text, boolean hashed) {
+    return VectorData.builder()
+        .semanticType(semanticType)
+        .embedding(new float[] {1f, 0f})
+        .originalText(text)
+        .contentHash(hashed ? VectorSimilaritySearchService.contentHash(text) : null)
+        .build();
+  }
+
+  // Every vector passed to the batch store, in order
+  private List<VectorData> storedVectors() {
+    ArgumentCaptor<List<VectorData>> batches = ArgumentCaptor.captor();
+    verify(storageService, atLeastOnce()).storeVectors(batches.capture());
+    return batches.getAllValues().stream().flatMap(List::stream).toList();
+  }
+
+  private void stubBulkEmbeddings(List<Integer> failed) {
+    when(embeddingService.generateEmbeddings(anyList(), any()))
+        .thenAnswer(
+            invocation -> {
+              List<String> texts = invocation.getArgument(0);
+              BiConsumer<Integer, List<Float>> onEmbedded = invocation.getArgument(1);
+              IntStream.range(0, texts.size())
+                  .filter(position -> !failed.contains(position))
+                  .forEach(position -> onEmbedded.accept(position, queryEmbedding));
+              return failed;
+            });
+  }
 }
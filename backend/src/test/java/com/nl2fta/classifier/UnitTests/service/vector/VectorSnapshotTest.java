@@ -0,0 +1,174 @@
+package com.nl2fta.classifier.service.vector;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("VectorSnapshot Tests")
+class VectorSnapshotTest {
+
+  private final VectorData email =
+      VectorData.builder()
+          .id("email")
+          .semanticType("EMAIL")
+          .type("built-in")
+          .description("Email address")
+          .embedding(new float[] {0.6f, 0.8f, 0f})
+          .originalText("Email address – électronique")
+          .contentHash("9f2c")
+          .embeddingModel("amazon.titan-embed-text-v2:0")
+          .pluginType("regex")
+          .examples(List.of("a@b.com", "c@d.org"))
+          .createdAt(Instant.ofEpochSecond(1_700_000_000L, 123_456_789))
+          .build();
+
+  private final VectorData phone =
+      VectorData.builder().semanticType("PHONE").embedding(new float[] {0f, 0f, 2f}).build();
+
+  @Test
+  @DisplayName("Should round-trip vectors with their metadata and unit-length embeddings")
+  void shouldRoundTripSnapshot() throws IOException {
+    VectorSnapshot decoded =
+        VectorSnapshot.decode(new VectorSnapshot(7, List.of(email, phone)).encode());
+
+    assertThat(decoded.version()).isEqualTo(7);
+    assertThat(decoded.vectors()).hasSize(2);
+    VectorData first = decoded.vectors().get(0);
+    assertThat(first).usingRecursiveComparison().ignoringFields("embedding").isEqualTo(email);
+    assertThat(first.getEmbedding()).containsExactly(VectorMath.normalize(email.getEmbedding()));
+    assertThat(decoded.vectors().get(1).getEmbedding()).containsExactly(0f, 0f, 1f);
+    assertThat(decoded.vectors().get(1).getExamples()).isNull();
+    assertThat(decoded.vectors().get(1).getCreatedAt()).isNull();
+  }
+
+  @Test
+  @DisplayName("Should read format version 1 snapshots, which have no content hash")
+  void shouldReadFormatVersion1() throws IOException {
+    // A version 3 record ends with the content hash and embedding model, here null: -1 lengths
+    VectorSnapshot decoded = VectorSnapshot.decode(legacy(1, 8));
+
+    assertThat(decoded.vectors()).extracting(VectorData::getSemanticType).containsExactly("PHONE");
+    assertThat(decoded.vectors().get(0).getContentHash()).isNull();
+  }
+
+  @Test
+  @DisplayName("Should read format version 2 snapshots, which have no embedding model")
+  void shouldReadFormatVersion2() throws IOException {
+    VectorSnapshot decoded = VectorSnapshot.decode(legacy(2, 4));
+
+    assertThat(decoded.vectors()).extracting(VectorData::getSemanticType).containsExactly("PHONE");
+    assertThat(decoded.vectors().get(0).getEmbeddingModel()).isNull();
+  }
+
+  // The phone snapshot as an older format, whose last record is shorter by the given bytes and
+  // which ends before the folded delta count of version 4 and the unpacked count of version 5
+  private byte[] legacy(int format, int strippedBytes) {
+    byte[] current = new VectorSnapshot(4, List.of(phone)).encode();
+    int counts = format < 4 ? 8 : 4;
+    byte[] legacy = Arrays.copyOf(current, current.length - strippedBytes - counts);
+    ByteBuffer.wrap(legacy).putInt(4, format);
+    CRC32C crc = new CRC32C();
+    crc.update(legacy, 0, legacy.length - 4);
+    ByteBuffer.wrap(legacy).putInt(legacy.length - 4, (int) crc.getValue());
+    return legacy;
+  }
+
+  @Test
+  @DisplayName("Should read format version 3 snapshots, which name no folded delta logs")
+  void shouldReadFormatVersion3() throws IOException {
+    VectorSnapshot decoded = VectorSnapshot.decode(legacy(3, 0));
+
+    assertThat(decoded.vectors()).extracting(VectorData::getSemanticType).containsExactly("PHONE");
+    assertThat(decoded.foldedDeltas()).isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should read format version 4 snapshots, which have no unpacked vectors")
+  void shouldReadFormatVersion4() throws IOException {
+    VectorSnapshot decoded = VectorSnapshot.decode(legacy(4, 0));
+
+    assertThat(decoded.vectors()).extracting(VectorData::getSemanticType).containsExactly("PHONE");
+  }
+
+  @Test
+  @DisplayName("Should round-trip the delta logs folded into a snapshot")
+  void shouldRoundTripFoldedDeltas() throws IOException {
+    List<String> folded = List.of("vectors/index/deltas/1-a.bin", "vectors/index/deltas/2-b.bin");
+
+    VectorSnapshot decoded =
+        VectorSnapshot.decode(new VectorSnapshot(3, List.of(phone), folded).encode());
+
+    assertThat(decoded.foldedDeltas()).isEqualTo(folded);
+    assertThat(decoded.vectors()).hasSize(1);
+  }
+
+  @Test
+  @DisplayName("Should keep vectors that do not fit the fixed-width rows")
+  void shouldKeepVectorsWithoutMatchingEmbedding() throws IOException {
+    VectorData noEmbedding = VectorData.builder().semanticType("NONE").build();
+    VectorData wrongSize =
+        VectorData.builder().semanticType("WIDE").embedding(new float[] {3f, 4f}).build();
+
+    VectorSnapshot decoded =
+        VectorSnapshot.decode(
+            new VectorSnapshot(1, List.of(email, noEmbedding, phone, wrongSize)).encode());
+
+    assertThat(decoded.vectors())
+        .extracting(VectorData::getSemanticType)
+        .containsExactly("EMAIL", "PHONE", "NONE", "WIDE");
+    assertThat(decoded.vectors().get(2).getEmbedding()).isNull();
+    assertThat(decoded.vectors().get(3).getEmbedding()).containsExactly(0.6f, 0.8f);
+    assertThat(VectorSnapshot.decode(new VectorSnapshot(2, List.of()).encode()).vectors())
+        .isEmpty();
+  }
+
+  @Test
+  @DisplayName("Should reject corrupted, truncated and foreign data")
+  void shouldRejectCorruptData() {
+    byte[] snapshot = new VectorSnapshot(1, List.of(email)).encode();
+    byte[] flipped = snapshot.clone();
+    flipped[40] ^= 1;
+
+    assertThatThrownBy(() -> VectorSnapshot.decode(flipped))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("checksum");
+    assertThatThrownBy(() -> VectorSnapshot.decode(Arrays.copyOf(snapshot, snapshot.length - 9)))
+        .isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> VectorSnapshot.decode(new byte[4])).isInstanceOf(IOException.class);
+    assertThatThrownBy(() -> VectorSnapshot.decode(VectorSnapshot.encodeDeltaLog(1, List.of())))
+        .isInstanceOf(IOException.class)
+        .hasMessage("Not a vector snapshot");
+  }
+
+  @Test
+  @DisplayName("Should round-trip a delta log of stores and deletes")
+  void shouldRoundTripDeltaLog() throws IOException {
+    List<VectorSnapshot.Delta> deltas =
+        List.of(
+            new VectorSnapshot.Delta("EMAIL", email),
+            new VectorSnapshot.Delta("PHONE", null),
+            new VectorSnapshot.Delta("NONE", VectorData.builder().semanticType("NONE").build()));
+
+    List<VectorSnapshot.Delta> decoded =
+        VectorSnapshot.decodeDeltaLog(VectorSnapshot.encodeDeltaLog(3, deltas), 3);
+
+    assertThat(decoded).hasSize(3);
+    assertThat(decoded.get(0).vector()).isEqualTo(email);
+    assertThat(decoded.get(1).isDelete()).isTrue();
+    assertThat(decoded.get(1).semanticType()).isEqualTo("PHONE");
+    assertThat(decoded.get(2).vector().getEmbedding()).isNull();
+    assertThatThrownBy(
+            () -> VectorSnapshot.decodeDeltaLog(VectorSnapshot.encodeDeltaLog(3, deltas), 4))
+        .isInstanceOf(IOException.class);
+    assertThat(VectorSnapshot.decodeDeltaLog(VectorSnapshot.encodeDeltaLog(3, deltas))).hasSize(3);
+  }
+}
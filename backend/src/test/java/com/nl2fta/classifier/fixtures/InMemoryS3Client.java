@@ -0,0 +1,315 @@
+package com.nl2fta.classifier.fixtures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * In-process stand-in for {@link S3Client} over a single bucket held in memory. Supports the object
+ * operations the storage services use, with S3's paging of listings (at most 1000 keys per page)
+ * and MD5 ETags, conditional writes ({@code If-Match} and {@code If-None-Match: *}) and batch
+ * deletes, and counts requests per operation so tests can assert how many round trips a code path
+ * makes. {@link #asyncClient()} exposes the same bucket as an {@link S3AsyncClient} for downloads.
+ * Failures and a per-request latency can be injected. Unsupported operations throw {@link
+ * UnsupportedOperationException}.
+ */
+public final class InMemoryS3Client implements S3Client {
+
+  private static final int MAX_KEYS = 1000;
+
+  private final NavigableMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+  private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+  private final Map<String, Queue<RuntimeException>> failures = new ConcurrentHashMap<>();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final S3AsyncClient asyncClient = new AsyncView();
+  private volatile Duration latency = Duration.ZERO;
+
+  private record StoredObject(byte[] data, String eTag, Instant lastModified) {}
+
+  /** Stores an object directly, without counting a request. */
+  public void putBytes(String key, byte[] data) {
+    objects.put(key, new StoredObject(data, eTag(data), Instant.now()));
+  }
+
+  /** Returns an object's content, or null if there is none, without counting a request. */
+  public byte[] getBytes(String key) {
+    StoredObject object = objects.get(key);
+    return object == null ? null : object.data();
+  }
+
+  /** Keys currently stored, in order. */
+  public List<String> keys() {
+    return new ArrayList<>(objects.keySet());
+  }
+
+  /** Number of requests made for {@code operation}, e.g. {@code "GetObject"}. */
+  public int requestCount(String operation) {
+    AtomicInteger count = requests.get(operation);
+    return count == null ? 0 : count.get();
+  }
+
+  public void resetRequestCounts() {
+    requests.clear();
+    maxInFlight.set(0);
+  }
+
+  /**
+   * Makes the next request for {@code operation} fail with {@code error}; calling it repeatedly
+   * queues failures for the following requests.
+   */
+  public void failNext(String operation, RuntimeException error) {
+    failures.computeIfAbsent(operation, key -> new ConcurrentLinkedQueue<>()).add(error);
+  }
+
+  /** Delays every request by {@code latency}, standing in for the network round trip. */
+  public void setLatency(Duration latency) {
+    this.latency = latency;
+  }
+
+  /** Most asynchronous downloads in flight at once since the counts were last reset. */
+  public int maxInFlight() {
+    return maxInFlight.get();
+  }
+
+  /** An asynchronous client over the same bucket, supporting {@code GetObject}. */
+  public S3AsyncClient asyncClient() {
+    return asyncClient;
+  }
+
+  @Override
+  public HeadBucketResponse headBucket(HeadBucketRequest request) {
+    count("HeadBucket");
+    return HeadBucketResponse.builder().build();
+  }
+
+  @Override
+  public ListObjectsV2Response listObjectsV2(ListObjectsV2Request request) {
+    count("ListObjectsV2");
+    sleep();
+    String prefix = request.prefix() == null ? "" : request.prefix();
+    int maxKeys = request.maxKeys() == null ? MAX_KEYS : Math.min(request.maxKeys(), MAX_KEYS);
+    String after =
+        request.continuationToken() != null ? request.continuationToken() : request.startAfter();
+
+    NavigableMap<String, StoredObject> candidates =
+        after == null ? objects.tailMap(prefix, true) : objects.tailMap(after, false);
+    List<S3Object> page = new ArrayList<>();
+    boolean truncated = false;
+    for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        if (entry.getKey().compareTo(prefix) > 0) {
+          break;
+        }
+        continue;
+      }
+      if (page.size() == maxKeys) {
+        truncated = true;
+        break;
+      }
+      StoredObject object = entry.getValue();
+      page.add(
+          S3Object.builder()
+              .key(entry.getKey())
+              .eTag(object.eTag())
+              .size((long) object.data().length)
+              .lastModified(object.lastModified())
+              .build());
+    }
+    return ListObjectsV2Response.builder()
+        .contents(page)
+        .keyCount(page.size())
+        .isTruncated(truncated)
+        .nextContinuationToken(truncated ? page.get(page.size() - 1).key() : null)
+        .build();
+  }
+
+  @Override
+  public ResponseBytes<GetObjectResponse> getObjectAsBytes(GetObjectRequest request) {
+    count("GetObject");
+    sleep();
+    StoredObject object = find(request.key());
+    return ResponseBytes.fromByteArray(response(object), object.data().clone());
+  }
+
+  @Override
+  public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+    count("PutObject");
+    sleep();
+    byte[] data;
+    try (InputStream in = body.contentStreamProvider().newStream()) {
+      data = in.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    synchronized (objects) {
+      StoredObject current = objects.get(request.key());
+      boolean precondition =
+          request.ifMatch() != null
+              ? current != null && current.eTag().equals(request.ifMatch())
+              : !"*".equals(request.ifNoneMatch()) || current == null;
+      if (!precondition) {
+        throw S3Exception.builder().statusCode(412).message("Precondition Failed").build();
+      }
+      putBytes(request.key(), data);
+    }
+    return PutObjectResponse.builder().eTag(eTag(data)).build();
+  }
+
+  @Override
+  public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+    count("DeleteObject");
+    objects.remove(request.key());
+    return DeleteObjectResponse.builder().build();
+  }
+
+  @Override
+  public DeleteObjectsResponse deleteObjects(DeleteObjectsRequest request) {
+    count("DeleteObjects");
+    sleep();
+    List<DeletedObject> deleted = new ArrayList<>();
+    request
+        .delete()
+        .objects()
+        .forEach(
+            object -> {
+              objects.remove(object.key());
+              deleted.add(DeletedObject.builder().key(object.key()).build());
+            });
+    return DeleteObjectsResponse.builder().deleted(deleted).build();
+  }
+
+  @Override
+  public String serviceName() {
+    return SERVICE_NAME;
+  }
+
+  @Override
+  public void close() {}
+
+  private void count(String operation) {
+    requests.computeIfAbsent(operation, key -> new AtomicInteger()).incrementAndGet();
+    Queue<RuntimeException> queued = failures.get(operation);
+    RuntimeException failure = queued == null ? null : queued.poll();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private StoredObject find(String key) {
+    StoredObject object = objects.get(key);
+    if (object == null) {
+      throw NoSuchKeyException.builder().message("No such key: " + key).build();
+    }
+    return object;
+  }
+
+  private static GetObjectResponse response(StoredObject object) {
+    return GetObjectResponse.builder()
+        .eTag(object.eTag())
+        .contentLength((long) object.data().length)
+        .lastModified(object.lastModified())
+        .build();
+  }
+
+  private void sleep() {
+    if (latency.isZero()) {
+      return;
+    }
+    try {
+      Thread.sleep(latency.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private final class AsyncView implements S3AsyncClient {
+
+    @Override
+    public <T> CompletableFuture<T> getObject(
+        GetObjectRequest request, AsyncResponseTransformer<GetObjectResponse, T> transformer) {
+      try {
+        count("GetObject");
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+      int current = inFlight.incrementAndGet();
+      maxInFlight.accumulateAndGet(current, Math::max);
+      CompletableFuture<Void> delay =
+          CompletableFuture.runAsync(
+              () -> {},
+              CompletableFuture.delayedExecutor(latency.toMillis(), TimeUnit.MILLISECONDS));
+      return delay
+          .thenCompose(
+              ignored -> {
+                StoredObject object = objects.get(request.key());
+                if (object == null) {
+                  return CompletableFuture.<T>failedFuture(
+                      NoSuchKeyException.builder()
+                          .message("No such key: " + request.key())
+                          .build());
+                }
+                CompletableFuture<T> result = transformer.prepare();
+                transformer.onResponse(response(object));
+                transformer.onStream(AsyncRequestBody.fromBytes(object.data()));
+                return result;
+              })
+          .whenComplete((value, error) -> inFlight.decrementAndGet());
+    }
+
+    @Override
+    public String serviceName() {
+      return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static String eTag(byte[] data) {
+    try {
+      return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data)) + "\"";
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -54,6 +54,7 @@ describe('HeaderComponent', () => {
     const loggerSpy = jasmine.createSpyObj('LoggerService', ['info', 'debug', 'error', 'warn']);
     const tableClassifierSpy = jasmine.createSpyObj('TableClassifierService', [
       'getAllAnalyses',
+      'getAnalysisSummaries',
       'reanalyzeWithUpdatedTypes',
       'deleteAnalysis',
       'deleteAllAnalyses',
@@ -69,6 +70,7 @@ describe('HeaderComponent', () => {
     awsSpy.getAwsStatus.and.returnValue(of({ configured: false, message: 'Not configured' }));
     semanticSpy.refreshTypes.and.returnValue(Promise.resolve());
     tableClassifierSpy.getAllAnalyses.and.returnValue(of([]));
+    tableClassifierSpy.getAnalysisSummaries.and.returnValue(of([]));
 
     await TestBed.configureTestingModule({
       imports: [HeaderComponent, NoopAnimationsModule, HttpClientTestingModule],
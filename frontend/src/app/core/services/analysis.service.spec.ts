@@ -5,7 +5,7 @@ import { ConfigService } from './config.service';
 import { LoggerService } from './logger.service';
 import { TableClassifierService } from './table-classifier.service';
 import { FileAnalysis } from '../../shared/models/file-analysis.model';
-import { TableClassificationResponse, StoredAnalysis } from './fta-classifier.service';
+import { TableClassificationResponse, StoredAnalysis, AnalysisSummary } from './fta-classifier.service';
 
 describe('AnalysisService', () => {
   let service: AnalysisService;
@@ -67,6 +67,16 @@ describe('AnalysisService', () => {
     locale: 'en-US'
   };
 
+  const mockSummary: AnalysisSummary = {
+    analysisId: 'test-analysis-1',
+    fileName: 'test.csv',
+    createdAt: '2024-01-15T10:30:00Z',
+    updatedAt: '2024-01-15T10:30:00Z',
+    columnCount: 2,
+    rowCount: 2,
+    typeCounts: { PERSON_NAME: 1, EMAIL: 1 }
+  };
+
   const mockTableClassificationResponse: TableClassificationResponse = {
     tableName: 'test_table',
     columnClassifications: {
@@ -92,13 +102,14 @@ describe('AnalysisService', () => {
 
   beforeEach(() => {
     const tableClassifierSpy = jasmine.createSpyObj('TableClassifierService', [
-      'getAllAnalyses', 'deleteAnalysis', 'deleteAllAnalyses', 'reanalyzeWithUpdatedTypes'
+      'getAllAnalyses', 'getAnalysisSummaries', 'getAnalysis', 'deleteAnalysis', 'deleteAllAnalyses',
+      'reanalyzeWithUpdatedTypes'
     ]);
     const loggerSpy = jasmine.createSpyObj('LoggerService', ['error', 'info', 'warn']);
     const configSpy = jasmine.createSpyObj('ConfigService', ['getConfig']);
 
-    // Set up default return value for getAllAnalyses to prevent constructor error
-    tableClassifierSpy.getAllAnalyses.and.returnValue(of([]));
+    // Set up default return value for getAnalysisSummaries to prevent constructor error
+    tableClassifierSpy.getAnalysisSummaries.and.returnValue(of([]));
 
     TestBed.configureTestingModule({
       providers: [
@@ -115,7 +126,7 @@ describe('AnalysisService', () => {
     _configService = TestBed.inject(ConfigService) as jasmine.SpyObj<ConfigService>;
 
     // Reset spies after service instantiation
-    tableClassifierService.getAllAnalyses.calls.reset();
+    tableClassifierService.getAnalysisSummaries.calls.reset();
     loggerService.error.calls.reset();
   });
 
@@ -135,7 +146,7 @@ describe('AnalysisService', () => {
       // We already set up the spy to return an empty array, so we just need to verify it was called
       // The spy was reset after instantiation, but we can check the service state
       expect(service).toBeTruthy();
-      // The constructor would have called getAllAnalyses, setting initial state
+      // The constructor would have called getAnalysisSummaries, setting initial state
       expect(service.analyses()).toEqual([]);
       expect(service.isLoading()).toBe(false);
     });
@@ -143,12 +154,12 @@ describe('AnalysisService', () => {
 
   describe('loadAnalysesFromBackend', () => {
     it('should successfully load and sort analyses by timestamp', (done) => {
-      const storedAnalyses = [
-        { ...mockStoredAnalysis, timestamp: '2024-01-14T10:00:00Z', analysisId: 'older-analysis' },
-        { ...mockStoredAnalysis, timestamp: '2024-01-15T15:00:00Z', analysisId: 'newer-analysis' }
+      const summaries = [
+        { ...mockSummary, updatedAt: '2024-01-14T10:00:00Z', analysisId: 'older-analysis' },
+        { ...mockSummary, updatedAt: '2024-01-15T15:00:00Z', analysisId: 'newer-analysis' }
       ];
       
-      tableClassifierService.getAllAnalyses.and.returnValue(of(storedAnalyses));
+      tableClassifierService.getAnalysisSummaries.and.returnValue(of(summaries));
 
       service.loadAnalysesFromBackend();
 
@@ -160,12 +171,13 @@ describe('AnalysisService', () => {
       expect(analyses[1].id).toBe('older-analysis');
       expect(service.isLoading()).toBe(false);
       expect(service.errorMessage()).toBe('');
+      expect(tableClassifierService.getAllAnalyses).not.toHaveBeenCalled();
       done();
     });
 
     it('should handle backend loading errors', (done) => {
       const error = new Error('Backend connection failed');
-      tableClassifierService.getAllAnalyses.and.returnValue(throwError(() => error));
+      tableClassifierService.getAnalysisSummaries.and.returnValue(throwError(() => error));
 
       service.loadAnalysesFromBackend();
 
@@ -181,10 +193,25 @@ describe('AnalysisService', () => {
       }, 0);
     });
 
-    it('should convert stored analyses to file analyses correctly', (done) => {
-      tableClassifierService.getAllAnalyses.and.returnValue(of([mockStoredAnalysis]));
+    it('should list summaries without rows until details are loaded', () => {
+      tableClassifierService.getAnalysisSummaries.and.returnValue(of([mockSummary]));
+
+      service.loadAnalysesFromBackend();
+
+      const analysis = service.analyses()[0];
+      expect(analysis.id).toBe('test-analysis-1');
+      expect(analysis.fileName).toBe('test.csv');
+      expect(analysis.uploadTime).toEqual(new Date('2024-01-15T10:30:00Z'));
+      expect(analysis.detailsLoaded).toBe(false);
+      expect(analysis.tableData).toEqual([]);
+    });
+
+    it('should convert stored analyses to file analyses correctly when loading details', (done) => {
+      tableClassifierService.getAnalysisSummaries.and.returnValue(of([mockSummary]));
+      tableClassifierService.getAnalysis.and.returnValue(of(mockStoredAnalysis));
 
       service.loadAnalysesFromBackend();
+      service.loadAnalysisDetails('test-analysis-1');
 
       setTimeout(() => {
         const analyses = service.analyses();
@@ -198,6 +225,11 @@ describe('AnalysisService', () => {
         expect(analysis.dynamicColumns[0].field).toBe('name');
         expect(analysis.dynamicColumns[0].semanticType).toBe('PERSON_NAME');
         expect(analysis.tableData.length).toBe(2);
+        expect(analysis.detailsLoaded).toBeUndefined();
+
+        // Loaded once; later opens do not fetch again
+        service.loadAnalysisDetails('test-analysis-1');
+        expect(tableClassifierService.getAnalysis).toHaveBeenCalledTimes(1);
         done();
       }, 0);
     });
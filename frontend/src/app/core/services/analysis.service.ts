@@ -4,7 +4,7 @@ import { catchError } from 'rxjs/operators';
 import { FileAnalysis } from '../../shared/models/file-analysis.model';
 import { ConfigService } from './config.service';
 import { LoggerService } from './logger.service';
-import { TableClassificationResponse, StoredAnalysis } from './fta-classifier.service';
+import { TableClassificationResponse, StoredAnalysis, AnalysisSummary } from './fta-classifier.service';
 import { TableClassifierService } from './table-classifier.service';
 import { generateId } from '../../shared/utils/uuid.util';
 
@@ -33,9 +33,10 @@ export class AnalysisService {
     this.isLoading.set(true);
     this.errorMessage.set('');
 
-    this.tableClassifierService.getAllAnalyses().subscribe({
-      next: (storedAnalyses: StoredAnalysis[]) => {
-        const fileAnalyses: FileAnalysis[] = storedAnalyses.map(stored => this.convertStoredAnalysisToFileAnalysis(stored));
+    // Summaries only: rows and classifications are fetched when an analysis is opened
+    this.tableClassifierService.getAnalysisSummaries().subscribe({
+      next: (summaries: AnalysisSummary[]) => {
+        const fileAnalyses: FileAnalysis[] = summaries.map(summary => this.convertSummaryToFileAnalysis(summary));
         // Sort analyses by most recent first
         const sortedAnalyses = fileAnalyses.sort(
           (a, b) => new Date(b.lastAnalyzedAt).getTime() - new Date(a.lastAnalyzedAt).getTime()
@@ -52,6 +53,30 @@ export class AnalysisService {
     });
   }
 
+  /** Fetches the full analysis behind a summary entry, once. */
+  loadAnalysisDetails(analysisId: string): void {
+    const analysis = this.getAnalysisById(analysisId);
+    if (!analysis || analysis.detailsLoaded !== false) {
+      return;
+    }
+
+    this.tableClassifierService.getAnalysis(analysisId).subscribe({
+      next: (stored: StoredAnalysis) => {
+        const currentAnalyses = this.analyses();
+        const index = currentAnalyses.findIndex(a => a.id === analysisId);
+        if (index !== -1) {
+          const updatedAnalyses = [...currentAnalyses];
+          updatedAnalyses[index] = this.convertStoredAnalysisToFileAnalysis(stored);
+          this.analyses.set(updatedAnalyses);
+          this.analysesSubject.next(updatedAnalyses);
+        }
+      },
+      error: (error) => {
+        this.logger.error(`Failed to load analysis ${analysisId}`, error, 'AnalysisService');
+      }
+    });
+  }
+
   addAnalysis(analysis: FileAnalysis): void {
     // The analysis is already stored in backend by FileUploadController
     // Just update the frontend state
@@ -227,6 +252,34 @@ export class AnalysisService {
     );
   }
 
+  private convertSummaryToFileAnalysis(summary: AnalysisSummary): FileAnalysis {
+    return {
+      id: summary.analysisId,
+      fileName: summary.fileName,
+      uploadTime: new Date(summary.createdAt),
+      lastAnalyzedAt: new Date(summary.updatedAt),
+      classificationResults: {
+        tableName: summary.fileName,
+        columnClassifications: {},
+        processingMetadata: {
+          totalColumns: summary.columnCount,
+          analyzedColumns: summary.columnCount,
+          totalRowsProcessed: summary.rowCount,
+          processingTimeMs: 0,
+          ftaVersion: '',
+          localeUsed: '',
+        },
+        data: [],
+        analysisId: summary.analysisId,
+      },
+      tableData: [],
+      dynamicColumns: [],
+      originalData: [],
+      isExpanded: false,
+      detailsLoaded: false,
+    };
+  }
+
   private convertStoredAnalysisToFileAnalysis(stored: StoredAnalysis): FileAnalysis {
     return {
       id: stored.analysisId,
@@ -83,7 +83,7 @@ describe('FileUploadService', () => {
       const emptyFile = new File([''], 'empty.csv', { type: 'text/csv' });
 
       expect(service.validateFile(validFile)).toBeNull();
-      expect(service.validateFile(largeFile)).toContain('exceeds');
+      expect(service.validateFile(largeFile)).toBe('File size exceeds 10MB limit');
       expect(service.validateFile(emptyFile)).toContain('empty');
     });
 
@@ -229,8 +229,7 @@ export class FileUploadService {
     }
 
     if (file.size > this.MAX_FILE_SIZE) {
-      const sizeMB = Math.round(this.MAX_FILE_SIZE / 1048576);
-      return `File size exceeds ${sizeMB}MB limit`;
+      return `File size exceeds ${this.getMaxFileSizeLabel()} limit`;
     }
 
     const fileExtension = this.getFileExtension(file.name);
@@ -333,4 +332,9 @@ export class FileUploadService {
   getAcceptedFileTypes(): string {
     return this.supportedFileTypes.map(type => `.${type.extension}`).join(',');
   }
+
+  getMaxFileSizeLabel(): string {
+    const sizeMB = this.MAX_FILE_SIZE / 1048576;
+    return sizeMB >= 1024 ? `${Math.round(sizeMB / 1024)}GB` : `${Math.round(sizeMB)}MB`;
+  }
 }
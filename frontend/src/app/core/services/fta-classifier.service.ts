@@ -150,6 +150,17 @@ export interface StoredAnalysis {
   locale: string;
 }
 
+/** Listing entry for a stored analysis; it carries no row data. */
+export interface AnalysisSummary {
+  analysisId: string;
+  fileName: string;
+  createdAt: string;
+  updatedAt: string;
+  columnCount: number;
+  rowCount: number;
+  typeCounts: Record<string, number>;
+}
+
 export interface FieldData {
   fieldName: string;
   currentSemanticType: string;
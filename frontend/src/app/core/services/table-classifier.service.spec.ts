@@ -320,6 +320,64 @@ describe('TableClassifierService', () => {
     });
   });
 
+  describe('getAnalysisSummaries', () => {
+    it('should follow summary pages until there is no next cursor', (done) => {
+      const summary = (id: string) => ({
+        analysis_id: id,
+        file_name: `${id}.csv`,
+        created_at: '2024-01-01T00:00:00',
+        updated_at: '2024-01-02T00:00:00',
+        column_count: 3,
+        row_count: 10,
+        type_counts: { EMAIL: 1 }
+      });
+      httpClient.get.and.returnValues(
+        of({ items: [summary('a1'), summary('a2')], next_cursor: 'page-2', total_count: 3 }),
+        of({ items: [summary('a3')], next_cursor: null, total_count: 3 })
+      );
+
+      service.getAnalysisSummaries().subscribe({
+        next: (summaries) => {
+          expect(summaries.map(s => s.analysisId)).toEqual(['a1', 'a2', 'a3']);
+          expect(summaries[0].fileName).toBe('a1.csv');
+          expect(summaries[0].rowCount).toBe(10);
+          expect(summaries[0].typeCounts).toEqual({ EMAIL: 1 });
+          expect(httpClient.get).toHaveBeenCalledTimes(2);
+          const firstParams = (httpClient.get.calls.argsFor(0)[1] as any).params;
+          expect(firstParams.get('view')).toBe('summary');
+          expect(firstParams.has('cursor')).toBe(false);
+          const secondParams = (httpClient.get.calls.argsFor(1)[1] as any).params;
+          expect(secondParams.get('cursor')).toBe('page-2');
+          done();
+        },
+        error: (error) => {
+          fail('Should not have failed: ' + error);
+        }
+      });
+    });
+  });
+
+  describe('getAnalysis', () => {
+    it('should fetch one stored analysis in full', (done) => {
+      httpClient.get.and.returnValue(
+        of({
+          analysis_id: 'analysis-1',
+          file_name: 'data1.csv',
+          timestamp: '2024-01-01T00:00:00Z',
+          response: mockClassificationResponse,
+          data: [{ name: 'John' }]
+        })
+      );
+
+      service.getAnalysis('analysis-1').subscribe(analysis => {
+        expect(analysis.analysisId).toBe('analysis-1');
+        expect(analysis.data.length).toBe(1);
+        expect(httpClient.get).toHaveBeenCalledWith('/api/analyses/analysis-1');
+        done();
+      });
+    });
+  });
+
   describe('getAllAnalyses', () => {
     it('should fetch all stored analyses', (done) => {
       const mockAnalyses = [
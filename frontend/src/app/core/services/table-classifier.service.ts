@@ -1,17 +1,26 @@
 import { Injectable, inject } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
-import { Observable, throwError } from 'rxjs';
-import { retry, timeout, catchError, map } from 'rxjs/operators';
+import { HttpClient, HttpParams } from '@angular/common/http';
+import { EMPTY, Observable, throwError } from 'rxjs';
+import { retry, timeout, catchError, map, expand, reduce } from 'rxjs/operators';
 import { ConfigService } from './config.service';
 import {
   TableClassificationRequest,
   TableClassificationResponse,
   StoredAnalysis,
+  AnalysisSummary,
   FieldData,
 } from './fta-classifier.service';
 import { API_ENDPOINTS, buildApiUrl } from '../config/api-endpoints.config';
 import { LoggerService } from './logger.service';
 
+// Largest page the backend returns for the summary view
+const SUMMARY_PAGE_SIZE = 500;
+
+interface AnalysisSummaryPage {
+  items?: unknown[];
+  next_cursor?: string | null;
+}
+
 @Injectable({
   providedIn: 'root',
 })
@@ -125,6 +134,47 @@ export class TableClassifierService {
     );
   }
 
+  /**
+   * Lists every stored analysis without its rows, most recently updated first, following the
+   * backend's summary pages to the end.
+   */
+  getAnalysisSummaries(): Observable<AnalysisSummary[]> {
+    const url = buildApiUrl(API_ENDPOINTS.GET_ANALYSES, this.apiUrl);
+    const fetchPage = (cursor?: string) => {
+      let params = new HttpParams()
+        .set('view', 'summary')
+        .set('sort', 'updated_at')
+        .set('order', 'desc')
+        .set('limit', String(SUMMARY_PAGE_SIZE));
+      if (cursor) {
+        params = params.set('cursor', cursor);
+      }
+      return this.http.get<AnalysisSummaryPage>(url, { params }).pipe(
+        timeout(this.config?.httpTimeoutMs || 30000),
+        retry(this.config?.httpRetryCount || 2)
+      );
+    };
+    return fetchPage().pipe(
+      expand(page => (page.next_cursor ? fetchPage(page.next_cursor) : EMPTY)),
+      reduce(
+        (summaries: AnalysisSummary[], page) =>
+          summaries.concat((page.items || []).map(item => this.transformSummaryToCamelCase(item))),
+        []
+      ),
+      catchError(error => this.handleError(error))
+    );
+  }
+
+  getAnalysis(analysisId: string): Observable<StoredAnalysis> {
+    const url = buildApiUrl(`${API_ENDPOINTS.GET_ANALYSES}/${encodeURIComponent(analysisId)}`, this.apiUrl);
+    return this.http.get<unknown>(url).pipe(
+      timeout(this.config?.httpTimeoutMs || 30000),
+      retry(this.config?.httpRetryCount || 2),
+      map(analysis => this.transformStoredAnalysisToCamelCase(analysis)),
+      catchError(error => this.handleError(error))
+    );
+  }
+
   deleteAllAnalyses(): Observable<void> {
     const url = buildApiUrl(API_ENDPOINTS.DELETE_ANALYSES, this.apiUrl);
     return this.http.delete<void>(url).pipe(
@@ -215,6 +265,19 @@ export class TableClassifierService {
     return transformed;
   }
 
+  private transformSummaryToCamelCase(summary: unknown): AnalysisSummary {
+    const summaryObj = summary as Record<string, unknown>;
+    return {
+      analysisId: summaryObj['analysis_id'] as string,
+      fileName: summaryObj['file_name'] as string,
+      createdAt: summaryObj['created_at'] as string,
+      updatedAt: summaryObj['updated_at'] as string,
+      columnCount: (summaryObj['column_count'] as number) || 0,
+      rowCount: (summaryObj['row_count'] as number) || 0,
+      typeCounts: (summaryObj['type_counts'] as Record<string, number>) || {},
+    };
+  }
+
   private transformStoredAnalysisToCamelCase(analysis: unknown): StoredAnalysis {
     const analysisObj = analysis as Record<string, unknown>;
     return {
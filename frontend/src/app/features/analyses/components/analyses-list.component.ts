@@ -159,10 +159,15 @@ export class AnalysesListComponent {
 
   // Lazy loading methods
   isAnalysisLoaded(analysisId: string): boolean {
-    return this.loadedAnalysisIds().has(analysisId);
+    return (
+      this.loadedAnalysisIds().has(analysisId) &&
+      this.analysisService.getAnalysisById(analysisId)?.detailsLoaded !== false
+    );
   }
 
   markAnalysisAsLoaded(analysisId: string): void {
+    // The list holds summaries; fetch the full analysis the first time it is opened
+    this.analysisService.loadAnalysisDetails(analysisId);
     const currentLoadedIds = this.loadedAnalysisIds();
     if (!currentLoadedIds.has(analysisId)) {
       const newLoadedIds = new Set(currentLoadedIds);
@@ -42,6 +42,10 @@ export class FileUploadComponent {
     return this.fileUploadService.getAcceptedFileTypes();
   }
 
+  getMaxFileSizeLabel(): string {
+    return this.fileUploadService.getMaxFileSizeLabel();
+  }
+
   useTemplate(type: 'sql' | 'csv', event?: Event): void {
     if (event) {
       event.stopPropagation();
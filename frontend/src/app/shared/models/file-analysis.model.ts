@@ -10,6 +10,8 @@ export interface FileAnalysis {
   dynamicColumns: DynamicColumn[];
   originalData: Record<string, string | number | boolean | null>[];
   isExpanded: boolean;
+  /** False while only the summary is loaded; the rows and classifications follow on demand. */
+  detailsLoaded?: boolean;
 }
 
 export interface DynamicColumn {